@@ -0,0 +1,109 @@
+package myJavaLib.benchmarks;
+
+import myJavaLib.DataGenerator;
+
+import java.util.SplittableRandom;
+
+/**
+ * The input distributions of the sorting benchmarks. Every distribution is generated from a fixed seed,
+ * so all algorithms and all runs sort exactly the same arrays. The random ones come from the parallel
+ * {@link DataGenerator}, so the largest inputs don't take longer to build than to sort.
+ */
+public enum Distribution {
+    /**
+     * Uniformly random values over the whole int range.
+     */
+    RANDOM,
+    /**
+     * 0, 1, 2, ... already in ascending order.
+     */
+    SORTED,
+    /**
+     * Descending order.
+     */
+    REVERSED,
+    /**
+     * Ascending up to the middle and descending after it.
+     */
+    ORGAN_PIPE,
+    /**
+     * 32 ascending runs of the same length one after another.
+     */
+    SAWTOOTH,
+    /**
+     * Random values out of 16 different ones.
+     */
+    FEW_UNIQUE,
+    /**
+     * Sorted, with 1% of the elements swapped with random other elements.
+     */
+    NEARLY_SORTED,
+    /**
+     * Zipf distributed values from 1 to 1000 with exponent 1: a few values are very frequent.
+     */
+    ZIPF,
+    /**
+     * Normally distributed values around 0 with a standard deviation of 1000000.
+     */
+    GAUSSIAN,
+    /**
+     * Musser's sequence that makes a plain median-of-3 quicksort quadratic.
+     */
+    MEDIAN_OF_3_KILLER;
+
+    // Number of runs of the sawtooth
+    private static final int TEETH = 32;
+    // Number of different values of few-unique
+    private static final int UNIQUE_VALUES = 16;
+    // Percentage of swapped elements of nearly-sorted
+    private static final int SWAP_PERCENT = 1;
+
+    /**
+     * Generates an array of this distribution.
+     *
+     * @param len  length of the array
+     * @param seed seed of the random values
+     * @return the generated array
+     */
+    public int[] generate(int len, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] array = new int[len];
+        switch (this) {
+            case RANDOM:
+                return DataGenerator.ints(len, DataGenerator.Distribution.uniform(), seed);
+            case ZIPF:
+                return DataGenerator.ints(len, DataGenerator.Distribution.zipf(1, 1000), seed);
+            case GAUSSIAN:
+                return DataGenerator.ints(len, DataGenerator.Distribution.gaussian(0, 1_000_000), seed);
+            case MEDIAN_OF_3_KILLER:
+                return DataGenerator.ints(len, DataGenerator.Distribution.medianOf3Killer(), seed);
+            case SORTED:
+                for (int i = 0; i < len; i++) array[i] = i;
+                break;
+            case REVERSED:
+                for (int i = 0; i < len; i++) array[i] = len - i;
+                break;
+            case ORGAN_PIPE:
+                for (int i = 0; i < len; i++) array[i] = i < len / 2 ? i : len - i;
+                break;
+            case SAWTOOTH:
+                int tooth = Math.max(1, len / TEETH);
+                for (int i = 0; i < len; i++) array[i] = i % tooth;
+                break;
+            case FEW_UNIQUE:
+                for (int i = 0; i < len; i++) array[i] = random.nextInt(UNIQUE_VALUES);
+                break;
+            default:
+                for (int i = 0; i < len; i++) array[i] = i;
+                // At least one swap, so small arrays are not sorted
+                int swaps = Math.max(1, (int) ((long) len * SWAP_PERCENT / 100));
+                for (int s = 0; s < swaps && len > 1; s++) {
+                    int a = random.nextInt(len), b = random.nextInt(len);
+                    int temp = array[a];
+                    array[a] = array[b];
+                    array[b] = temp;
+                }
+        }
+        return array;
+    }
+}
@@ -0,0 +1,78 @@
+package myJavaLib.benchmarks;
+
+import myJavaLib.Sorting;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The stable object sort of {@link Sorting#sort(Object[], Comparator, ForkJoinPool)} against
+ * {@link Arrays#sort(Object[], Comparator)} and {@link Arrays#parallelSort(Object[], Comparator)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class ObjectSortBenchmark {
+
+    @Param({"Sorting.sort", "Arrays.sort", "Arrays.parallelSort"})
+    public String algorithm;
+
+    @Param({"RANDOM", "SORTED", "REVERSED", "ORGAN_PIPE", "SAWTOOTH", "FEW_UNIQUE", "NEARLY_SORTED",
+            "ZIPF", "GAUSSIAN", "MEDIAN_OF_3_KILLER"})
+    public Distribution distribution;
+
+    @Param({"10", "1000", "100000", "10000000"})
+    public int size;
+
+    @Param({"1", "2", "4", "all"})
+    public String threads;
+
+    private Integer[] input;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        input = Arrays.stream(distribution.generate(size, 42)).boxed().toArray(Integer[]::new);
+        pool = new ForkJoinPool(threads.equals("all") ? Runtime.getRuntime().availableProcessors()
+                : Integer.parseInt(threads));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Integer[] sort() {
+        Integer[] array = input.clone();
+        switch (algorithm) {
+            case "Sorting.sort":
+                Sorting.sort(array, Comparator.naturalOrder(), pool);
+                break;
+            case "Arrays.sort":
+                Arrays.sort(array, Comparator.naturalOrder());
+                break;
+            default:
+                pool.submit(() -> Arrays.parallelSort(array, Comparator.naturalOrder())).join();
+        }
+        return array;
+    }
+}
@@ -0,0 +1,82 @@
+package myJavaLib.benchmarks;
+
+import myJavaLib.Sorting;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The single threaded sorts of {@link Sorting}. Most of them are quadratic, so they only get the small sizes.
+ * Counting sort can't sort the whole int range, it gets the values modulo the size instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimpleSortBenchmark {
+
+    @Param({"insertionSort", "bubbleSort", "selectionSort", "shellSort", "countingSort", "Arrays.sort"})
+    public String algorithm;
+
+    @Param({"RANDOM", "SORTED", "REVERSED", "ORGAN_PIPE", "SAWTOOTH", "FEW_UNIQUE", "NEARLY_SORTED",
+            "ZIPF", "GAUSSIAN", "MEDIAN_OF_3_KILLER"})
+    public Distribution distribution;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int size;
+
+    private int[] input;
+    private Consumer<int[]> sort;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        input = distribution.generate(size, 42);
+        if (algorithm.equals("countingSort")) {
+            for (int i = 0; i < size; i++) input[i] = Math.floorMod(input[i], size);
+        }
+        switch (algorithm) {
+            case "insertionSort":
+                sort = Sorting::insertionSort;
+                break;
+            case "bubbleSort":
+                sort = Sorting::bubbleSort;
+                break;
+            case "selectionSort":
+                sort = Sorting::selectionSort;
+                break;
+            case "shellSort":
+                sort = Sorting::shellSort;
+                break;
+            case "countingSort":
+                sort = Sorting::countingSort;
+                break;
+            case "Arrays.sort":
+                sort = Arrays::sort;
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid Sorting Method: " + algorithm);
+        }
+    }
+
+    @Benchmark
+    public int[] sort() {
+        int[] array = input.clone();
+        sort.accept(array);
+        return array;
+    }
+}
@@ -0,0 +1,121 @@
+package myJavaLib.benchmarks;
+
+import myJavaLib.Sorting;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The parallel int sorts of {@link Sorting} against {@link Arrays#sort(int[])} and {@link Arrays#parallelSort(int[])},
+ * for every {@link Distribution}, sizes from 10 to 10^8 and different numbers of threads.
+ * <p>
+ * Every invocation sorts a fresh copy of the input. The copy is part of the measured time, {@link #copy()} measures
+ * it alone so it can be subtracted. The whole matrix takes days, select a part of it with -p, for example
+ * {@code -p algorithm=quickSort,radixSort -p size=1000000}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+// 10^8 ints take 400 MB, the input, its copy and the scratch array of the sort must fit in the heap
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class SortingBenchmark {
+
+    @Param({"sort", "quickSort", "dualPivotQuickSort", "mergeSort", "adaptiveMergeSort", "radixSort",
+            "Arrays.sort", "Arrays.parallelSort"})
+    public String algorithm;
+
+    @Param({"RANDOM", "SORTED", "REVERSED", "ORGAN_PIPE", "SAWTOOTH", "FEW_UNIQUE", "NEARLY_SORTED",
+            "ZIPF", "GAUSSIAN", "MEDIAN_OF_3_KILLER"})
+    public Distribution distribution;
+
+    @Param({"10", "1000", "100000", "10000000", "100000000"})
+    public int size;
+
+    // Parallelism of the pool the sorts run on, "all" for one thread per processor
+    @Param({"1", "2", "4", "all"})
+    public String threads;
+
+    private int[] input;
+    private ForkJoinPool pool;
+    private Consumer<int[]> sort;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        input = distribution.generate(size, 42);
+        int parallelism = threads.equals("all") ? Runtime.getRuntime().availableProcessors()
+                : Integer.parseInt(threads);
+        pool = new ForkJoinPool(parallelism);
+        sort = sortingMethod(algorithm, pool);
+
+        // Make sure the algorithm really sorts this input before measuring it
+        int[] sorted = input.clone();
+        sort.accept(sorted);
+        int[] expected = input.clone();
+        Arrays.sort(expected);
+        if (!Arrays.equals(sorted, expected)) {
+            throw new IllegalStateException(algorithm + " didn't sort " + distribution + " of size " + size + "!");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Returns the sorting method with the given name, running on the given pool.
+     * Arrays.parallelSort always splits for the common pool, but its tasks run on the pool it is called from.
+     */
+    static Consumer<int[]> sortingMethod(String name, ForkJoinPool pool) {
+        switch (name) {
+            case "sort":
+                return array -> Sorting.sort(array, pool);
+            case "quickSort":
+                return array -> Sorting.quickSort(array, pool);
+            case "dualPivotQuickSort":
+                return array -> Sorting.dualPivotQuickSort(array, pool);
+            case "mergeSort":
+                return array -> Sorting.mergeSort(array, pool);
+            case "adaptiveMergeSort":
+                return array -> Sorting.adaptiveMergeSort(array, pool);
+            case "radixSort":
+                return array -> Sorting.radixSort(array, pool);
+            case "Arrays.sort":
+                return Arrays::sort;
+            case "Arrays.parallelSort":
+                return array -> pool.submit(() -> Arrays.parallelSort(array)).join();
+            default:
+                throw new IllegalArgumentException("Invalid Sorting Method: " + name);
+        }
+    }
+
+    @Benchmark
+    public int[] sort() {
+        int[] array = input.clone();
+        sort.accept(array);
+        return array;
+    }
+
+    // Baseline: only the copy of the input
+    @Benchmark
+    public int[] copy() {
+        return input.clone();
+    }
+}
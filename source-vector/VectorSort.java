@@ -0,0 +1,211 @@
+package myJavaLib;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API kernels of the int sorts: bitonic sorting networks for the small ranges QuickSort and MergeSort
+ * sort directly, and a vectorized partition for QuickSort.
+ * It works on 256-bit vectors of 8 ints. The constructor throws UnsupportedOperationException if the CPU has
+ * no 256-bit vectors, because the Vector API would then be emulated and much slower than the scalar code.
+ * <p>
+ * Compile and run with {@code --add-modules jdk.incubator.vector}, otherwise this class can't be loaded and
+ * {@link Sorting} uses the scalar code.
+ */
+final class VectorSort implements VectorKernels {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_256;
+    private static final int LANES = 8;
+    // Largest range sorted with a network, 8 vectors
+    private static final int MAX_NETWORK = 64;
+    // Smaller ranges are partitioned with the scalar code
+    private static final int MIN_PARTITION = 4 * LANES;
+
+    // xorShuffles[j] swaps every lane l with lane l ^ j, for j = 1, 2 and 4
+    private final VectorShuffle<Integer>[] xorShuffles;
+    // Lanes that keep the maximum at the steps of sorting a single vector, for the (k, j) pairs (2, 1), (4, 2), (4, 1)
+    private final VectorMask<Integer>[] smallMasks;
+    // Lanes that keep the maximum at step j of the in-vector merges, for an ascending or a descending vector
+    private final VectorMask<Integer>[] ascendingMasks;
+    private final VectorMask<Integer>[] descendingMasks;
+    // partitionShuffles[bits] moves the lanes whose bit is set to the front, keeping their order
+    private final VectorShuffle<Integer>[] partitionShuffles;
+    // Lane l holds 1 << l, used for turning a mask into bits
+    private final IntVector laneBits;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    VectorSort() {
+        if (IntVector.SPECIES_PREFERRED.vectorBitSize() < SPECIES.vectorBitSize()) {
+            throw new UnsupportedOperationException("The CPU has no 256-bit vectors!");
+        }
+        xorShuffles = new VectorShuffle[LANES];
+        ascendingMasks = new VectorMask[LANES];
+        descendingMasks = new VectorMask[LANES];
+        for (int j = 1; j < LANES; j <<= 1) {
+            int[] order = new int[LANES];
+            boolean[] takeMax = new boolean[LANES];
+            for (int l = 0; l < LANES; l++) {
+                order[l] = l ^ j;
+                takeMax[l] = (l & j) != 0;
+            }
+            xorShuffles[j] = VectorShuffle.fromArray(SPECIES, order, 0);
+            ascendingMasks[j] = VectorMask.fromArray(SPECIES, takeMax, 0);
+            descendingMasks[j] = ascendingMasks[j].not();
+        }
+
+        int[][] smallSteps = {{2, 1}, {4, 2}, {4, 1}};
+        smallMasks = new VectorMask[smallSteps.length];
+        for (int s = 0; s < smallSteps.length; s++) {
+            smallMasks[s] = bitonicMask(smallSteps[s][0], smallSteps[s][1]);
+        }
+
+        partitionShuffles = new VectorShuffle[1 << LANES];
+        for (int bits = 0; bits < 1 << LANES; bits++) {
+            int[] order = new int[LANES];
+            int k = 0;
+            for (int l = 0; l < LANES; l++) if ((bits & 1 << l) != 0) order[k++] = l;
+            for (int l = 0; l < LANES; l++) if ((bits & 1 << l) == 0) order[k++] = l;
+            partitionShuffles[bits] = VectorShuffle.fromArray(SPECIES, order, 0);
+        }
+        int[] bits = new int[LANES];
+        for (int l = 0; l < LANES; l++) bits[l] = 1 << l;
+        laneBits = IntVector.fromArray(SPECIES, bits, 0);
+    }
+
+    // Lanes that keep the maximum at step (k, j) of a bitonic sort inside one vector
+    private static VectorMask<Integer> bitonicMask(int k, int j) {
+        boolean[] takeMax = new boolean[LANES];
+        for (int l = 0; l < LANES; l++) takeMax[l] = ((l & j) != 0) == ((l & k) == 0);
+        return VectorMask.fromArray(SPECIES, takeMax, 0);
+    }
+
+    @Override
+    public boolean sortSmall(int[] array, int low, int high) {
+        int len = high - low + 1;
+        if (len > MAX_NETWORK) return false;
+        if (len < 2) return true;
+
+        // The network sorts a power of two number of vectors. The range is copied to a buffer
+        // and padded with the largest int, which stays at the end
+        int size = LANES;
+        while (size < len) size <<= 1;
+        int[] buffer = new int[size];
+        System.arraycopy(array, low, buffer, 0, len);
+        for (int i = len; i < size; i++) buffer[i] = Integer.MAX_VALUE;
+
+        // Sort every vector, the even ones ascending and the odd ones descending, so pairs of them are bitonic
+        for (int v = 0; v < size; v += LANES) {
+            IntVector x = IntVector.fromArray(SPECIES, buffer, v);
+            x = exchange(x, 1, smallMasks[0]);
+            x = exchange(x, 2, smallMasks[1]);
+            x = exchange(x, 1, smallMasks[2]);
+            VectorMask<Integer>[] masks = (v & LANES) == 0 ? ascendingMasks : descendingMasks;
+            x = exchange(x, 4, masks[4]);
+            x = exchange(x, 2, masks[2]);
+            x = exchange(x, 1, masks[1]);
+            x.intoArray(buffer, v);
+        }
+
+        // Merge the bitonic sequences of 2, 4 and 8 vectors
+        for (int k = 2 * LANES; k <= size; k <<= 1) {
+            // Compare-exchange steps between vectors
+            for (int j = k >> 1; j >= LANES; j >>= 1) {
+                for (int v = 0; v < size; v += LANES) {
+                    if ((v & j) != 0) continue;
+                    IntVector a = IntVector.fromArray(SPECIES, buffer, v);
+                    IntVector b = IntVector.fromArray(SPECIES, buffer, v + j);
+                    IntVector min = a.min(b), max = a.max(b);
+                    if ((v & k) == 0) {
+                        min.intoArray(buffer, v);
+                        max.intoArray(buffer, v + j);
+                    } else {
+                        max.intoArray(buffer, v);
+                        min.intoArray(buffer, v + j);
+                    }
+                }
+            }
+            // The remaining steps are inside every vector
+            for (int v = 0; v < size; v += LANES) {
+                VectorMask<Integer>[] masks = (v & k) == 0 ? ascendingMasks : descendingMasks;
+                IntVector x = IntVector.fromArray(SPECIES, buffer, v);
+                x = exchange(x, 4, masks[4]);
+                x = exchange(x, 2, masks[2]);
+                x = exchange(x, 1, masks[1]);
+                x.intoArray(buffer, v);
+            }
+        }
+
+        System.arraycopy(buffer, 0, array, low, len);
+        return true;
+    }
+
+    // Compares every lane l with lane l ^ j, the lanes in takeMax keep the larger value and the others the smaller one
+    private IntVector exchange(IntVector x, int j, VectorMask<Integer> takeMax) {
+        IntVector partner = x.rearrange(xorShuffles[j]);
+        return x.min(partner).blend(x.max(partner), takeMax);
+    }
+
+    @Override
+    public int partition(int[] array, int low, int high, int pivot) {
+        if (high - low < MIN_PARTITION) return -1;
+        IntVector pivots = IntVector.broadcast(SPECIES, pivot);
+
+        // The first and the last vector are kept aside, so there is a free gap of a vector at both ends.
+        // Elements are written to the gaps: the smaller ones at the left, the others at the right
+        IntVector first = IntVector.fromArray(SPECIES, array, low);
+        IntVector last = IntVector.fromArray(SPECIES, array, high - LANES);
+        int readLeft = low + LANES, readRight = high - LANES;
+        int writeLeft = low, writeRight = high;
+
+        while (readRight - readLeft >= LANES) {
+            // Read from the side with the smaller gap. The two gaps always add up to two vectors,
+            // so both gaps have room for a whole vector after the read
+            IntVector x;
+            if (readLeft - writeLeft <= writeRight - readRight) {
+                x = IntVector.fromArray(SPECIES, array, readLeft);
+                readLeft += LANES;
+            } else {
+                readRight -= LANES;
+                x = IntVector.fromArray(SPECIES, array, readRight);
+            }
+            int less = store(x, pivots, array, writeLeft, writeRight);
+            writeLeft += less;
+            writeRight -= LANES - less;
+        }
+
+        // Everything between the write positions is free now. The first vector still fits as a whole,
+        // the rest of the elements are written one by one
+        int[] rest = new int[2 * LANES];
+        int count = readRight - readLeft;
+        System.arraycopy(array, readLeft, rest, 0, count);
+        last.intoArray(rest, count);
+        count += LANES;
+        int less = store(first, pivots, array, writeLeft, writeRight);
+        writeLeft += less;
+        writeRight -= LANES - less;
+        for (int i = 0; i < count; i++) {
+            int value = rest[i];
+            if (value < pivot) array[writeLeft++] = value;
+            else array[--writeRight] = value;
+        }
+
+        // Put the pivot between the two parts
+        array[high] = array[writeLeft];
+        array[writeLeft] = pivot;
+        return writeLeft;
+    }
+
+    // Stores the lanes of x that are less than the pivot at writeLeft and the others before writeRight,
+    // and returns the number of lanes less than the pivot
+    private int store(IntVector x, IntVector pivots, int[] array, int writeLeft, int writeRight) {
+        VectorMask<Integer> less = x.compare(VectorOperators.LT, pivots);
+        int bits = IntVector.zero(SPECIES).blend(laneBits, less).reduceLanes(VectorOperators.OR);
+        IntVector packed = x.rearrange(partitionShuffles[bits]);
+        packed.intoArray(array, writeLeft);
+        packed.intoArray(array, writeRight - LANES);
+        return Integer.bitCount(bits);
+    }
+}
@@ -0,0 +1,230 @@
+package myJavaLib;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writer session of a record log, see {@link Data#openWriter(String)}. Use the methods of Data instead of this class.
+ * <p>
+ * The writing threads serialize their objects and hand them to a single flushing thread through a lock-free queue.
+ * The flusher collects the queued records into a batch until it reaches the batch size or the oldest record has
+ * waited for the maximum delay, and writes the batch with one write to the log and one to the index (group commit).
+ * The writing threads never wait for the disk, unless they call {@link #flush()}.
+ */
+final class BatchWriter {
+    // States of the flusher, so the writing threads only wake it up when it waits for them
+    private static final int RUNNING = 0, IDLE = 1, COLLECTING = 2;
+
+    private final FramedLog log;
+    private final Data.Durability durability;
+    private final long batchBytes;
+    private final long maxDelayNanos;
+    private final Thread flusher;
+
+    private final ConcurrentLinkedQueue<Queued> queue = new ConcurrentLinkedQueue<>();
+    // Bytes in the queue, so the flusher is woken up when a batch is full
+    private final AtomicLong queuedBytes = new AtomicLong();
+    // Records handed to the flusher, records the flusher is done with, and records written with the durability of
+    // the writer. The records of a failed batch are done but not written
+    private final AtomicLong submitted = new AtomicLong();
+    private volatile long done;
+    private volatile long written;
+    private volatile long batches;
+    // The number of records a flush waits for, the flusher doesn't wait for the delay while it is ahead
+    private final AtomicLong flushTarget = new AtomicLong();
+    private volatile int state = RUNNING;
+    private volatile boolean closed;
+    // Writes between their check of closed and their offer to the queue, close waits for them
+    private final AtomicInteger writing = new AtomicInteger();
+    // The first write error, the records after it are dropped
+    private volatile IOException failure;
+
+    BatchWriter(Path path, Data.Durability durability, long batchBytes, long maxDelayMillis) throws IOException {
+        this.log = FramedLog.open(path);
+        this.durability = durability;
+        this.batchBytes = batchBytes;
+        this.maxDelayNanos = maxDelayMillis * 1_000_000L;
+        this.flusher = new Thread(this::flushLoop, "myJavaLib-writer-" + path.getFileName());
+        // The JVM can exit without closing the writer, the queued records are lost then
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Serializes the object on the calling thread and queues it.
+     *
+     * @throws IOException if the object can't be serialized, the writer is closed or a previous write failed
+     */
+    void write(Object object) throws IOException {
+        if (closed) throw new IOException("The writer is closed");
+        if (failure != null) throw new IOException("A previous write failed: " + failure.getMessage(), failure);
+        byte[] payload = FramedLog.serialize(object);
+        // Announced before closed is checked again, so either the close sees this write and waits for it, or this
+        // write sees the close
+        writing.incrementAndGet();
+        try {
+            if (closed) throw new IOException("The writer is closed");
+            submitted.incrementAndGet();
+            queue.offer(new Queued(payload, System.nanoTime()));
+        } finally {
+            writing.decrementAndGet();
+        }
+        long queued = queuedBytes.addAndGet(FramedLog.FRAME_HEADER + payload.length);
+        int current = state;
+        if (current == IDLE || current == COLLECTING && queued >= batchBytes) LockSupport.unpark(flusher);
+    }
+
+    /**
+     * Waits until the records written before are written to the file, and synced if the durability asks for it.
+     *
+     * @throws IOException if a write failed or the writer is closed
+     */
+    void flush() throws IOException {
+        if (closed) throw new IOException("The writer is closed");
+        long target = submitted.get();
+        flushTarget.accumulateAndGet(target, Math::max);
+        LockSupport.unpark(flusher);
+        synchronized (this) {
+            while (done < target && failure == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the flush", e);
+                }
+            }
+        }
+        if (failure != null) throw new IOException("A write failed: " + failure.getMessage(), failure);
+    }
+
+    /**
+     * Writes the queued records, stops the flusher and closes the log.
+     */
+    void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        // The writes that passed their check of closed are queued before the rest of the queue is taken
+        while (writing.get() > 0) Thread.yield();
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Records of writes that raced with the close
+        List<byte[]> rest = new ArrayList<>();
+        for (Queued record; (record = queue.poll()) != null; ) rest.add(record.payload);
+        if (!rest.isEmpty()) writeBatch(rest);
+        try {
+            // The last batch is synced even without durability, the writer is closed for good
+            if (failure == null) log.force();
+        } finally {
+            log.close();
+        }
+        if (failure != null) throw new IOException("A write failed: " + failure.getMessage(), failure);
+    }
+
+    long getWritten() {
+        return written;
+    }
+
+    long getBatches() {
+        return batches;
+    }
+
+    long getQueued() {
+        return submitted.get() - done;
+    }
+
+    Path getPath() {
+        return log.path();
+    }
+
+    Data.Durability getDurability() {
+        return durability;
+    }
+
+    private void flushLoop() {
+        List<byte[]> batch = new ArrayList<>();
+        while (true) {
+            Queued first = queue.poll();
+            if (first == null) {
+                if (closed) return;
+                // Checks the queue again after announcing the wait, so a record queued in between isn't missed.
+                // An unpark that comes before the park makes it return at once
+                state = IDLE;
+                if (queue.isEmpty() && !closed) LockSupport.park(this);
+                state = RUNNING;
+                continue;
+            }
+            // Collect a batch until it is full, the oldest record waited long enough, or a flush waits for it. The
+            // oldest record may have waited for the last batch already
+            batch.add(first.payload);
+            long bytes = FramedLog.FRAME_HEADER + first.payload.length;
+            long deadline = first.time + maxDelayNanos;
+            while (bytes < batchBytes) {
+                Queued next = queue.poll();
+                if (next != null) {
+                    batch.add(next.payload);
+                    bytes += FramedLog.FRAME_HEADER + next.payload.length;
+                    continue;
+                }
+                long wait = deadline - System.nanoTime();
+                if (wait <= 0 || closed || flushTarget.get() > done) break;
+                state = COLLECTING;
+                if (queue.isEmpty()) LockSupport.parkNanos(this, wait);
+                state = RUNNING;
+            }
+            queuedBytes.addAndGet(-bytes);
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<byte[]> batch) {
+        boolean success = false;
+        try {
+            if (failure == null) {
+                if (durability == Data.Durability.RECORD) {
+                    for (byte[] payload : batch) {
+                        log.append(payload, 0, payload.length);
+                        log.force();
+                    }
+                } else {
+                    log.appendAll(batch);
+                    if (durability == Data.Durability.BATCH) log.force();
+                }
+                success = true;
+            }
+        } catch (IOException e) {
+            failure = e;
+            System.out.println("Error when writing to " + log.path() + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+        synchronized (this) {
+            if (success) {
+                written += batch.size();
+                batches++;
+            }
+            done += batch.size();
+            notifyAll();
+        }
+    }
+
+    // A serialized record and the time it was queued
+    private static final class Queued {
+        final byte[] payload;
+        final long time;
+
+        Queued(byte[] payload, long time) {
+            this.payload = payload;
+            this.time = time;
+        }
+    }
+}
@@ -1,8 +1,19 @@
 package myJavaLib;
 
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Utility class for benchmarking memory usage, code execution time and sorting algorithm performance.
@@ -14,6 +25,22 @@ import java.util.function.Consumer;
 
 public abstract class Benchmark {
 
+    // Declare a Map to hold the sorting methods that can be compared by name
+    private static final Map<String, Consumer<int[]>> sortingMethods;
+
+    static {
+        // Initialize the Map with the parallel sorting methods of the library and Java's own ones for reference
+        sortingMethods = new LinkedHashMap<>();
+        sortingMethods.put("sort", Sorting::sort);
+        sortingMethods.put("quicksort", Sorting::quickSort);
+        sortingMethods.put("dualpivotquicksort", Sorting::dualPivotQuickSort);
+        sortingMethods.put("mergesort", Sorting::mergeSort);
+        sortingMethods.put("adaptivemergesort", Sorting::adaptiveMergeSort);
+        sortingMethods.put("radixsort", Sorting::radixSort);
+        sortingMethods.put("arrays.sort", java.util.Arrays::sort);
+        sortingMethods.put("arrays.parallelsort", java.util.Arrays::parallelSort);
+    }
+
     /**
      * Holds a list of system times at the point of snapshot.
      */
@@ -27,8 +54,10 @@ public abstract class Benchmark {
     /**
      * Takes a snapshot of the current system time and used memory.
      * You can access the results with {@link Benchmark#getTimes} and {@link Benchmark#getMemories} methods.
+     * The used memory depends on when the GC last ran, see {@link Benchmark#section(String)} for named sections
+     * that measure the allocated bytes instead.
      */
-    public static void takeSnapshot() {
+    public static synchronized void takeSnapshot() {
         // If times ArrayList is null, instantiate it
         if (times == null) times = new ArrayList<Long>();
 
@@ -48,7 +77,7 @@ public abstract class Benchmark {
      * @return array of time intervals in seconds between subsequent snapshots. If no snapshots have been taken, returns null.
      */
 
-    public static double[] getTimes() {
+    public static synchronized double[] getTimes() {
         // If no snapshot has been taken, return null
         if (times == null) return null;
 
@@ -74,7 +103,7 @@ public abstract class Benchmark {
      *
      * @return array of memory usage intervals in KB between subsequent snapshots. If no snapshots have been taken, returns null.
      */
-    public static long[] getMemories() {
+    public static synchronized long[] getMemories() {
         // If no snapshot has been taken, return null
         if (memories == null) return null;
 
@@ -94,6 +123,232 @@ public abstract class Benchmark {
         return array;
     }
 
+    /**
+     * Opens a named section of code. The time and the bytes allocated by the current thread until the section is
+     * closed are recorded under its name. Use it with try-with-resources:
+     * <pre>{@code
+     * try (Benchmark.Section section = Benchmark.section("parse")) {
+     *     parse(input);
+     * }
+     * }</pre>
+     * It is thread safe and cheap enough to leave in hot paths: a thread records into histograms that only it
+     * writes while it has open sections, without locks, and new threads reuse the histograms and section objects of
+     * the threads before them. Sections can be nested, and must be closed on the thread that
+     * opened them. The section object is reused once it is closed, so don't keep it after the try block.
+     * The statistics of all threads are merged by {@link Benchmark#getSections()}.
+     *
+     * @param name name of the section, sections with the same name are recorded together
+     * @return the open section, close it at the end of the measured code
+     */
+    public static Section section(String name) {
+        return SectionProfiler.open(name);
+    }
+
+    /**
+     * Merges the sections recorded by all threads since the last {@link Benchmark#resetSections()}.
+     *
+     * @return a map from the name of each section to its statistics, sorted by name
+     */
+    public static Map<String, SectionStats> getSections() {
+        Map<String, SectionStats> sections = new LinkedHashMap<>();
+        for (Map.Entry<String, long[]> entry : SectionProfiler.snapshot().entrySet()) {
+            sections.put(entry.getKey(), new SectionStats(entry.getKey(), entry.getValue(),
+                    SectionProfiler.isAllocationSupported()));
+        }
+        return sections;
+    }
+
+    /**
+     * Prints the statistics of every section, see {@link Benchmark#getSections()}.
+     */
+    public static void printSections() {
+        for (SectionStats stats : getSections().values()) System.out.println(stats);
+    }
+
+    /**
+     * Forgets all recorded sections. Sections that are open at the moment are recorded after the reset.
+     */
+    public static void resetSections() {
+        SectionProfiler.reset();
+    }
+
+
+    /**
+     * Runs a closed-model load test: the given number of threads call the task in a loop for the given time, every
+     * thread calls it again as soon as the last call returned. Prints the result.
+     * It shows how the throughput of a function scales with the number of threads calling it, and where they contend.
+     *
+     * @param task           the code to call, i.e. () -> Sorting.quickSort(array.clone())
+     * @param concurrency    number of threads calling the task
+     * @param durationMillis how long the test runs in milliseconds
+     * @param virtualThreads true to call the task on virtual threads, they are used only if the JVM has them
+     * @return the throughput and the latencies of the calls
+     * @throws IllegalArgumentException if the concurrency or the duration is not positive
+     */
+    public static LoadTestResult loadTest(Runnable task, int concurrency, long durationMillis, boolean virtualThreads) {
+        LoadTestResult result = LoadTest.run(task, concurrency, 0, durationMillis, virtualThreads);
+        System.out.println(result);
+        return result;
+    }
+
+    /**
+     * Runs an open-model load test: the task is scheduled at a fixed rate for the given time, and the given number of
+     * threads call it. Prints the result.
+     * Latencies are measured from the scheduled start of the calls, so if the threads fall behind the schedule, the
+     * time the calls waited is part of their latency, like for real requests arriving at that rate.
+     * The test only ends when all calls scheduled within the duration are done.
+     *
+     * @param task              the code to call
+     * @param concurrency       number of threads calling the task
+     * @param requestsPerSecond the rate the calls are scheduled at
+     * @param durationMillis    how long calls are scheduled in milliseconds
+     * @param virtualThreads    true to call the task on virtual threads, they are used only if the JVM has them
+     * @return the throughput and the latencies of the calls
+     * @throws IllegalArgumentException if the concurrency, the rate or the duration is not positive
+     */
+    public static LoadTestResult loadTest(Runnable task, int concurrency, double requestsPerSecond,
+                                          long durationMillis, boolean virtualThreads) {
+        if (!(requestsPerSecond > 0)) throw new IllegalArgumentException("Rate must be positive!");
+        LoadTestResult result = LoadTest.run(task, concurrency, requestsPerSecond, durationMillis, virtualThreads);
+        System.out.println(result);
+        return result;
+    }
+
+    /**
+     * @return true if the JVM has virtual threads (Java 21 or newer)
+     */
+    public static boolean isVirtualThreadsAvailable() {
+        return LoadTest.isVirtualThreadsAvailable();
+    }
+
+
+    /**
+     * An open section of {@link Benchmark#section(String)}. Closing it records its time and allocated bytes.
+     */
+    public static final class Section implements AutoCloseable {
+        // Set by the profiler, the same object is reused for the next sections at the same depth
+        final SectionProfiler.ThreadRecorder recorder;
+        String name;
+        // The thread of the open section, null once it is closed
+        Thread owner;
+        long startTime;
+        long startBytes;
+
+        Section(SectionProfiler.ThreadRecorder recorder) {
+            this.recorder = recorder;
+        }
+
+        /**
+         * Records the section.
+         *
+         * @throws IllegalStateException if it is closed on another thread, or before a section opened after it
+         */
+        @Override
+        public void close() {
+            // Closing twice records only once
+            if (owner == null) return;
+            SectionProfiler.close(this);
+        }
+    }
+
+
+    /**
+     * The statistics of a named section, merged over all threads. Times are in nanoseconds.
+     */
+    public static final class SectionStats {
+        private final String name;
+        private final long[] histogram;
+        // False if the allocated bytes were not measured
+        private final boolean allocations;
+
+        SectionStats(String name, long[] histogram, boolean allocations) {
+            this.name = name;
+            this.histogram = histogram;
+            this.allocations = allocations;
+        }
+
+        /**
+         * @return the name of the section
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return how many times the section was closed
+         */
+        public long getCount() {
+            return histogram[SectionProfiler.COUNT];
+        }
+
+        /**
+         * @return the total time spent in the section
+         */
+        public long getTotalTime() {
+            return histogram[SectionProfiler.TOTAL];
+        }
+
+        /**
+         * @return the mean time of the section
+         */
+        public double getMeanTime() {
+            return (double) getTotalTime() / getCount();
+        }
+
+        /**
+         * @return the shortest time of the section, 0 if it was never closed
+         */
+        public long getMinTime() {
+            return getCount() > 0 ? histogram[SectionProfiler.MIN] : 0;
+        }
+
+        /**
+         * @return the longest time of the section
+         */
+        public long getMaxTime() {
+            return histogram[SectionProfiler.MAX];
+        }
+
+        /**
+         * Returns a percentile of the times. It is the middle of a histogram bucket, within 1/16 of the exact value.
+         *
+         * @param percentile the percentile between 0 and 100
+         * @return the time below or at which the given percent of the sections are
+         * @throws IllegalArgumentException if the percentile is not between 0 and 100
+         */
+        public long percentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 100!");
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * getCount()));
+            long seen = 0;
+            for (int i = 0; i < SectionProfiler.BUCKETS; i++) {
+                seen += histogram[i];
+                if (seen >= rank) {
+                    // The bucket value is an estimate, it can't be outside of the real bounds
+                    return Math.max(getMinTime(), Math.min(getMaxTime(), SectionProfiler.bucketValue(i)));
+                }
+            }
+            return getMaxTime();
+        }
+
+        /**
+         * @return the total bytes allocated in the section by the threads that ran it, or -1 if they were not measured
+         */
+        public long getAllocatedBytes() {
+            return allocations ? histogram[SectionProfiler.BYTES] : -1;
+        }
+
+        @Override
+        public String toString() {
+            String text = String.format("%s: count=%d, total=%.3f ms, mean=%.3f us, min=%.3f us, p50=%.3f us, "
+                            + "p99=%.3f us, p99.9=%.3f us, max=%.3f us", name, getCount(), getTotalTime() / 1e6,
+                    getMeanTime() / 1e3, getMinTime() / 1e3, percentile(50) / 1e3, percentile(99) / 1e3,
+                    percentile(99.9) / 1e3, getMaxTime() / 1e3);
+            return allocations ? text + ", allocated=" + getAllocatedBytes() + " bytes" : text;
+        }
+    }
+
     /**
      * Performs a benchmark on a given sorting method using a randomly generated array. Prints the time it took to sort.
      *
@@ -104,54 +359,1025 @@ public abstract class Benchmark {
 
     public static double sortingBenchmark(Consumer<int[]> sortingMethod, int len) {
         // Generate random array
-        int[] array = new Random(0).ints(len).toArray();
-        return SortingBenchmark.sortingBenchmark(sortingMethod, array);
+        int[] array = DataGenerator.ints(len, DataGenerator.Distribution.uniform(), 0);
+        return sortingBenchmark(sortingMethod, array);
+    }
+
+    /**
+     * Performs a benchmark on a registered sorting method using a randomly generated array. Prints the time it took to sort.
+     *
+     * @param name name of the sorting method, without spaces (quicksort, mergesort, radixsort etc.)
+     * @param len  length of the array to sort.
+     * @return returns the time printed to the console.
+     * @throws IllegalArgumentException if no sorting method is registered with the given name
+     */
+    public static double sortingBenchmark(String name, int len) {
+        Consumer<int[]> sortingMethod = sortingMethods.get(name.toLowerCase());
+        if (sortingMethod == null) {
+            throw new IllegalArgumentException("Invalid Sorting Method: " + name);
+        }
+        return sortingBenchmark(sortingMethod, len);
+    }
+
+    /**
+     * Performs a benchmark on every registered sorting method, each one sorting the same randomly generated array.
+     * Prints the name and the time of each method.
+     *
+     * @param len length of the array to sort.
+     * @return a map from the name of each sorting method to its time in seconds.
+     */
+    public static Map<String, Double> sortingBenchmark(int len) {
+        Map<String, Double> results = new LinkedHashMap<>();
+        for (Map.Entry<String, Consumer<int[]>> entry : sortingMethods.entrySet()) {
+            System.out.print(entry.getKey() + ": ");
+            results.put(entry.getKey(), sortingBenchmark(entry.getValue(), len));
+        }
+        return results;
+    }
+
+    /**
+     * Compares the scalar code and the Vector API kernels of the int QuickSort and MergeSort, each one sorting the
+     * same randomly generated array. Prints the name and the time of each run.
+     * The vector runs are skipped if the kernels are not available, see {@link Sorting.Parameters#isVectorAvailable()}.
+     *
+     * @param len length of the array to sort.
+     * @return a map from names like quicksort.scalar and quicksort.vector to their times in seconds.
+     */
+    public static Map<String, Double> vectorBenchmark(int len) {
+        boolean vectorized = Sorting.Parameters.isVectorized();
+        Map<String, Double> results = new LinkedHashMap<>();
+        try {
+            for (String name : new String[]{"quicksort", "mergesort"}) {
+                Sorting.Parameters.setVectorized(false);
+                System.out.print(name + ".scalar: ");
+                results.put(name + ".scalar", sortingBenchmark(name, len));
+                if (Sorting.Parameters.setVectorized(true)) {
+                    System.out.print(name + ".vector: ");
+                    results.put(name + ".vector", sortingBenchmark(name, len));
+                }
+            }
+        } finally {
+            // Restore the setting of the caller
+            Sorting.Parameters.setVectorized(vectorized);
+        }
+        if (!Sorting.Parameters.isVectorAvailable()) System.out.println("The Vector API is not available!");
+        return results;
+    }
+
+    /**
+     * Registers a sorting method so it can be compared with {@link Benchmark#sortingBenchmark(int)}.
+     * A method registered with an existing name replaces the old one.
+     *
+     * @param name          name of the sorting method
+     * @param sortingMethod method reference or lambda to the sorting method
+     */
+    public static void registerSortingMethod(String name, Consumer<int[]> sortingMethod) {
+        sortingMethods.put(name.toLowerCase(), sortingMethod);
+    }
+
+    /**
+     * Performs a benchmark on a given sorting method using a provided array of ints. Prints the time it took to sort.
+     *
+     * @param sortingMethod Method reference or lambda to the sorting method (i.e. Sorting::quickSort);
+     * @param array         the array to be sorted
+     * @return returns the time printed to the console.
+     */
+    public static double sortingBenchmark(Consumer<int[]> sortingMethod, int[] array) {
+        return SortingBenchmark.sortAndBenchmark(() -> sortingMethod.accept(array), () -> {
+            for (int i = 0; i < array.length - 1; i++) if (array[i] > array[i + 1]) return false;
+            return true;
+        });
+    }
+
+    /**
+     * Performs a benchmark on a given sorting method using a provided array of longs. Prints the time it took to sort.
+     *
+     * @param sortingMethod Method reference or lambda to the sorting method (i.e. Sorting::quickSort);
+     * @param array         the array to be sorted
+     * @return returns the time printed to the console.
+     */
+    public static double sortingBenchmark(Consumer<long[]> sortingMethod, long[] array) {
+        return SortingBenchmark.sortAndBenchmark(() -> sortingMethod.accept(array), () -> {
+            for (int i = 0; i < array.length - 1; i++) if (array[i] > array[i + 1]) return false;
+            return true;
+        });
     }
 
     /**
-     * Performs a benchmark on a given sorting method using a provided array. Prints the time it took to sort.
+     * Performs a benchmark on a given sorting method using a provided array of doubles. Prints the time it took to sort.
      *
-     * @param sortingMethod Method reference or lambda to the sorting method (i.e.Arrays::parallelSort);
+     * @param sortingMethod Method reference or lambda to the sorting method (i.e. Sorting::quickSort);
      * @param array         the array to be sorted
      * @return returns the time printed to the console.
      */
+    public static double sortingBenchmark(Consumer<double[]> sortingMethod, double[] array) {
+        return SortingBenchmark.sortAndBenchmark(() -> sortingMethod.accept(array), () -> {
+            for (int i = 0; i < array.length - 1; i++) if (Double.compare(array[i], array[i + 1]) > 0) return false;
+            return true;
+        });
+    }
 
-    public  double sortingBenchmark(Consumer<int[]> sortingMethod, int[] array) {
-        return SortingBenchmark.sortingBenchmark(sortingMethod, array);
+    /**
+     * Performs a benchmark on a given sorting method using a provided array of floats. Prints the time it took to sort.
+     *
+     * @param sortingMethod Method reference or lambda to the sorting method (i.e. Sorting::quickSort);
+     * @param array         the array to be sorted
+     * @return returns the time printed to the console.
+     */
+    public static double sortingBenchmark(Consumer<float[]> sortingMethod, float[] array) {
+        return SortingBenchmark.sortAndBenchmark(() -> sortingMethod.accept(array), () -> {
+            for (int i = 0; i < array.length - 1; i++) if (Float.compare(array[i], array[i + 1]) > 0) return false;
+            return true;
+        });
     }
 
+    /**
+     * Performs a benchmark on a given sorting method using a provided array of shorts. Prints the time it took to sort.
+     *
+     * @param sortingMethod Method reference or lambda to the sorting method (i.e. Sorting::quickSort);
+     * @param array         the array to be sorted
+     * @return returns the time printed to the console.
+     */
+    public static double sortingBenchmark(Consumer<short[]> sortingMethod, short[] array) {
+        return SortingBenchmark.sortAndBenchmark(() -> sortingMethod.accept(array), () -> {
+            for (int i = 0; i < array.length - 1; i++) if (array[i] > array[i + 1]) return false;
+            return true;
+        });
+    }
+
+    /**
+     * Performs a benchmark on a given sorting method using a provided array of chars. Prints the time it took to sort.
+     *
+     * @param sortingMethod Method reference or lambda to the sorting method (i.e. Sorting::quickSort);
+     * @param array         the array to be sorted
+     * @return returns the time printed to the console.
+     */
+    public static double sortingBenchmark(Consumer<char[]> sortingMethod, char[] array) {
+        return SortingBenchmark.sortAndBenchmark(() -> sortingMethod.accept(array), () -> {
+            for (int i = 0; i < array.length - 1; i++) if (array[i] > array[i + 1]) return false;
+            return true;
+        });
+    }
+
+    /**
+     * Performs a benchmark on a given sorting method using a provided array of bytes. Prints the time it took to sort.
+     *
+     * @param sortingMethod Method reference or lambda to the sorting method (i.e. Sorting::quickSort);
+     * @param array         the array to be sorted
+     * @return returns the time printed to the console.
+     */
+    public static double sortingBenchmark(Consumer<byte[]> sortingMethod, byte[] array) {
+        return SortingBenchmark.sortAndBenchmark(() -> sortingMethod.accept(array), () -> {
+            for (int i = 0; i < array.length - 1; i++) if (array[i] > array[i + 1]) return false;
+            return true;
+        });
+    }
+
+
+    /**
+     * Runs a task repeatedly and returns the statistics of its run times. Unlike the single run methods, the first
+     * runs are warmups that are not measured, so the JIT has compiled the code before the trials start.
+     * Every warmup and every trial gets a fresh input from the supplier, created outside of the measured time.
+     * The time the garbage collectors spent during a trial, as reported by their GarbageCollectorMXBeans,
+     * is subtracted from it, so a trial that happens to hit a GC pause doesn't look slower than the others.
+     *
+     * @param input   creates the input of a run, i.e. () -> array.clone()
+     * @param task    the code to measure, it gets the input of the run
+     * @param warmups number of runs before the trials that are not measured
+     * @param trials  number of measured runs
+     * @param <T>     type of the input
+     * @return the statistics of the trials
+     * @throws IllegalArgumentException if warmups is negative or trials is not positive
+     */
+    public static <T> Statistics benchmark(Supplier<T> input, Consumer<T> task, int warmups, int trials) {
+        return Trials.run(input, task, null, warmups, trials);
+    }
+
+    /**
+     * Benchmarks a sorting method with warmups and repeated trials, see {@link Benchmark#benchmark}.
+     * Every run sorts a fresh copy of the array, so the given array is not changed. Prints the statistics.
+     *
+     * @param sortingMethod Method reference or lambda to the sorting method (i.e. Sorting::quickSort);
+     * @param array         the array to sort, it is copied before every run
+     * @param warmups       number of runs before the trials that are not measured
+     * @param trials        number of measured runs
+     * @return the statistics of the trials
+     * @throws IllegalArgumentException if warmups is negative or trials is not positive
+     */
+    public static Statistics sortingBenchmark(Consumer<int[]> sortingMethod, int[] array, int warmups, int trials) {
+        Statistics statistics = Trials.run(array::clone, sortingMethod, copy -> {
+            for (int i = 0; i < copy.length - 1; i++) {
+                if (copy[i] > copy[i + 1]) {
+                    System.out.println("NOT SORTED !!");
+                    return;
+                }
+            }
+        }, warmups, trials);
+        System.out.println(statistics);
+        return statistics;
+    }
+
+    /**
+     * Benchmarks a registered sorting method with warmups and repeated trials on a uniformly random array.
+     * Prints the statistics.
+     *
+     * @param name    name of the sorting method, without spaces (quicksort, mergesort, radixsort etc.)
+     * @param len     length of the array to sort.
+     * @param warmups number of runs before the trials that are not measured
+     * @param trials  number of measured runs
+     * @return the statistics of the trials
+     * @throws IllegalArgumentException if no sorting method is registered with the given name, if warmups is negative
+     *                                  or trials is not positive
+     */
+    public static Statistics sortingBenchmark(String name, int len, int warmups, int trials) {
+        return sortingBenchmark(name, len, DataGenerator.Distribution.uniform(), warmups, trials);
+    }
+
+    /**
+     * Benchmarks a registered sorting method with warmups and repeated trials on an array generated with the given
+     * distribution and seed 0. Prints the statistics.
+     *
+     * @param name         name of the sorting method, without spaces (quicksort, mergesort, radixsort etc.)
+     * @param len          length of the array to sort.
+     * @param distribution the distribution of the values, i.e. DataGenerator.Distribution.zipf(1, 1000)
+     * @param warmups      number of runs before the trials that are not measured
+     * @param trials       number of measured runs
+     * @return the statistics of the trials
+     * @throws IllegalArgumentException if no sorting method is registered with the given name, if warmups is negative
+     *                                  or trials is not positive
+     */
+    public static Statistics sortingBenchmark(String name, int len, DataGenerator.Distribution distribution,
+                                              int warmups, int trials) {
+        Consumer<int[]> sortingMethod = sortingMethods.get(name.toLowerCase());
+        if (sortingMethod == null) {
+            throw new IllegalArgumentException("Invalid Sorting Method: " + name);
+        }
+        return sortingBenchmark(sortingMethod, DataGenerator.ints(len, distribution, 0), warmups, trials);
+    }
+
+    /**
+     * Benchmarks every registered sorting method with warmups and repeated trials, each one sorting copies of the same
+     * randomly generated array. Prints the name and the statistics of each method.
+     *
+     * @param len     length of the array to sort.
+     * @param warmups number of runs before the trials that are not measured
+     * @param trials  number of measured runs
+     * @return a map from the name of each sorting method to its statistics.
+     * @throws IllegalArgumentException if warmups is negative or trials is not positive
+     */
+    public static Map<String, Statistics> sortingBenchmark(int len, int warmups, int trials) {
+        int[] array = DataGenerator.ints(len, DataGenerator.Distribution.uniform(), 0);
+        Map<String, Statistics> results = new LinkedHashMap<>();
+        for (Map.Entry<String, Consumer<int[]>> entry : sortingMethods.entrySet()) {
+            System.out.print(entry.getKey() + ": ");
+            results.put(entry.getKey(), sortingBenchmark(entry.getValue(), array, warmups, trials));
+        }
+        return results;
+    }
+
+    /**
+     * Benchmarks every registered sorting method on uniformly random arrays of the given lengths, and collects the
+     * statistics into a report that can be saved and compared with a baseline. Prints the statistics of each run.
+     *
+     * @param lengths the lengths of the arrays to sort
+     * @param warmups number of runs before the trials that are not measured
+     * @param trials  number of measured runs
+     * @return a report with a result for every sorting method and length, with the shape "uniform"
+     * @throws IllegalArgumentException if warmups is negative or trials is not positive
+     */
+    public static Report sortingReport(int[] lengths, int warmups, int trials) {
+        return sortingReport(lengths, new DataGenerator.Distribution[]{DataGenerator.Distribution.uniform()}, warmups,
+                trials);
+    }
+
+    /**
+     * Benchmarks every registered sorting method on arrays of the given lengths and distributions, generated with
+     * seed 0, and collects the statistics into a report. Prints the statistics of each run.
+     *
+     * @param lengths       the lengths of the arrays to sort
+     * @param distributions the distributions of the values, their names are the shapes of the results
+     * @param warmups       number of runs before the trials that are not measured
+     * @param trials        number of measured runs
+     * @return a report with a result for every sorting method, length and distribution
+     * @throws IllegalArgumentException if warmups is negative or trials is not positive
+     */
+    public static Report sortingReport(int[] lengths, DataGenerator.Distribution[] distributions, int warmups,
+                                       int trials) {
+        Report report = new Report();
+        for (DataGenerator.Distribution distribution : distributions) {
+            for (int len : lengths) {
+                int[] array = DataGenerator.ints(len, distribution, 0);
+                for (Map.Entry<String, Consumer<int[]>> entry : sortingMethods.entrySet()) {
+                    System.out.print(entry.getKey() + " " + distribution + " " + len + ": ");
+                    report.add(entry.getKey(), distribution.toString(), len,
+                            sortingBenchmark(entry.getValue(), array, warmups, trials));
+                }
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Loads a report saved by {@link Report#save(String)}, in CSV or JSON.
+     *
+     * @param path the path of the file
+     * @return the report, or null if an error occurred during the read
+     */
+    public static Report loadReport(String path) {
+        try {
+            return BenchmarkReport.parse(Files.readString(Path.of(path)));
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error when loading the benchmark report: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Compares a report with a baseline report loaded from a file, and prints every comparison. A result is a
+     * regression if its mean time is more than the threshold slower than the baseline, and the difference is
+     * statistically significant, see {@link Comparison#isRegression()}. A result of the baseline that the report
+     * doesn't have fails too, see {@link Comparison#isMissing()}, so a renamed or dropped benchmark isn't taken for a
+     * pass. Results that only the report has are printed, but don't fail.
+     * It can gate an upgrade: {@code compareToBaseline("baseline.csv", report, 0.05).isEmpty()} is true if every
+     * algorithm and input of the baseline was measured again and none got more than 5% slower.
+     *
+     * @param baselinePath the path of the baseline report
+     * @param current      the report to check
+     * @param threshold    the relative slowdown that is tolerated, i.e. 0.05 for 5%
+     * @return the comparisons that are regressions or missing, an empty list if there are none
+     * @throws IllegalArgumentException if the baseline can't be loaded or the threshold is negative
+     */
+    public static List<Comparison> compareToBaseline(String baselinePath, Report current, double threshold) {
+        Report baseline = loadReport(baselinePath);
+        if (baseline == null) throw new IllegalArgumentException("Can't load the baseline " + baselinePath + "!");
+        List<Comparison> failures = new ArrayList<>();
+        int regressions = 0, missing = 0;
+        for (Comparison comparison : current.compareTo(baseline, threshold)) {
+            System.out.println(comparison);
+            if (comparison.isRegression()) regressions++;
+            if (comparison.isMissing()) missing++;
+            if (comparison.isRegression() || comparison.isMissing()) failures.add(comparison);
+        }
+        System.out.println(regressions + " regressions, " + missing + " missing");
+        return failures;
+    }
+
+
+    /**
+     * The statistics of the measured trials of {@link Benchmark#benchmark}. Times are in seconds, and the GC time
+     * of every trial is already subtracted from it.
+     */
+    public static final class Statistics {
+        // Two-sided 95% quantiles of Student's t distribution for 1 to 30 degrees of freedom
+        private static final double[] T_95 = {12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+                2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086, 2.080, 2.074, 2.069, 2.064,
+                2.060, 2.056, 2.052, 2.048, 2.045, 2.042};
+        // Quantile of the normal distribution, used above 30 degrees of freedom
+        private static final double Z_95 = 1.960;
+
+        // Trial times in ascending order
+        private final double[] times;
+        private final double gcTime;
+        private final double mean;
+        private final double standardDeviation;
+
+        Statistics(double[] times, double gcTime) {
+            this.times = times.clone();
+            Arrays.sort(this.times);
+            this.gcTime = gcTime;
+            double sum = 0;
+            for (double time : times) sum += time;
+            mean = sum / times.length;
+            // Sample standard deviation, 0 for a single trial
+            double squares = 0;
+            for (double time : times) squares += (time - mean) * (time - mean);
+            standardDeviation = times.length > 1 ? Math.sqrt(squares / (times.length - 1)) : 0;
+        }
+
+        /**
+         * @return the times of the trials in seconds, in ascending order
+         */
+        public double[] getTimes() {
+            return times.clone();
+        }
+
+        /**
+         * @return the number of measured trials
+         */
+        public int getTrials() {
+            return times.length;
+        }
+
+        /**
+         * @return the fastest trial
+         */
+        public double getMin() {
+            return times[0];
+        }
+
+        /**
+         * @return the slowest trial
+         */
+        public double getMax() {
+            return times[times.length - 1];
+        }
+
+        /**
+         * @return the median of the trials
+         */
+        public double getMedian() {
+            return percentile(50);
+        }
+
+        /**
+         * @return the mean of the trials
+         */
+        public double getMean() {
+            return mean;
+        }
+
+        /**
+         * @return the sample standard deviation of the trials
+         */
+        public double getStandardDeviation() {
+            return standardDeviation;
+        }
+
+        /**
+         * @return the 99th percentile of the trials, it is the slowest trial if there are less than 100 of them
+         */
+        public double getP99() {
+            return percentile(99);
+        }
+
+        /**
+         * Returns a percentile of the trials with the nearest rank method, so it is always the time of a trial.
+         *
+         * @param percentile the percentile between 0 and 100
+         * @return the time below or at which the given percent of the trials are
+         * @throws IllegalArgumentException if the percentile is not between 0 and 100
+         */
+        public double percentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 100!");
+            }
+            int rank = (int) Math.ceil(percentile / 100 * times.length);
+            return times[Math.max(0, rank - 1)];
+        }
+
+        /**
+         * @return half of the width of the 95% confidence interval of the mean, with Student's t distribution
+         */
+        public double getConfidenceInterval() {
+            if (times.length < 2) return Double.NaN;
+            return tQuantile(times.length - 1) * standardDeviation / Math.sqrt(times.length);
+        }
+
+        // Two-sided 95% quantile of Student's t distribution for the given degrees of freedom
+        static double tQuantile(int degrees) {
+            return degrees <= T_95.length ? T_95[degrees - 1] : Z_95;
+        }
+
+        /**
+         * @return the GC time subtracted from the trials in seconds, summed over all trials
+         */
+        public double getGcTime() {
+            return gcTime;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("trials=%d, min=%.6f, median=%.6f, mean=%.6f +- %.6f, stddev=%.6f, p99=%.6f, "
+                            + "gc=%.6f seconds", times.length, getMin(), getMedian(), mean, getConfidenceInterval(),
+                    standardDeviation, getP99(), gcTime);
+        }
+    }
+
+
+    /**
+     * A collection of benchmark results, with the host and JVM they were measured on. It can be saved as CSV or JSON,
+     * loaded back with {@link Benchmark#loadReport(String)} and compared with a baseline report.
+     * Results are identified by their algorithm, input shape and size, i.e. "quicksort", "uniform", 1000000.
+     * A report is not thread safe.
+     * <pre>{@code
+     * Benchmark.Report report = Benchmark.sortingReport(new int[]{1000, 1000000}, 5, 20);
+     * report.add("deepCopy", "list", 1000, Benchmark.benchmark(() -> list, Data::deepCopy, 5, 20));
+     * report.save("current.csv");
+     * }</pre>
+     */
+    public static final class Report {
+        private final Map<String, String> metadata;
+        private final List<Result> results;
+
+        /**
+         * Creates an empty report with the metadata of the current host and JVM.
+         */
+        public Report() {
+            this(BenchmarkReport.metadata(), new ArrayList<>());
+        }
+
+        Report(Map<String, String> metadata, List<Result> results) {
+            this.metadata = metadata;
+            this.results = results;
+        }
+
+        /**
+         * Adds the statistics of a benchmark to the report. A result with the same algorithm, shape and size is
+         * replaced.
+         *
+         * @param algorithm  name of the measured code, i.e. "quicksort"
+         * @param shape      name of the input distribution, i.e. "uniform" or "sorted(1.0%)"
+         * @param size       size of the input
+         * @param statistics the statistics of the trials
+         * @return the added result
+         */
+        public Result add(String algorithm, String shape, int size, Statistics statistics) {
+            Result result = new Result(algorithm, shape, size, statistics.getTrials(), statistics.getMean(),
+                    statistics.getStandardDeviation(), statistics.getMin(), statistics.getMedian(),
+                    statistics.getP99(), statistics.getMax(), statistics.getGcTime());
+            Result old = getResult(algorithm, shape, size);
+            if (old != null) results.set(results.indexOf(old), result);
+            else results.add(result);
+            return result;
+        }
+
+        /**
+         * @return the result of the given algorithm, shape and size, or null if the report doesn't have it
+         */
+        public Result getResult(String algorithm, String shape, int size) {
+            for (Result result : results) {
+                if (result.algorithm.equals(algorithm) && result.shape.equals(shape) && result.size == size) {
+                    return result;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return the results in the order they were added
+         */
+        public List<Result> getResults() {
+            return Collections.unmodifiableList(results);
+        }
+
+        /**
+         * @return the host, operating system, hardware and JVM the results were measured on
+         */
+        public Map<String, String> getMetadata() {
+            return Collections.unmodifiableMap(metadata);
+        }
+
+        /**
+         * @return the report in CSV, the metadata are comment lines starting with #
+         */
+        public String toCsv() {
+            return BenchmarkReport.toCsv(this);
+        }
+
+        /**
+         * @return the report in JSON
+         */
+        public String toJson() {
+            return BenchmarkReport.toJson(this);
+        }
+
+        /**
+         * Saves the report to a file, in JSON if the name ends with .json, in CSV otherwise.
+         *
+         * @param path the path of the file
+         * @return true if the writing process is successful, false otherwise
+         */
+        public boolean save(String path) {
+            try {
+                Path file = Path.of(path);
+                if (file.getParent() != null) Files.createDirectories(file.getParent());
+                Files.writeString(file, path.toLowerCase().endsWith(".json") ? toJson() : toCsv());
+                return true;
+            } catch (IOException e) {
+                System.out.println("Error: " + e.getMessage());
+                e.printStackTrace();
+                return false;
+            }
+        }
+
+        /**
+         * Compares every result of this report with the result of the same algorithm, shape and size in the baseline.
+         * A result that only one of the reports has is compared with nothing, see {@link Comparison#isNew()} and
+         * {@link Comparison#isMissing()}.
+         *
+         * @param baseline  the report to compare with
+         * @param threshold the relative slowdown that is tolerated, i.e. 0.05 for 5%
+         * @return the comparisons in the order of the results of this report, followed by the results of the baseline
+         * that this report doesn't have
+         * @throws IllegalArgumentException if the threshold is negative
+         */
+        public List<Comparison> compareTo(Report baseline, double threshold) {
+            if (!(threshold >= 0)) throw new IllegalArgumentException("Threshold can't be negative!");
+            List<Comparison> comparisons = new ArrayList<>();
+            for (Result result : results) {
+                Result old = baseline.getResult(result.algorithm, result.shape, result.size);
+                comparisons.add(new Comparison(old, result, threshold));
+            }
+            for (Result old : baseline.results) {
+                if (getResult(old.algorithm, old.shape, old.size) == null) {
+                    comparisons.add(new Comparison(old, null, threshold));
+                }
+            }
+            return comparisons;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder string = new StringBuilder();
+            for (Result result : results) string.append(result).append(System.lineSeparator());
+            return string.toString();
+        }
+    }
+
+    /**
+     * The summary of the trials of one benchmark in a {@link Report}. Times are in seconds.
+     */
+    public static final class Result {
+        private final String algorithm;
+        private final String shape;
+        private final int size;
+        private final int trials;
+        private final double mean;
+        private final double standardDeviation;
+        private final double min;
+        private final double median;
+        private final double p99;
+        private final double max;
+        private final double gcTime;
+
+        Result(String algorithm, String shape, int size, int trials, double mean, double standardDeviation,
+               double min, double median, double p99, double max, double gcTime) {
+            this.algorithm = algorithm;
+            this.shape = shape;
+            this.size = size;
+            this.trials = trials;
+            this.mean = mean;
+            this.standardDeviation = standardDeviation;
+            this.min = min;
+            this.median = median;
+            this.p99 = p99;
+            this.max = max;
+            this.gcTime = gcTime;
+        }
+
+        /**
+         * @return name of the measured code
+         */
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        /**
+         * @return name of the input distribution
+         */
+        public String getShape() {
+            return shape;
+        }
+
+        /**
+         * @return size of the input
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * @return the number of measured trials
+         */
+        public int getTrials() {
+            return trials;
+        }
+
+        /**
+         * @return the mean of the trials
+         */
+        public double getMean() {
+            return mean;
+        }
+
+        /**
+         * @return the sample standard deviation of the trials
+         */
+        public double getStandardDeviation() {
+            return standardDeviation;
+        }
+
+        /**
+         * @return the fastest trial
+         */
+        public double getMin() {
+            return min;
+        }
+
+        /**
+         * @return the median of the trials
+         */
+        public double getMedian() {
+            return median;
+        }
+
+        /**
+         * @return the 99th percentile of the trials
+         */
+        public double getP99() {
+            return p99;
+        }
+
+        /**
+         * @return the slowest trial
+         */
+        public double getMax() {
+            return max;
+        }
+
+        /**
+         * @return the GC time subtracted from the trials, summed over all trials
+         */
+        public double getGcTime() {
+            return gcTime;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s %d: trials=%d, min=%.6f, median=%.6f, mean=%.6f, stddev=%.6f, p99=%.6f, "
+                    + "gc=%.6f seconds", algorithm, shape, size, trials, min, median, mean, standardDeviation, p99, gcTime);
+        }
+    }
+
+    /**
+     * The comparison of a result with the same result of a baseline report.
+     * The difference of the means is tested with Welch's t-test at 95% confidence, which doesn't assume that the two
+     * runs have the same variance. If either side has a single trial there is no variance to test with, then the
+     * threshold alone decides. A result that only one of the reports has is compared with null.
+     */
+    public static final class Comparison {
+        private final Result baseline;
+        private final Result current;
+        private final double threshold;
+        private final boolean significant;
+
+        Comparison(Result baseline, Result current, double threshold) {
+            this.baseline = baseline;
+            this.current = current;
+            this.threshold = threshold;
+            this.significant = baseline != null && current != null && welchTest(baseline, current);
+        }
+
+        private static boolean welchTest(Result a, Result b) {
+            if (a.trials < 2 || b.trials < 2) return true;
+            double varianceA = a.standardDeviation * a.standardDeviation / a.trials;
+            double varianceB = b.standardDeviation * b.standardDeviation / b.trials;
+            double error = Math.sqrt(varianceA + varianceB);
+            // Trials without any spread, any difference is real
+            if (error == 0) return a.mean != b.mean;
+            double t = Math.abs(b.mean - a.mean) / error;
+            // Welch-Satterthwaite degrees of freedom, rounded down to be on the safe side
+            double degrees = (varianceA + varianceB) * (varianceA + varianceB)
+                    / (varianceA * varianceA / (a.trials - 1) + varianceB * varianceB / (b.trials - 1));
+            return t > Statistics.tQuantile((int) Math.max(1, Math.floor(degrees)));
+        }
+
+        /**
+         * @return the result of the baseline report, null if the baseline doesn't have it
+         */
+        public Result getBaseline() {
+            return baseline;
+        }
+
+        /**
+         * @return the result of the compared report, null if the compared report doesn't have it
+         */
+        public Result getCurrent() {
+            return current;
+        }
+
+        /**
+         * @return true if the baseline has the result and the compared report doesn't
+         */
+        public boolean isMissing() {
+            return current == null;
+        }
+
+        /**
+         * @return true if the compared report has the result and the baseline doesn't
+         */
+        public boolean isNew() {
+            return baseline == null;
+        }
+
+        /**
+         * @return the relative change of the mean time, i.e. 0.07 if it got 7% slower and -0.1 if it got 10% faster,
+         * NaN if only one of the reports has the result
+         */
+        public double getChange() {
+            if (baseline == null || current == null) return Double.NaN;
+            return current.mean / baseline.mean - 1;
+        }
+
+        /**
+         * @return true if the difference of the means is statistically significant
+         */
+        public boolean isSignificant() {
+            return significant;
+        }
+
+        /**
+         * @return true if the result got slower than the baseline by more than the threshold, and the difference is
+         * statistically significant
+         */
+        public boolean isRegression() {
+            return getChange() > threshold && significant;
+        }
+
+        @Override
+        public String toString() {
+            if (current == null) {
+                return String.format("%s %s %d: %.6f seconds -> not measured (MISSING)", baseline.algorithm,
+                        baseline.shape, baseline.size, baseline.mean);
+            }
+            if (baseline == null) {
+                return String.format("%s %s %d: not in the baseline -> %.6f seconds (new)", current.algorithm,
+                        current.shape, current.size, current.mean);
+            }
+            String verdict = isRegression() ? "REGRESSION" : significant ? "significant" : "not significant";
+            return String.format("%s %s %d: %.6f -> %.6f seconds, %+.1f%% (%s)", current.algorithm, current.shape,
+                    current.size, baseline.mean, current.mean, getChange() * 100, verdict);
+        }
+    }
+
+    /**
+     * The result of {@link Benchmark#loadTest}. Exceptions thrown by the task are counted as errors, the latencies
+     * of the failed calls are recorded like the others.
+     */
+    public static final class LoadTestResult {
+        private final int concurrency;
+        private final double targetRate;
+        private final boolean virtualThreads;
+        private final long elapsedNanos;
+        private final long errors;
+        private final Throwable firstError;
+        private final SectionStats latency;
+        private final SectionStats serviceTime;
+
+        LoadTestResult(int concurrency, double targetRate, boolean virtualThreads, long elapsedNanos, long errors,
+                       Throwable firstError, SectionStats latency, SectionStats serviceTime) {
+            this.concurrency = concurrency;
+            this.targetRate = targetRate;
+            this.virtualThreads = virtualThreads;
+            this.elapsedNanos = elapsedNanos;
+            this.errors = errors;
+            this.firstError = firstError;
+            this.latency = latency;
+            this.serviceTime = serviceTime;
+        }
+
+        /**
+         * @return the number of threads that called the task
+         */
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        /**
+         * @return the scheduled calls per second of the open model, 0 for the closed model
+         */
+        public double getTargetRate() {
+            return targetRate;
+        }
+
+        /**
+         * @return true if the task was called on virtual threads
+         */
+        public boolean isVirtualThreads() {
+            return virtualThreads;
+        }
+
+        /**
+         * @return the time from the start of the test until the last call returned, in nanoseconds
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return the number of calls of the task
+         */
+        public long getOperations() {
+            return latency.getCount();
+        }
+
+        /**
+         * @return the number of calls that threw an exception
+         */
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return the first exception thrown by the task, or null if there was none
+         */
+        public Throwable getFirstError() {
+            return firstError;
+        }
+
+        /**
+         * @return the calls per second
+         */
+        public double getThroughput() {
+            return getOperations() / (elapsedNanos / 1e9);
+        }
+
+        /**
+         * @return the latencies of the calls in nanoseconds. In the open model they are measured from the scheduled
+         * start of the calls, in the closed model they are the same as the service times
+         */
+        public SectionStats getLatency() {
+            return latency;
+        }
+
+        /**
+         * @return the times the task itself took in nanoseconds, from the actual start of the calls
+         */
+        public SectionStats getServiceTime() {
+            return serviceTime;
+        }
+
+        @Override
+        public String toString() {
+            String model = targetRate > 0 ? String.format("open model at %.1f/s", targetRate) : "closed model";
+            return String.format("%s, %d %s threads: %d calls, %d errors, %.1f calls/s%n  %s%n  %s", model,
+                    concurrency, virtualThreads ? "virtual" : "platform", getOperations(), errors, getThroughput(),
+                    latency, serviceTime);
+        }
+    }
+
+    private static class Trials {
+        private static final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+        private static <T> Statistics run(Supplier<T> input, Consumer<T> task, Consumer<T> check, int warmups,
+                                          int trials) {
+            if (warmups < 0) throw new IllegalArgumentException("Number of warmups can't be negative!");
+            if (trials < 1) throw new IllegalArgumentException("Number of trials must be positive!");
+
+            for (int i = 0; i < warmups; i++) task.accept(input.get());
+
+            double[] times = new double[trials];
+            double gcTime = 0;
+            for (int i = 0; i < trials; i++) {
+                // The input is created before the clocks start
+                T value = input.get();
+                long gcStart = gcMillis();
+                long startTime = System.nanoTime();
+                task.accept(value);
+                long endTime = System.nanoTime();
+                // The collectors report milliseconds, a pause can't be longer than the whole trial
+                double gc = Math.min((gcMillis() - gcStart) / 1e3, (endTime - startTime) / 1e9);
+                times[i] = (endTime - startTime) / 1e9 - gc;
+                gcTime += gc;
+                if (check != null) check.accept(value);
+            }
+            return new Statistics(times, gcTime);
+        }
+
+        // Total collection time of all garbage collectors in milliseconds
+        private static long gcMillis() {
+            long total = 0;
+            for (GarbageCollectorMXBean collector : collectors) {
+                // -1 if the collector doesn't report its time
+                total += Math.max(0, collector.getCollectionTime());
+            }
+            return total;
+        }
+    }
 
     private static class SortingBenchmark {
 
         private static double sortingBenchmark(Consumer<int[]> sortingMethod, int len) {
             // Generate random array
-            int[] array = new Random(0).ints(len).toArray();
-            return sortAndBenchmark(sortingMethod, array);
+            int[] array = DataGenerator.ints(len, DataGenerator.Distribution.uniform(), 0);
+            return Benchmark.sortingBenchmark(sortingMethod, array);
         }
 
-        private static double sortingBenchmark(Consumer<int[]> sortingMethod, int[] array) {
-            return sortAndBenchmark(sortingMethod, array);
-        }
-
-        private static double sortAndBenchmark(Consumer<int[]> sortingMethod, int[] array) {
+        private static double sortAndBenchmark(Runnable sort, BooleanSupplier isSorted) {
             // Get the start time
             long startTime = System.nanoTime();
 
             // Perform the sort
-            sortingMethod.accept(array);
+            sort.run();
 
             //Get the end time
             long endTime = System.nanoTime();
 
 
             // Check if array is sorted
-            for (int i = 0; i < array.length - 1; i++) {
-                if (array[i] > array[i + 1]) {
-                    System.out.println("NOT SORTED !!");
-                    break;
-                }
+            if (!isSorted.getAsBoolean()) {
+                System.out.println("NOT SORTED !!");
             }
-            array = null;
             System.gc();
 
 
@@ -168,4 +1394,3 @@ public abstract class Benchmark {
     }
 
 }
-
@@ -0,0 +1,388 @@
+package myJavaLib;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The CSV and JSON formats of {@link Benchmark.Report}. Use the methods of Benchmark and Report instead of this class.
+ * <p>
+ * A CSV report starts with the metadata as {@code # key=value} comment lines, followed by a header line and one line
+ * per result. A JSON report is an object with a "metadata" object and a "results" array. Times are in seconds, written
+ * with all digits of the double, so a report that is loaded back has exactly the same values.
+ */
+final class BenchmarkReport {
+    // The columns of the CSV format and the fields of the JSON results, in this order
+    static final String[] COLUMNS = {"algorithm", "shape", "size", "trials", "mean", "stddev", "min", "median", "p99",
+            "max", "gc"};
+
+    private BenchmarkReport() {
+    }
+
+    /**
+     * @return the host, operating system, hardware and JVM the benchmarks run on
+     */
+    static Map<String, String> metadata() {
+        Map<String, String> metadata = new LinkedHashMap<>();
+        metadata.put("timestamp", Instant.now().toString());
+        metadata.put("host", hostName());
+        metadata.put("os", System.getProperty("os.name") + " " + System.getProperty("os.version"));
+        metadata.put("arch", System.getProperty("os.arch"));
+        metadata.put("processors", String.valueOf(Runtime.getRuntime().availableProcessors()));
+        metadata.put("maxMemory", String.valueOf(Runtime.getRuntime().maxMemory()));
+        metadata.put("java.version", System.getProperty("java.version"));
+        metadata.put("java.vendor", System.getProperty("java.vendor"));
+        metadata.put("java.vm", System.getProperty("java.vm.name") + " " + System.getProperty("java.vm.version"));
+        metadata.put("jvmArguments", String.join(" ", ManagementFactory.getRuntimeMXBean().getInputArguments()));
+        metadata.put("vectorized", String.valueOf(Sorting.Parameters.isVectorized()));
+        metadata.put("sortStats", String.valueOf(Sorting.SortStats.ENABLED));
+        return metadata;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException | SecurityException e) {
+            return "unknown";
+        }
+    }
+
+    // The values of a result in the order of the columns
+    private static Object[] values(Benchmark.Result result) {
+        return new Object[]{result.getAlgorithm(), result.getShape(), result.getSize(), result.getTrials(),
+                result.getMean(), result.getStandardDeviation(), result.getMin(), result.getMedian(), result.getP99(),
+                result.getMax(), result.getGcTime()};
+    }
+
+    private static Benchmark.Result result(String[] values) {
+        return new Benchmark.Result(values[0], values[1], Integer.parseInt(values[2]), Integer.parseInt(values[3]),
+                Double.parseDouble(values[4]), Double.parseDouble(values[5]), Double.parseDouble(values[6]),
+                Double.parseDouble(values[7]), Double.parseDouble(values[8]), Double.parseDouble(values[9]),
+                Double.parseDouble(values[10]));
+    }
+
+    static String toCsv(Benchmark.Report report) {
+        StringBuilder csv = new StringBuilder();
+        for (Map.Entry<String, String> entry : report.getMetadata().entrySet()) {
+            // A line break in a value would end the comment line
+            csv.append("# ").append(entry.getKey()).append('=')
+                    .append(entry.getValue().replace('\n', ' ').replace('\r', ' ')).append('\n');
+        }
+        csv.append(String.join(",", COLUMNS)).append('\n');
+        for (Benchmark.Result result : report.getResults()) {
+            Object[] values = values(result);
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) csv.append(',');
+                csv.append(csvField(String.valueOf(values[i])));
+            }
+            csv.append('\n');
+        }
+        return csv.toString();
+    }
+
+    // Quotes a field that contains a comma, a quote or a line break, doubling the quotes inside
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    static String toJson(Benchmark.Report report) {
+        StringBuilder json = new StringBuilder("{\n  \"metadata\": {");
+        String separator = "\n";
+        for (Map.Entry<String, String> entry : report.getMetadata().entrySet()) {
+            json.append(separator).append("    ").append(jsonString(entry.getKey())).append(": ")
+                    .append(jsonString(entry.getValue()));
+            separator = ",\n";
+        }
+        json.append("\n  },\n  \"results\": [");
+        separator = "\n";
+        for (Benchmark.Result result : report.getResults()) {
+            Object[] values = values(result);
+            json.append(separator).append("    {");
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) json.append(", ");
+                json.append('"').append(COLUMNS[i]).append("\": ");
+                if (values[i] instanceof String) {
+                    json.append(jsonString((String) values[i]));
+                } else if (values[i] instanceof Double && !Double.isFinite((Double) values[i])) {
+                    // JSON has no NaN or infinity
+                    json.append("null");
+                } else {
+                    json.append(values[i]);
+                }
+            }
+            json.append('}');
+            separator = ",\n";
+        }
+        return json.append("\n  ]\n}\n").toString();
+    }
+
+    private static String jsonString(String value) {
+        StringBuilder string = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    string.append("\\\"");
+                    break;
+                case '\\':
+                    string.append("\\\\");
+                    break;
+                case '\n':
+                    string.append("\\n");
+                    break;
+                case '\r':
+                    string.append("\\r");
+                    break;
+                case '\t':
+                    string.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) string.append(String.format("\\u%04x", (int) c));
+                    else string.append(c);
+            }
+        }
+        return string.append('"').toString();
+    }
+
+    /**
+     * Parses a report in either format, JSON if it starts with '{'.
+     *
+     * @throws IllegalArgumentException if the text is not a valid report
+     */
+    static Benchmark.Report parse(String text) {
+        String trimmed = text.trim();
+        return trimmed.startsWith("{") ? parseJson(trimmed) : parseCsv(text);
+    }
+
+    private static Benchmark.Report parseCsv(String text) {
+        Map<String, String> metadata = new LinkedHashMap<>();
+        List<Benchmark.Result> results = new ArrayList<>();
+        boolean header = true;
+        for (String line : text.split("\r?\n")) {
+            if (line.isBlank()) continue;
+            if (line.startsWith("#")) {
+                int equals = line.indexOf('=');
+                if (equals > 0) metadata.put(line.substring(1, equals).trim(), line.substring(equals + 1));
+                continue;
+            }
+            if (header) {
+                // The columns are fixed, the header is only checked
+                if (!line.trim().equals(String.join(",", COLUMNS))) {
+                    throw new IllegalArgumentException("Invalid CSV header: " + line);
+                }
+                header = false;
+                continue;
+            }
+            String[] values = splitCsv(line);
+            if (values.length != COLUMNS.length) throw new IllegalArgumentException("Invalid CSV line: " + line);
+            results.add(result(values));
+        }
+        return new Benchmark.Report(metadata, results);
+    }
+
+    private static String[] splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') value.append(c);
+                else if (i + 1 < line.length() && line.charAt(i + 1) == '"') value.append(line.charAt(++i));
+                else quoted = false;
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values.toArray(new String[0]);
+    }
+
+    private static Benchmark.Report parseJson(String text) {
+        Object parsed = new JsonParser(text).parseDocument();
+        if (!(parsed instanceof Map)) throw new IllegalArgumentException("A JSON report must be an object!");
+        Map<?, ?> document = (Map<?, ?>) parsed;
+
+        Map<String, String> metadata = new LinkedHashMap<>();
+        if (document.get("metadata") instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) document.get("metadata")).entrySet()) {
+                metadata.put(String.valueOf(entry.getKey()), String.valueOf(entry.getValue()));
+            }
+        }
+        List<Benchmark.Result> results = new ArrayList<>();
+        if (!(document.get("results") instanceof List)) {
+            throw new IllegalArgumentException("A JSON report must have a results array!");
+        }
+        for (Object element : (List<?>) document.get("results")) {
+            if (!(element instanceof Map)) throw new IllegalArgumentException("Invalid JSON result: " + element);
+            Map<?, ?> fields = (Map<?, ?>) element;
+            String[] values = new String[COLUMNS.length];
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (!fields.containsKey(COLUMNS[i])) {
+                    throw new IllegalArgumentException("A JSON result has no " + COLUMNS[i] + "!");
+                }
+                // null stands for NaN
+                Object value = fields.get(COLUMNS[i]);
+                values[i] = value == null ? "NaN" : String.valueOf(value);
+            }
+            results.add(result(values));
+        }
+        return new Benchmark.Report(metadata, results);
+    }
+
+    // A minimal JSON parser: objects become maps, arrays lists, numbers are kept as their text
+    private static final class JsonParser {
+        private final String text;
+        private int position;
+
+        JsonParser(String text) {
+            this.text = text;
+        }
+
+        Object parseDocument() {
+            Object value = parseValue();
+            skipWhitespace();
+            if (position != text.length()) throw error("Unexpected text after the JSON value");
+            return value;
+        }
+
+        private Object parseValue() {
+            skipWhitespace();
+            if (position == text.length()) throw error("Unexpected end of JSON");
+            char c = text.charAt(position);
+            if (c == '{') return parseObject();
+            if (c == '[') return parseArray();
+            if (c == '"') return parseString();
+            if (text.startsWith("null", position)) {
+                position += 4;
+                return null;
+            }
+            if (text.startsWith("true", position) || text.startsWith("false", position)) {
+                boolean value = c == 't';
+                position += value ? 4 : 5;
+                return String.valueOf(value);
+            }
+            int start = position;
+            while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) position++;
+            if (start == position) throw error("Unexpected character '" + c + "'");
+            return text.substring(start, position);
+        }
+
+        private Map<String, Object> parseObject() {
+            Map<String, Object> object = new LinkedHashMap<>();
+            position++;
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return object;
+            }
+            while (true) {
+                skipWhitespace();
+                if (peek() != '"') throw error("Expected a field name");
+                String key = parseString();
+                skipWhitespace();
+                expect(':');
+                object.put(key, parseValue());
+                skipWhitespace();
+                if (peek() == ',') {
+                    position++;
+                } else {
+                    expect('}');
+                    return object;
+                }
+            }
+        }
+
+        private List<Object> parseArray() {
+            List<Object> array = new ArrayList<>();
+            position++;
+            skipWhitespace();
+            if (peek() == ']') {
+                position++;
+                return array;
+            }
+            while (true) {
+                array.add(parseValue());
+                skipWhitespace();
+                if (peek() == ',') {
+                    position++;
+                } else {
+                    expect(']');
+                    return array;
+                }
+            }
+        }
+
+        private String parseString() {
+            StringBuilder string = new StringBuilder();
+            position++;
+            while (true) {
+                if (position >= text.length()) throw error("Unterminated string");
+                char c = text.charAt(position++);
+                if (c == '"') return string.toString();
+                if (c != '\\') {
+                    string.append(c);
+                    continue;
+                }
+                if (position >= text.length()) throw error("Unterminated string");
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case 'n':
+                        string.append('\n');
+                        break;
+                    case 'r':
+                        string.append('\r');
+                        break;
+                    case 't':
+                        string.append('\t');
+                        break;
+                    case 'b':
+                        string.append('\b');
+                        break;
+                    case 'f':
+                        string.append('\f');
+                        break;
+                    case 'u':
+                        if (position + 4 > text.length()) throw error("Invalid unicode escape");
+                        string.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        position += 4;
+                        break;
+                    default:
+                        // \" \\ and \/
+                        string.append(escaped);
+                }
+            }
+        }
+
+        private char peek() {
+            if (position >= text.length()) throw error("Unexpected end of JSON");
+            return text.charAt(position);
+        }
+
+        private void expect(char c) {
+            if (peek() != c) throw error("Expected '" + c + "'");
+            position++;
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) position++;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + position + "!");
+        }
+    }
+}
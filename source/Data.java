@@ -5,24 +5,76 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 
 /**
  * Utility class containing static methods for deep copying objects and writing/reading objects to files.
  *
- * @implNote For these methods to work correctly, the classes of the objects being
- * operated upon must implement the {@link Serializable} interface.
+ * @implNote For the serialization based methods to work correctly, the classes of the objects being
+ * operated upon must implement the {@link Serializable} interface. {@link #deepCopy(Object)} doesn't need it.
  */
 
 public abstract class Data {
 
     /**
-     * Makes a deep copy of the given object using serialization.
+     * Makes a deep copy of the given object. The objects don't have to be Serializable: the fields are copied
+     * directly, with a copy plan that is built once for every class and cached. Primitive arrays are copied with
+     * System.arraycopy, immutable objects like Strings, boxed primitives, enums and records of immutables are shared
+     * instead of copied, and the common collections are rebuilt with copied elements.
+     * An object referenced many times is copied once, so the copy has the same shape as the original, cycles included.
+     * Unlike {@link #deepCopySerialized(Object)}, transient fields are copied too and no constructor is called.
+     * Classes of the JDK whose fields are not accessible are copied with serialization, if they are Serializable.
+     * Lambdas are shared.
      *
      * @param object the object to copy
-     * @return a deep copy of the object, or null if an error occurred during the copy
+     * @return a deep copy of the object
+     * @throws IllegalArgumentException if the object graph has an object that can't be copied
      */
-
     public static <T> T deepCopy(T object) {
+        return DeepCopier.copy(object);
+    }
+
+    /**
+     * Makes a deep copy of the given object like {@link #deepCopy(Object)}, but the elements of a large array or
+     * RandomAccess list (ArrayList, Vector, Arrays.asList, List.of, unmodifiable lists) are copied in parallel on the
+     * common pool. Large primitive arrays are copied by slices in parallel.
+     *
+     * @param object the object to copy
+     * @return a deep copy of the object
+     * @throws IllegalArgumentException if the object graph has an object that can't be copied
+     */
+    public static <T> T deepCopyParallel(T object) {
+        return deepCopyParallel(object, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Makes a deep copy of the given object like {@link #deepCopy(Object)}, but the elements of a large array or
+     * RandomAccess list are copied in parallel on the given pool, in chunks, for snapshots of large caches.
+     * An object referenced from several chunks is still copied once: the chunks share an identity table, the first one
+     * that meets an object copies it and the others use that copy. Hash tables and sorted collections whose keys are
+     * not shared objects are filled after every chunk is done, so their keys are complete when they are hashed.
+     * An immutable set or map (Set.of, Collections.unmodifiableSet...) whose elements are mutable objects can't be
+     * created that way, a graph that has one is copied again on one thread.
+     * Other objects, and arrays and lists shorter than 16384 elements, are copied on the calling thread.
+     *
+     * @param object the object to copy
+     * @param pool   the pool the chunks are copied on
+     * @return a deep copy of the object
+     * @throws IllegalArgumentException if the object graph has an object that can't be copied
+     */
+    public static <T> T deepCopyParallel(T object, ForkJoinPool pool) {
+        return DeepCopier.copyParallel(object, pool);
+    }
+
+    /**
+     * Makes a deep copy of the given object using serialization. It is much slower than {@link #deepCopy(Object)},
+     * but follows the rules of serialization: transient fields are reset and readObject/readResolve methods are called.
+     *
+     * @param object the object to copy, all objects it references must be Serializable
+     * @return a deep copy of the object, or null if an error occurred during the copy
+     */
+    public static <T> T deepCopySerialized(T object) {
 
         T copiedObject = null;
         try {
@@ -51,7 +103,9 @@ public abstract class Data {
 
     /**
      * Writes an object to a file, with the option to append to the file if it already exists.
-     * With appending you can store multiple objects on the file and read them by <b>file2Arraylist</b> method
+     * With appending you can store multiple objects on the file and read them by <b>file2Arraylist</b> method.
+     * New files are record logs, see {@link RecordLog}: every object is a checksummed frame, so a torn write only loses
+     * the last object. Files written by the older versions of this method are still appended in their format.
      *
      * @param object   the object to write
      * @param filename the name of the file
@@ -59,23 +113,35 @@ public abstract class Data {
      *                 If false or the file does not exist, a new file will be created
      * @return true if the writing process is successful, false otherwise
      */
-   public static boolean writeObjectToFile(Object object, String filename, boolean append) {
-        // Make append false if the file doesn't exist
-        if (!Files.exists(Path.of(filename))) append = false;
+    public static boolean writeObjectToFile(Object object, String filename, boolean append) {
+        Path path = Path.of(filename);
+        try {
+            // Files of the older versions are streams of objects without frames
+            if (append && Files.exists(path) && Files.size(path) > 0 && !FramedLog.isLog(path)) {
+                return appendLegacy(object, filename);
+            }
+            if (!append) FramedLog.delete(path);
+            try (FramedLog log = FramedLog.open(path)) {
+                log.append(object);
+            }
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
 
+    // Appends to a file of the older versions, which is a single stream of objects
+    private static boolean appendLegacy(Object object, String filename) {
         ObjectOutputStream outputStream = null;
         try {
-            // If the file already exists and append is true, create an ObjectOutputStream that does not write a new header
-            if (append && Files.size(Path.of(filename)) > 0) {
-                outputStream = new ObjectOutputStream(new FileOutputStream(filename, true)) {
-                    protected void writeStreamHeader() throws IOException {
-                        reset();
-                    }
-                };
-            } else {
-                // Else, create a normal ObjectOutputStream
-                outputStream = new ObjectOutputStream(new FileOutputStream(filename));
-            }
+            // The file already has the header of the stream, so the new ObjectOutputStream doesn't write one
+            outputStream = new ObjectOutputStream(new FileOutputStream(filename, true)) {
+                protected void writeStreamHeader() throws IOException {
+                    reset();
+                }
+            };
             // Write the object to the ObjectOutputStream
             outputStream.writeObject(object);
             // If the writing process is successful, return true
@@ -98,12 +164,18 @@ public abstract class Data {
     }
 
     /**
-     * Reads a single object from a file.
+     * Reads a single object from a file, the first one of a record log.
      *
      * @param path the path to the file
      * @return the object read from the file, or null if an error occurred during the read
      */
     public static Object readObjectFromFile(String path) {
+        if (!isRecordLog(path)) return readLegacyObject(path);
+        ArrayList<Object> records = readRecords(path, 1);
+        return records.isEmpty() ? null : records.get(0);
+    }
+
+    private static Object readLegacyObject(String path) {
         ObjectInputStream inputStream = null;
         try {
             // Create an ObjectInputStream from a file
@@ -129,6 +201,7 @@ public abstract class Data {
 
     /**
      * Reads all objects from a file and returns an ArrayList containing all of them.
+     * The objects of a record log are read up to its first torn or corrupt frame.
      *
      * @param path the path to the file
      * @return the object read from the file, or null if an error occurred during the read
@@ -144,7 +217,11 @@ public abstract class Data {
             }
         }
 
+        if (isRecordLog(path)) return readRecords(path, Long.MAX_VALUE);
+        return readLegacyList(path);
+    }
 
+    private static ArrayList<Object> readLegacyList(String path) {
         ArrayList<Object> list = new ArrayList<>();
         try (ObjectInputStream stream = new ObjectInputStream(new FileInputStream(path))) {
             while (true) {
@@ -166,6 +243,339 @@ public abstract class Data {
         // Return the list of objects
         return list;
     }
-}
 
+    /**
+     * Reads the objects of a file lazily, one at a time, so files larger than the memory can be processed and the first
+     * objects are available at once. Works with the files of {@link #writeObjectToFile}, {@link #openRecordLog} and
+     * {@link #openWriter}. The stream must be closed to close the file, i.e. with try-with-resources, and
+     * {@link Stream#iterator()} reads it as an iterator.
+     * <p>
+     * A record log with an index can be read by a parallel stream: it is split into byte ranges by the index, and every
+     * range is deserialized on its own thread. A torn record at the end of a log ends the stream. Files written by the
+     * older versions of writeObjectToFile are read sequentially.
+     *
+     * @param path the path to the file
+     * @param type the class of the objects, i.e. {@code Event.class}
+     * @return a lazy stream of the objects, or null if the file can't be opened
+     * @throws java.io.UncheckedIOException from the stream, if a record is corrupt or can't be deserialized
+     * @throws ClassCastException           from the stream, if an object is not of the type
+     */
+    public static <T> Stream<T> stream(String path, Class<T> type) {
+        try {
+            return RecordStream.open(Path.of(path), type);
+        } catch (IOException e) {
+            System.out.println("Error when opening the stream: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Opens a record log, or creates it if the file doesn't exist. If the last write before a crash was torn, the
+     * torn record is cut and the index is completed.
+     *
+     * @param path the path to the log, the index is stored next to it with the .idx suffix
+     * @return the open log, or null if an error occurred
+     */
+    public static RecordLog openRecordLog(String path) {
+        try {
+            return new RecordLog(FramedLog.open(Path.of(path)));
+        } catch (IOException e) {
+            System.out.println("Error when opening the record log: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Appends an object to a record log, which is created if it doesn't exist. Keep a log open with
+     * {@link #openRecordLog(String)} to append many objects.
+     *
+     * @param object the object to append, it must be Serializable
+     * @param path   the path to the log
+     * @return true if the object is appended, false otherwise
+     */
+    public static boolean appendRecord(Object object, String path) {
+        try (RecordLog log = openRecordLog(path)) {
+            return log != null && log.append(object) >= 0;
+        }
+    }
+
+    /**
+     * Reads one object of a record log by its number, without reading the objects before it.
+     *
+     * @param path   the path to the log
+     * @param number the number of the record, 0 for the first one
+     * @return the object, or null if an error occurred
+     * @throws IllegalArgumentException if the log doesn't have the record
+     */
+    public static Object readRecord(String path, long number) {
+        try (RecordLog log = openRecordLog(path)) {
+            return log != null ? log.read(number) : null;
+        }
+    }
+
+    private static boolean isRecordLog(String path) {
+        try {
+            return FramedLog.isLog(Path.of(path));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Reads the first objects of a record log sequentially, without changing the file if its tail is torn
+    private static ArrayList<Object> readRecords(String path, long max) {
+        ArrayList<Object> list = new ArrayList<>();
+        Path file = Path.of(path);
+        try {
+            long size = Files.size(file);
+            try (FramedLog.FrameReader reader = new FramedLog.FrameReader(file, FramedLog.HEADER, size,
+                    FramedLog.tail(file, size))) {
+                while (list.size() < max) list.add(reader.next());
+            }
+        } catch (EOFException e) {
+            // End of the log
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return list;
+    }
+
+    /**
+     * Opens a writer session on a record log with the default settings: batches of up to 1 MiB or 10 milliseconds,
+     * written without fsync, see {@link #openWriter(String, Durability, long, long)}.
+     *
+     * @param path the path to the log, it is created if it doesn't exist
+     * @return the writer, or null if an error occurred
+     */
+    public static RecordWriter openWriter(String path) {
+        return openWriter(path, Durability.NONE, 1 << 20, 10);
+    }
+
+    /**
+     * Opens a writer session on a record log, for writing many small objects from one or many threads.
+     * The log stays open, and the objects are serialized on the writing threads and handed through a lock-free queue
+     * to a single flushing thread. It writes them in batches (group commit): a batch is written when it reaches the
+     * batch size, when its oldest record has waited for the maximum delay, or when a thread calls
+     * {@link RecordWriter#flush()}. Every batch is one write to the log and one to its index.
+     * Don't open the same log with {@link #openRecordLog(String)} while the writer is open, reading it with
+     * {@link #file2Arraylist(String)} is fine.
+     *
+     * @param path           the path to the log, it is created if it doesn't exist
+     * @param durability     when the records are synced to the storage device
+     * @param batchBytes     the size in bytes at which a batch is written
+     * @param maxDelayMillis the time a record can wait in a batch before it is written, 0 to write whatever is queued
+     * @return the writer, or null if an error occurred
+     * @throws IllegalArgumentException if the batch size is not positive or the delay is negative
+     */
+    public static RecordWriter openWriter(String path, Durability durability, long batchBytes, long maxDelayMillis) {
+        if (durability == null) throw new IllegalArgumentException("Durability can't be null!");
+        if (batchBytes <= 0) throw new IllegalArgumentException("Batch size must be positive!");
+        if (maxDelayMillis < 0) throw new IllegalArgumentException("Delay can't be negative!");
+        try {
+            return new RecordWriter(new BatchWriter(Path.of(path), durability, batchBytes, maxDelayMillis));
+        } catch (IOException e) {
+            System.out.println("Error when opening the writer: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * When the records of a {@link RecordWriter} are synced to the storage device with fsync.
+     */
+    public enum Durability {
+        /**
+         * Never, the records are written to the operating system, which writes them to the device later. They survive
+         * a crash of the JVM but not of the machine. Closing the writer syncs the log once.
+         */
+        NONE,
+        /**
+         * After every batch, so a flush returns when the records are on the device.
+         */
+        BATCH,
+        /**
+         * After every record. The batches are still collected, but every record of them is written and synced on its
+         * own, which is much slower.
+         */
+        RECORD
+    }
+
+    /**
+     * A writer session on a record log, see {@link #openWriter(String, Durability, long, long)}.
+     * The methods can be called from many threads. Close it to write the last batch.
+     */
+    public static final class RecordWriter implements Closeable {
+        private final BatchWriter writer;
+
+        private RecordWriter(BatchWriter writer) {
+            this.writer = writer;
+        }
+
+        /**
+         * Queues an object, it is written with a later batch. It returns without waiting for the disk.
+         *
+         * @param object the object to write, it must be Serializable
+         * @return true if the object is queued, false if it can't be serialized, the writer is closed or a previous
+         * batch failed
+         */
+        public boolean write(Object object) {
+            try {
+                writer.write(object);
+                return true;
+            } catch (IOException e) {
+                System.out.println("Error when writing the object: " + e.getMessage());
+                e.printStackTrace();
+                return false;
+            }
+        }
+
+        /**
+         * Waits until the objects queued before are written, and synced if the durability is BATCH or RECORD.
+         * The current batch is written without waiting for its delay.
+         *
+         * @return true if successful, false if a batch failed or the writer is closed
+         */
+        public boolean flush() {
+            try {
+                writer.flush();
+                return true;
+            } catch (IOException e) {
+                System.out.println("Error when flushing the writer: " + e.getMessage());
+                e.printStackTrace();
+                return false;
+            }
+        }
+
+        /**
+         * @return the number of records written to the log
+         */
+        public long getWritten() {
+            return writer.getWritten();
+        }
+
+        /**
+         * @return the number of batches written to the log
+         */
+        public long getBatches() {
+            return writer.getBatches();
+        }
+
+        /**
+         * @return the number of records queued and not written yet
+         */
+        public long getQueued() {
+            return writer.getQueued();
+        }
+
+        /**
+         * @return when the records are synced to the storage device
+         */
+        public Durability getDurability() {
+            return writer.getDurability();
+        }
+
+        /**
+         * Writes the queued objects, syncs the log and closes it.
+         */
+        @Override
+        public void close() {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                System.out.println("Error when closing the writer: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("RecordWriter{%s, %s, %d records in %d batches, %d queued}", writer.getPath(),
+                    getDurability(), getWritten(), getBatches(), getQueued());
+        }
+    }
+
+    /**
+     * An open record log: an append-only file of objects with an index, see {@link #openRecordLog(String)}.
+     * <p>
+     * Every object is serialized on its own into a frame with its length and a CRC32C checksum, so the records can be
+     * read in any order and a torn or corrupt frame is detected. The offsets of the frames are stored in a sidecar
+     * index file, so any record is read with one read of the index and one of the log.
+     * The methods can be called from many threads.
+     */
+    public static final class RecordLog implements Closeable {
+        private final FramedLog log;
+
+        private RecordLog(FramedLog log) {
+            this.log = log;
+        }
+
+        /**
+         * @param object the object to append, it must be Serializable
+         * @return the number of the record, or -1 if an error occurred
+         */
+        public long append(Object object) {
+            try {
+                return log.append(object);
+            } catch (IOException e) {
+                System.out.println("Error when appending to the record log: " + e.getMessage());
+                e.printStackTrace();
+                return -1;
+            }
+        }
 
+        /**
+         * @param number the number of the record, 0 for the first one
+         * @return the object, or null if an error occurred
+         * @throws IllegalArgumentException if the log doesn't have the record
+         */
+        public Object read(long number) {
+            try {
+                return log.read(number);
+            } catch (IOException e) {
+                System.out.println("Error when reading the record log: " + e.getMessage());
+                e.printStackTrace();
+                return null;
+            }
+        }
+
+        /**
+         * @return the number of records
+         */
+        public long size() {
+            return log.size();
+        }
+
+        /**
+         * Writes the appended records to the storage device, so they survive a crash of the machine.
+         *
+         * @return true if successful, false otherwise
+         */
+        public boolean sync() {
+            try {
+                log.force();
+                return true;
+            } catch (IOException e) {
+                System.out.println("Error when syncing the record log: " + e.getMessage());
+                e.printStackTrace();
+                return false;
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                log.close();
+            } catch (IOException e) {
+                System.out.println("Error when closing the record log: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "RecordLog{" + log.path() + ", " + size() + " records}";
+        }
+    }
+}
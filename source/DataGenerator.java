@@ -0,0 +1,360 @@
+package myJavaLib;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Utility class for generating large test arrays in parallel.
+ * <p>
+ * The array is cut into chunks of a fixed size, and every chunk gets its own random generator, seeded from the seed
+ * and the index of the chunk. Which thread fills a chunk doesn't change its values, so the same seed always gives the
+ * same array, whatever the number of threads or the pool.
+ */
+public abstract class DataGenerator {
+    // Elements per chunk. Part of the output format: changing it changes the arrays of every seed
+    private static final int CHUNK = 1 << 14;
+
+    /**
+     * Generates an array of ints in parallel on the common pool.
+     *
+     * @param length       length of the array
+     * @param distribution the distribution of the values, i.e. Distribution.uniform()
+     * @param seed         the seed, the same seed always gives the same array
+     * @return the generated array
+     * @throws IllegalArgumentException if the length is negative
+     */
+    public static int[] ints(int length, Distribution distribution, long seed) {
+        return ints(length, distribution, seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #ints(int, Distribution, long)}, but the array is generated on the given pool.
+     */
+    public static int[] ints(int length, Distribution distribution, long seed, ForkJoinPool pool) {
+        if (length < 0) throw new IllegalArgumentException("Length can't be negative!");
+        int[] array = new int[length];
+        fill(array, distribution, seed, pool);
+        return array;
+    }
+
+    /**
+     * Generates an array of longs in parallel on the common pool.
+     *
+     * @param length       length of the array
+     * @param distribution the distribution of the values, i.e. Distribution.uniform()
+     * @param seed         the seed, the same seed always gives the same array
+     * @return the generated array
+     * @throws IllegalArgumentException if the length is negative
+     */
+    public static long[] longs(int length, Distribution distribution, long seed) {
+        return longs(length, distribution, seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #longs(int, Distribution, long)}, but the array is generated on the given pool.
+     */
+    public static long[] longs(int length, Distribution distribution, long seed, ForkJoinPool pool) {
+        if (length < 0) throw new IllegalArgumentException("Length can't be negative!");
+        long[] array = new long[length];
+        fill(array, distribution, seed, pool);
+        return array;
+    }
+
+    /**
+     * Generates an array of doubles in parallel on the common pool.
+     *
+     * @param length       length of the array
+     * @param distribution the distribution of the values, i.e. Distribution.uniform()
+     * @param seed         the seed, the same seed always gives the same array
+     * @return the generated array
+     * @throws IllegalArgumentException if the length is negative
+     */
+    public static double[] doubles(int length, Distribution distribution, long seed) {
+        return doubles(length, distribution, seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #doubles(int, Distribution, long)}, but the array is generated on the given pool.
+     */
+    public static double[] doubles(int length, Distribution distribution, long seed, ForkJoinPool pool) {
+        if (length < 0) throw new IllegalArgumentException("Length can't be negative!");
+        double[] array = new double[length];
+        fill(array, distribution, seed, pool);
+        return array;
+    }
+
+    /**
+     * Overwrites an existing array with generated values, so a large array can be reused between runs.
+     * The array gets the same values as {@link #ints(int, Distribution, long)} with its length.
+     *
+     * @param array        the array to fill
+     * @param distribution the distribution of the values
+     * @param seed         the seed
+     * @param pool         the pool the array is filled on
+     */
+    public static void fill(int[] array, Distribution distribution, long seed, ForkJoinPool pool) {
+        pool.invoke(new Fill(array, array.length, distribution, seed, 0, chunks(array.length)));
+    }
+
+    /**
+     * Overwrites an existing array with generated values, see {@link #fill(int[], Distribution, long, ForkJoinPool)}.
+     */
+    public static void fill(long[] array, Distribution distribution, long seed, ForkJoinPool pool) {
+        pool.invoke(new Fill(array, array.length, distribution, seed, 0, chunks(array.length)));
+    }
+
+    /**
+     * Overwrites an existing array with generated values, see {@link #fill(int[], Distribution, long, ForkJoinPool)}.
+     */
+    public static void fill(double[] array, Distribution distribution, long seed, ForkJoinPool pool) {
+        pool.invoke(new Fill(array, array.length, distribution, seed, 0, chunks(array.length)));
+    }
+
+    private static int chunks(int length) {
+        return (int) (((long) length + CHUNK - 1) / CHUNK);
+    }
+
+    // The seed of the generator of a chunk. Seeds of neighbouring chunks differ in all bits, so their streams don't
+    // overlap like the streams of new SplittableRandom(seed) and new SplittableRandom(seed + 1) would
+    private static long chunkSeed(long seed, int chunk) {
+        long z = seed + (chunk + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+
+    /**
+     * The distribution of the generated values. The names are also the input shapes of {@link Benchmark.Report}.
+     */
+    public static final class Distribution {
+        private enum Kind {UNIFORM, ZIPF, GAUSSIAN, SORTED, FEW_UNIQUE, MEDIAN_OF_3_KILLER}
+
+        private final Kind kind;
+        private final String name;
+        // The parameters of the distribution, their meaning depends on the kind
+        private final double first;
+        private final double second;
+        // Constants of the Zipf sampler
+        private final double hIntegralX1;
+        private final double hIntegralN;
+        private final double squeeze;
+
+        private Distribution(Kind kind, String name, double first, double second) {
+            this.kind = kind;
+            this.name = name;
+            this.first = first;
+            this.second = second;
+            if (kind == Kind.ZIPF) {
+                hIntegralX1 = hIntegral(1.5) - 1;
+                hIntegralN = hIntegral(second + 0.5);
+                squeeze = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+            } else {
+                hIntegralX1 = hIntegralN = squeeze = 0;
+            }
+        }
+
+        /**
+         * @return uniformly distributed values: any int or long, doubles between 0 and 1
+         */
+        public static Distribution uniform() {
+            return new Distribution(Kind.UNIFORM, "uniform", 0, 0);
+        }
+
+        /**
+         * Values from 1 to the number of elements, where the probability of k is proportional to 1 / k^exponent.
+         * A few values are very frequent and most are rare, like words in a text or keys in a cache.
+         *
+         * @param exponent the exponent, 1 is the classic Zipf's law, larger ones are more skewed
+         * @param elements the number of different values
+         * @return the distribution
+         * @throws IllegalArgumentException if the exponent or the number of elements is not positive
+         */
+        public static Distribution zipf(double exponent, int elements) {
+            if (!(exponent > 0)) throw new IllegalArgumentException("Exponent must be positive!");
+            if (elements < 1) throw new IllegalArgumentException("Number of elements must be positive!");
+            return new Distribution(Kind.ZIPF, "zipf(" + exponent + "," + elements + ")", exponent, elements);
+        }
+
+        /**
+         * Normally distributed values. Integers are rounded and clamped to the range of their type.
+         *
+         * @param mean              the mean
+         * @param standardDeviation the standard deviation
+         * @return the distribution
+         * @throws IllegalArgumentException if the standard deviation is negative
+         */
+        public static Distribution gaussian(double mean, double standardDeviation) {
+            if (!(standardDeviation >= 0)) throw new IllegalArgumentException("Standard deviation can't be negative!");
+            return new Distribution(Kind.GAUSSIAN, "gaussian(" + mean + "," + standardDeviation + ")", mean,
+                    standardDeviation);
+        }
+
+        /**
+         * Sorted values from 0 to length - 1, where the given percent of the elements are replaced by random values
+         * from the same range. 0 gives a sorted array.
+         *
+         * @param percent percent of the elements that are out of place, between 0 and 100
+         * @return the distribution
+         * @throws IllegalArgumentException if the percent is not between 0 and 100
+         */
+        public static Distribution sorted(double percent) {
+            if (!(percent >= 0 && percent <= 100)) {
+                throw new IllegalArgumentException("Percent must be between 0 and 100!");
+            }
+            return new Distribution(Kind.SORTED, "sorted(" + percent + "%)", percent / 100, 0);
+        }
+
+        /**
+         * Random values from 0 to values - 1, so every value appears many times in a large array.
+         *
+         * @param values the number of different values
+         * @return the distribution
+         * @throws IllegalArgumentException if the number of values is not positive
+         */
+        public static Distribution fewUnique(int values) {
+            if (values < 1) throw new IllegalArgumentException("Number of values must be positive!");
+            return new Distribution(Kind.FEW_UNIQUE, "fewUnique(" + values + ")", values, 0);
+        }
+
+        /**
+         * Musser's median-of-3 killer sequence: a quicksort that takes the median of the first, middle and last
+         * element as pivot splits off only two elements at every step, and runs in quadratic time without a fallback.
+         * It doesn't depend on the seed.
+         *
+         * @return the distribution
+         */
+        public static Distribution medianOf3Killer() {
+            return new Distribution(Kind.MEDIAN_OF_3_KILLER, "medianOf3Killer", 0, 0);
+        }
+
+        // The value at the given index of a long[], or of an int[] if ints is true
+        long nextLong(SplittableRandom random, int index, int length, boolean ints) {
+            switch (kind) {
+                case UNIFORM:
+                    return ints ? random.nextInt() : random.nextLong();
+                case ZIPF:
+                    return zipf(random);
+                case GAUSSIAN:
+                    double value = Math.rint(first + second * random.nextGaussian());
+                    // The casts clamp to the range of the type
+                    return ints ? (int) value : (long) value;
+                case SORTED:
+                    // Draw the random value only when it is used, the comparison is cheaper
+                    return random.nextDouble() < first ? random.nextInt(Math.max(1, length)) : index;
+                case FEW_UNIQUE:
+                    return random.nextInt((int) first);
+                default:
+                    return killer(index, length);
+            }
+        }
+
+        // The value at the given index of a double array
+        double nextDouble(SplittableRandom random, int index, int length) {
+            switch (kind) {
+                case UNIFORM:
+                    return random.nextDouble();
+                case GAUSSIAN:
+                    return first + second * random.nextGaussian();
+                default:
+                    return nextLong(random, index, length, false);
+            }
+        }
+
+        // For an even length 2k, the first half has i + 1 at the even indices i and k + i at the odd ones, the second
+        // half has the even numbers 2, 4, ... 2k. An odd length gets its largest value at the end
+        private static long killer(int index, int length) {
+            int k = length / 2;
+            if (index >= 2 * k) return length;
+            if (index >= k) return 2L * (index - k + 1);
+            return (index & 1) == 0 ? index + 1 : (long) k + index;
+        }
+
+        // Rejection-inversion sampling of Hormann and Derflinger: O(1) per value whatever the number of elements
+        private long zipf(SplittableRandom random) {
+            long elements = (long) second;
+            while (true) {
+                double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+                double x = hIntegralInverse(u);
+                long k = (long) (x + 0.5);
+                if (k < 1) k = 1;
+                else if (k > elements) k = elements;
+                if (k - x <= squeeze || u >= hIntegral(k + 0.5) - h(k)) return k;
+            }
+        }
+
+        private double h(double x) {
+            return Math.exp(-first * Math.log(x));
+        }
+
+        private double hIntegral(double x) {
+            double logX = Math.log(x);
+            return expm1OverX((1 - first) * logX) * logX;
+        }
+
+        private double hIntegralInverse(double x) {
+            double t = Math.max(-1, x * (1 - first));
+            return Math.exp(log1pOverX(t) * x);
+        }
+
+        // log(1 + x) / x, with its series near 0 where the division loses precision
+        private static double log1pOverX(double x) {
+            if (Math.abs(x) > 1e-8) return Math.log1p(x) / x;
+            return 1 - x * (0.5 - x * (1.0 / 3 - x * 0.25));
+        }
+
+        // (exp(x) - 1) / x, with its series near 0
+        private static double expm1OverX(double x) {
+            if (Math.abs(x) > 1e-8) return Math.expm1(x) / x;
+            return 1 + x * 0.5 * (1 + x / 3 * (1 + x * 0.25));
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    // Fills the chunks [fromChunk, toChunk) of an int[], long[] or double[] array
+    private static class Fill extends RecursiveAction {
+        private final Object array;
+        private final int length;
+        private final Distribution distribution;
+        private final long seed;
+        private final int fromChunk;
+        private final int toChunk;
+
+        Fill(Object array, int length, Distribution distribution, long seed, int fromChunk, int toChunk) {
+            this.array = array;
+            this.length = length;
+            this.distribution = distribution;
+            this.seed = seed;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk > 1) {
+                int mid = (fromChunk + toChunk) >>> 1;
+                invokeAll(new Fill(array, length, distribution, seed, fromChunk, mid),
+                        new Fill(array, length, distribution, seed, mid, toChunk));
+                return;
+            }
+            if (toChunk == fromChunk) return;
+            SplittableRandom random = new SplittableRandom(chunkSeed(seed, fromChunk));
+            int low = fromChunk * CHUNK, high = (int) Math.min(length, (long) low + CHUNK);
+            if (array instanceof int[]) {
+                int[] ints = (int[]) array;
+                for (int i = low; i < high; i++) ints[i] = (int) distribution.nextLong(random, i, length, true);
+            } else if (array instanceof long[]) {
+                long[] longs = (long[]) array;
+                for (int i = low; i < high; i++) longs[i] = distribution.nextLong(random, i, length, false);
+            } else {
+                double[] doubles = (double[]) array;
+                for (int i = low; i < high; i++) doubles[i] = distribution.nextDouble(random, i, length);
+            }
+        }
+    }
+}
@@ -0,0 +1,1100 @@
+package myJavaLib;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.Vector;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+import java.util.regex.Pattern;
+
+/**
+ * The deep copy engine of {@link Data#deepCopy(Object)}. Use the methods of Data instead of this class.
+ * <p>
+ * The first copy of a class builds a copy plan for it, which is cached for the life of the class:
+ * <ul>
+ * <li>Immutable classes (String, boxed primitives, enums, java.time, records of immutables...) are shared.</li>
+ * <li>Primitive arrays are copied with {@link System#arraycopy}.</li>
+ * <li>The common collections of java.util are rebuilt through their public API, with copied elements.</li>
+ * <li>Other classes are allocated without calling a constructor, and their fields are copied one by one through
+ * method handles.</li>
+ * <li>Classes whose fields can't be accessed, like the internals of the JDK, are copied with serialization if they
+ * are Serializable.</li>
+ * </ul>
+ * Every copied object is remembered in an identity map, so an object that is referenced twice is copied once, and
+ * cycles are copied as cycles. The fields of objects and the elements of arrays are filled from a work stack instead
+ * of recursively, so long linked structures don't overflow the stack.
+ * <p>
+ * A parallel copy splits a large array or list into chunks that are copied by separate copiers on a fork-join pool.
+ * They share one identity table, in which the first copier that meets an object claims it and the others wait for
+ * its copy, so shared objects are still copied once.
+ */
+final class DeepCopier {
+    // Marks an object whose copy is being built from the copies of its parts, i.e. a record
+    private static final Object IN_PROGRESS = new Object();
+
+    private static final ClassValue<Plan> plans = new ClassValue<>() {
+        @Override
+        protected Plan computeValue(Class<?> type) {
+            return plan(type);
+        }
+    };
+
+    // Creates an instance of a class without calling its constructors, null if the JVM doesn't allow it
+    private static final MethodHandle allocator = allocator();
+
+    // Arrays and lists shorter than this are copied on one thread by a parallel copy
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+    // Number of elements copied by a task of a parallel copy, and number of values of a primitive array
+    private static final int CHUNK = 1 << 11;
+    private static final int PRIMITIVE_CHUNK = 1 << 16;
+
+    // Tables larger than this are not kept for the next copy of the thread
+    private static final int MAX_IDLE_CAPACITY = 1 << 16;
+    // A copier of every thread is kept between copies, so its table doesn't have to grow again for every copy.
+    // Growing it from scratch costs more than the lookups themselves
+    private static final ThreadLocal<DeepCopier> idle = new ThreadLocal<>();
+
+    // The objects copied so far and their copies: an identity hash table with open addressing and linear probing
+    private Object[] sources = new Object[64];
+    private Object[] copies = new Object[64];
+    private int size;
+    // 32 - log2 of the capacity, the hash is multiplied and shifted to an index
+    private int shift = 32 - 6;
+    // Objects whose fields or elements still have to be filled: plan, source and copy of each, as a stack
+    private final ArrayDeque<Object> pending = new ArrayDeque<>();
+
+    // The identity table of a parallel copy, which replaces the table above. Null for a copy on one thread
+    private final SharedTable shared;
+    // The object this copier waits for in a parallel copy, to find copiers that wait for each other
+    private volatile Object waitingFor;
+    // Hash tables and sorted collections, which are filled once every other copy is. Their keys are hashed or
+    // compared then, when the objects the keys refer to are filled
+    private final List<Insert> inserts = new ArrayList<>();
+
+    private DeepCopier() {
+        this(null);
+    }
+
+    private DeepCopier(SharedTable shared) {
+        this.shared = shared;
+    }
+
+    /**
+     * Makes a deep copy of an object graph.
+     *
+     * @throws IllegalArgumentException if the graph has an object that can't be copied
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T copy(T object) {
+        // Taken from the thread while it is used, a hashCode or compareTo that copies again gets a new one
+        DeepCopier copier = idle.get();
+        if (copier == null) copier = new DeepCopier();
+        else idle.set(null);
+        try {
+            T copy = (T) copier.copyOf(object);
+            copier.drain();
+            Insert.runAll(copier.inserts);
+            return copy;
+        } finally {
+            if (copier.clear()) idle.set(copier);
+        }
+    }
+
+    /**
+     * Makes a deep copy of an object graph, and copies the elements of a large array or RandomAccess list in
+     * parallel. Other objects are copied like {@link #copy(Object)}.
+     *
+     * @throws IllegalArgumentException if the graph has an object that can't be copied
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T copyParallel(T object, ForkJoinPool pool) {
+        if (object == null) return null;
+        Class<?> type = object.getClass();
+        Plan plan = plans.get(type);
+        if (plan instanceof PrimitiveArrayPlan || plan instanceof ObjectArrayPlan && ((ObjectArrayPlan) plan).shared) {
+            int length = Array.getLength(object);
+            if (length < PARALLEL_THRESHOLD) return copy(object);
+            // Values or shared references, the array is copied by slices
+            Object copy = Array.newInstance(type.getComponentType(), length);
+            pool.invoke(new Chunks(0, length, PRIMITIVE_CHUNK,
+                    (from, to) -> System.arraycopy(object, from, copy, from, to - from)));
+            return (T) copy;
+        }
+        Object[] elements;
+        if (plan instanceof ObjectArrayPlan) elements = (Object[]) object;
+        else if (object instanceof RandomAccess && isSplitList(type)) elements = ((List<?>) object).toArray();
+        else return copy(object);
+        if (elements.length < PARALLEL_THRESHOLD) return copy(object);
+
+        SharedTable table = new SharedTable();
+        // The copy is registered before the elements are copied if it can be, so they can refer to it
+        Object[] copies = plan instanceof ObjectArrayPlan
+                ? (Object[]) Array.newInstance(type.getComponentType(), elements.length)
+                : new Object[elements.length];
+        Object copy;
+        if (plan instanceof ObjectArrayPlan) copy = copies;
+        else if (type == ArrayList.class) copy = new ArrayList<>(elements.length);
+        else if (type == Vector.class) copy = new Vector<>(elements.length);
+        else if (type.getName().equals("java.util.Arrays$ArrayList")) copy = Arrays.asList(copies);
+        // Immutable lists are created from their copied elements, a cycle through them can't be copied
+        else copy = null;
+        table.claim(object, null);
+        if (copy != null) table.publish(object, copy);
+
+        List<DeepCopier> copiers = Collections.synchronizedList(new ArrayList<>());
+        try {
+            pool.invoke(new Chunks(0, elements.length, CHUNK, (from, to) -> {
+                DeepCopier copier = new DeepCopier(table);
+                copiers.add(copier);
+                try {
+                    for (int i = from; i < to; i++) copies[i] = copier.copyOf(elements[i]);
+                    copier.drain();
+                } catch (RuntimeException | Error e) {
+                    // The copiers waiting for an object of this one stop too
+                    table.fail(e);
+                    throw e;
+                }
+            }));
+        } catch (RuntimeException e) {
+            // The first failure, the others are copiers that were cancelled by it
+            Throwable failure = table.failure;
+            if (failure instanceof SerialFallback) return copy(object);
+            if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+            throw e;
+        }
+
+        if (copy instanceof ArrayList || copy instanceof Vector) {
+            ((List<Object>) copy).addAll(Arrays.asList(copies));
+        } else if (copy == null) {
+            List<Object> list = new ArrayList<>(Arrays.asList(copies));
+            if (type.getName().startsWith("java.util.Collections$Unmodifiable")) {
+                copy = Collections.unmodifiableList(list);
+            } else {
+                // List.of doesn't take nulls, Stream.toList does
+                copy = list.contains(null) ? list.stream().toList() : List.copyOf(list);
+            }
+        }
+        List<Insert> inserts = new ArrayList<>();
+        for (DeepCopier copier : copiers) inserts.addAll(copier.inserts);
+        Insert.runAll(inserts);
+        return (T) copy;
+    }
+
+    // The lists a parallel copy splits: their copies can be rebuilt from an array of copied elements
+    private static boolean isSplitList(Class<?> type) {
+        String name = type.getName();
+        return type == ArrayList.class || type == Vector.class || name.equals("java.util.Arrays$ArrayList")
+                || name.equals("java.util.ImmutableCollections$ListN")
+                || name.equals("java.util.Collections$UnmodifiableRandomAccessList");
+    }
+
+    // Forgets the copied objects, so the table doesn't keep them alive. Returns false if it is too large to keep
+    private boolean clear() {
+        pending.clear();
+        inserts.clear();
+        if (sources.length > MAX_IDLE_CAPACITY) return false;
+        // A table much larger than this copy needed is replaced, so small copies don't pay for clearing it
+        int capacity = Math.max(64, Integer.highestOneBit(Math.max(1, size)) * 4);
+        if (capacity < sources.length) {
+            sources = new Object[capacity];
+            copies = new Object[capacity];
+            shift = 32 - Integer.numberOfTrailingZeros(capacity);
+        } else if (size > 0) {
+            Arrays.fill(sources, null);
+            Arrays.fill(copies, null);
+        }
+        size = 0;
+        return true;
+    }
+
+    // Returns the copy of an object. The copy may be incomplete until the pending work is drained
+    Object copyOf(Object object) {
+        if (object == null) return null;
+        Plan plan = plans.get(object.getClass());
+        if (plan == SHARE) return object;
+        if (shared != null) {
+            Object copy = shared.claim(object, this);
+            if (copy == null) return plan.copy(object, this);
+            return copy != IN_PROGRESS ? copy : await(object);
+        }
+        Object copy = copyOfCopied(object);
+        if (copy == IN_PROGRESS) throw cycle(object);
+        return copy != null ? copy : plan.copy(object, this);
+    }
+
+    private static IllegalArgumentException cycle(Object source) {
+        return new IllegalArgumentException("Can't copy a cycle through " + source.getClass().getName() + "!");
+    }
+
+    // Returns the copy of an object claimed by another copier of a parallel copy, once the copier has registered it
+    private Object await(Object source) {
+        DeepCopier owner = shared.owner(source);
+        // Claimed by this copier, or the list being copied: a cycle, like IN_PROGRESS on one thread
+        if (owner == this || owner == null) throw cycle(source);
+        waitingFor = source;
+        try {
+            Object copy;
+            while ((copy = shared.claim(source, this)) == IN_PROGRESS) {
+                if (shared.failure != null) throw new CancellationException("Another part of the copy failed");
+                // Copiers that wait for each other in a circle are creating records that contain each other
+                DeepCopier waiting = owner;
+                for (int i = 0; i < 64 && waiting != null; i++) {
+                    Object next = waiting.waitingFor;
+                    if (next == null) break;
+                    waiting = shared.owner(next);
+                    if (waiting == this) throw cycle(source);
+                }
+                Thread.yield();
+            }
+            return copy;
+        } finally {
+            waitingFor = null;
+        }
+    }
+
+    // Returns the complete copy of an object, for the keys of immutable sets and maps, which are hashed or compared
+    // when they are created. The key can refer to any object copied before, so every pending copy is filled and
+    // every hash table and sorted collection met so far is filled too
+    Object completeCopyOf(Object object) {
+        Object copy = copyOf(object);
+        if (shared != null) {
+            // Another copier may still be filling it, the copy is made again on one thread
+            if (copy != object) throw new SerialFallback();
+            return copy;
+        }
+        if (copy != object) {
+            drain();
+            Insert.runAll(inserts);
+            inserts.clear();
+        }
+        return copy;
+    }
+
+    // The copy of an object that was copied before, null if it wasn't
+    private Object copyOfCopied(Object source) {
+        int mask = sources.length - 1;
+        for (int i = (System.identityHashCode(source) * 0x9E3779B9) >>> shift; ; i = (i + 1) & mask) {
+            Object key = sources[i];
+            if (key == source) return copies[i];
+            if (key == null) return null;
+        }
+    }
+
+    void register(Object source, Object copy) {
+        if (shared != null) {
+            shared.publish(source, copy);
+            return;
+        }
+        int mask = sources.length - 1;
+        for (int i = (System.identityHashCode(source) * 0x9E3779B9) >>> shift; ; i = (i + 1) & mask) {
+            Object key = sources[i];
+            if (key == source) {
+                // Replaces IN_PROGRESS
+                copies[i] = copy;
+                return;
+            }
+            if (key == null) {
+                sources[i] = source;
+                copies[i] = copy;
+                // At most half full, so the probes stay short
+                if (++size * 2 > sources.length) grow();
+                return;
+            }
+        }
+    }
+
+    private void grow() {
+        Object[] oldSources = sources, oldCopies = copies;
+        sources = new Object[oldSources.length * 2];
+        copies = new Object[oldSources.length * 2];
+        shift--;
+        size = 0;
+        for (int i = 0; i < oldSources.length; i++) {
+            if (oldSources[i] != null) register(oldSources[i], oldCopies[i]);
+        }
+    }
+
+    void defer(Plan plan, Object source, Object copy) {
+        pending.push(copy);
+        pending.push(source);
+        pending.push(plan);
+    }
+
+    void drain() {
+        drain(0);
+    }
+
+    // Fills the pending copies until the given number of entries are left. The pending work is a stack, so the
+    // entries above the mark are the ones added since
+    private void drain(int mark) {
+        while (pending.size() > mark) {
+            Plan plan = (Plan) pending.pop();
+            Object source = pending.pop();
+            Object copy = pending.pop();
+            plan.fill(source, copy, this);
+        }
+    }
+
+    // Copies made from the copies of their parts can't be registered before their parts are copied
+    void start(Object source) {
+        // In a parallel copy, the claim of the source does the same
+        if (shared == null) register(source, IN_PROGRESS);
+    }
+
+    // Adds the copies of the elements of a hash or sorted set, which must be complete before they are hashed or
+    // compared. The objects they refer to may still be pending, or be filled by another copier of a parallel copy,
+    // so unless they are shared, they are added once every copy is filled
+    void addAll(Collection<?> source, Collection<Object> copy) {
+        if (areShared(source)) {
+            copy.addAll(source);
+        } else {
+            Object[] elements = new Object[source.size()];
+            int i = 0;
+            for (Object element : source) elements[i++] = copyOf(element);
+            inserts.add(new Insert(copy, elements, null));
+        }
+    }
+
+    // Puts the copies of the entries of a map, see addAll
+    void putAll(Map<?, ?> source, Map<Object, Object> copy) {
+        // The keys of an IdentityHashMap are not hashed by their content
+        if (copy instanceof IdentityHashMap || areShared(source.keySet())) {
+            for (Map.Entry<?, ?> entry : source.entrySet()) copy.put(copyOf(entry.getKey()), copyOf(entry.getValue()));
+        } else {
+            Object[] keys = new Object[source.size()], values = new Object[source.size()];
+            int i = 0;
+            for (Map.Entry<?, ?> entry : source.entrySet()) {
+                keys[i] = copyOf(entry.getKey());
+                values[i++] = copyOf(entry.getValue());
+            }
+            inserts.add(new Insert(copy, keys, values));
+        }
+    }
+
+    // True if the copies of the objects are the objects themselves, so they are complete
+    private static boolean areShared(Collection<?> objects) {
+        for (Object object : objects) {
+            if (object != null && plans.get(object.getClass()) != SHARE) return false;
+        }
+        return true;
+    }
+
+    private static MethodHandle allocator() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "allocateInstance", MethodType.methodType(Object.class, Class.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+
+    // How the objects of a class are copied
+    abstract static class Plan {
+        // Copies the object and registers the copy. The copy may be filled later
+        abstract Object copy(Object source, DeepCopier copier);
+
+        // Fills a copy that was deferred
+        void fill(Object source, Object copy, DeepCopier copier) {
+        }
+    }
+
+    // Immutable objects are their own copies
+    private static final Plan SHARE = new Plan() {
+        @Override
+        Object copy(Object source, DeepCopier copier) {
+            return source;
+        }
+    };
+
+    private static Plan plan(Class<?> type) {
+        if (isKnownImmutable(type)) return SHARE;
+        if (type.isArray()) {
+            Class<?> component = type.getComponentType();
+            if (component.isPrimitive()) return new PrimitiveArrayPlan(component);
+            // Arrays of immutables, like String[], only need their references copied
+            return new ObjectArrayPlan(component, isFinalImmutable(component));
+        }
+        Plan collection = collectionPlan(type);
+        if (collection != null) return collection;
+        try {
+            if (type.isRecord()) return recordPlan(type);
+            return new FieldPlan(type);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // The fields are not accessible, i.e. classes of the JDK
+            if (Serializable.class.isAssignableFrom(type)) return SERIALIZE;
+            return new UnsupportedPlan(type, e);
+        }
+    }
+
+    private static boolean isKnownImmutable(Class<?> type) {
+        return type == String.class || type == Integer.class || type == Long.class || type == Double.class
+                || type == Float.class || type == Short.class || type == Byte.class || type == Character.class
+                || type == Boolean.class || type == BigInteger.class || type == BigDecimal.class
+                || type == UUID.class || type == URI.class || type == Locale.class || type == Pattern.class
+                || type == Class.class || Enum.class.isAssignableFrom(type) || type.isHidden()
+                || type.getPackageName().equals("java.time")
+                // The empty collections of Collections are immutable singletons
+                || type == Collections.emptyList().getClass() || type == Collections.emptySet().getClass()
+                || type == Collections.emptyMap().getClass()
+                || type.isRecord() && isImmutableRecord(type, new HashSet<>());
+    }
+
+    // True for a field or component type whose every value is immutable
+    private static boolean isFinalImmutable(Class<?> type) {
+        return type.isPrimitive() || Modifier.isFinal(type.getModifiers()) && !type.isArray() && isKnownImmutable(type);
+    }
+
+    private static boolean isImmutableRecord(Class<?> type, Set<Class<?>> visiting) {
+        // A record that refers to itself has a cycle of records, they are not shared
+        if (!visiting.add(type)) return false;
+        for (RecordComponent component : type.getRecordComponents()) {
+            Class<?> componentType = component.getType();
+            if (componentType.isRecord() ? !isImmutableRecord(componentType, visiting)
+                    : !isFinalImmutable(componentType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class PrimitiveArrayPlan extends Plan {
+        private final Class<?> component;
+
+        PrimitiveArrayPlan(Class<?> component) {
+            this.component = component;
+        }
+
+        @Override
+        Object copy(Object source, DeepCopier copier) {
+            int length = Array.getLength(source);
+            Object copy = Array.newInstance(component, length);
+            System.arraycopy(source, 0, copy, 0, length);
+            copier.register(source, copy);
+            return copy;
+        }
+    }
+
+    private static final class ObjectArrayPlan extends Plan {
+        private final Class<?> component;
+        private final boolean shared;
+
+        ObjectArrayPlan(Class<?> component, boolean shared) {
+            this.component = component;
+            this.shared = shared;
+        }
+
+        @Override
+        Object copy(Object source, DeepCopier copier) {
+            Object[] array = (Object[]) source;
+            Object[] copy = (Object[]) Array.newInstance(component, array.length);
+            copier.register(source, copy);
+            if (shared) System.arraycopy(array, 0, copy, 0, array.length);
+            else copier.defer(this, source, copy);
+            return copy;
+        }
+
+        @Override
+        void fill(Object source, Object copy, DeepCopier copier) {
+            Object[] array = (Object[]) source, target = (Object[]) copy;
+            for (int i = 0; i < array.length; i++) target[i] = copier.copyOf(array[i]);
+        }
+    }
+
+    // Allocates the copy without a constructor and copies every instance field of the class and its superclasses.
+    // The copies of all fields are combined into a single method handle (source, copy, copier) -> void, which the JIT
+    // compiles like a hand written copy method once it is hot
+    private static final class FieldPlan extends Plan {
+        private static final MethodType FILL_TYPE =
+                MethodType.methodType(void.class, Object.class, Object.class, DeepCopier.class);
+
+        private final MethodHandle allocate;
+        private final MethodHandle fill;
+
+        FieldPlan(Class<?> type) throws ReflectiveOperationException {
+            if (Modifier.isAbstract(type.getModifiers())) throw new InstantiationException(type.getName());
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodType objectType = MethodType.methodType(Object.class);
+            if (allocator != null) {
+                allocate = allocator.bindTo(type).asType(objectType);
+            } else {
+                Constructor<?> constructor = type.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                allocate = lookup.unreflectConstructor(constructor).asType(objectType);
+            }
+            MethodHandle copyOf = lookup.findVirtual(DeepCopier.class, "copyOf",
+                    MethodType.methodType(Object.class, Object.class));
+            MethodHandle fields = MethodHandles.empty(FILL_TYPE);
+            for (Class<?> c = type; c != Object.class && c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) continue;
+                    // Throws for the fields of classes in modules that are not open to this library
+                    field.setAccessible(true);
+                    Class<?> fieldType = field.getType();
+                    MethodHandle step;
+                    if (isFinalImmutable(fieldType)) {
+                        // Primitives and immutables: copy.field = source.field, without boxing
+                        MethodHandle getter = lookup.unreflectGetter(field)
+                                .asType(MethodType.methodType(fieldType, Object.class));
+                        MethodHandle setter = lookup.unreflectSetter(field)
+                                .asType(MethodType.methodType(void.class, Object.class, fieldType));
+                        // (copy, source) -> void
+                        step = MethodHandles.filterArguments(setter, 1, getter);
+                        step = MethodHandles.permuteArguments(step, FILL_TYPE, 1, 0);
+                    } else {
+                        // copy.field = copier.copyOf(source.field)
+                        MethodHandle getter = lookup.unreflectGetter(field)
+                                .asType(MethodType.methodType(Object.class, Object.class));
+                        MethodHandle setter = lookup.unreflectSetter(field)
+                                .asType(MethodType.methodType(void.class, Object.class, Object.class));
+                        // (copier, source) -> copy of the value
+                        MethodHandle value = MethodHandles.filterArguments(copyOf, 1, getter);
+                        // (copy, copier, source) -> void
+                        step = MethodHandles.collectArguments(setter, 1, value);
+                        step = MethodHandles.permuteArguments(step, FILL_TYPE, 1, 2, 0);
+                    }
+                    // The step runs before the fields combined so far
+                    fields = MethodHandles.foldArguments(fields, step);
+                }
+            }
+            fill = fields;
+        }
+
+        @Override
+        Object copy(Object source, DeepCopier copier) {
+            Object copy;
+            try {
+                copy = (Object) allocate.invokeExact();
+            } catch (Throwable e) {
+                throw new IllegalArgumentException("Can't create a " + source.getClass().getName() + "!", e);
+            }
+            copier.register(source, copy);
+            copier.defer(this, source, copy);
+            return copy;
+        }
+
+        @Override
+        void fill(Object source, Object copy, DeepCopier copier) {
+            try {
+                fill.invokeExact(source, copy, copier);
+            } catch (IllegalArgumentException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalArgumentException("Can't copy the fields of " + source.getClass().getName() + "!", e);
+            }
+        }
+    }
+
+    // Records have final fields that can't be set, they are created with their canonical constructor
+    private static Plan recordPlan(Class<?> type) throws ReflectiveOperationException {
+        RecordComponent[] components = type.getRecordComponents();
+        Class<?>[] types = new Class<?>[components.length];
+        MethodHandle[] accessors = new MethodHandle[components.length];
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodType getterType = MethodType.methodType(Object.class, Object.class);
+        for (int i = 0; i < components.length; i++) {
+            types[i] = components[i].getType();
+            Method accessor = components[i].getAccessor();
+            accessor.setAccessible(true);
+            accessors[i] = lookup.unreflect(accessor).asType(getterType);
+        }
+        Constructor<?> constructor = type.getDeclaredConstructor(types);
+        constructor.setAccessible(true);
+        MethodHandle create = lookup.unreflectConstructor(constructor)
+                .asSpreader(Object[].class, components.length)
+                .asType(MethodType.methodType(Object.class, Object[].class));
+        return new Plan() {
+            @Override
+            Object copy(Object source, DeepCopier copier) {
+                copier.start(source);
+                try {
+                    Object[] values = new Object[accessors.length];
+                    for (int i = 0; i < accessors.length; i++) {
+                        values[i] = copier.copyOf((Object) accessors[i].invokeExact(source));
+                    }
+                    Object copy = (Object) create.invokeExact(values);
+                    copier.register(source, copy);
+                    return copy;
+                } catch (IllegalArgumentException e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new IllegalArgumentException("Can't create a " + type.getName() + "!", e);
+                }
+            }
+        };
+    }
+
+    // The fields of the JDK classes are not accessible, but these are Serializable
+    private static final Plan SERIALIZE = new Plan() {
+        @Override
+        Object copy(Object source, DeepCopier copier) {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+                    output.writeObject(source);
+                }
+                Object copy;
+                try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                    copy = input.readObject();
+                }
+                copier.register(source, copy);
+                return copy;
+            } catch (IOException | ClassNotFoundException e) {
+                throw new IllegalArgumentException("Can't serialize " + source.getClass().getName() + "!", e);
+            }
+        }
+    };
+
+    private static final class UnsupportedPlan extends Plan {
+        private final Class<?> type;
+        private final Exception cause;
+
+        UnsupportedPlan(Class<?> type, Exception cause) {
+            this.type = type;
+            this.cause = cause;
+        }
+
+        @Override
+        Object copy(Object source, DeepCopier copier) {
+            throw new IllegalArgumentException("Can't deep copy " + type.getName()
+                    + ", its fields are not accessible and it is not Serializable!", cause);
+        }
+    }
+
+    // Plans of the common collections of java.util, null for other classes
+    @SuppressWarnings("unchecked")
+    private static Plan collectionPlan(Class<?> type) {
+        if (type == ArrayList.class) return new ListPlan(ArrayList::new);
+        if (type == LinkedList.class) return new ListPlan(size -> new LinkedList<>());
+        if (type == Vector.class) return new ListPlan(Vector::new);
+        if (type == ArrayDeque.class) return new ListPlan(ArrayDeque::new);
+        if (type == HashSet.class) return new SetPlan(size -> new HashSet<>(capacity(size)));
+        if (type == LinkedHashSet.class) return new SetPlan(size -> new LinkedHashSet<>(capacity(size)));
+        if (type == HashMap.class) return new MapPlan(size -> new HashMap<>(capacity(size)));
+        if (type == LinkedHashMap.class) return new MapPlan(size -> new LinkedHashMap<>(capacity(size)));
+        if (type == ConcurrentHashMap.class) return new MapPlan(ConcurrentHashMap::new);
+        if (type == IdentityHashMap.class) return new MapPlan(IdentityHashMap::new);
+        if (type == TreeSet.class) {
+            return new Plan() {
+                @Override
+                Object copy(Object source, DeepCopier copier) {
+                    TreeSet<Object> set = (TreeSet<Object>) source;
+                    // Comparators are shared, like lambdas
+                    TreeSet<Object> copy = new TreeSet<>(set.comparator());
+                    copier.register(source, copy);
+                    copier.addAll(set, copy);
+                    return copy;
+                }
+            };
+        }
+        if (type == TreeMap.class) {
+            return new Plan() {
+                @Override
+                Object copy(Object source, DeepCopier copier) {
+                    TreeMap<Object, Object> map = (TreeMap<Object, Object>) source;
+                    TreeMap<Object, Object> copy = new TreeMap<>(map.comparator());
+                    copier.register(source, copy);
+                    copier.putAll(map, copy);
+                    return copy;
+                }
+            };
+        }
+        if (EnumSet.class.isAssignableFrom(type)) {
+            // Enums are shared, so a shallow copy is a deep one
+            return new Plan() {
+                @Override
+                Object copy(Object source, DeepCopier copier) {
+                    Object copy = ((EnumSet<?>) source).clone();
+                    copier.register(source, copy);
+                    return copy;
+                }
+            };
+        }
+        if (type == EnumMap.class) {
+            return new Plan() {
+                @Override
+                Object copy(Object source, DeepCopier copier) {
+                    EnumMap<?, Object> copy = new EnumMap<>((EnumMap<?, Object>) source);
+                    copier.register(source, copy);
+                    copy.replaceAll((key, value) -> copier.copyOf(value));
+                    return copy;
+                }
+            };
+        }
+        if (type == Optional.class) {
+            return new Plan() {
+                @Override
+                Object copy(Object source, DeepCopier copier) {
+                    copier.start(source);
+                    Object copy = Optional.ofNullable(copier.copyOf(((Optional<?>) source).orElse(null)));
+                    copier.register(source, copy);
+                    return copy;
+                }
+            };
+        }
+        return immutableCollectionPlan(type);
+    }
+
+    // Plans of the immutable and wrapper collections of List.of, Arrays.asList, Collections.singletonList etc.
+    @SuppressWarnings("unchecked")
+    private static Plan immutableCollectionPlan(Class<?> type) {
+        // Their iterators and other helper classes are not collections
+        if (!Collection.class.isAssignableFrom(type) && !Map.class.isAssignableFrom(type)) return null;
+        String name = type.getName();
+        if (name.equals("java.util.Arrays$ArrayList")) {
+            return new Plan() {
+                @Override
+                Object copy(Object source, DeepCopier copier) {
+                    Object[] array = ((List<?>) source).toArray();
+                    // The copy of the list is backed by the array, so it can be registered before the elements are
+                    List<Object> copy = Arrays.asList(array);
+                    copier.register(source, copy);
+                    for (int i = 0; i < array.length; i++) array[i] = copier.copyOf(array[i]);
+                    return copy;
+                }
+            };
+        }
+        boolean immutable = name.startsWith("java.util.ImmutableCollections$");
+        boolean singleton = name.startsWith("java.util.Collections$Singleton");
+        boolean unmodifiable = name.startsWith("java.util.Collections$Unmodifiable");
+        if (!immutable && !singleton && !unmodifiable) return null;
+        // The elements are copied before the collection can be created
+        return new Plan() {
+            @Override
+            Object copy(Object source, DeepCopier copier) {
+                copier.start(source);
+                Object copy;
+                if (source instanceof List) {
+                    List<Object> elements = new ArrayList<>(((List<?>) source).size());
+                    for (Object element : (List<?>) source) elements.add(copier.copyOf(element));
+                    if (singleton) copy = Collections.singletonList(elements.get(0));
+                    else if (unmodifiable) copy = Collections.unmodifiableList(elements);
+                    // List.of doesn't take nulls, Stream.toList does
+                    else copy = elements.contains(null) ? elements.stream().toList() : List.copyOf(elements);
+                } else if (source instanceof Set) {
+                    Set<Object> elements = source instanceof SortedSet
+                            ? new TreeSet<>(((SortedSet<Object>) source).comparator())
+                            : new LinkedHashSet<>(capacity(((Set<?>) source).size()));
+                    for (Object element : (Set<?>) source) elements.add(copier.completeCopyOf(element));
+                    if (singleton) copy = Collections.singleton(elements.iterator().next());
+                    else if (unmodifiable) copy = source instanceof SortedSet
+                            ? Collections.unmodifiableSortedSet((SortedSet<Object>) elements)
+                            : Collections.unmodifiableSet(elements);
+                    else copy = Set.copyOf(elements);
+                } else if (source instanceof Map) {
+                    Map<Object, Object> entries = source instanceof SortedMap
+                            ? new TreeMap<>(((SortedMap<Object, Object>) source).comparator())
+                            : new LinkedHashMap<>(capacity(((Map<?, ?>) source).size()));
+                    for (Map.Entry<?, ?> entry : ((Map<?, ?>) source).entrySet()) {
+                        entries.put(copier.completeCopyOf(entry.getKey()), copier.copyOf(entry.getValue()));
+                    }
+                    if (singleton) {
+                        Map.Entry<Object, Object> entry = entries.entrySet().iterator().next();
+                        copy = Collections.singletonMap(entry.getKey(), entry.getValue());
+                    } else if (unmodifiable) {
+                        copy = source instanceof SortedMap
+                                ? Collections.unmodifiableSortedMap((SortedMap<Object, Object>) entries)
+                                : Collections.unmodifiableMap(entries);
+                    } else {
+                        copy = Map.copyOf(entries);
+                    }
+                } else {
+                    // Collections.unmodifiableCollection
+                    List<Object> elements = new ArrayList<>();
+                    for (Object element : (Collection<?>) source) elements.add(copier.copyOf(element));
+                    copy = Collections.unmodifiableCollection(elements);
+                }
+                copier.register(source, copy);
+                return copy;
+            }
+        };
+    }
+
+    // Initial capacity of a hash table that holds the given number of entries without resizing
+    private static int capacity(int size) {
+        return (int) Math.min(Integer.MAX_VALUE, size * 4L / 3 + 1);
+    }
+
+    // Rebuilds a list or deque with copied elements
+    private static final class ListPlan extends Plan {
+        private final IntFunction<Collection<Object>> create;
+
+        ListPlan(IntFunction<Collection<Object>> create) {
+            this.create = create;
+        }
+
+        @Override
+        Object copy(Object source, DeepCopier copier) {
+            Collection<?> collection = (Collection<?>) source;
+            Collection<Object> copy = create.apply(collection.size());
+            copier.register(source, copy);
+            for (Object element : collection) copy.add(copier.copyOf(element));
+            return copy;
+        }
+    }
+
+    // Rebuilds a hash set. The elements must be complete before they are hashed
+    private static final class SetPlan extends Plan {
+        private final IntFunction<Set<Object>> create;
+
+        SetPlan(IntFunction<Set<Object>> create) {
+            this.create = create;
+        }
+
+        @Override
+        Object copy(Object source, DeepCopier copier) {
+            Set<?> set = (Set<?>) source;
+            Set<Object> copy = create.apply(set.size());
+            copier.register(source, copy);
+            copier.addAll(set, copy);
+            return copy;
+        }
+    }
+
+    // Rebuilds a map. The keys must be complete before they are hashed
+    private static final class MapPlan extends Plan {
+        private final IntFunction<Map<Object, Object>> create;
+
+        MapPlan(IntFunction<Map<Object, Object>> create) {
+            this.create = create;
+        }
+
+        @Override
+        Object copy(Object source, DeepCopier copier) {
+            Map<?, ?> map = (Map<?, ?>) source;
+            Map<Object, Object> copy = create.apply(map.size());
+            copier.register(source, copy);
+            copier.putAll(map, copy);
+            return copy;
+        }
+    }
+
+    // The identity table of a parallel copy. It is cut into segments by the hash of the objects, and every segment
+    // is an open addressing table with its own lock, so the copiers rarely wait for each other's lookups
+    private static final class SharedTable {
+        private static final int SEGMENT_BITS = 6;
+
+        private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+        // The first exception of a copier, the others stop when they see it
+        private volatile Throwable failure;
+
+        SharedTable() {
+            for (int i = 0; i < segments.length; i++) segments[i] = new Segment();
+        }
+
+        // Claims an object for a copier and returns null if it wasn't met before. Otherwise returns its copy, or
+        // IN_PROGRESS if the copier that claimed it hasn't registered the copy yet
+        Object claim(Object source, DeepCopier copier) {
+            int hash = hash(source);
+            return segments[hash >>> (32 - SEGMENT_BITS)].claim(source, hash << SEGMENT_BITS, copier);
+        }
+
+        void publish(Object source, Object copy) {
+            int hash = hash(source);
+            segments[hash >>> (32 - SEGMENT_BITS)].publish(source, hash << SEGMENT_BITS, copy);
+        }
+
+        DeepCopier owner(Object source) {
+            int hash = hash(source);
+            return segments[hash >>> (32 - SEGMENT_BITS)].owner(source, hash << SEGMENT_BITS);
+        }
+
+        private static int hash(Object source) {
+            return System.identityHashCode(source) * 0x9E3779B9;
+        }
+
+        synchronized void fail(Throwable e) {
+            if (failure == null) failure = e;
+        }
+    }
+
+    // A segment of the shared table. The hash given to it is shifted past the bits that chose the segment
+    private static final class Segment {
+        private Object[] sources = new Object[64];
+        // Null until the copy is registered
+        private Object[] copies = new Object[64];
+        // The copier that claimed the object, null for the list that is split
+        private DeepCopier[] owners = new DeepCopier[64];
+        private int size;
+        private int shift = 32 - 6;
+
+        synchronized Object claim(Object source, int hash, DeepCopier copier) {
+            int i = indexOf(source, hash);
+            if (sources[i] == source) return copies[i] != null ? copies[i] : IN_PROGRESS;
+            sources[i] = source;
+            owners[i] = copier;
+            if (++size * 2 > sources.length) grow();
+            return null;
+        }
+
+        synchronized void publish(Object source, int hash, Object copy) {
+            copies[indexOf(source, hash)] = copy;
+        }
+
+        synchronized DeepCopier owner(Object source, int hash) {
+            return owners[indexOf(source, hash)];
+        }
+
+        // The slot of the object, or the empty slot where it goes
+        private int indexOf(Object source, int hash) {
+            int mask = sources.length - 1;
+            int i = hash >>> shift;
+            while (sources[i] != source && sources[i] != null) i = (i + 1) & mask;
+            return i;
+        }
+
+        private void grow() {
+            Object[] oldSources = sources, oldCopies = copies;
+            DeepCopier[] oldOwners = owners;
+            sources = new Object[oldSources.length * 2];
+            copies = new Object[oldSources.length * 2];
+            owners = new DeepCopier[oldSources.length * 2];
+            shift--;
+            for (int j = 0; j < oldSources.length; j++) {
+                if (oldSources[j] == null) continue;
+                int i = indexOf(oldSources[j], SharedTable.hash(oldSources[j]) << SharedTable.SEGMENT_BITS);
+                sources[i] = oldSources[j];
+                copies[i] = oldCopies[j];
+                owners[i] = oldOwners[j];
+            }
+        }
+    }
+
+    // The entries of a hash table or sorted collection, inserted after every copy is filled
+    private static final class Insert {
+        private final Object target;
+        private final Object[] keys;
+        // Null for a set
+        private final Object[] values;
+        // The hash codes of the keys when they were inserted, null for sorted collections
+        private int[] hashes;
+
+        Insert(Object target, Object[] keys, Object[] values) {
+            this.target = target;
+            this.keys = keys;
+            this.values = values;
+        }
+
+        static void runAll(List<Insert> inserts) {
+            // The collections met later are usually inside the keys of the ones met before, they go first
+            for (int i = inserts.size() - 1; i >= 0; i--) inserts.get(i).run();
+            // A key that contains a hash table or set is hashed again if it was inserted before the table was filled.
+            // Every round fills one more level of such keys
+            boolean stale = true;
+            for (int round = 0; stale && round <= inserts.size(); round++) {
+                stale = false;
+                for (int i = inserts.size() - 1; i >= 0; i--) {
+                    Insert insert = inserts.get(i);
+                    if (insert.isStale()) {
+                        if (insert.target instanceof Map) ((Map<?, ?>) insert.target).clear();
+                        else ((Collection<?>) insert.target).clear();
+                        insert.run();
+                        stale = true;
+                    }
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void run() {
+            boolean hashed = !(target instanceof SortedSet || target instanceof SortedMap);
+            if (hashed) hashes = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                if (hashed) hashes[i] = Objects.hashCode(keys[i]);
+                if (values == null) ((Collection<Object>) target).add(keys[i]);
+                else ((Map<Object, Object>) target).put(keys[i], values[i]);
+            }
+        }
+
+        private boolean isStale() {
+            if (hashes == null) return false;
+            for (int i = 0; i < keys.length; i++) {
+                if (hashes[i] != Objects.hashCode(keys[i])) return true;
+            }
+            return false;
+        }
+    }
+
+    // Thrown by a copier of a parallel copy that can't be done in parallel: an immutable set or map whose elements
+    // are not shared must be created from complete copies, which another copier may still be filling
+    private static final class SerialFallback extends RuntimeException {
+        SerialFallback() {
+            super(null, null, false, false);
+        }
+    }
+
+    // Calls an action on ranges of indexes, split in halves until they are small enough
+    private static final class Chunks extends RecursiveAction {
+        interface Action {
+            void run(int from, int to);
+        }
+
+        private final int from, to, size;
+        private final Action action;
+
+        Chunks(int from, int to, int size, Action action) {
+            this.from = from;
+            this.to = to;
+            this.size = size;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= size) {
+                action.run(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Chunks(from, middle, size, action), new Chunks(middle, to, size, action));
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package myJavaLib;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * External (out-of-core) sort of binary files of fixed-width ints or longs, which can be larger than the heap.
+ * Use {@link Sorting#externalSortInts(String, String, long)} and {@link Sorting#externalSortLongs(String, String, long)}
+ * instead of this class.
+ * <p>
+ * The file is cut into runs that fit in the memory limit with their write buffer. Every run is read through a
+ * memory-mapped segment, sorted with the parallel in-memory QuickSort and written to a temporary file next to the
+ * output. The runs are then merged with a {@link LoserTree}. If there are too many runs for the merge buffers to fit
+ * in the memory limit, they are merged in several passes. The memory limit must leave room for a merge of two runs.
+ */
+final class ExternalSort {
+
+    // Maximum size of the buffer used for writing a sorted run, it is smaller if the memory limit is small
+    private static final int IO_BUFFER = 1 << 20;
+    // Every source of a merge gets at least this much buffer, otherwise the merge is split into passes
+    private static final int MIN_MERGE_BUFFER = 1 << 16;
+    // Smallest memory limit: the buffers of two runs and of the output of their merge
+    static final long MIN_MEMORY = 3L * MIN_MERGE_BUFFER;
+    // Every source of a merge gets at most this much buffer
+    private static final int MAX_MERGE_BUFFER = 1 << 26;
+    // Runs are mapped in segments of at most this many bytes
+    private static final int MAP_SEGMENT = 1 << 30;
+
+    private ExternalSort() {
+    }
+
+    /**
+     * Sorts the input file into the output file.
+     *
+     * @param width       size of one element in bytes, 4 for ints and 8 for longs
+     * @param memoryLimit the maximum number of bytes used for the run array and the buffers
+     * @throws IllegalArgumentException if the memory limit is less than {@link #MIN_MEMORY}
+     */
+    static void sort(Path input, Path output, int width, ByteOrder order, long memoryLimit, ForkJoinPool pool)
+            throws IOException {
+        if (memoryLimit < MIN_MEMORY) {
+            throw new IllegalArgumentException("Memory limit must be at least " + MIN_MEMORY + " bytes!");
+        }
+        if (Files.exists(output) && Files.isSameFile(input, output)) {
+            throw new IOException("The output file must be different from the input file");
+        }
+        long size = Files.size(input);
+        if (size % width != 0) {
+            throw new IOException("File size " + size + " is not a multiple of " + width + " bytes");
+        }
+        long count = size / width;
+        // The run array and its write buffer share the memory limit
+        int writeBuffer = (int) Math.min(IO_BUFFER, memoryLimit / 8 / width * width);
+        int runLength = (int) Math.min(Integer.MAX_VALUE - 8, (memoryLimit - writeBuffer) / width);
+        Path directory = output.toAbsolutePath().getParent();
+
+        List<Path> runs = new ArrayList<>();
+        try {
+            try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+                // A file that fits in memory is sorted directly into the output
+                if (count <= runLength) {
+                    sortRun(in, 0, newArray(width, (int) count), output, width, order, writeBuffer, pool);
+                    return;
+                }
+                // Sort the runs into temporary files, the array is reused for every run except the shorter last one
+                Object array = newArray(width, runLength);
+                for (long start = 0; start < count; start += runLength) {
+                    int len = (int) Math.min(runLength, count - start);
+                    if (len != runLength) array = newArray(width, len);
+                    Path run = Files.createTempFile(directory, "myJavaLib-run-", ".tmp");
+                    runs.add(run);
+                    sortRun(in, start, array, run, width, order, writeBuffer, pool);
+                }
+            }
+
+            // Merge groups of runs until the last merge fits in the memory limit, at least two as the limit is checked
+            int maxFanIn = (int) Math.min(Integer.MAX_VALUE, memoryLimit / MIN_MERGE_BUFFER - 1);
+            while (runs.size() > maxFanIn) {
+                List<Path> merged = new ArrayList<>();
+                for (int i = 0; i < runs.size(); i += maxFanIn) {
+                    List<Path> group = runs.subList(i, Math.min(i + maxFanIn, runs.size()));
+                    if (group.size() == 1) {
+                        merged.add(group.get(0));
+                        continue;
+                    }
+                    Path target = Files.createTempFile(directory, "myJavaLib-run-", ".tmp");
+                    merged.add(target);
+                    merge(group, target, width, order, memoryLimit);
+                    for (Path run : group) Files.deleteIfExists(run);
+                }
+                runs = merged;
+            }
+            merge(runs, output, width, order, memoryLimit);
+        } finally {
+            // Temporary files are removed even if the sort fails
+            for (Path run : runs) Files.deleteIfExists(run);
+        }
+    }
+
+    private static Object newArray(int width, int len) {
+        return width == Integer.BYTES ? new int[len] : new long[len];
+    }
+
+    // Reads array.length elements starting at element start, sorts them and writes them to the target file through
+    // a buffer of bufferSize bytes, a multiple of width
+    private static void sortRun(FileChannel in, long start, Object array, Path target, int width, ByteOrder order,
+                                int bufferSize, ForkJoinPool pool) throws IOException {
+        int len = Array.getLength(array);
+        int perSegment = MAP_SEGMENT / width;
+
+        // Read the run through memory-mapped segments
+        for (int pos = 0; pos < len; pos += perSegment) {
+            int n = Math.min(perSegment, len - pos);
+            MappedByteBuffer segment = in.map(FileChannel.MapMode.READ_ONLY, (start + pos) * width, (long) n * width);
+            segment.order(order);
+            if (width == Integer.BYTES) segment.asIntBuffer().get((int[]) array, pos, n);
+            else segment.asLongBuffer().get((long[]) array, pos, n);
+        }
+
+        // QuickSort sorts in place, so the run array is the only large allocation
+        if (width == Integer.BYTES) Sorting.quickSort((int[]) array, pool);
+        else Sorting.quickSort((long[]) array, pool);
+
+        // Write the sorted run
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize).order(order);
+        int perBuffer = bufferSize / width;
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int pos = 0; pos < len; pos += perBuffer) {
+                int n = Math.min(perBuffer, len - pos);
+                buffer.clear();
+                if (width == Integer.BYTES) buffer.asIntBuffer().put((int[]) array, pos, n);
+                else buffer.asLongBuffer().put((long[]) array, pos, n);
+                buffer.limit(n * width);
+                while (buffer.hasRemaining()) out.write(buffer);
+            }
+        }
+    }
+
+    // K-way merge of sorted run files into the target file
+    private static void merge(List<Path> runs, Path target, int width, ByteOrder order, long memoryLimit)
+            throws IOException {
+        int k = runs.size();
+        // The memory limit is shared by the k readers and the writer, k is small enough for MIN_MERGE_BUFFER each
+        long share = Math.min(MAX_MERGE_BUFFER, memoryLimit / (k + 1));
+        int bufferSize = (int) (share - share % width);
+
+        RunReader[] readers = new RunReader[k];
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int i = 0; i < k; i++) readers[i] = new RunReader(runs.get(i), bufferSize, width, order);
+
+            LoserTree tree = new LoserTree(k) {
+                @Override
+                boolean before(int a, int b) {
+                    RunReader x = readers[a], y = readers[b];
+                    if (x.exhausted || y.exhausted) return !x.exhausted;
+                    return x.head < y.head || (x.head == y.head && a < b);
+                }
+            };
+            tree.init();
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize).order(order);
+            while (true) {
+                RunReader winner = readers[tree.winner()];
+                // The winner is exhausted only when every run is
+                if (winner.exhausted) break;
+                if (buffer.remaining() < width) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) out.write(buffer);
+                    buffer.clear();
+                }
+                if (width == Integer.BYTES) buffer.putInt((int) winner.head);
+                else buffer.putLong(winner.head);
+                winner.advance();
+                tree.replay();
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) out.write(buffer);
+        } finally {
+            for (RunReader reader : readers) {
+                if (reader != null) reader.close();
+            }
+        }
+    }
+
+    // Buffered sequential reader of a sorted run, ints are widened to long
+    private static final class RunReader implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final int width;
+        long head;
+        boolean exhausted;
+
+        RunReader(Path path, int bufferSize, int width, ByteOrder order) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.buffer = ByteBuffer.allocateDirect(bufferSize).order(order);
+            this.width = width;
+            // Start with an empty buffer, the first advance fills it
+            buffer.flip();
+            advance();
+        }
+
+        // Moves to the next element of the run
+        void advance() throws IOException {
+            if (buffer.remaining() < width) {
+                buffer.compact();
+                // Fill the buffer, unless the end of the file comes first
+                int read = 0;
+                while (buffer.hasRemaining() && read != -1) read = channel.read(buffer);
+                buffer.flip();
+                if (buffer.remaining() < width) {
+                    exhausted = true;
+                    return;
+                }
+            }
+            head = width == Integer.BYTES ? buffer.getInt() : buffer.getLong();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package myJavaLib;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of serialized objects, the format of {@link Data.RecordLog}. Use the methods of Data instead of this
+ * class.
+ * <p>
+ * The file starts with a magic number and a version, followed by one frame per record: the length of the payload,
+ * the CRC32C of the payload, and the payload, which is the object serialized on its own. A sidecar file with the
+ * {@code .idx} suffix holds the offset of every frame as 8 bytes, so record n is found by reading the index at 8 * n.
+ * <p>
+ * The index is written after the frame, so after a crash it can lag behind the log, and the last frame can be torn.
+ * Opening a log checks the last indexed frame, indexes the complete frames after it and cuts the rest.
+ */
+final class FramedLog implements Closeable {
+    // "MJLR", followed by the version
+    static final int MAGIC = 0x4D4A4C52;
+    static final int VERSION = 1;
+    static final int HEADER = 8;
+    // Length and checksum of the payload
+    static final int FRAME_HEADER = 8;
+    static final String INDEX_SUFFIX = ".idx";
+    // Size of the buffer used for reading frames sequentially
+    private static final int IO_BUFFER = 1 << 16;
+
+    private final Path path;
+    private final FileChannel log;
+    private final FileChannel index;
+    // Number of records, and the end of the last complete frame
+    private long count;
+    private long end;
+    // Reused by the batches, so a large batch doesn't allocate its frames again every time
+    private ByteBuffer frames = ByteBuffer.allocateDirect(0);
+    private ByteBuffer offsets = ByteBuffer.allocateDirect(0);
+
+    private FramedLog(Path path, FileChannel log, FileChannel index) {
+        this.path = path;
+        this.log = log;
+        this.index = index;
+    }
+
+    /**
+     * Opens a log, or creates it if the file doesn't exist or is empty. A torn tail is cut and the frames that are
+     * missing from the index are added to it.
+     *
+     * @throws IOException if the file is not a record log or can't be opened
+     */
+    static FramedLog open(Path path) throws IOException {
+        FileChannel log = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        FileChannel index = null;
+        try {
+            index = FileChannel.open(indexPath(path), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            FramedLog framedLog = new FramedLog(path, log, index);
+            framedLog.recover();
+            return framedLog;
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            if (index != null) index.close();
+            throw e;
+        }
+    }
+
+    static Path indexPath(Path path) {
+        return path.resolveSibling(path.getFileName() + INDEX_SUFFIX);
+    }
+
+    /**
+     * @return true if the file starts with the magic number of a record log
+     */
+    static boolean isLog(Path path) throws IOException {
+        if (!Files.isRegularFile(path) || Files.size(path) < HEADER) return false;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            readFully(channel, header, 0);
+            return header.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Deletes a log and its index.
+     */
+    static void delete(Path path) throws IOException {
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(indexPath(path));
+    }
+
+    private void recover() throws IOException {
+        long size = log.size();
+        if (size == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(VERSION).flip();
+            writeFully(log, header, 0);
+            index.truncate(0);
+            end = HEADER;
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        if (size < HEADER || readFully(log, header, 0) < HEADER || header.getInt(0) != MAGIC) {
+            throw new IOException(path + " is not a record log");
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IOException(path + " has the unknown record log version " + header.getInt(4));
+        }
+        // The last indexed frame that is complete, usually the last one. A partial offset at the end is ignored
+        long indexed = index.size() / Long.BYTES;
+        end = HEADER;
+        while (indexed > 0) {
+            long offset = offset(indexed - 1);
+            long frameEnd = offset >= HEADER ? frameEnd(offset, size) : -1;
+            if (frameEnd > 0) {
+                end = frameEnd;
+                break;
+            }
+            indexed--;
+        }
+        count = indexed;
+        // Index the frames that were written after the last indexed one, up to the first torn or corrupt frame
+        ByteBuffer offsets = ByteBuffer.allocate(IO_BUFFER);
+        index.position(count * Long.BYTES);
+        for (long next; (next = frameEnd(end, size)) > 0; end = next) {
+            if (!offsets.hasRemaining()) {
+                index.write(offsets.flip());
+                offsets.clear();
+            }
+            offsets.putLong(end);
+            count++;
+        }
+        index.write(offsets.flip());
+        index.truncate(count * Long.BYTES);
+        log.truncate(end);
+    }
+
+    // The end of the frame at the offset if it is complete and its checksum is right, -1 otherwise
+    private long frameEnd(long offset, long size) throws IOException {
+        if (offset + FRAME_HEADER > size) return -1;
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER);
+        readFully(log, header, offset);
+        int length = header.getInt(0);
+        if (length < 0 || offset + FRAME_HEADER + length > size) return -1;
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(log, payload, offset + FRAME_HEADER);
+        return checksum(payload.array(), 0, length) == header.getInt(4) ? offset + FRAME_HEADER + length : -1;
+    }
+
+    // The offset of a frame from the index
+    private long offset(long number) throws IOException {
+        return offset(index, number);
+    }
+
+    /**
+     * @return the offset of a frame from an index
+     */
+    static long offset(FileChannel index, long number) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        if (readFully(index, buffer, number * Long.BYTES) < Long.BYTES) throw new EOFException("Truncated index");
+        return buffer.getLong(0);
+    }
+
+    /**
+     * @return the number of records of an index that point inside a log of the given size. An index that is ahead of
+     * the log after a crash has offsets past its end
+     */
+    static long indexed(FileChannel index, long size) throws IOException {
+        long indexed = index.size() / Long.BYTES;
+        while (indexed > 0 && offset(index, indexed - 1) >= size) indexed--;
+        return indexed;
+    }
+
+    /**
+     * @return the offset of the last indexed frame of a log of the given size, HEADER without an index. Only the
+     * frames from there on can be torn by a crash
+     */
+    static long tail(Path path, long size) throws IOException {
+        Path indexPath = indexPath(path);
+        if (!Files.exists(indexPath)) return HEADER;
+        try (FileChannel index = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            long indexed = indexed(index, size);
+            return indexed > 0 ? offset(index, indexed - 1) : HEADER;
+        }
+    }
+
+    /**
+     * Appends an object, serialized on its own.
+     *
+     * @return the number of the record
+     */
+    long append(Object object) throws IOException {
+        byte[] payload = serialize(object);
+        return append(payload, 0, payload.length);
+    }
+
+    /**
+     * Appends a serialized payload as one frame.
+     *
+     * @return the number of the record
+     */
+    synchronized long append(byte[] payload, int offset, int length) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER + length);
+        frame.putInt(length).putInt(checksum(payload, offset, length)).put(payload, offset, length).flip();
+        writeFully(log, frame, end);
+        // The index is written after the frame, so an index entry never points to a frame that wasn't written
+        writeFully(index, ByteBuffer.allocate(Long.BYTES).putLong(0, end), count * Long.BYTES);
+        end += FRAME_HEADER + length;
+        return count++;
+    }
+
+    /**
+     * Appends serialized payloads with one write to the log and one to the index.
+     *
+     * @return the number of the first record
+     */
+    synchronized long appendAll(List<byte[]> payloads) throws IOException {
+        long bytes = 0;
+        for (byte[] payload : payloads) bytes += FRAME_HEADER + payload.length;
+        if (bytes > Integer.MAX_VALUE) throw new IOException("Batch of " + bytes + " bytes is too large");
+        // Grown to at least twice their size, so a slowly growing batch size doesn't reallocate them every time
+        if (frames.capacity() < bytes) {
+            long capacity = Math.min(Integer.MAX_VALUE, Math.max(bytes, frames.capacity() * 2L));
+            frames = ByteBuffer.allocateDirect((int) capacity);
+        }
+        if (offsets.capacity() < payloads.size() * Long.BYTES) {
+            offsets = ByteBuffer.allocateDirect(Math.max(payloads.size() * Long.BYTES, offsets.capacity() * 2));
+        }
+        frames.clear();
+        offsets.clear();
+        long offset = end;
+        for (byte[] payload : payloads) {
+            frames.putInt(payload.length).putInt(checksum(payload, 0, payload.length)).put(payload);
+            offsets.putLong(offset);
+            offset += FRAME_HEADER + payload.length;
+        }
+        writeFully(log, frames.flip(), end);
+        writeFully(index, offsets.flip(), count * Long.BYTES);
+        long first = count;
+        end = offset;
+        count += payloads.size();
+        return first;
+    }
+
+    /**
+     * Reads a record by its number, with two reads of the index and the log.
+     *
+     * @throws IOException if the frame is corrupt or the object can't be deserialized
+     */
+    Object read(long number) throws IOException {
+        long offset, limit;
+        synchronized (this) {
+            if (number < 0 || number >= count) {
+                throw new IllegalArgumentException("Record " + number + " is out of range, the log has " + count
+                        + " records!");
+            }
+            offset = offset(number);
+            limit = end;
+        }
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER);
+        readFully(log, header, offset);
+        int length = header.getInt(0);
+        if (length < 0 || length > limit - offset - FRAME_HEADER) {
+            throw new IOException("Corrupt frame of record " + number + " in " + path);
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(log, payload, offset + FRAME_HEADER);
+        if (checksum(payload.array(), 0, length) != header.getInt(4)) {
+            throw new IOException("Checksum mismatch in record " + number + " of " + path);
+        }
+        return deserialize(payload.array(), 0, length);
+    }
+
+    synchronized long size() {
+        return count;
+    }
+
+    // The end of the last complete frame
+    synchronized long end() {
+        return end;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    /**
+     * Writes the log and the index to the storage device.
+     */
+    synchronized void force() throws IOException {
+        log.force(false);
+        index.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            log.close();
+        } finally {
+            index.close();
+        }
+    }
+
+    /**
+     * Reads the frames of a log sequentially, from an offset up to the end of a frame.
+     */
+    static final class FrameReader implements Closeable {
+        private final FileChannel channel;
+        // False for a channel shared by several readers, which is closed by its owner
+        private final boolean ownsChannel;
+        private final long limit;
+        // The frames from this offset on can be torn by a crash, a torn frame before it is corrupt
+        private final long tail;
+        private ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER);
+        // Offset in the file of the end of the buffer
+        private long position;
+
+        /**
+         * @param from  the offset of the first frame
+         * @param limit the end of the last frame to read
+         * @param tail  the offset of the last indexed frame, the frames before it must be complete
+         */
+        FrameReader(Path path, long from, long limit, long tail) throws IOException {
+            this(FileChannel.open(path, StandardOpenOption.READ), true, from, limit, tail);
+        }
+
+        /**
+         * Reads from a channel that can be shared with other readers, it isn't closed by this reader.
+         *
+         * @param from  the offset of the first frame
+         * @param limit the end of the last frame to read
+         * @param tail  the offset of the last indexed frame, the frames before it must be complete
+         */
+        FrameReader(FileChannel channel, long from, long limit, long tail) {
+            this(channel, false, from, limit, tail);
+        }
+
+        private FrameReader(FileChannel channel, boolean ownsChannel, long from, long limit, long tail) {
+            this.channel = channel;
+            this.ownsChannel = ownsChannel;
+            this.limit = limit;
+            this.tail = tail;
+            this.position = from;
+            // Start with an empty buffer, the first frame fills it
+            buffer.flip();
+        }
+
+        /**
+         * @return the deserialized object of the next frame
+         * @throws EOFException if the limit or a torn frame in the tail is reached
+         * @throws IOException  if the frame is corrupt or the object can't be deserialized
+         */
+        Object next() throws IOException {
+            long offset = position - buffer.remaining();
+            if (offset >= limit) throw new EOFException();
+            // A torn frame at the end of the log ends it, like the recovery does. Before the tail, the frame was
+            // indexed after it was written completely, so it is corrupt
+            if (!fill(FRAME_HEADER)) throw torn(offset);
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length < 0 || !fill(length)) throw torn(offset);
+            int start = buffer.position();
+            if (checksum(buffer.array(), start, length) != checksum) {
+                throw new IOException("Checksum mismatch at " + (position - buffer.remaining() - FRAME_HEADER));
+            }
+            buffer.position(start + length);
+            return deserialize(buffer.array(), start, length);
+        }
+
+        private IOException torn(long offset) {
+            if (offset < tail) return new IOException("Corrupt frame at " + offset + ", it doesn't fit in the log");
+            return new EOFException("Torn frame at " + offset);
+        }
+
+        // Makes the next bytes available in the buffer, false if the limit comes first
+        private boolean fill(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) return true;
+            if (position - buffer.remaining() + bytes > limit) return false;
+            // A frame larger than the buffer gets a larger buffer
+            if (bytes > buffer.capacity()) buffer = ByteBuffer.allocate(bytes).put(buffer).flip();
+            buffer.compact();
+            // Reads stop at the limit, the bytes after it belong to another reader or aren't written yet
+            buffer.limit((int) Math.min(buffer.capacity(), buffer.position() + limit - position));
+            while (buffer.position() < bytes) {
+                int read = channel.read(buffer, position);
+                if (read < 0) break;
+                position += read;
+            }
+            buffer.flip();
+            return buffer.remaining() >= bytes;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (ownsChannel) channel.close();
+        }
+    }
+
+    static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(object);
+        }
+        return bytes.toByteArray();
+    }
+
+    static Object deserialize(byte[] bytes, int offset, int length) throws IOException {
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes, offset, length))) {
+            return input.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Cannot recognize the object's class: " + e.getMessage(), e);
+        }
+    }
+
+    static int checksum(byte[] bytes, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    // Reads until the buffer is full or the end of the file, returns the number of bytes read
+    private static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + total);
+            if (read < 0) break;
+            total += read;
+        }
+        return total;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) position += channel.write(buffer, position);
+    }
+}
@@ -0,0 +1,457 @@
+package myJavaLib;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * K-way merge of sorted sources with a loser tree. Int sources use a tree of packed heads,
+ * long and object sources use {@link LoserTree}.
+ * Use the merge and mergeIterator methods of {@link Sorting} instead of this class.
+ * <p>
+ * The iterators pull one element at a time from their sources. The array merges split the output into ranges
+ * that are merged in parallel: the first r elements of the output are found by co-ranking, which is a binary search
+ * over the values for the smallest value v with at least r elements less than or equal to it. Every source
+ * contributes its elements less than v, and the elements equal to v are taken from the sources in order.
+ * Equal elements always come from the source with the smaller index first, so the merge is stable.
+ */
+final class KWayMerge {
+
+    // Ranges have at least this many elements per source. Co-ranking and building the tree cost O(k) per range,
+    // so ranges must grow with the number of sources
+    private static final int MIN_RANGE_PER_SOURCE = 256;
+
+    private KWayMerge() {
+    }
+
+    // Merges int arrays into a new array
+    static int[] merge(int[][] sources, ForkJoinPool pool) {
+        int k = sources.length;
+        int[] from = new int[k], to = new int[k];
+        for (int i = 0; i < k; i++) to[i] = sources[i].length;
+        int[] merged = new int[outputLength(from, to)];
+        if (k > 0) {
+            IntMerge task = new IntMerge(sources, from, to, merged, rangeSize(k, merged.length, pool));
+            Sorting.SortTask.run(task, merged.length, pool);
+        }
+        return merged;
+    }
+
+    // Merges long arrays into a new array
+    static long[] merge(long[][] sources, ForkJoinPool pool) {
+        int k = sources.length;
+        int[] from = new int[k], to = new int[k];
+        for (int i = 0; i < k; i++) to[i] = sources[i].length;
+        long[] merged = new long[outputLength(from, to)];
+        if (k > 0) {
+            LongMerge task = new LongMerge(sources, from, to, merged, rangeSize(k, merged.length, pool));
+            Sorting.SortTask.run(task, merged.length, pool);
+        }
+        return merged;
+    }
+
+    // Total length of the source ranges
+    private static int outputLength(int[] from, int[] to) {
+        long len = 0;
+        for (int i = 0; i < from.length; i++) len += to[i] - from[i];
+        if (len > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("The sources are too large to merge into an array!");
+        }
+        return (int) len;
+    }
+
+    // Size of the ranges merged on one thread. Co-ranking does binary searches all over the sources, which miss
+    // the cache, so the output is split only into as many ranges as needed to keep every worker busy
+    private static int rangeSize(int k, int len, ForkJoinPool pool) {
+        int forkThreshold = Sorting.Parameters.getForkThreshold(Sorting.Parameters.Engine.MERGESORT,
+                Sorting.Parameters.Type.INT);
+        return Math.max(Math.max(forkThreshold, MIN_RANGE_PER_SOURCE * k), len / (4 * pool.getParallelism()));
+    }
+
+    // Average of two longs rounded down, without overflow
+    private static long floorAverage(long a, long b) {
+        return (a & b) + ((a ^ b) >> 1);
+    }
+
+
+    private static final class IntMerge extends Sorting.SortTask {
+        private final int[][] sources;
+        // This task merges sources[i][from[i]..to[i]) for every i
+        private final int[] from;
+        private final int[] to;
+        private final int[] dst;
+        // Ranges up to this size are merged on the current thread
+        private final int rangeSize;
+
+        IntMerge(int[][] sources, int[] from, int[] to, int[] dst, int rangeSize) {
+            this.sources = sources;
+            this.from = from;
+            this.to = to;
+            this.dst = dst;
+            this.rangeSize = rangeSize;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Sorting.Parameters.getForkThreshold(Sorting.Parameters.Engine.MERGESORT,
+                    Sorting.Parameters.Type.INT);
+        }
+
+        @Override
+        protected void compute() {
+            int k = sources.length, size = 0, at = 0;
+            for (int i = 0; i < k; i++) {
+                size += to[i] - from[i];
+                at += from[i];
+            }
+            if (size <= rangeSize) {
+                merge(at, size);
+                return;
+            }
+            // Split the output in the middle
+            int[] split = coRank(size / 2);
+            invokeSubtasks(size, new IntMerge(sources, from, split, dst, rangeSize),
+                    new IntMerge(sources, split, to, dst, rangeSize));
+        }
+
+        // Finds how many elements of every source are among the first rank elements of the merged ranges
+        private int[] coRank(int rank) {
+            int k = sources.length;
+            // The smallest value that has at least rank elements less than or equal to it
+            long low = Integer.MIN_VALUE, high = Integer.MAX_VALUE;
+            while (low < high) {
+                long mid = floorAverage(low, high);
+                long count = 0;
+                for (int i = 0; i < k; i++) count += upperBound(sources[i], from[i], to[i], (int) mid) - from[i];
+                if (count >= rank) high = mid;
+                else low = mid + 1;
+            }
+            int value = (int) low;
+            // Take the smaller elements from every source, then the equal ones from the sources in order
+            int[] split = new int[k];
+            int remaining = rank;
+            for (int i = 0; i < k; i++) {
+                split[i] = lowerBound(sources[i], from[i], to[i], value);
+                remaining -= split[i] - from[i];
+            }
+            for (int i = 0; i < k && remaining > 0; i++) {
+                int equal = Math.min(remaining, upperBound(sources[i], split[i], to[i], value) - split[i]);
+                split[i] += equal;
+                remaining -= equal;
+            }
+            return split;
+        }
+
+        // Merges the ranges into dst[at..at+size)
+        private void merge(int at, int size) {
+            IntTree tree = new IntTree(sources, from, to);
+            for (int end = at + size; at < end; at++) dst[at] = tree.next();
+        }
+
+        // Returns the first index of the sorted array[low..high) whose element is greater than or equal to the key
+        private static int lowerBound(int[] array, int low, int high, int key) {
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (array[mid] < key) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+
+        // Returns the first index of the sorted array[low..high) whose element is greater than the key
+        private static int upperBound(int[] array, int low, int high, int key) {
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (array[mid] <= key) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+    }
+
+
+    private static final class LongMerge extends Sorting.SortTask {
+        private final long[][] sources;
+        // This task merges sources[i][from[i]..to[i]) for every i
+        private final int[] from;
+        private final int[] to;
+        private final long[] dst;
+        // Ranges up to this size are merged on the current thread
+        private final int rangeSize;
+
+        LongMerge(long[][] sources, int[] from, int[] to, long[] dst, int rangeSize) {
+            this.sources = sources;
+            this.from = from;
+            this.to = to;
+            this.dst = dst;
+            this.rangeSize = rangeSize;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Sorting.Parameters.getForkThreshold(Sorting.Parameters.Engine.MERGESORT,
+                    Sorting.Parameters.Type.LONG);
+        }
+
+        @Override
+        protected void compute() {
+            int k = sources.length, size = 0, at = 0;
+            for (int i = 0; i < k; i++) {
+                size += to[i] - from[i];
+                at += from[i];
+            }
+            if (size <= rangeSize) {
+                merge(at, size);
+                return;
+            }
+            // Split the output in the middle
+            int[] split = coRank(size / 2);
+            invokeSubtasks(size, new LongMerge(sources, from, split, dst, rangeSize),
+                    new LongMerge(sources, split, to, dst, rangeSize));
+        }
+
+        // Finds how many elements of every source are among the first rank elements of the merged ranges
+        private int[] coRank(int rank) {
+            int k = sources.length;
+            // The smallest value that has at least rank elements less than or equal to it
+            long low = Long.MIN_VALUE, high = Long.MAX_VALUE;
+            while (low < high) {
+                long mid = floorAverage(low, high);
+                long count = 0;
+                for (int i = 0; i < k; i++) count += upperBound(sources[i], from[i], to[i], mid) - from[i];
+                if (count >= rank) high = mid;
+                else low = mid + 1;
+            }
+            long value = low;
+            // Take the smaller elements from every source, then the equal ones from the sources in order
+            int[] split = new int[k];
+            int remaining = rank;
+            for (int i = 0; i < k; i++) {
+                split[i] = lowerBound(sources[i], from[i], to[i], value);
+                remaining -= split[i] - from[i];
+            }
+            for (int i = 0; i < k && remaining > 0; i++) {
+                int equal = Math.min(remaining, upperBound(sources[i], split[i], to[i], value) - split[i]);
+                split[i] += equal;
+                remaining -= equal;
+            }
+            return split;
+        }
+
+        // Merges the ranges into dst[at..at+size) with a loser tree
+        private void merge(int at, int size) {
+            int k = sources.length;
+            int[] position = from.clone();
+            LoserTree tree = new LoserTree(k) {
+                @Override
+                boolean before(int a, int b) {
+                    boolean exhaustedA = position[a] == to[a], exhaustedB = position[b] == to[b];
+                    if (exhaustedA || exhaustedB) return !exhaustedA;
+                    long x = sources[a][position[a]], y = sources[b][position[b]];
+                    return x < y || (x == y && a < b);
+                }
+            };
+            tree.init();
+            for (int end = at + size; at < end; at++) {
+                int winner = tree.winner();
+                dst[at] = sources[winner][position[winner]++];
+                tree.replay();
+            }
+        }
+
+        // Returns the first index of the sorted array[low..high) whose element is greater than or equal to the key
+        private static int lowerBound(long[] array, int low, int high, long key) {
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (array[mid] < key) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+
+        // Returns the first index of the sorted array[low..high) whose element is greater than the key
+        private static int upperBound(long[] array, int low, int high, long key) {
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (array[mid] <= key) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+    }
+
+
+    // Lazy merge of int arrays
+    static final class IntIterator implements PrimitiveIterator.OfInt {
+        private final IntTree tree;
+
+        IntIterator(int[][] sources) {
+            int[] to = new int[sources.length];
+            for (int i = 0; i < sources.length; i++) to[i] = sources[i].length;
+            this.tree = new IntTree(sources, new int[sources.length], to);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return tree.hasNext();
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return tree.next();
+        }
+    }
+
+
+    // Loser tree of int sources. Instead of the index of the losing source, every node holds the head of that source
+    // packed with its index as (head << 32 | index), so a match is a single long comparison that also breaks ties
+    // by index, and it can be played without branches. Exhausted sources have the head Long.MAX_VALUE.
+    // It is about four times faster than the general LoserTree for ints
+    private static final class IntTree {
+        private final int[][] sources;
+        // The next element of source i is sources[i][position[i]], its last element is before to[i]
+        private final int[] position;
+        private final int[] to;
+        private final long[] losers;
+        // The packed head that comes first
+        private long winner;
+
+        IntTree(int[][] sources, int[] from, int[] to) {
+            int k = sources.length;
+            this.sources = sources;
+            this.position = from.clone();
+            this.to = to;
+            this.losers = new long[k];
+            // Play the whole tournament, the leaves are the nodes k..2k-1
+            long[] winners = new long[2 * k];
+            for (int i = 0; i < k; i++) winners[k + i] = head(i);
+            for (int node = k - 1; node > 0; node--) {
+                long left = winners[2 * node], right = winners[2 * node + 1];
+                winners[node] = Math.min(left, right);
+                losers[node] = Math.max(left, right);
+            }
+            winner = winners[1];
+        }
+
+        // The packed head of the source
+        private long head(int source) {
+            int index = position[source];
+            return index < to[source] ? (long) sources[source][index] << 32 | source : Long.MAX_VALUE;
+        }
+
+        boolean hasNext() {
+            return winner != Long.MAX_VALUE;
+        }
+
+        // Returns the first head and replays its matches with the next element of its source
+        int next() {
+            int source = (int) winner, value = (int) (winner >> 32);
+            position[source]++;
+            long challenger = head(source);
+            for (int node = (source + losers.length) >>> 1; node > 0; node >>>= 1) {
+                long loser = losers[node];
+                losers[node] = Math.max(loser, challenger);
+                challenger = Math.min(loser, challenger);
+            }
+            winner = challenger;
+            return value;
+        }
+    }
+
+
+    // Lazy merge of long arrays
+    static final class LongIterator implements PrimitiveIterator.OfLong {
+        private final long[][] sources;
+        private final int[] position;
+        private final LoserTree tree;
+
+        LongIterator(long[][] sources) {
+            this.sources = sources;
+            this.position = new int[sources.length];
+            this.tree = new LoserTree(sources.length) {
+                @Override
+                boolean before(int a, int b) {
+                    boolean exhaustedA = position[a] == sources[a].length, exhaustedB = position[b] == sources[b].length;
+                    if (exhaustedA || exhaustedB) return !exhaustedA;
+                    long x = sources[a][position[a]], y = sources[b][position[b]];
+                    return x < y || (x == y && a < b);
+                }
+            };
+            tree.init();
+        }
+
+        @Override
+        public boolean hasNext() {
+            // The winner is exhausted only when every source is
+            int winner = tree.winner();
+            return position[winner] < sources[winner].length;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) throw new NoSuchElementException();
+            int winner = tree.winner();
+            long value = sources[winner][position[winner]++];
+            tree.replay();
+            return value;
+        }
+    }
+
+
+    // Lazy merge of iterators with a comparator
+    static final class ObjectIterator<T> implements Iterator<T> {
+        private final List<? extends Iterator<? extends T>> sources;
+        // The current head of every source, and whether the source still has one
+        private final Object[] heads;
+        private final boolean[] present;
+        private final LoserTree tree;
+
+        @SuppressWarnings("unchecked")
+        ObjectIterator(List<? extends Iterator<? extends T>> sources, Comparator<? super T> comparator) {
+            Comparator<? super T> order = comparator != null ? comparator
+                    : (Comparator<? super T>) Comparator.naturalOrder();
+            int k = sources.size();
+            this.sources = List.copyOf(sources);
+            this.heads = new Object[k];
+            this.present = new boolean[k];
+            for (int i = 0; i < k; i++) advance(i);
+            this.tree = new LoserTree(k) {
+                @Override
+                boolean before(int a, int b) {
+                    if (!present[a] || !present[b]) return present[a];
+                    int result = order.compare((T) heads[a], (T) heads[b]);
+                    return result < 0 || (result == 0 && a < b);
+                }
+            };
+            tree.init();
+        }
+
+        // Reads the next head of the source
+        private void advance(int source) {
+            Iterator<? extends T> iterator = sources.get(source);
+            present[source] = iterator.hasNext();
+            heads[source] = present[source] ? iterator.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            // The winner is exhausted only when every source is
+            return present[tree.winner()];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            int winner = tree.winner();
+            T value = (T) heads[winner];
+            advance(winner);
+            tree.replay();
+            return value;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package myJavaLib;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The concurrent load test of {@link Benchmark#loadTest}. Use the methods of Benchmark instead of this class.
+ * <p>
+ * A fixed number of workers call the task. In the closed model every worker calls it again as soon as the last call
+ * returned. In the open model the calls are scheduled at a fixed rate, and a worker takes the next scheduled call
+ * when it is free. The latency of a call is measured from its scheduled start, not from the moment a worker got to
+ * it. When the workers can't keep up, the waiting time of the calls is part of their latency, as it would be for
+ * real requests. Measuring from the actual start would hide it (coordinated omission).
+ * <p>
+ * Every worker records into its own histograms, they are merged when the test is over.
+ */
+final class LoadTest {
+    // Executors.newVirtualThreadPerTaskExecutor, null before Java 21
+    private static final Method virtualExecutor = virtualExecutorFactory();
+
+    private LoadTest() {
+    }
+
+    private static Method virtualExecutorFactory() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            // On Java 19 and 20 the method exists, but throws unless preview features are enabled
+            ((ExecutorService) factory.invoke(null)).shutdown();
+            return factory;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    static boolean isVirtualThreadsAvailable() {
+        return virtualExecutor != null;
+    }
+
+    /**
+     * Runs the load test.
+     *
+     * @param rate calls per second for the open model, or 0 for the closed model
+     */
+    static Benchmark.LoadTestResult run(Runnable task, int concurrency, double rate, long durationMillis,
+                                        boolean virtualThreads) {
+        if (concurrency < 1) throw new IllegalArgumentException("Concurrency must be positive!");
+        if (durationMillis < 1) throw new IllegalArgumentException("Duration must be positive!");
+        if (rate < 0 || Double.isNaN(rate)) throw new IllegalArgumentException("Rate can't be negative!");
+
+        boolean virtual = virtualThreads && isVirtualThreadsAvailable();
+        if (virtualThreads && !virtual) System.out.println("Virtual threads are not available, using platform threads!");
+        ExecutorService executor = virtual ? newVirtualExecutor() : Executors.newFixedThreadPool(concurrency);
+
+        long start = System.nanoTime();
+        long end = start + durationMillis * 1_000_000;
+        // Interval between two scheduled calls of the open model
+        double period = rate > 0 ? 1e9 / rate : 0;
+        AtomicLong tickets = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        AtomicReference<Throwable> firstError = new AtomicReference<>();
+        // Set when the test ends early, the workers stop before their next call. The task can swallow an interrupt
+        AtomicBoolean stopped = new AtomicBoolean();
+
+        List<Future<long[][]>> workers = new ArrayList<>(concurrency);
+        try {
+            for (int w = 0; w < concurrency; w++) {
+                workers.add(executor.submit(() -> {
+                    long[] latency = SectionProfiler.empty();
+                    long[] service = SectionProfiler.empty();
+                    while (!isStopped(stopped)) {
+                        long scheduled;
+                        if (period > 0) {
+                            scheduled = start + (long) (tickets.getAndIncrement() * period);
+                            if (scheduled >= end) break;
+                            // Wait for the scheduled start, a late worker starts at once. An interrupted worker
+                            // stops, parkNanos would return at once and spin until then
+                            for (long wait; (wait = scheduled - System.nanoTime()) > 0 && !isStopped(stopped); ) {
+                                LockSupport.parkNanos(wait);
+                            }
+                            if (isStopped(stopped)) break;
+                        } else {
+                            scheduled = System.nanoTime();
+                            if (scheduled >= end) break;
+                        }
+                        long callStart = System.nanoTime();
+                        try {
+                            task.run();
+                        } catch (Throwable e) {
+                            errors.incrementAndGet();
+                            firstError.compareAndSet(null, e);
+                        }
+                        long callEnd = System.nanoTime();
+                        SectionProfiler.record(latency, callEnd - scheduled);
+                        SectionProfiler.record(service, callEnd - callStart);
+                    }
+                    return new long[][]{latency, service};
+                }));
+            }
+
+            long[] latency = SectionProfiler.empty();
+            long[] service = SectionProfiler.empty();
+            for (Future<long[][]> worker : workers) {
+                long[][] histograms = worker.get();
+                SectionProfiler.merge(latency, histograms[0]);
+                SectionProfiler.merge(service, histograms[1]);
+            }
+            long elapsed = System.nanoTime() - start;
+            return new Benchmark.LoadTestResult(concurrency, rate, virtual, elapsed, errors.get(), firstError.get(),
+                    new Benchmark.SectionStats("latency", latency, false),
+                    new Benchmark.SectionStats("service time", service, false));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The load test was interrupted!", e);
+        } catch (ExecutionException e) {
+            // The workers catch the errors of the task, so this is a bug of the harness itself
+            throw new IllegalStateException("A load test worker failed!", e.getCause());
+        } finally {
+            stopped.set(true);
+            executor.shutdownNow();
+        }
+    }
+
+    private static boolean isStopped(AtomicBoolean stopped) {
+        return stopped.get() || Thread.currentThread().isInterrupted();
+    }
+
+    private static ExecutorService newVirtualExecutor() {
+        try {
+            return (ExecutorService) virtualExecutor.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Can't create virtual threads!", e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package myJavaLib;
+
+/**
+ * A tournament tree of losers for merging k sorted sources.
+ * Every internal node keeps the source that lost the match played there, so after the winner's head changes,
+ * only the matches on the path from its leaf to the root are replayed, which needs log2(k) comparisons.
+ * <p>
+ * Subclasses hold the current head of every source and define the order with {@link #before(int, int)}.
+ */
+abstract class LoserTree {
+
+    // Number of sources, their leaves are the nodes k..2k-1
+    private final int k;
+    // losers[node] is the source that lost the match at the internal node, losers[0] is the overall winner
+    private final int[] losers;
+
+    LoserTree(int k) {
+        if (k < 1) throw new IllegalArgumentException("There must be at least one source!");
+        this.k = k;
+        this.losers = new int[k];
+    }
+
+    /**
+     * Returns true if the current head of source a must come before the current head of source b.
+     * An exhausted source must lose against every source that isn't exhausted.
+     * For equal heads, the source with the smaller index should win so the merge is stable.
+     */
+    abstract boolean before(int a, int b);
+
+    /**
+     * Plays the whole tournament. Must be called once, after the first head of every source is known.
+     */
+    final void init() {
+        losers[0] = play(1);
+    }
+
+    /**
+     * @return the index of the source whose head comes first
+     */
+    final int winner() {
+        return losers[0];
+    }
+
+    /**
+     * Replays the matches of the winner, after its head has changed.
+     */
+    final void replay() {
+        int source = losers[0];
+        for (int node = (source + k) >>> 1; node > 0; node >>>= 1) {
+            if (before(losers[node], source)) {
+                int temp = losers[node];
+                losers[node] = source;
+                source = temp;
+            }
+        }
+        losers[0] = source;
+    }
+
+    // Plays the matches under the node and returns the winner
+    private int play(int node) {
+        if (node >= k) return node - k;
+        int left = play(2 * node), right = play(2 * node + 1);
+        if (before(right, left)) {
+            losers[node] = left;
+            return right;
+        }
+        losers[node] = right;
+        return left;
+    }
+}
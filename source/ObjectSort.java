@@ -0,0 +1,350 @@
+package myJavaLib;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Stable parallel sort of objects with a {@link Comparator}.
+ * Use {@link Sorting#sort(Object[], Comparator)} and {@link Sorting#sort(List, Comparator)} instead of this class.
+ * <p>
+ * It is a natural mergesort like the adaptive mergesort of int arrays: the natural runs are found first,
+ * short runs are extended with binary insertion sort, and the runs are merged in parallel.
+ * The sort works directly on the list, so random access lists are sorted in place. A merge copies its two runs
+ * to a buffer and merges them back into the list, so the parallel parts of a merge never read what another part
+ * has already overwritten.
+ */
+final class ObjectSort {
+
+    private ObjectSort() {
+    }
+
+    /**
+     * Sorts the list. Random access lists are sorted in place, the others are copied to an array first
+     * and written back through a list iterator. The set method of a random access list is called from
+     * several threads, but never for the same index at the same time.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> void sort(List<T> list, Comparator<? super T> comparator, ForkJoinPool pool) {
+        if (comparator == null) comparator = (Comparator<? super T>) Comparator.naturalOrder();
+        if (list instanceof RandomAccess) {
+            sortRandomAccess(list, comparator, pool);
+            return;
+        }
+        Object[] array = list.toArray();
+        sortRandomAccess(Arrays.asList((T[]) array), comparator, pool);
+        ListIterator<T> iterator = list.listIterator();
+        for (Object element : array) {
+            iterator.next();
+            iterator.set((T) element);
+        }
+    }
+
+    /**
+     * Sorts the list by the keys the function extracts from its elements. The function is called once per
+     * element, in parallel, and the keys are kept next to their elements while sorting.
+     */
+    @SuppressWarnings("unchecked")
+    static <T, K> void sortByKey(List<T> list, Function<? super T, ? extends K> key, Comparator<? super K> comparator,
+                                 ForkJoinPool pool) {
+        Comparator<? super K> keyComparator = comparator != null ? comparator
+                : (Comparator<? super K>) Comparator.naturalOrder();
+        int len = list.size();
+        if (len < 2) return;
+
+        // Decorate: pair every element with its key. Non random access lists are copied to an array first
+        List<T> source = list instanceof RandomAccess ? list : Arrays.asList((T[]) list.toArray());
+        Keyed<T, K>[] keyed = (Keyed<T, K>[]) new Keyed<?, ?>[len];
+        pool.invoke(ForkJoinTask.adapt(() -> Arrays.parallelSetAll(keyed, i -> {
+            T element = source.get(i);
+            return new Keyed<>(key.apply(element), element);
+        })));
+
+        // Sort the pairs by their keys
+        sortRandomAccess(Arrays.asList(keyed), (a, b) -> keyComparator.compare(a.key, b.key), pool);
+
+        // Undecorate: put the elements back in their new order
+        if (list instanceof RandomAccess) {
+            pool.invoke(ForkJoinTask.adapt(() -> IntStream.range(0, len).parallel()
+                    .forEach(i -> list.set(i, keyed[i].value))));
+        } else {
+            ListIterator<T> iterator = list.listIterator();
+            for (Keyed<T, K> pair : keyed) {
+                iterator.next();
+                iterator.set(pair.value);
+            }
+        }
+    }
+
+    private static <T> void sortRandomAccess(List<T> list, Comparator<? super T> comparator, ForkJoinPool pool) {
+        int len = list.size();
+        if (len < 2) return;
+
+        // Every run except the last one has at least minRun elements
+        int minRun = Math.max(2, Sorting.Parameters.getCutoff(Sorting.Parameters.Engine.MERGESORT,
+                Sorting.Parameters.Type.OBJECT));
+        int[] runs = new int[len / minRun + 2];
+        int count = 0;
+
+        // Find the natural runs of the list, TimSort style
+        for (int start = 0; start < len; ) {
+            runs[count++] = start;
+            int end = start + 1;
+            if (end < len) {
+                if (comparator.compare(list.get(end), list.get(start)) < 0) {
+                    // Strictly descending run, reverse it. Equal elements are not included to keep the sort stable
+                    while (end + 1 < len && comparator.compare(list.get(end + 1), list.get(end)) < 0) end++;
+                    for (int i = start, j = end; i < j; i++, j--) list.set(i, list.set(j, list.get(i)));
+                } else {
+                    // Ascending run
+                    while (end + 1 < len && comparator.compare(list.get(end + 1), list.get(end)) >= 0) end++;
+                }
+                end++;
+            }
+            // Short runs are extended to minRun elements with binary insertion sort
+            if (end - start < minRun) {
+                int sorted = end;
+                end = Math.min(start + minRun, len);
+                binaryInsertionSort(list, comparator, start, sorted, end);
+            }
+            start = end;
+        }
+        runs[count] = len;
+
+        // Already sorted, or sorted in reverse
+        if (count == 1) return;
+
+        Object[] buffer = new Object[len];
+        Sorting.SortTask.run(new RunMergeSort<>(list, buffer, comparator, runs, 0, count), len, pool);
+    }
+
+    // Sorts list[low..high) whose first part list[low..sorted) is already sorted. Comparisons are more expensive
+    // than moves for objects, so the place of every element is found with binary search
+    private static <T> void binaryInsertionSort(List<T> list, Comparator<? super T> comparator, int low, int sorted,
+                                                int high) {
+        for (int i = sorted; i < high; i++) {
+            T key = list.get(i);
+            // Insert after the equal elements to keep the sort stable
+            int position = upperBound(list, comparator, low, i, key);
+            for (int j = i; j > position; j--) list.set(j, list.get(j - 1));
+            list.set(position, key);
+        }
+    }
+
+    // Returns the first index of the sorted list[low..high) whose element is greater than the key
+    private static <T> int upperBound(List<T> list, Comparator<? super T> comparator, int low, int high, T key) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparator.compare(key, list.get(mid)) < 0) high = mid;
+            else low = mid + 1;
+        }
+        return low;
+    }
+
+    // Returns the first index of the sorted list[low..high) whose element is greater than or equal to the key
+    private static <T> int lowerBound(List<T> list, Comparator<? super T> comparator, int low, int high, T key) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparator.compare(list.get(mid), key) < 0) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    // An element with its cached sort key
+    private static final class Keyed<T, K> {
+        private final K key;
+        private final T value;
+
+        Keyed(K key, T value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+
+    private static class RunMergeSort<T> extends Sorting.SortTask {
+        private final List<T> list;
+        // Buffer for the runs of the merges, every merge uses the same indices as in the list
+        private final Object[] buffer;
+        private final Comparator<? super T> comparator;
+        // runs[k] is the start index of the k-th run, runs[count] is the list size
+        private final int[] runs;
+        // This task sorts the runs first..last-1
+        private final int first;
+        private final int last;
+
+        public RunMergeSort(List<T> list, Object[] buffer, Comparator<? super T> comparator, int[] runs,
+                            int first, int last) {
+            this.list = list;
+            this.buffer = buffer;
+            this.comparator = comparator;
+            this.runs = runs;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Sorting.Parameters.getForkThreshold(Sorting.Parameters.Engine.MERGESORT,
+                    Sorting.Parameters.Type.OBJECT);
+        }
+
+        @Override
+        protected void compute() {
+            // A single run is already sorted
+            if (last - first == 1) return;
+
+            // Split at the run boundary closest to the middle element, so both halves have similar sizes
+            int middle = runs[first] + (runs[last] - runs[first]) / 2;
+            int left = first + 1, right = last - 1;
+            while (left < right) {
+                int k = (left + right) >>> 1;
+                if (runs[k] < middle) left = k + 1;
+                else right = k;
+            }
+            if (left > first + 1 && middle - runs[left - 1] < runs[left] - middle) left--;
+            int split = left;
+
+            invokeSubtasks(runs[last] - runs[first], new RunMergeSort<>(list, buffer, comparator, runs, first, split),
+                    new RunMergeSort<>(list, buffer, comparator, runs, split, last));
+
+            int low = runs[first], mid = runs[split], high = runs[last];
+            // If the halves are already in order, there is nothing to merge
+            if (comparator.compare(list.get(mid - 1), list.get(mid)) <= 0) return;
+
+            // Elements of the left run that are not greater than the first element of the right run, and elements
+            // of the right run that are not less than the last element of the left run are already in place
+            low = upperBound(list, comparator, low, mid, list.get(mid));
+            high = lowerBound(list, comparator, mid, high, list.get(mid - 1));
+
+            // Both passes are split into tasks, so the top merge has no sequential step over the whole list
+            invokeSubtasks(high - low, new Copy<>(list, buffer, low, high));
+            invokeSubtasks(high - low, new Merge<>(list, buffer, comparator, low, mid, mid, high, low));
+        }
+    }
+
+
+    // Copies list[low..high) to the same indices of the buffer, in halves until they are small enough
+    private static class Copy<T> extends Sorting.SortTask {
+        private final List<T> list;
+        private final Object[] buffer;
+        private final int low, high;
+
+        public Copy(List<T> list, Object[] buffer, int low, int high) {
+            this.list = list;
+            this.buffer = buffer;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Sorting.Parameters.getForkThreshold(Sorting.Parameters.Engine.MERGESORT,
+                    Sorting.Parameters.Type.OBJECT);
+        }
+
+        @Override
+        protected void compute() {
+            if (high - low <= Math.max(Merge.SEQUENTIAL_THRESHOLD, forkThreshold())) {
+                for (int i = low; i < high; i++) buffer[i] = list.get(i);
+                return;
+            }
+            int middle = (low + high) >>> 1;
+            invokeSubtasks(high - low, new Copy<>(list, buffer, low, middle), new Copy<>(list, buffer, middle, high));
+        }
+    }
+
+
+    private static class Merge<T> extends Sorting.SortTask {
+        // Below this many elements, the two runs are merged on the current thread
+        private static final int SEQUENTIAL_THRESHOLD = 1 << 13;
+
+        private final List<T> list;
+        private final Object[] buffer;
+        private final Comparator<? super T> comparator;
+        // The runs are buffer[low1..high1) and buffer[low2..high2), the upper bounds are exclusive
+        private final int low1, high1, low2, high2;
+        // Index of the list where the merged output starts
+        private final int at;
+
+        public Merge(List<T> list, Object[] buffer, Comparator<? super T> comparator, int low1, int high1,
+                     int low2, int high2, int at) {
+            this.list = list;
+            this.buffer = buffer;
+            this.comparator = comparator;
+            this.low1 = low1;
+            this.high1 = high1;
+            this.low2 = low2;
+            this.high2 = high2;
+            this.at = at;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Sorting.Parameters.getForkThreshold(Sorting.Parameters.Engine.MERGESORT,
+                    Sorting.Parameters.Type.OBJECT);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void compute() {
+            int len1 = high1 - low1, len2 = high2 - low2;
+            if (len1 + len2 <= Math.max(SEQUENTIAL_THRESHOLD, forkThreshold())) {
+                int i = low1, j = low2, k = at;
+                while (i < high1 && j < high2) {
+                    // Take from the left run on ties to keep the sort stable
+                    if (comparator.compare((T) buffer[j], (T) buffer[i]) < 0) list.set(k++, (T) buffer[j++]);
+                    else list.set(k++, (T) buffer[i++]);
+                }
+                while (i < high1) list.set(k++, (T) buffer[i++]);
+                while (j < high2) list.set(k++, (T) buffer[j++]);
+                // Don't keep the elements alive through the buffer
+                Arrays.fill(buffer, low1, high1, null);
+                Arrays.fill(buffer, low2, high2, null);
+                return;
+            }
+
+            // Split the longer run in the middle and find the matching split of the other run with binary search
+            int mid1, mid2;
+            if (len1 >= len2) {
+                mid1 = (low1 + high1) >>> 1;
+                mid2 = lowerBound(low2, high2, (T) buffer[mid1]);
+            } else {
+                mid2 = (low2 + high2) >>> 1;
+                mid1 = upperBound(low1, high1, (T) buffer[mid2]);
+            }
+            int at2 = at + (mid1 - low1) + (mid2 - low2);
+            invokeSubtasks(len1 + len2, new Merge<>(list, buffer, comparator, low1, mid1, low2, mid2, at),
+                    new Merge<>(list, buffer, comparator, mid1, high1, mid2, high2, at2));
+        }
+
+        // Returns the first index of buffer[low..high) whose element is greater than the key
+        @SuppressWarnings("unchecked")
+        private int upperBound(int low, int high, T key) {
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (comparator.compare(key, (T) buffer[mid]) < 0) high = mid;
+                else low = mid + 1;
+            }
+            return low;
+        }
+
+        // Returns the first index of buffer[low..high) whose element is greater than or equal to the key
+        @SuppressWarnings("unchecked")
+        private int lowerBound(int low, int high, T key) {
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (comparator.compare((T) buffer[mid], key) < 0) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,1898 @@
+// GENERATED FILE, DO NOT EDIT. Run templates/generate-primitive-sorts.sh after changing templates/PrimitiveSorts.template.
+package myJavaLib;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Primitive-specialized versions of the parallel QuickSort and MergeSort engines of {@link Sorting}.
+ * Use the overloads in {@link Sorting} instead of this class.
+ */
+final class PrimitiveSorts {
+
+    private PrimitiveSorts() {
+    }
+
+    static final class LongQuickSort extends Sorting.SortTask {
+        private static final int BLOCK_SIZE = 64;
+        private static final int NINTHER_THRESHOLD = 128;
+
+        private final long[] array;
+        private final int low;
+        private final int high;
+        // Remaining recursion depth before switching to HeapSort
+        private final int depth;
+
+        LongQuickSort(long[] array, int low, int high, int depth) {
+            this.array = array;
+            this.low = low;
+            this.high = high;
+            this.depth = depth;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Sorting.Parameters.getForkThreshold(Sorting.Parameters.Engine.QUICKSORT, Sorting.Parameters.Type.LONG);
+        }
+
+        @Override
+        protected void compute() {
+            // If the problem size is below threshold, solve it directly
+            if (high - low <= Sorting.Parameters.getCutoff(Sorting.Parameters.Engine.QUICKSORT, Sorting.Parameters.Type.LONG)) {
+                insertionSort(array, low, high);
+                return;
+            }
+
+            // If the recursion got too deep, the pivots were bad. HeapSort guarantees O(n log n) for the rest
+            if (depth == 0) {
+                heapSort(array, low, high);
+                return;
+            }
+
+            int tmp_pivot = choosePivot(array, low, high);
+            long pivot = array[tmp_pivot];
+
+            // Many equal elements are put in their final place at once with a three-way partition
+            if (hasDuplicateSamples(array, low, high, tmp_pivot)) {
+                threeWayPartition(pivot);
+                return;
+            }
+
+            // Swapping pivot element to end of array
+            array[tmp_pivot] = array[high];
+            array[high] = pivot;
+
+            int pivotIndex = blockPartition(array, low, high, pivot);
+
+            // Recursively sort elements before and after pivot
+            invokeSubtasks(high - low + 1, new LongQuickSort(array, low, pivotIndex - 1, depth - 1),
+                    new LongQuickSort(array, pivotIndex + 1, high, depth - 1));
+        }
+
+        // Partitions the range into < pivot, == pivot and > pivot
+        private void threeWayPartition(long pivot) {
+            int lt = low, i = low, gt = high;
+            while (i <= gt) {
+                long value = array[i];
+                if (value < pivot) {
+                    array[i++] = array[lt];
+                    array[lt++] = value;
+                } else if (value > pivot) {
+                    array[i] = array[gt];
+                    array[gt--] = value;
+                } else {
+                    i++;
+                }
+            }
+            invokeSubtasks(high - low + 1, new LongQuickSort(array, low, lt - 1, depth - 1),
+                    new LongQuickSort(array, gt + 1, high, depth - 1));
+        }
+
+        // Returns the index of the median of three, or of the ninther for large ranges
+        private static int choosePivot(long[] array, int low, int high) {
+            int mid = low + (high - low) / 2;
+            if (high - low < NINTHER_THRESHOLD) return median3(array, low, mid, high);
+            int step = (high - low) / 8;
+            return median3(array,
+                    median3(array, low, low + step, low + 2 * step),
+                    median3(array, mid - step, mid, mid + step),
+                    median3(array, high - 2 * step, high - step, high));
+        }
+
+        // Returns the index of the median of array[a], array[b] and array[c]
+        private static int median3(long[] array, int a, int b, int c) {
+            if (array[a] < array[b]) {
+                if (array[b] < array[c]) return b;
+                return array[a] < array[c] ? c : a;
+            }
+            if (array[a] < array[c]) return a;
+            return array[b] < array[c] ? c : b;
+        }
+
+        // Checks whether the pivot value appears again among five evenly spaced samples of the range
+        private static boolean hasDuplicateSamples(long[] array, int low, int high, int pivotIndex) {
+            int quarter = (high - low) / 4;
+            long pivot = array[pivotIndex];
+            for (int k = 0, index = low; k < 5; k++, index = k < 4 ? index + quarter : high) {
+                if (index != pivotIndex && array[index] == pivot) return true;
+            }
+            return false;
+        }
+
+        // Branchless block partition of array[low..high-1] around the pivot stored in array[high]
+        private static int blockPartition(long[] array, int low, int high, long pivot) {
+            int[] offsetsLeft = new int[BLOCK_SIZE];
+            int[] offsetsRight = new int[BLOCK_SIZE];
+            int left = low, right = high - 1;
+            int startLeft = 0, numLeft = 0, startRight = 0, numRight = 0;
+
+            while (right - left + 1 > 2 * BLOCK_SIZE) {
+                if (numLeft == 0) {
+                    startLeft = 0;
+                    for (int i = 0; i < BLOCK_SIZE; i++) {
+                        offsetsLeft[numLeft] = i;
+                        numLeft += array[left + i] >= pivot ? 1 : 0;
+                    }
+                }
+                if (numRight == 0) {
+                    startRight = 0;
+                    for (int i = 0; i < BLOCK_SIZE; i++) {
+                        offsetsRight[numRight] = i;
+                        numRight += array[right - i] <= pivot ? 1 : 0;
+                    }
+                }
+                int num = Math.min(numLeft, numRight);
+                for (int j = 0; j < num; j++) {
+                    int l = left + offsetsLeft[startLeft + j], r = right - offsetsRight[startRight + j];
+                    long temp = array[l];
+                    array[l] = array[r];
+                    array[r] = temp;
+                }
+                numLeft -= num;
+                numRight -= num;
+                startLeft += num;
+                startRight += num;
+                if (numLeft == 0) left += BLOCK_SIZE;
+                if (numRight == 0) right -= BLOCK_SIZE;
+            }
+
+            int i = left;
+            for (int j = left; j <= right; j++) {
+                long value = array[j];
+                array[j] = array[i];
+                array[i] = value;
+                i += value < pivot ? 1 : 0;
+            }
+
+            array[high] = array[i];
+            array[i] = pivot;
+            return i;
+        }
+
+        // HeapSort fallback for array[low..high]
+        private static void heapSort(long[] array, int low, int high) {
+            int len = high - low + 1;
+            for (int i = len / 2 - 1; i >= 0; i--) siftDown(array, low, i, len);
+            for (int end = len - 1; end > 0; end--) {
+                long temp = array[low];
+                array[low] = array[low + end];
+                array[low + end] = temp;
+                siftDown(array, low, 0, end);
+            }
+        }
+
+        private static void siftDown(long[] array, int offset, int root, int len) {
+            long value = array[offset + root];
+            int child;
+            while ((child = 2 * root + 1) < len) {
+                if (child + 1 < len && array[offset + child] < array[offset + child + 1]) child++;
+                if (value >= array[offset + child]) break;
+                array[offset + root] = array[offset + child];
+                root = child;
+            }
+            array[offset + root] = value;
+        }
+
+        // Method to trigger the parallel quicksort on array[low..high]
+        static void sort(long[] array, int low, int high, ForkJoinPool pool) {
+            int depth = 2 * (32 - Integer.numberOfLeadingZeros(Math.max(high - low + 1, 1)));
+            run(new LongQuickSort(array, low, high, depth), high - low + 1, pool);
+        }
+    }
+
+    static final class LongMergeSort extends Sorting.SortTask {
+        // The sorted halves are merged from src into dst, the two arrays swap roles at every level
+        private final long[] src;
+        private final long[] dst;
+        private final int low;
+        private final int high;
+
+        LongMergeSort(long[] src, long[] dst, int low, int high) {
+            this.src = src;
+            this.dst = dst;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Sorting.Parameters.getForkThreshold(Sorting.Parameters.Engine.MERGESORT, Sorting.Parameters.Type.LONG);
+        }
+
+        @Override
+        protected void compute() {
+            // If array size is below threshold, sort directly in dst, which still holds the original elements
+            if (high - low <= Sorting.Parameters.getCutoff(Sorting.Parameters.Engine.MERGESORT, Sorting.Parameters.Type.LONG)) {
+                insertionSort(dst, low, high);
+                return;
+            }
+
+            // Else, split the problem and sort each half into src
+            int mid = low + (high - low) / 2;
+            invokeSubtasks(high - low + 1, new LongMergeSort(dst, src, low, mid),
+                    new LongMergeSort(dst, src, mid + 1, high));
+
+            // If the halves are already in order, there is nothing to merge
+            if (src[mid] <= src[mid + 1]) {
+                System.arraycopy(src, low, dst, low, high - low + 1);
+                return;
+            }
+            invokeSubtasks(high - low + 1, new LongMerge(src, dst, low, mid + 1, mid + 1, high + 1, low));
+        }
+
+        // Method to trigger the parallel mergesort on array[low..high]
+        static void sort(long[] array, int low, int high, ForkJoinPool pool) {
+            if (high - low < 1) return;
+            // The only allocation of the whole sort, both arrays start with the same content
+            long[] aux = array.clone();
+            run(new LongMergeSort(aux, array, low, high), high - low + 1, pool);
+        }
+    }
+
+    static final class LongMerge extends Sorting.SortTask {
+        private static final int SEQUENTIAL_THRESHOLD = 1 << 13;
+
+        private final long[] src;
+        private final long[] dst;
+        // The runs are src[low1..high1) and src[low2..high2), the upper bounds are exclusive
+        private final int low1, high1, low2, high2;
+        private final int at;
+
+        LongMerge(long[] src, long[] dst, int low1, int high1, int low2, int high2, int at) {
+            this.src = src;
+            this.dst = dst;
+            this.low1 = low1;
+            this.high1 = high1;
+            this.low2 = low2;
+            this.high2 = high2;
+            this.at = at;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Sorting.Parameters.getForkThreshold(Sorting.Parameters.Engine.MERGESORT, Sorting.Parameters.Type.LONG);
+        }
+
+        @Override
+        protected void compute() {
+            if (high1 - low1 + high2 - low2 <= SEQUENTIAL_THRESHOLD) {
+                int i = low1, j = low2, k = at;
+                while (i < high1 && j < high2) {
+                    if (src[i] <= src[j]) dst[k++] = src[i++];
+                    else dst[k++] = src[j++];
+                }
+                System.arraycopy(src, i, dst, k, high1 - i);
+                System.arraycopy(src, j, dst, k + high1 - i, high2 - j);
+                return;
+            }
+
+            // Split the longer run at its middle, and the other run at the same value
+            int mid1, mid2;
+            if (high1 - low1 >= high2 - low2) {
+                mid1 = (low1 + high1) >>> 1;
+                long key = src[mid1];
+                int lo = low2, hi = high2;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (src[mid] < key) lo = mid + 1;
+                    else hi = mid;
+                }
+                mid2 = lo;
+            } else {
+                mid2 = (low2 + high2) >>> 1;
+                long key = src[mid2];
+                int lo = low1, hi = high1;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (src[mid] <= key) lo = mid + 1;
+                    else hi = mid;
+                }
+                mid1 = lo;
+            }
+            invokeSubtasks(high1 - low1 + high2 - low2, new LongMerge(src, dst, low1, mid1, low2, mid2, at),
+                    new LongMerge(src, dst, mid1, high1, mid2, high2, at + (mid1 - low1) + (mid2 - low2)));
+        }
+    }
+
+    // Insertion sort for small-sized problems
+    private static void insertionSort(long[] array, int low, int high) {
+        for (int i, k = low; ++k < high + 1; ) {
+            long key = array[i = k];
+            if (key < array[i - 1]) {
+                while (--i >= low && key < array[i]) {
+                    array[i + 1] = array[i];
+                }
+                array[i + 1] = key;
+            }
+        }
+    }
+
+    static final class DoubleQuickSort extends Sorting.SortTask {
+        private static final int BLOCK_SIZE = 64;
+        private static final int NINTHER_THRESHOLD = 128;
+
+        private final double[] array;
+        private final int low;
+        private final int high;
+        // Remaining recursion depth before switching to HeapSort
+        private final int depth;
+
+        DoubleQuickSort(double[] array, int low, int high, int depth) {
+            this.array = array;
+            this.low = low;
+            this.high = high;
+            this.depth = depth;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Sorting.Parameters.getForkThreshold(Sorting.Parameters.Engine.QUICKSORT, Sorting.Parameters.Type.DOUBLE);
+        }
+
+        @Override
+        protected void compute() {
+            // If the problem size is below threshold, solve it directly
+            if (high - low <= Sorting.Parameters.getCutoff(Sorting.Parameters.Engine.QUICKSORT, Sorting.Parameters.Type.DOUBLE)) {
+                insertionSort(array, low, high);
+                return;
+            }
+
+            // If the recursion got too deep, the pivots were bad. HeapSort guarantees O(n log n) for the rest
+            if (depth == 0) {
+                heapSort(array, low, high);
+                return;
+            }
+
+            int tmp_pivot = choosePivot(array, low, high);
+            double pivot = array[tmp_pivot];
+
+            // Many equal elements are put in their final place at once with a three-way partition
+            if (hasDuplicateSamples(array, low, high, tmp_pivot)) {
+                threeWayPartition(pivot);
+                return;
+            }
+
+            // Swapping pivot element to end of array
+            array[tmp_pivot] = array[high];
+            array[high] = pivot;
+
+            int pivotIndex = blockPartition(array, low, high, pivot);
+
+            // Recursively sort elements before and after pivot
+            invokeSubtasks(high - low + 1, new DoubleQuickSort(array, low, pivotIndex - 1, depth - 1),
+                    new DoubleQuickSort(array, pivotIndex + 1, high, depth - 1));
+        }
+
+        // Partitions the range into < pivot, == pivot and > pivot
+        private void threeWayPartition(double pivot) {
+            int lt = low, i = low, gt = high;
+            while (i <= gt) {
+                double value = array[i];
+                if (value < pivot) {
+                    array[i++] = array[lt];
+                    array[lt++] = value;
+                } else if (value > pivot) {
+                    array[i] = array[gt];
+                    array[gt--] = value;
+                } else {
+                    i++;
+                }
+            }
+            invokeSubtasks(high - low + 1, new DoubleQuickSort(array, low, lt - 1, depth - 1),
+                    new DoubleQuickSort(array, gt + 1, high, depth - 1));
+        }
+
+        // Returns the index of the median of three, or of the ninther for large ranges
+        private static int choosePivot(double[] array, int low, int high) {
+            int mid = low + (high - low) / 2;
+            if (high - low < NINTHER_THRESHOLD) return median3(array, low, mid, high);
+            int step = (high - low) / 8;
+            return median3(array,
+                    median3(array, low, low + step, low + 2 * step),
+                    median3(array, mid - step, mid, mid + step),
+                    median3(array, high - 2 * step, high - step, high));
+        }
+
+        // Returns the index of the median of array[a], array[b] and array[c]
+        private static int median3(double[] array, int a, int b, int c) {
+            if (array[a] < array[b]) {
+                if (array[b] < array[c]) return b;
+                return array[a] < array[c] ? c : a;
+            }
+            if (array[a] < array[c]) return a;
+            return array[b] < array[c] ? c : b;
+        }
+
+        // Checks whether the pivot value appears again among five evenly spaced samples of the range
+        private static boolean hasDuplicateSamples(double[] array, int low, int high, int pivotIndex) {
+            int quarter = (high - low) / 4;
+            double pivot = array[pivotIndex];
+            for (int k = 0, index = low; k < 5; k++, index = k < 4 ? index + quarter : high) {
+                if (index != pivotIndex && array[index] == pivot) return true;
+            }
+            return false;
+        }
+
+        // Branchless block partition of array[low..high-1] around the pivot stored in array[high]
+        private static int blockPartition(double[] array, int low, int high, double pivot) {
+            int[] offsetsLeft = new int[BLOCK_SIZE];
+            int[] offsetsRight = new int[BLOCK_SIZE];
+            int left = low, right = high - 1;
+            int startLeft = 0, numLeft = 0, startRight = 0, numRight = 0;
+
+            while (right - left + 1 > 2 * BLOCK_SIZE) {
+                if (numLeft == 0) {
+                    startLeft = 0;
+                    for (int i = 0; i < BLOCK_SIZE; i++) {
+                        offsetsLeft[numLeft] = i;
+                        numLeft += array[left + i] >= pivot ? 1 : 0;
+                    }
+                }
+                if (numRight == 0) {
+                    startRight = 0;
+                    for (int i = 0; i < BLOCK_SIZE; i++) {
+                        offsetsRight[numRight] = i;
+                        numRight += array[right - i] <= pivot ? 1 : 0;
+                    }
+                }
+                int num = Math.min(numLeft, numRight);
+                for (int j = 0; j < num; j++) {
+                    int l = left + offsetsLeft[startLeft + j], r = right - offsetsRight[startRight + j];
+                    double temp = array[l];
+                    array[l] = array[r];
+                    array[r] = temp;
+                }
+                numLeft -= num;
+                numRight -= num;
+                startLeft += num;
+                startRight += num;
+                if (numLeft == 0) left += BLOCK_SIZE;
+                if (numRight == 0) right -= BLOCK_SIZE;
+            }
+
+            int i = left;
+            for (int j = left; j <= right; j++) {
+                double value = array[j];
+                array[j] = array[i];
+                array[i] = value;
+                i += value < pivot ? 1 : 0;
+            }
+
+            array[high] = array[i];
+            array[i] = pivot;
+            return i;
+        }
+
+        // HeapSort fallback for array[low..high]
+        private static void heapSort(double[] array, int low, int high) {
+            int len = high - low + 1;
+            for (int i = len / 2 - 1; i >= 0; i--) siftDown(array, low, i, len);
+            for (int end = len - 1; end > 0; end--) {
+                double temp = array[low];
+                array[low] = array[low + end];
+                array[low + end] = temp;
+                siftDown(array, low, 0, end);
+            }
+        }
+
+        private static void siftDown(double[] array, int offset, int root, int len) {
+            double value = array[offset + root];
+            int child;
+            while ((child = 2 * root + 1) < len) {
+                if (child + 1 < len && array[offset + child] < array[offset + child + 1]) child++;
+                if (value >= array[offset + child]) break;
+                array[offset + root] = array[offset + child];
+                root = child;
+            }
+            array[offset + root] = value;
+        }
+
+        // Method to trigger the parallel quicksort on array[low..high]
+        static void sort(double[] array, int low, int high, ForkJoinPool pool) {
+            int depth = 2 * (32 - Integer.numberOfLeadingZeros(Math.max(high - low + 1, 1)));
+            run(new DoubleQuickSort(array, low, high, depth), high - low + 1, pool);
+        }
+    }
+
+    static final class DoubleMergeSort extends Sorting.SortTask {
+        // The sorted halves are merged from src into dst, the two arrays swap roles at every level
+        private final double[] src;
+        private final double[] dst;
+        private final int low;
+        private final int high;
+
+        DoubleMergeSort(double[] src, double[] dst, int low, int high) {
+            this.src = src;
+            this.dst = dst;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Sorting.Parameters.getForkThreshold(Sorting.Parameters.Engine.MERGESORT, Sorting.Parameters.Type.DOUBLE);
+        }
+
+        @Override
+        protected void compute() {
+            // If array size is below threshold, sort directly in dst, which still holds the original elements
+            if (high - low <= Sorting.Parameters.getCutoff(Sorting.Parameters.Engine.MERGESORT, Sorting.Parameters.Type.DOUBLE)) {
+                insertionSort(dst, low, high);
+                return;
+            }
+
+            // Else, split the problem and sort each half into src
+            int mid = low + (high - low) / 2;
+            invokeSubtasks(high - low + 1, new DoubleMergeSort(dst, src, low, mid),
+                    new DoubleMergeSort(dst, src, mid + 1, high));
+
+            // If the halves are already in order, there is nothing to merge
+            if (src[mid] <= src[mid + 1]) {
+                System.arraycopy(src, low, dst, low, high - low + 1);
+                return;
+            }
+            invokeSubtasks(high - low + 1, new DoubleMerge(src, dst, low, mid + 1, mid + 1, high + 1, low));
+        }
+
+        // Method to trigger the parallel mergesort on array[low..high]
+        static void sort(double[] array, int low, int high, ForkJoinPool pool) {
+            if (high - low < 1) return;
+            // The only allocation of the whole sort, both arrays start with the same content
+            double[] aux = array.clone();
+            run(new DoubleMergeSort(aux, array, low, high), high - low + 1, pool);
+        }
+    }
+
+    static final class DoubleMerge extends Sorting.SortTask {
+        private static final int SEQUENTIAL_THRESHOLD = 1 << 13;
+
+        private final double[] src;
+        private final double[] dst;
+        // The runs are src[low1..high1) and src[low2..high2), the upper bounds are exclusive
+        private final int low1, high1, low2, high2;
+        private final int at;
+
+        DoubleMerge(double[] src, double[] dst, int low1, int high1, int low2, int high2, int at) {
+            this.src = src;
+            this.dst = dst;
+            this.low1 = low1;
+            this.high1 = high1;
+            this.low2 = low2;
+            this.high2 = high2;
+            this.at = at;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Sorting.Parameters.getForkThreshold(Sorting.Parameters.Engine.MERGESORT, Sorting.Parameters.Type.DOUBLE);
+        }
+
+        @Override
+        protected void compute() {
+            if (high1 - low1 + high2 - low2 <= SEQUENTIAL_THRESHOLD) {
+                int i = low1, j = low2, k = at;
+                while (i < high1 && j < high2) {
+                    if (src[i] <= src[j]) dst[k++] = src[i++];
+                    else dst[k++] = src[j++];
+                }
+                System.arraycopy(src, i, dst, k, high1 - i);
+                System.arraycopy(src, j, dst, k + high1 - i, high2 - j);
+                return;
+            }
+
+            // Split the longer run at its middle, and the other run at the same value
+            int mid1, mid2;
+            if (high1 - low1 >= high2 - low2) {
+                mid1 = (low1 + high1) >>> 1;
+                double key = src[mid1];
+                int lo = low2, hi = high2;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (src[mid] < key) lo = mid + 1;
+                    else hi = mid;
+                }
+                mid2 = lo;
+            } else {
+                mid2 = (low2 + high2) >>> 1;
+                double key = src[mid2];
+                int lo = low1, hi = high1;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (src[mid] <= key) lo = mid + 1;
+                    else hi = mid;
+                }
+                mid1 = lo;
+            }
+            invokeSubtasks(high1 - low1 + high2 - low2, new DoubleMerge(src, dst, low1, mid1, low2, mid2, at),
+                    new DoubleMerge(src, dst, mid1, high1, mid2, high2, at + (mid1 - low1) + (mid2 - low2)));
+        }
+    }
+
+    // Insertion sort for small-sized problems
+    private static void insertionSort(double[] array, int low, int high) {
+        for (int i, k = low; ++k < high + 1; ) {
+            double key = array[i = k];
+            if (key < array[i - 1]) {
+                while (--i >= low && key < array[i]) {
+                    array[i + 1] = array[i];
+                }
+                array[i + 1] = key;
+            }
+        }
+    }
+
+    static final class FloatQuickSort extends Sorting.SortTask {
+        private static final int BLOCK_SIZE = 64;
+        private static final int NINTHER_THRESHOLD = 128;
+
+        private final float[] array;
+        private final int low;
+        private final int high;
+        // Remaining recursion depth before switching to HeapSort
+        private final int depth;
+
+        FloatQuickSort(float[] array, int low, int high, int depth) {
+            this.array = array;
+            this.low = low;
+            this.high = high;
+            this.depth = depth;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Sorting.Parameters.getForkThreshold(Sorting.Parameters.Engine.QUICKSORT, Sorting.Parameters.Type.FLOAT);
+        }
+
+        @Override
+        protected void compute() {
+            // If the problem size is below threshold, solve it directly
+            if (high - low <= Sorting.Parameters.getCutoff(Sorting.Parameters.Engine.QUICKSORT, Sorting.Parameters.Type.FLOAT)) {
+                insertionSort(array, low, high);
+                return;
+            }
+
+            // If the recursion got too deep, the pivots were bad. HeapSort guarantees O(n log n) for the rest
+            if (depth == 0) {
+                heapSort(array, low, high);
+                return;
+            }
+
+            int tmp_pivot = choosePivot(array, low, high);
+            float pivot = array[tmp_pivot];
+
+            // Many equal elements are put in their final place at once with a three-way partition
+            if (hasDuplicateSamples(array, low, high, tmp_pivot)) {
+                threeWayPartition(pivot);
+                return;
+            }
+
+            // Swapping pivot element to end of array
+            array[tmp_pivot] = array[high];
+            array[high] = pivot;
+
+            int pivotIndex = blockPartition(array, low, high, pivot);
+
+            // Recursively sort elements before and after pivot
+            invokeSubtasks(high - low + 1, new FloatQuickSort(array, low, pivotIndex - 1, depth - 1),
+                    new FloatQuickSort(array, pivotIndex + 1, high, depth - 1));
+        }
+
+        // Partitions the range into < pivot, == pivot and > pivot
+        private void threeWayPartition(float pivot) {
+            int lt = low, i = low, gt = high;
+            while (i <= gt) {
+                float value = array[i];
+                if (value < pivot) {
+                    array[i++] = array[lt];
+                    array[lt++] = value;
+                } else if (value > pivot) {
+                    array[i] = array[gt];
+                    array[gt--] = value;
+                } else {
+                    i++;
+                }
+            }
+            invokeSubtasks(high - low + 1, new FloatQuickSort(array, low, lt - 1, depth - 1),
+                    new FloatQuickSort(array, gt + 1, high, depth - 1));
+        }
+
+        // Returns the index of the median of three, or of the ninther for large ranges
+        private static int choosePivot(float[] array, int low, int high) {
+            int mid = low + (high - low) / 2;
+            if (high - low < NINTHER_THRESHOLD) return median3(array, low, mid, high);
+            int step = (high - low) / 8;
+            return median3(array,
+                    median3(array, low, low + step, low + 2 * step),
+                    median3(array, mid - step, mid, mid + step),
+                    median3(array, high - 2 * step, high - step, high));
+        }
+
+        // Returns the index of the median of array[a], array[b] and array[c]
+        private static int median3(float[] array, int a, int b, int c) {
+            if (array[a] < array[b]) {
+                if (array[b] < array[c]) return b;
+                return array[a] < array[c] ? c : a;
+            }
+            if (array[a] < array[c]) return a;
+            return array[b] < array[c] ? c : b;
+        }
+
+        // Checks whether the pivot value appears again among five evenly spaced samples of the range
+        private static boolean hasDuplicateSamples(float[] array, int low, int high, int pivotIndex) {
+            int quarter = (high - low) / 4;
+            float pivot = array[pivotIndex];
+            for (int k = 0, index = low; k < 5; k++, index = k < 4 ? index + quarter : high) {
+                if (index != pivotIndex && array[index] == pivot) return true;
+            }
+            return false;
+        }
+
+        // Branchless block partition of array[low..high-1] around the pivot stored in array[high]
+        private static int blockPartition(float[] array, int low, int high, float pivot) {
+            int[] offsetsLeft = new int[BLOCK_SIZE];
+            int[] offsetsRight = new int[BLOCK_SIZE];
+            int left = low, right = high - 1;
+            int startLeft = 0, numLeft = 0, startRight = 0, numRight = 0;
+
+            while (right - left + 1 > 2 * BLOCK_SIZE) {
+                if (numLeft == 0) {
+                    startLeft = 0;
+                    for (int i = 0; i < BLOCK_SIZE; i++) {
+                        offsetsLeft[numLeft] = i;
+                        numLeft += array[left + i] >= pivot ? 1 : 0;
+                    }
+                }
+                if (numRight == 0) {
+                    startRight = 0;
+                    for (int i = 0; i < BLOCK_SIZE; i++) {
+                        offsetsRight[numRight] = i;
+                        numRight += array[right - i] <= pivot ? 1 : 0;
+                    }
+                }
+                int num = Math.min(numLeft, numRight);
+                for (int j = 0; j < num; j++) {
+                    int l = left + offsetsLeft[startLeft + j], r = right - offsetsRight[startRight + j];
+                    float temp = array[l];
+                    array[l] = array[r];
+                    array[r] = temp;
+                }
+                numLeft -= num;
+                numRight -= num;
+                startLeft += num;
+                startRight += num;
+                if (numLeft == 0) left += BLOCK_SIZE;
+                if (numRight == 0) right -= BLOCK_SIZE;
+            }
+
+            int i = left;
+            for (int j = left; j <= right; j++) {
+                float value = array[j];
+                array[j] = array[i];
+                array[i] = value;
+                i += value < pivot ? 1 : 0;
+            }
+
+            array[high] = array[i];
+            array[i] = pivot;
+            return i;
+        }
+
+        // HeapSort fallback for array[low..high]
+        private static void heapSort(float[] array, int low, int high) {
+            int len = high - low + 1;
+            for (int i = len / 2 - 1; i >= 0; i--) siftDown(array, low, i, len);
+            for (int end = len - 1; end > 0; end--) {
+                float temp = array[low];
+                array[low] = array[low + end];
+                array[low + end] = temp;
+                siftDown(array, low, 0, end);
+            }
+        }
+
+        private static void siftDown(float[] array, int offset, int root, int len) {
+            float value = array[offset + root];
+            int child;
+            while ((child = 2 * root + 1) < len) {
+                if (child + 1 < len && array[offset + child] < array[offset + child + 1]) child++;
+                if (value >= array[offset + child]) break;
+                array[offset + root] = array[offset + child];
+                root = child;
+            }
+            array[offset + root] = value;
+        }
+
+        // Method to trigger the parallel quicksort on array[low..high]
+        static void sort(float[] array, int low, int high, ForkJoinPool pool) {
+            int depth = 2 * (32 - Integer.numberOfLeadingZeros(Math.max(high - low + 1, 1)));
+            run(new FloatQuickSort(array, low, high, depth), high - low + 1, pool);
+        }
+    }
+
+    static final class FloatMergeSort extends Sorting.SortTask {
+        // The sorted halves are merged from src into dst, the two arrays swap roles at every level
+        private final float[] src;
+        private final float[] dst;
+        private final int low;
+        private final int high;
+
+        FloatMergeSort(float[] src, float[] dst, int low, int high) {
+            this.src = src;
+            this.dst = dst;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Sorting.Parameters.getForkThreshold(Sorting.Parameters.Engine.MERGESORT, Sorting.Parameters.Type.FLOAT);
+        }
+
+        @Override
+        protected void compute() {
+            // If array size is below threshold, sort directly in dst, which still holds the original elements
+            if (high - low <= Sorting.Parameters.getCutoff(Sorting.Parameters.Engine.MERGESORT, Sorting.Parameters.Type.FLOAT)) {
+                insertionSort(dst, low, high);
+                return;
+            }
+
+            // Else, split the problem and sort each half into src
+            int mid = low + (high - low) / 2;
+            invokeSubtasks(high - low + 1, new FloatMergeSort(dst, src, low, mid),
+                    new FloatMergeSort(dst, src, mid + 1, high));
+
+            // If the halves are already in order, there is nothing to merge
+            if (src[mid] <= src[mid + 1]) {
+                System.arraycopy(src, low, dst, low, high - low + 1);
+                return;
+            }
+            invokeSubtasks(high - low + 1, new FloatMerge(src, dst, low, mid + 1, mid + 1, high + 1, low));
+        }
+
+        // Method to trigger the parallel mergesort on array[low..high]
+        static void sort(float[] array, int low, int high, ForkJoinPool pool) {
+            if (high - low < 1) return;
+            // The only allocation of the whole sort, both arrays start with the same content
+            float[] aux = array.clone();
+            run(new FloatMergeSort(aux, array, low, high), high - low + 1, pool);
+        }
+    }
+
+    static final class FloatMerge extends Sorting.SortTask {
+        private static final int SEQUENTIAL_THRESHOLD = 1 << 13;
+
+        private final float[] src;
+        private final float[] dst;
+        // The runs are src[low1..high1) and src[low2..high2), the upper bounds are exclusive
+        private final int low1, high1, low2, high2;
+        private final int at;
+
+        FloatMerge(float[] src, float[] dst, int low1, int high1, int low2, int high2, int at) {
+            this.src = src;
+            this.dst = dst;
+            this.low1 = low1;
+            this.high1 = high1;
+            this.low2 = low2;
+            this.high2 = high2;
+            this.at = at;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Sorting.Parameters.getForkThreshold(Sorting.Parameters.Engine.MERGESORT, Sorting.Parameters.Type.FLOAT);
+        }
+
+        @Override
+        protected void compute() {
+            if (high1 - low1 + high2 - low2 <= SEQUENTIAL_THRESHOLD) {
+                int i = low1, j = low2, k = at;
+                while (i < high1 && j < high2) {
+                    if (src[i] <= src[j]) dst[k++] = src[i++];
+                    else dst[k++] = src[j++];
+                }
+                System.arraycopy(src, i, dst, k, high1 - i);
+                System.arraycopy(src, j, dst, k + high1 - i, high2 - j);
+                return;
+            }
+
+            // Split the longer run at its middle, and the other run at the same value
+            int mid1, mid2;
+            if (high1 - low1 >= high2 - low2) {
+                mid1 = (low1 + high1) >>> 1;
+                float key = src[mid1];
+                int lo = low2, hi = high2;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (src[mid] < key) lo = mid + 1;
+                    else hi = mid;
+                }
+                mid2 = lo;
+            } else {
+                mid2 = (low2 + high2) >>> 1;
+                float key = src[mid2];
+                int lo = low1, hi = high1;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (src[mid] <= key) lo = mid + 1;
+                    else hi = mid;
+                }
+                mid1 = lo;
+            }
+            invokeSubtasks(high1 - low1 + high2 - low2, new FloatMerge(src, dst, low1, mid1, low2, mid2, at),
+                    new FloatMerge(src, dst, mid1, high1, mid2, high2, at + (mid1 - low1) + (mid2 - low2)));
+        }
+    }
+
+    // Insertion sort for small-sized problems
+    private static void insertionSort(float[] array, int low, int high) {
+        for (int i, k = low; ++k < high + 1; ) {
+            float key = array[i = k];
+            if (key < array[i - 1]) {
+                while (--i >= low && key < array[i]) {
+                    array[i + 1] = array[i];
+                }
+                array[i + 1] = key;
+            }
+        }
+    }
+
+    static final class ShortQuickSort extends Sorting.SortTask {
+        private static final int BLOCK_SIZE = 64;
+        private static final int NINTHER_THRESHOLD = 128;
+
+        private final short[] array;
+        private final int low;
+        private final int high;
+        // Remaining recursion depth before switching to HeapSort
+        private final int depth;
+
+        ShortQuickSort(short[] array, int low, int high, int depth) {
+            this.array = array;
+            this.low = low;
+            this.high = high;
+            this.depth = depth;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Sorting.Parameters.getForkThreshold(Sorting.Parameters.Engine.QUICKSORT, Sorting.Parameters.Type.SHORT);
+        }
+
+        @Override
+        protected void compute() {
+            // If the problem size is below threshold, solve it directly
+            if (high - low <= Sorting.Parameters.getCutoff(Sorting.Parameters.Engine.QUICKSORT, Sorting.Parameters.Type.SHORT)) {
+                insertionSort(array, low, high);
+                return;
+            }
+
+            // If the recursion got too deep, the pivots were bad. HeapSort guarantees O(n log n) for the rest
+            if (depth == 0) {
+                heapSort(array, low, high);
+                return;
+            }
+
+            int tmp_pivot = choosePivot(array, low, high);
+            short pivot = array[tmp_pivot];
+
+            // Many equal elements are put in their final place at once with a three-way partition
+            if (hasDuplicateSamples(array, low, high, tmp_pivot)) {
+                threeWayPartition(pivot);
+                return;
+            }
+
+            // Swapping pivot element to end of array
+            array[tmp_pivot] = array[high];
+            array[high] = pivot;
+
+            int pivotIndex = blockPartition(array, low, high, pivot);
+
+            // Recursively sort elements before and after pivot
+            invokeSubtasks(high - low + 1, new ShortQuickSort(array, low, pivotIndex - 1, depth - 1),
+                    new ShortQuickSort(array, pivotIndex + 1, high, depth - 1));
+        }
+
+        // Partitions the range into < pivot, == pivot and > pivot
+        private void threeWayPartition(short pivot) {
+            int lt = low, i = low, gt = high;
+            while (i <= gt) {
+                short value = array[i];
+                if (value < pivot) {
+                    array[i++] = array[lt];
+                    array[lt++] = value;
+                } else if (value > pivot) {
+                    array[i] = array[gt];
+                    array[gt--] = value;
+                } else {
+                    i++;
+                }
+            }
+            invokeSubtasks(high - low + 1, new ShortQuickSort(array, low, lt - 1, depth - 1),
+                    new ShortQuickSort(array, gt + 1, high, depth - 1));
+        }
+
+        // Returns the index of the median of three, or of the ninther for large ranges
+        private static int choosePivot(short[] array, int low, int high) {
+            int mid = low + (high - low) / 2;
+            if (high - low < NINTHER_THRESHOLD) return median3(array, low, mid, high);
+            int step = (high - low) / 8;
+            return median3(array,
+                    median3(array, low, low + step, low + 2 * step),
+                    median3(array, mid - step, mid, mid + step),
+                    median3(array, high - 2 * step, high - step, high));
+        }
+
+        // Returns the index of the median of array[a], array[b] and array[c]
+        private static int median3(short[] array, int a, int b, int c) {
+            if (array[a] < array[b]) {
+                if (array[b] < array[c]) return b;
+                return array[a] < array[c] ? c : a;
+            }
+            if (array[a] < array[c]) return a;
+            return array[b] < array[c] ? c : b;
+        }
+
+        // Checks whether the pivot value appears again among five evenly spaced samples of the range
+        private static boolean hasDuplicateSamples(short[] array, int low, int high, int pivotIndex) {
+            int quarter = (high - low) / 4;
+            short pivot = array[pivotIndex];
+            for (int k = 0, index = low; k < 5; k++, index = k < 4 ? index + quarter : high) {
+                if (index != pivotIndex && array[index] == pivot) return true;
+            }
+            return false;
+        }
+
+        // Branchless block partition of array[low..high-1] around the pivot stored in array[high]
+        private static int blockPartition(short[] array, int low, int high, short pivot) {
+            int[] offsetsLeft = new int[BLOCK_SIZE];
+            int[] offsetsRight = new int[BLOCK_SIZE];
+            int left = low, right = high - 1;
+            int startLeft = 0, numLeft = 0, startRight = 0, numRight = 0;
+
+            while (right - left + 1 > 2 * BLOCK_SIZE) {
+                if (numLeft == 0) {
+                    startLeft = 0;
+                    for (int i = 0; i < BLOCK_SIZE; i++) {
+                        offsetsLeft[numLeft] = i;
+                        numLeft += array[left + i] >= pivot ? 1 : 0;
+                    }
+                }
+                if (numRight == 0) {
+                    startRight = 0;
+                    for (int i = 0; i < BLOCK_SIZE; i++) {
+                        offsetsRight[numRight] = i;
+                        numRight += array[right - i] <= pivot ? 1 : 0;
+                    }
+                }
+                int num = Math.min(numLeft, numRight);
+                for (int j = 0; j < num; j++) {
+                    int l = left + offsetsLeft[startLeft + j], r = right - offsetsRight[startRight + j];
+                    short temp = array[l];
+                    array[l] = array[r];
+                    array[r] = temp;
+                }
+                numLeft -= num;
+                numRight -= num;
+                startLeft += num;
+                startRight += num;
+                if (numLeft == 0) left += BLOCK_SIZE;
+                if (numRight == 0) right -= BLOCK_SIZE;
+            }
+
+            int i = left;
+            for (int j = left; j <= right; j++) {
+                short value = array[j];
+                array[j] = array[i];
+                array[i] = value;
+                i += value < pivot ? 1 : 0;
+            }
+
+            array[high] = array[i];
+            array[i] = pivot;
+            return i;
+        }
+
+        // HeapSort fallback for array[low..high]
+        private static void heapSort(short[] array, int low, int high) {
+            int len = high - low + 1;
+            for (int i = len / 2 - 1; i >= 0; i--) siftDown(array, low, i, len);
+            for (int end = len - 1; end > 0; end--) {
+                short temp = array[low];
+                array[low] = array[low + end];
+                array[low + end] = temp;
+                siftDown(array, low, 0, end);
+            }
+        }
+
+        private static void siftDown(short[] array, int offset, int root, int len) {
+            short value = array[offset + root];
+            int child;
+            while ((child = 2 * root + 1) < len) {
+                if (child + 1 < len && array[offset + child] < array[offset + child + 1]) child++;
+                if (value >= array[offset + child]) break;
+                array[offset + root] = array[offset + child];
+                root = child;
+            }
+            array[offset + root] = value;
+        }
+
+        // Method to trigger the parallel quicksort on array[low..high]
+        static void sort(short[] array, int low, int high, ForkJoinPool pool) {
+            int depth = 2 * (32 - Integer.numberOfLeadingZeros(Math.max(high - low + 1, 1)));
+            run(new ShortQuickSort(array, low, high, depth), high - low + 1, pool);
+        }
+    }
+
+    static final class ShortMergeSort extends Sorting.SortTask {
+        // The sorted halves are merged from src into dst, the two arrays swap roles at every level
+        private final short[] src;
+        private final short[] dst;
+        private final int low;
+        private final int high;
+
+        ShortMergeSort(short[] src, short[] dst, int low, int high) {
+            this.src = src;
+            this.dst = dst;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Sorting.Parameters.getForkThreshold(Sorting.Parameters.Engine.MERGESORT, Sorting.Parameters.Type.SHORT);
+        }
+
+        @Override
+        protected void compute() {
+            // If array size is below threshold, sort directly in dst, which still holds the original elements
+            if (high - low <= Sorting.Parameters.getCutoff(Sorting.Parameters.Engine.MERGESORT, Sorting.Parameters.Type.SHORT)) {
+                insertionSort(dst, low, high);
+                return;
+            }
+
+            // Else, split the problem and sort each half into src
+            int mid = low + (high - low) / 2;
+            invokeSubtasks(high - low + 1, new ShortMergeSort(dst, src, low, mid),
+                    new ShortMergeSort(dst, src, mid + 1, high));
+
+            // If the halves are already in order, there is nothing to merge
+            if (src[mid] <= src[mid + 1]) {
+                System.arraycopy(src, low, dst, low, high - low + 1);
+                return;
+            }
+            invokeSubtasks(high - low + 1, new ShortMerge(src, dst, low, mid + 1, mid + 1, high + 1, low));
+        }
+
+        // Method to trigger the parallel mergesort on array[low..high]
+        static void sort(short[] array, int low, int high, ForkJoinPool pool) {
+            if (high - low < 1) return;
+            // The only allocation of the whole sort, both arrays start with the same content
+            short[] aux = array.clone();
+            run(new ShortMergeSort(aux, array, low, high), high - low + 1, pool);
+        }
+    }
+
+    static final class ShortMerge extends Sorting.SortTask {
+        private static final int SEQUENTIAL_THRESHOLD = 1 << 13;
+
+        private final short[] src;
+        private final short[] dst;
+        // The runs are src[low1..high1) and src[low2..high2), the upper bounds are exclusive
+        private final int low1, high1, low2, high2;
+        private final int at;
+
+        ShortMerge(short[] src, short[] dst, int low1, int high1, int low2, int high2, int at) {
+            this.src = src;
+            this.dst = dst;
+            this.low1 = low1;
+            this.high1 = high1;
+            this.low2 = low2;
+            this.high2 = high2;
+            this.at = at;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Sorting.Parameters.getForkThreshold(Sorting.Parameters.Engine.MERGESORT, Sorting.Parameters.Type.SHORT);
+        }
+
+        @Override
+        protected void compute() {
+            if (high1 - low1 + high2 - low2 <= SEQUENTIAL_THRESHOLD) {
+                int i = low1, j = low2, k = at;
+                while (i < high1 && j < high2) {
+                    if (src[i] <= src[j]) dst[k++] = src[i++];
+                    else dst[k++] = src[j++];
+                }
+                System.arraycopy(src, i, dst, k, high1 - i);
+                System.arraycopy(src, j, dst, k + high1 - i, high2 - j);
+                return;
+            }
+
+            // Split the longer run at its middle, and the other run at the same value
+            int mid1, mid2;
+            if (high1 - low1 >= high2 - low2) {
+                mid1 = (low1 + high1) >>> 1;
+                short key = src[mid1];
+                int lo = low2, hi = high2;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (src[mid] < key) lo = mid + 1;
+                    else hi = mid;
+                }
+                mid2 = lo;
+            } else {
+                mid2 = (low2 + high2) >>> 1;
+                short key = src[mid2];
+                int lo = low1, hi = high1;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (src[mid] <= key) lo = mid + 1;
+                    else hi = mid;
+                }
+                mid1 = lo;
+            }
+            invokeSubtasks(high1 - low1 + high2 - low2, new ShortMerge(src, dst, low1, mid1, low2, mid2, at),
+                    new ShortMerge(src, dst, mid1, high1, mid2, high2, at + (mid1 - low1) + (mid2 - low2)));
+        }
+    }
+
+    // Insertion sort for small-sized problems
+    private static void insertionSort(short[] array, int low, int high) {
+        for (int i, k = low; ++k < high + 1; ) {
+            short key = array[i = k];
+            if (key < array[i - 1]) {
+                while (--i >= low && key < array[i]) {
+                    array[i + 1] = array[i];
+                }
+                array[i + 1] = key;
+            }
+        }
+    }
+
+    static final class CharQuickSort extends Sorting.SortTask {
+        private static final int BLOCK_SIZE = 64;
+        private static final int NINTHER_THRESHOLD = 128;
+
+        private final char[] array;
+        private final int low;
+        private final int high;
+        // Remaining recursion depth before switching to HeapSort
+        private final int depth;
+
+        CharQuickSort(char[] array, int low, int high, int depth) {
+            this.array = array;
+            this.low = low;
+            this.high = high;
+            this.depth = depth;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Sorting.Parameters.getForkThreshold(Sorting.Parameters.Engine.QUICKSORT, Sorting.Parameters.Type.CHAR);
+        }
+
+        @Override
+        protected void compute() {
+            // If the problem size is below threshold, solve it directly
+            if (high - low <= Sorting.Parameters.getCutoff(Sorting.Parameters.Engine.QUICKSORT, Sorting.Parameters.Type.CHAR)) {
+                insertionSort(array, low, high);
+                return;
+            }
+
+            // If the recursion got too deep, the pivots were bad. HeapSort guarantees O(n log n) for the rest
+            if (depth == 0) {
+                heapSort(array, low, high);
+                return;
+            }
+
+            int tmp_pivot = choosePivot(array, low, high);
+            char pivot = array[tmp_pivot];
+
+            // Many equal elements are put in their final place at once with a three-way partition
+            if (hasDuplicateSamples(array, low, high, tmp_pivot)) {
+                threeWayPartition(pivot);
+                return;
+            }
+
+            // Swapping pivot element to end of array
+            array[tmp_pivot] = array[high];
+            array[high] = pivot;
+
+            int pivotIndex = blockPartition(array, low, high, pivot);
+
+            // Recursively sort elements before and after pivot
+            invokeSubtasks(high - low + 1, new CharQuickSort(array, low, pivotIndex - 1, depth - 1),
+                    new CharQuickSort(array, pivotIndex + 1, high, depth - 1));
+        }
+
+        // Partitions the range into < pivot, == pivot and > pivot
+        private void threeWayPartition(char pivot) {
+            int lt = low, i = low, gt = high;
+            while (i <= gt) {
+                char value = array[i];
+                if (value < pivot) {
+                    array[i++] = array[lt];
+                    array[lt++] = value;
+                } else if (value > pivot) {
+                    array[i] = array[gt];
+                    array[gt--] = value;
+                } else {
+                    i++;
+                }
+            }
+            invokeSubtasks(high - low + 1, new CharQuickSort(array, low, lt - 1, depth - 1),
+                    new CharQuickSort(array, gt + 1, high, depth - 1));
+        }
+
+        // Returns the index of the median of three, or of the ninther for large ranges
+        private static int choosePivot(char[] array, int low, int high) {
+            int mid = low + (high - low) / 2;
+            if (high - low < NINTHER_THRESHOLD) return median3(array, low, mid, high);
+            int step = (high - low) / 8;
+            return median3(array,
+                    median3(array, low, low + step, low + 2 * step),
+                    median3(array, mid - step, mid, mid + step),
+                    median3(array, high - 2 * step, high - step, high));
+        }
+
+        // Returns the index of the median of array[a], array[b] and array[c]
+        private static int median3(char[] array, int a, int b, int c) {
+            if (array[a] < array[b]) {
+                if (array[b] < array[c]) return b;
+                return array[a] < array[c] ? c : a;
+            }
+            if (array[a] < array[c]) return a;
+            return array[b] < array[c] ? c : b;
+        }
+
+        // Checks whether the pivot value appears again among five evenly spaced samples of the range
+        private static boolean hasDuplicateSamples(char[] array, int low, int high, int pivotIndex) {
+            int quarter = (high - low) / 4;
+            char pivot = array[pivotIndex];
+            for (int k = 0, index = low; k < 5; k++, index = k < 4 ? index + quarter : high) {
+                if (index != pivotIndex && array[index] == pivot) return true;
+            }
+            return false;
+        }
+
+        // Branchless block partition of array[low..high-1] around the pivot stored in array[high]
+        private static int blockPartition(char[] array, int low, int high, char pivot) {
+            int[] offsetsLeft = new int[BLOCK_SIZE];
+            int[] offsetsRight = new int[BLOCK_SIZE];
+            int left = low, right = high - 1;
+            int startLeft = 0, numLeft = 0, startRight = 0, numRight = 0;
+
+            while (right - left + 1 > 2 * BLOCK_SIZE) {
+                if (numLeft == 0) {
+                    startLeft = 0;
+                    for (int i = 0; i < BLOCK_SIZE; i++) {
+                        offsetsLeft[numLeft] = i;
+                        numLeft += array[left + i] >= pivot ? 1 : 0;
+                    }
+                }
+                if (numRight == 0) {
+                    startRight = 0;
+                    for (int i = 0; i < BLOCK_SIZE; i++) {
+                        offsetsRight[numRight] = i;
+                        numRight += array[right - i] <= pivot ? 1 : 0;
+                    }
+                }
+                int num = Math.min(numLeft, numRight);
+                for (int j = 0; j < num; j++) {
+                    int l = left + offsetsLeft[startLeft + j], r = right - offsetsRight[startRight + j];
+                    char temp = array[l];
+                    array[l] = array[r];
+                    array[r] = temp;
+                }
+                numLeft -= num;
+                numRight -= num;
+                startLeft += num;
+                startRight += num;
+                if (numLeft == 0) left += BLOCK_SIZE;
+                if (numRight == 0) right -= BLOCK_SIZE;
+            }
+
+            int i = left;
+            for (int j = left; j <= right; j++) {
+                char value = array[j];
+                array[j] = array[i];
+                array[i] = value;
+                i += value < pivot ? 1 : 0;
+            }
+
+            array[high] = array[i];
+            array[i] = pivot;
+            return i;
+        }
+
+        // HeapSort fallback for array[low..high]
+        private static void heapSort(char[] array, int low, int high) {
+            int len = high - low + 1;
+            for (int i = len / 2 - 1; i >= 0; i--) siftDown(array, low, i, len);
+            for (int end = len - 1; end > 0; end--) {
+                char temp = array[low];
+                array[low] = array[low + end];
+                array[low + end] = temp;
+                siftDown(array, low, 0, end);
+            }
+        }
+
+        private static void siftDown(char[] array, int offset, int root, int len) {
+            char value = array[offset + root];
+            int child;
+            while ((child = 2 * root + 1) < len) {
+                if (child + 1 < len && array[offset + child] < array[offset + child + 1]) child++;
+                if (value >= array[offset + child]) break;
+                array[offset + root] = array[offset + child];
+                root = child;
+            }
+            array[offset + root] = value;
+        }
+
+        // Method to trigger the parallel quicksort on array[low..high]
+        static void sort(char[] array, int low, int high, ForkJoinPool pool) {
+            int depth = 2 * (32 - Integer.numberOfLeadingZeros(Math.max(high - low + 1, 1)));
+            run(new CharQuickSort(array, low, high, depth), high - low + 1, pool);
+        }
+    }
+
+    static final class CharMergeSort extends Sorting.SortTask {
+        // The sorted halves are merged from src into dst, the two arrays swap roles at every level
+        private final char[] src;
+        private final char[] dst;
+        private final int low;
+        private final int high;
+
+        CharMergeSort(char[] src, char[] dst, int low, int high) {
+            this.src = src;
+            this.dst = dst;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Sorting.Parameters.getForkThreshold(Sorting.Parameters.Engine.MERGESORT, Sorting.Parameters.Type.CHAR);
+        }
+
+        @Override
+        protected void compute() {
+            // If array size is below threshold, sort directly in dst, which still holds the original elements
+            if (high - low <= Sorting.Parameters.getCutoff(Sorting.Parameters.Engine.MERGESORT, Sorting.Parameters.Type.CHAR)) {
+                insertionSort(dst, low, high);
+                return;
+            }
+
+            // Else, split the problem and sort each half into src
+            int mid = low + (high - low) / 2;
+            invokeSubtasks(high - low + 1, new CharMergeSort(dst, src, low, mid),
+                    new CharMergeSort(dst, src, mid + 1, high));
+
+            // If the halves are already in order, there is nothing to merge
+            if (src[mid] <= src[mid + 1]) {
+                System.arraycopy(src, low, dst, low, high - low + 1);
+                return;
+            }
+            invokeSubtasks(high - low + 1, new CharMerge(src, dst, low, mid + 1, mid + 1, high + 1, low));
+        }
+
+        // Method to trigger the parallel mergesort on array[low..high]
+        static void sort(char[] array, int low, int high, ForkJoinPool pool) {
+            if (high - low < 1) return;
+            // The only allocation of the whole sort, both arrays start with the same content
+            char[] aux = array.clone();
+            run(new CharMergeSort(aux, array, low, high), high - low + 1, pool);
+        }
+    }
+
+    static final class CharMerge extends Sorting.SortTask {
+        private static final int SEQUENTIAL_THRESHOLD = 1 << 13;
+
+        private final char[] src;
+        private final char[] dst;
+        // The runs are src[low1..high1) and src[low2..high2), the upper bounds are exclusive
+        private final int low1, high1, low2, high2;
+        private final int at;
+
+        CharMerge(char[] src, char[] dst, int low1, int high1, int low2, int high2, int at) {
+            this.src = src;
+            this.dst = dst;
+            this.low1 = low1;
+            this.high1 = high1;
+            this.low2 = low2;
+            this.high2 = high2;
+            this.at = at;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Sorting.Parameters.getForkThreshold(Sorting.Parameters.Engine.MERGESORT, Sorting.Parameters.Type.CHAR);
+        }
+
+        @Override
+        protected void compute() {
+            if (high1 - low1 + high2 - low2 <= SEQUENTIAL_THRESHOLD) {
+                int i = low1, j = low2, k = at;
+                while (i < high1 && j < high2) {
+                    if (src[i] <= src[j]) dst[k++] = src[i++];
+                    else dst[k++] = src[j++];
+                }
+                System.arraycopy(src, i, dst, k, high1 - i);
+                System.arraycopy(src, j, dst, k + high1 - i, high2 - j);
+                return;
+            }
+
+            // Split the longer run at its middle, and the other run at the same value
+            int mid1, mid2;
+            if (high1 - low1 >= high2 - low2) {
+                mid1 = (low1 + high1) >>> 1;
+                char key = src[mid1];
+                int lo = low2, hi = high2;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (src[mid] < key) lo = mid + 1;
+                    else hi = mid;
+                }
+                mid2 = lo;
+            } else {
+                mid2 = (low2 + high2) >>> 1;
+                char key = src[mid2];
+                int lo = low1, hi = high1;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (src[mid] <= key) lo = mid + 1;
+                    else hi = mid;
+                }
+                mid1 = lo;
+            }
+            invokeSubtasks(high1 - low1 + high2 - low2, new CharMerge(src, dst, low1, mid1, low2, mid2, at),
+                    new CharMerge(src, dst, mid1, high1, mid2, high2, at + (mid1 - low1) + (mid2 - low2)));
+        }
+    }
+
+    // Insertion sort for small-sized problems
+    private static void insertionSort(char[] array, int low, int high) {
+        for (int i, k = low; ++k < high + 1; ) {
+            char key = array[i = k];
+            if (key < array[i - 1]) {
+                while (--i >= low && key < array[i]) {
+                    array[i + 1] = array[i];
+                }
+                array[i + 1] = key;
+            }
+        }
+    }
+
+    static final class ByteQuickSort extends Sorting.SortTask {
+        private static final int BLOCK_SIZE = 64;
+        private static final int NINTHER_THRESHOLD = 128;
+
+        private final byte[] array;
+        private final int low;
+        private final int high;
+        // Remaining recursion depth before switching to HeapSort
+        private final int depth;
+
+        ByteQuickSort(byte[] array, int low, int high, int depth) {
+            this.array = array;
+            this.low = low;
+            this.high = high;
+            this.depth = depth;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Sorting.Parameters.getForkThreshold(Sorting.Parameters.Engine.QUICKSORT, Sorting.Parameters.Type.BYTE);
+        }
+
+        @Override
+        protected void compute() {
+            // If the problem size is below threshold, solve it directly
+            if (high - low <= Sorting.Parameters.getCutoff(Sorting.Parameters.Engine.QUICKSORT, Sorting.Parameters.Type.BYTE)) {
+                insertionSort(array, low, high);
+                return;
+            }
+
+            // If the recursion got too deep, the pivots were bad. HeapSort guarantees O(n log n) for the rest
+            if (depth == 0) {
+                heapSort(array, low, high);
+                return;
+            }
+
+            int tmp_pivot = choosePivot(array, low, high);
+            byte pivot = array[tmp_pivot];
+
+            // Many equal elements are put in their final place at once with a three-way partition
+            if (hasDuplicateSamples(array, low, high, tmp_pivot)) {
+                threeWayPartition(pivot);
+                return;
+            }
+
+            // Swapping pivot element to end of array
+            array[tmp_pivot] = array[high];
+            array[high] = pivot;
+
+            int pivotIndex = blockPartition(array, low, high, pivot);
+
+            // Recursively sort elements before and after pivot
+            invokeSubtasks(high - low + 1, new ByteQuickSort(array, low, pivotIndex - 1, depth - 1),
+                    new ByteQuickSort(array, pivotIndex + 1, high, depth - 1));
+        }
+
+        // Partitions the range into < pivot, == pivot and > pivot
+        private void threeWayPartition(byte pivot) {
+            int lt = low, i = low, gt = high;
+            while (i <= gt) {
+                byte value = array[i];
+                if (value < pivot) {
+                    array[i++] = array[lt];
+                    array[lt++] = value;
+                } else if (value > pivot) {
+                    array[i] = array[gt];
+                    array[gt--] = value;
+                } else {
+                    i++;
+                }
+            }
+            invokeSubtasks(high - low + 1, new ByteQuickSort(array, low, lt - 1, depth - 1),
+                    new ByteQuickSort(array, gt + 1, high, depth - 1));
+        }
+
+        // Returns the index of the median of three, or of the ninther for large ranges
+        private static int choosePivot(byte[] array, int low, int high) {
+            int mid = low + (high - low) / 2;
+            if (high - low < NINTHER_THRESHOLD) return median3(array, low, mid, high);
+            int step = (high - low) / 8;
+            return median3(array,
+                    median3(array, low, low + step, low + 2 * step),
+                    median3(array, mid - step, mid, mid + step),
+                    median3(array, high - 2 * step, high - step, high));
+        }
+
+        // Returns the index of the median of array[a], array[b] and array[c]
+        private static int median3(byte[] array, int a, int b, int c) {
+            if (array[a] < array[b]) {
+                if (array[b] < array[c]) return b;
+                return array[a] < array[c] ? c : a;
+            }
+            if (array[a] < array[c]) return a;
+            return array[b] < array[c] ? c : b;
+        }
+
+        // Checks whether the pivot value appears again among five evenly spaced samples of the range
+        private static boolean hasDuplicateSamples(byte[] array, int low, int high, int pivotIndex) {
+            int quarter = (high - low) / 4;
+            byte pivot = array[pivotIndex];
+            for (int k = 0, index = low; k < 5; k++, index = k < 4 ? index + quarter : high) {
+                if (index != pivotIndex && array[index] == pivot) return true;
+            }
+            return false;
+        }
+
+        // Branchless block partition of array[low..high-1] around the pivot stored in array[high]
+        private static int blockPartition(byte[] array, int low, int high, byte pivot) {
+            int[] offsetsLeft = new int[BLOCK_SIZE];
+            int[] offsetsRight = new int[BLOCK_SIZE];
+            int left = low, right = high - 1;
+            int startLeft = 0, numLeft = 0, startRight = 0, numRight = 0;
+
+            while (right - left + 1 > 2 * BLOCK_SIZE) {
+                if (numLeft == 0) {
+                    startLeft = 0;
+                    for (int i = 0; i < BLOCK_SIZE; i++) {
+                        offsetsLeft[numLeft] = i;
+                        numLeft += array[left + i] >= pivot ? 1 : 0;
+                    }
+                }
+                if (numRight == 0) {
+                    startRight = 0;
+                    for (int i = 0; i < BLOCK_SIZE; i++) {
+                        offsetsRight[numRight] = i;
+                        numRight += array[right - i] <= pivot ? 1 : 0;
+                    }
+                }
+                int num = Math.min(numLeft, numRight);
+                for (int j = 0; j < num; j++) {
+                    int l = left + offsetsLeft[startLeft + j], r = right - offsetsRight[startRight + j];
+                    byte temp = array[l];
+                    array[l] = array[r];
+                    array[r] = temp;
+                }
+                numLeft -= num;
+                numRight -= num;
+                startLeft += num;
+                startRight += num;
+                if (numLeft == 0) left += BLOCK_SIZE;
+                if (numRight == 0) right -= BLOCK_SIZE;
+            }
+
+            int i = left;
+            for (int j = left; j <= right; j++) {
+                byte value = array[j];
+                array[j] = array[i];
+                array[i] = value;
+                i += value < pivot ? 1 : 0;
+            }
+
+            array[high] = array[i];
+            array[i] = pivot;
+            return i;
+        }
+
+        // HeapSort fallback for array[low..high]
+        private static void heapSort(byte[] array, int low, int high) {
+            int len = high - low + 1;
+            for (int i = len / 2 - 1; i >= 0; i--) siftDown(array, low, i, len);
+            for (int end = len - 1; end > 0; end--) {
+                byte temp = array[low];
+                array[low] = array[low + end];
+                array[low + end] = temp;
+                siftDown(array, low, 0, end);
+            }
+        }
+
+        private static void siftDown(byte[] array, int offset, int root, int len) {
+            byte value = array[offset + root];
+            int child;
+            while ((child = 2 * root + 1) < len) {
+                if (child + 1 < len && array[offset + child] < array[offset + child + 1]) child++;
+                if (value >= array[offset + child]) break;
+                array[offset + root] = array[offset + child];
+                root = child;
+            }
+            array[offset + root] = value;
+        }
+
+        // Method to trigger the parallel quicksort on array[low..high]
+        static void sort(byte[] array, int low, int high, ForkJoinPool pool) {
+            int depth = 2 * (32 - Integer.numberOfLeadingZeros(Math.max(high - low + 1, 1)));
+            run(new ByteQuickSort(array, low, high, depth), high - low + 1, pool);
+        }
+    }
+
+    static final class ByteMergeSort extends Sorting.SortTask {
+        // The sorted halves are merged from src into dst, the two arrays swap roles at every level
+        private final byte[] src;
+        private final byte[] dst;
+        private final int low;
+        private final int high;
+
+        ByteMergeSort(byte[] src, byte[] dst, int low, int high) {
+            this.src = src;
+            this.dst = dst;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Sorting.Parameters.getForkThreshold(Sorting.Parameters.Engine.MERGESORT, Sorting.Parameters.Type.BYTE);
+        }
+
+        @Override
+        protected void compute() {
+            // If array size is below threshold, sort directly in dst, which still holds the original elements
+            if (high - low <= Sorting.Parameters.getCutoff(Sorting.Parameters.Engine.MERGESORT, Sorting.Parameters.Type.BYTE)) {
+                insertionSort(dst, low, high);
+                return;
+            }
+
+            // Else, split the problem and sort each half into src
+            int mid = low + (high - low) / 2;
+            invokeSubtasks(high - low + 1, new ByteMergeSort(dst, src, low, mid),
+                    new ByteMergeSort(dst, src, mid + 1, high));
+
+            // If the halves are already in order, there is nothing to merge
+            if (src[mid] <= src[mid + 1]) {
+                System.arraycopy(src, low, dst, low, high - low + 1);
+                return;
+            }
+            invokeSubtasks(high - low + 1, new ByteMerge(src, dst, low, mid + 1, mid + 1, high + 1, low));
+        }
+
+        // Method to trigger the parallel mergesort on array[low..high]
+        static void sort(byte[] array, int low, int high, ForkJoinPool pool) {
+            if (high - low < 1) return;
+            // The only allocation of the whole sort, both arrays start with the same content
+            byte[] aux = array.clone();
+            run(new ByteMergeSort(aux, array, low, high), high - low + 1, pool);
+        }
+    }
+
+    static final class ByteMerge extends Sorting.SortTask {
+        private static final int SEQUENTIAL_THRESHOLD = 1 << 13;
+
+        private final byte[] src;
+        private final byte[] dst;
+        // The runs are src[low1..high1) and src[low2..high2), the upper bounds are exclusive
+        private final int low1, high1, low2, high2;
+        private final int at;
+
+        ByteMerge(byte[] src, byte[] dst, int low1, int high1, int low2, int high2, int at) {
+            this.src = src;
+            this.dst = dst;
+            this.low1 = low1;
+            this.high1 = high1;
+            this.low2 = low2;
+            this.high2 = high2;
+            this.at = at;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Sorting.Parameters.getForkThreshold(Sorting.Parameters.Engine.MERGESORT, Sorting.Parameters.Type.BYTE);
+        }
+
+        @Override
+        protected void compute() {
+            if (high1 - low1 + high2 - low2 <= SEQUENTIAL_THRESHOLD) {
+                int i = low1, j = low2, k = at;
+                while (i < high1 && j < high2) {
+                    if (src[i] <= src[j]) dst[k++] = src[i++];
+                    else dst[k++] = src[j++];
+                }
+                System.arraycopy(src, i, dst, k, high1 - i);
+                System.arraycopy(src, j, dst, k + high1 - i, high2 - j);
+                return;
+            }
+
+            // Split the longer run at its middle, and the other run at the same value
+            int mid1, mid2;
+            if (high1 - low1 >= high2 - low2) {
+                mid1 = (low1 + high1) >>> 1;
+                byte key = src[mid1];
+                int lo = low2, hi = high2;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (src[mid] < key) lo = mid + 1;
+                    else hi = mid;
+                }
+                mid2 = lo;
+            } else {
+                mid2 = (low2 + high2) >>> 1;
+                byte key = src[mid2];
+                int lo = low1, hi = high1;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (src[mid] <= key) lo = mid + 1;
+                    else hi = mid;
+                }
+                mid1 = lo;
+            }
+            invokeSubtasks(high1 - low1 + high2 - low2, new ByteMerge(src, dst, low1, mid1, low2, mid2, at),
+                    new ByteMerge(src, dst, mid1, high1, mid2, high2, at + (mid1 - low1) + (mid2 - low2)));
+        }
+    }
+
+    // Insertion sort for small-sized problems
+    private static void insertionSort(byte[] array, int low, int high) {
+        for (int i, k = low; ++k < high + 1; ) {
+            byte key = array[i = k];
+            if (key < array[i - 1]) {
+                while (--i >= low && key < array[i]) {
+                    array[i + 1] = array[i];
+                }
+                array[i + 1] = key;
+            }
+        }
+    }
+}
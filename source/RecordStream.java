@@ -0,0 +1,190 @@
+package myJavaLib;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy reader of the objects of a file as a stream, see {@link Data#stream(String, Class)}. Use the methods of Data
+ * instead of this class.
+ * <p>
+ * A record log is read frame by frame through a buffer, and its index splits it: the middle record of a range is
+ * looked up in the index, and the two halves are byte ranges of the log that are read by separate threads of a
+ * parallel stream. The records after the last indexed one, which an index that lags behind after a crash doesn't
+ * have, are read by the last range. Files of the older versions of {@link Data#writeObjectToFile} are a single
+ * stream of objects, they are read sequentially.
+ */
+final class RecordStream {
+    // Ranges with fewer records are not split, a range costs a buffer and a lookup in the index
+    private static final long MIN_SPLIT = 64;
+
+    private RecordStream() {
+    }
+
+    /**
+     * Opens a file as a lazy stream of objects of a type, the file is closed when the stream is.
+     *
+     * @throws IOException if the file can't be opened
+     */
+    static <T> Stream<T> open(Path path, Class<T> type) throws IOException {
+        return FramedLog.isLog(path) ? openLog(path, type) : openLegacy(path, type);
+    }
+
+    private static <T> Stream<T> openLog(Path path, Class<T> type) throws IOException {
+        FileChannel log = FileChannel.open(path, StandardOpenOption.READ);
+        FileChannel index = null;
+        try {
+            // The records written after this are not read
+            long size = log.size();
+            long indexed = 0;
+            long tail = FramedLog.HEADER;
+            Path indexPath = FramedLog.indexPath(path);
+            if (Files.exists(indexPath)) {
+                index = FileChannel.open(indexPath, StandardOpenOption.READ);
+                indexed = FramedLog.indexed(index, size);
+                if (indexed > 0) tail = FramedLog.offset(index, indexed - 1);
+            }
+            FileChannel indexChannel = index;
+            Spliterator<T> spliterator = new FrameSpliterator<>(log, index, type, 0, indexed, FramedLog.HEADER, size,
+                    tail);
+            return StreamSupport.stream(spliterator, false).onClose(() -> {
+                try {
+                    log.close();
+                    if (indexChannel != null) indexChannel.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            if (index != null) index.close();
+            throw e;
+        }
+    }
+
+    private static <T> Stream<T> openLegacy(Path path, Class<T> type) throws IOException {
+        InputStream input = new BufferedInputStream(Files.newInputStream(path));
+        ObjectInputStream objects;
+        try {
+            objects = new ObjectInputStream(input);
+        } catch (EOFException e) {
+            // An empty file has no header
+            input.close();
+            return Stream.empty();
+        } catch (IOException | RuntimeException e) {
+            input.close();
+            throw e;
+        }
+        // The appended objects reset the stream, so the reader doesn't keep the objects read before
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                Object object;
+                try {
+                    object = objects.readObject();
+                } catch (EOFException e) {
+                    return false;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (ClassNotFoundException e) {
+                    throw new UncheckedIOException(new IOException("Cannot recognize the object's class: "
+                            + e.getMessage(), e));
+                }
+                action.accept(type.cast(object));
+                return true;
+            }
+        };
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                objects.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    // A range of the frames of a log. It splits by records of the index until it starts reading
+    private static final class FrameSpliterator<T> implements Spliterator<T> {
+        private final FileChannel log;
+        private final FileChannel index;
+        private final Class<T> type;
+        // The indexed records of the range, from is inclusive and to exclusive
+        private long from;
+        private final long to;
+        // The bytes of the range, start is the offset of its first frame and limit the end of its last one
+        private long start;
+        private final long limit;
+        // The offset of the last indexed frame, a torn frame before it is corrupt
+        private final long tail;
+        private FramedLog.FrameReader reader;
+
+        FrameSpliterator(FileChannel log, FileChannel index, Class<T> type, long from, long to, long start,
+                         long limit, long tail) {
+            this.log = log;
+            this.index = index;
+            this.type = type;
+            this.from = from;
+            this.to = to;
+            this.start = start;
+            this.limit = limit;
+            this.tail = tail;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (reader == null) reader = new FramedLog.FrameReader(log, start, limit, tail);
+            Object object;
+            try {
+                object = reader.next();
+            } catch (EOFException e) {
+                // The end of the range, or a torn frame at the end of the log. Corrupt frames before it throw
+                return false;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            from++;
+            action.accept(type.cast(object));
+            return true;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (reader != null || to - from < 2 * MIN_SPLIT) return null;
+            long middle = (from + to) >>> 1;
+            long offset;
+            try {
+                offset = FramedLog.offset(index, middle);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            // The first half is returned and this one keeps the second, so the tail after the index stays last
+            Spliterator<T> prefix = new FrameSpliterator<>(log, index, type, from, middle, start, offset, tail);
+            from = middle;
+            start = offset;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            // Unknown without an index. The records after the index are not counted, there are usually none
+            return index == null ? Long.MAX_VALUE : Math.max(0, to - from);
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED;
+        }
+    }
+}
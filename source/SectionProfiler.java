@@ -0,0 +1,283 @@
+package myJavaLib;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The named section profiler. Use {@link Benchmark#section(String)} instead of this class.
+ * <p>
+ * A thread records into the histograms of a recorder that it holds from its outermost open section until that
+ * section is closed, and is the only one writing them meanwhile, so recording a section takes no lock. The outermost
+ * sections take the recorder from a pool and put it back with a compare-and-set each. The recorders are reused by
+ * the next threads with their histograms, so a thread per request doesn't allocate histograms or take a lock on
+ * every request: once the pool holds as many recorders as there are threads in sections at the same time, recording
+ * allocates nothing.
+ * The histograms are log-linear like HDR histograms: 16 buckets for every power of two, so a percentile is
+ * within 1/16 of the exact value whatever the magnitude of the times.
+ * The histograms of all recorders are merged only when the statistics are asked for.
+ */
+final class SectionProfiler {
+    // Times below 2^SUB_BITS are exact, larger ones have 2^SUB_BITS buckets per power of two
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // Enough buckets for any positive long
+    static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+    // Indices of the totals stored after the buckets
+    static final int COUNT = BUCKETS;
+    static final int TOTAL = BUCKETS + 1;
+    static final int MIN = BUCKETS + 2;
+    static final int MAX = BUCKETS + 3;
+    static final int BYTES = BUCKETS + 4;
+    private static final int SIZE = BUCKETS + 5;
+    // Number of idle recorders kept for the next threads, a power of two. Recorders returned to a full pool are
+    // merged into the retired histograms
+    private static final int POOL = 256;
+
+    // Allocated bytes of the current thread, null if the JVM can't measure them
+    private static final com.sun.management.ThreadMXBean allocations = allocationBean();
+
+    // Every recorder, held by a thread or idle
+    private static final ConcurrentLinkedQueue<ThreadRecorder> recorders = new ConcurrentLinkedQueue<>();
+    // The idle recorders. A slot is taken and filled with a compare-and-set, which hands the histograms over to the
+    // next thread
+    private static final AtomicReferenceArray<ThreadRecorder> idle = new AtomicReferenceArray<>(POOL);
+    // The recorder of the current thread while it has open sections, in a slot of its own so that taking and
+    // returning a recorder doesn't change the thread local map
+    private static final ThreadLocal<ThreadRecorder[]> recorder = ThreadLocal.withInitial(() -> new ThreadRecorder[1]);
+    // Histograms of the recorders that didn't fit in the pool, guarded by the class lock
+    private static final Map<String, long[]> retired = new TreeMap<>();
+    // Incremented by every reset. Recorders of an older epoch clear themselves before their next section
+    private static volatile long epoch;
+
+    private SectionProfiler() {
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return null;
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        try {
+            if (!sunBean.isThreadAllocatedMemorySupported()) return null;
+            if (!sunBean.isThreadAllocatedMemoryEnabled()) sunBean.setThreadAllocatedMemoryEnabled(true);
+            return sunBean;
+        } catch (UnsupportedOperationException | SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return true if the allocated bytes of the sections are measured
+     */
+    static boolean isAllocationSupported() {
+        return allocations != null;
+    }
+
+    // Bytes allocated by the current thread so far, 0 if they can't be measured
+    private static long allocatedBytes() {
+        return allocations != null ? allocations.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    static Benchmark.Section open(String name) {
+        ThreadRecorder[] held = recorder.get();
+        ThreadRecorder current = held[0];
+        if (current == null) {
+            current = acquire();
+            held[0] = current;
+        }
+        if (current.epoch != epoch) current.reset();
+        Benchmark.Section section = current.push();
+        section.name = name;
+        section.owner = Thread.currentThread();
+        section.startBytes = allocatedBytes();
+        section.startTime = System.nanoTime();
+        return section;
+    }
+
+    static void close(Benchmark.Section section) {
+        long elapsed = System.nanoTime() - section.startTime;
+        long bytes = allocatedBytes() - section.startBytes;
+        if (section.owner != Thread.currentThread()) {
+            throw new IllegalStateException("A section must be closed by the thread that opened it!");
+        }
+        // Throws before changing anything if the section is closed out of order
+        section.recorder.pop(section);
+        section.owner = null;
+        section.recorder.record(section.name, elapsed, bytes);
+        if (section.recorder.depth == 0) {
+            recorder.get()[0] = null;
+            release(section.recorder);
+        }
+    }
+
+    // Takes an idle recorder, or creates one if there is none. The search starts at a slot of the thread, so
+    // threads rarely compete for the same slots
+    private static ThreadRecorder acquire() {
+        int start = slot();
+        for (int i = 0; i < POOL; i++) {
+            int index = (start + i) & (POOL - 1);
+            ThreadRecorder idleRecorder = idle.get(index);
+            if (idleRecorder != null && idle.compareAndSet(index, idleRecorder, null)) return idleRecorder;
+        }
+        ThreadRecorder created = new ThreadRecorder(epoch);
+        recorders.add(created);
+        return created;
+    }
+
+    // Puts a recorder back in the pool once its thread has closed all of its sections
+    private static void release(ThreadRecorder released) {
+        int start = slot();
+        for (int i = 0; i < POOL; i++) {
+            int index = (start + i) & (POOL - 1);
+            if (idle.get(index) == null && idle.compareAndSet(index, null, released)) return;
+        }
+        retire(released);
+    }
+
+    private static int slot() {
+        return (int) Thread.currentThread().getId() * 0x9E3779B9 >>> (32 - Integer.numberOfTrailingZeros(POOL));
+    }
+
+    // Merges the histograms of a recorder that the pool has no room for, and forgets it
+    private static synchronized void retire(ThreadRecorder retiring) {
+        if (retiring.epoch == epoch) copyInto(retiring, retired);
+        recorders.remove(retiring);
+    }
+
+    // Index of the bucket of a non-negative value
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BITS;
+        // The value shifted right has its highest bit at SUB_BITS, the bits below it select the sub-bucket
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    // Middle of the range of values of a bucket
+    static long bucketValue(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long low = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return low + ((1L << shift) >> 1);
+    }
+
+    /**
+     * Merges the histograms of all threads by section name.
+     *
+     * @return the merged histograms of the sections recorded since the last reset, sorted by name
+     */
+    static synchronized Map<String, long[]> snapshot() {
+        long current = epoch;
+        Map<String, long[]> merged = new TreeMap<>();
+        for (ThreadRecorder threadRecorder : recorders) {
+            if (threadRecorder.epoch == current) copyInto(threadRecorder, merged);
+        }
+        for (Map.Entry<String, long[]> entry : retired.entrySet()) {
+            merge(merged.computeIfAbsent(entry.getKey(), key -> empty()), entry.getValue());
+        }
+        return merged;
+    }
+
+    static synchronized void reset() {
+        epoch++;
+        retired.clear();
+    }
+
+    // Merges the histograms of a recorder into the given ones by section name
+    private static void copyInto(ThreadRecorder threadRecorder, Map<String, long[]> target) {
+        for (Map.Entry<String, AtomicLongArray> entry : threadRecorder.histograms.entrySet()) {
+            long[] histogram = target.computeIfAbsent(entry.getKey(), key -> empty());
+            AtomicLongArray values = entry.getValue();
+            // A thread may record while it is copied, then the copy is a sample or two off
+            long[] copy = new long[SIZE];
+            for (int i = 0; i < SIZE; i++) copy[i] = values.get(i);
+            merge(histogram, copy);
+        }
+    }
+
+    // An empty histogram with the layout of the section histograms
+    static long[] empty() {
+        long[] histogram = new long[SIZE];
+        histogram[MIN] = Long.MAX_VALUE;
+        return histogram;
+    }
+
+    // Records a time into a histogram that only the current thread uses
+    static void record(long[] histogram, long nanos) {
+        histogram[bucket(Math.max(0, nanos))]++;
+        histogram[COUNT]++;
+        histogram[TOTAL] += nanos;
+        histogram[MIN] = Math.min(histogram[MIN], nanos);
+        histogram[MAX] = Math.max(histogram[MAX], nanos);
+    }
+
+    static void merge(long[] target, long[] source) {
+        // A histogram that was just created may not have a sample yet
+        if (source[COUNT] == 0) return;
+        for (int i = 0; i < BUCKETS; i++) target[i] += source[i];
+        target[COUNT] += source[COUNT];
+        target[TOTAL] += source[TOTAL];
+        target[MIN] = Math.min(target[MIN], source[MIN]);
+        target[MAX] = Math.max(target[MAX], source[MAX]);
+        target[BYTES] += source[BYTES];
+    }
+
+
+    // The sections and histograms of the thread that holds the recorder. Only that thread writes them
+    static final class ThreadRecorder {
+        // Histograms by section name. Read by snapshot() while the thread writes them, so every value is written
+        // with a release store and read with a volatile load
+        private final Map<String, AtomicLongArray> histograms = new ConcurrentHashMap<>();
+        // The open sections, reused by the next sections at the same depth
+        private Benchmark.Section[] stack = new Benchmark.Section[8];
+        private int depth;
+        private volatile long epoch;
+
+        ThreadRecorder(long epoch) {
+            this.epoch = epoch;
+        }
+
+        void reset() {
+            histograms.clear();
+            epoch = SectionProfiler.epoch;
+        }
+
+        Benchmark.Section push() {
+            if (depth == stack.length) stack = Arrays.copyOf(stack, depth * 2);
+            Benchmark.Section section = stack[depth];
+            if (section == null) section = stack[depth] = new Benchmark.Section(this);
+            depth++;
+            return section;
+        }
+
+        void pop(Benchmark.Section section) {
+            if (depth == 0 || stack[depth - 1] != section) {
+                throw new IllegalStateException("Sections must be closed in the reverse order they were opened!");
+            }
+            depth--;
+        }
+
+        void record(String name, long nanos, long bytes) {
+            AtomicLongArray histogram = histograms.get(name);
+            if (histogram == null) {
+                histogram = new AtomicLongArray(SIZE);
+                histogram.set(MIN, Long.MAX_VALUE);
+                histograms.put(name, histogram);
+            }
+            // Single writer: plain reads of the own values, release stores for the readers
+            int bucket = bucket(Math.max(0, nanos));
+            histogram.lazySet(bucket, histogram.getPlain(bucket) + 1);
+            histogram.lazySet(TOTAL, histogram.getPlain(TOTAL) + nanos);
+            histogram.lazySet(MIN, Math.min(histogram.getPlain(MIN), nanos));
+            histogram.lazySet(MAX, Math.max(histogram.getPlain(MAX), nanos));
+            histogram.lazySet(BYTES, histogram.getPlain(BYTES) + bytes);
+            histogram.lazySet(COUNT, histogram.getPlain(COUNT) + 1);
+        }
+    }
+}
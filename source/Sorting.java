@@ -1,56 +1,705 @@
 package myJavaLib;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Properties;
+import java.util.SplittableRandom;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
 
 /**
  * A utility class providing static methods of different sorting algorithms.
  * Each of these algorithms can be used for sorting arrays of integers.
+ * The parallel QuickSort and MergeSort algorithms also have overloads for the other primitive types.
+ * <p>
+ * The parallel algorithms run on {@link ForkJoinPool#commonPool()} unless a pool is given, the library doesn't
+ * start any threads of its own. Arrays smaller than the fork threshold in {@link Parameters} are sorted on the calling thread.
  */
 public abstract class Sorting {
 
     /**
-     * Inside this class you can find and adjust some parameters related to the QuickSort and MergeSort algorithms.
+     * Inside this class you can find and adjust some parameters related to the QuickSort, MergeSort and RadixSort algorithms.
+     * Every algorithm has its own values for every primitive type.
+     * <p>
+     * The defaults are good on most machines, but the best values depend on the CPU. {@link #calibrate()} measures them
+     * on the current machine and {@link #saveProfile(String)} stores them in a tuning profile, which is loaded
+     * automatically on startup. The profile is read from the path in the {@code myJavaLib.tuningProfile} system property,
+     * or from {@code ~/.myJavaLib/sorting.properties} if the property is not set.
+     * <p>
+     * The int QuickSort and MergeSort can use Vector API kernels for their small ranges and partitions,
+     * see {@link #setVectorized(boolean)}.
      */
-    static abstract class Parameters {
+    public static abstract class Parameters {
+
+        /**
+         * The parallel algorithms that have tunable parameters.
+         */
+        public enum Engine {
+            QUICKSORT, MERGESORT, RADIXSORT
+        }
+
+        /**
+         * The types the parallel algorithms can sort. OBJECT is used by the comparator sorts.
+         */
+        public enum Type {
+            INT, LONG, DOUBLE, FLOAT, SHORT, CHAR, BYTE, OBJECT
+        }
+
         /**
-         * The array size threshold for switching to InsertionSort in QuickSort algorithm.
-         * You can play with different values, though testing has shown 30 to be an optimal choice.
+         * The default array size threshold for switching to InsertionSort.
          */
-        private static int QUICKSORT_CUTOFF = 30;
+        private static final int DEFAULT_CUTOFF = 30;
         /**
-         * The array size threshold for switching to InsertionSort in QuickSort algorithm.
-         * You can play with different values, though testing has shown 30 to be an optimal choice.
+         * The default array size threshold below which the parallel algorithms stop forking new tasks
+         * and sort the rest on the current thread. Arrays smaller than this are sorted entirely on the calling thread.
          */
-        private static int MERGESORT_CUTOFF = 30;
+        private static final int DEFAULT_FORK_THRESHOLD = 1 << 13;
 
+        // The thresholds for switching to InsertionSort, indexed by engine and type
+        private static final int[][] CUTOFFS = new int[Engine.values().length][Type.values().length];
+        // The thresholds for forking new tasks, indexed by engine and type
+        private static final int[][] FORK_THRESHOLDS = new int[Engine.values().length][Type.values().length];
 
-        public static int getQuicksortCutoff() {
-            return QUICKSORT_CUTOFF;
+        // The Vector API kernels, null if they can't be loaded
+        private static final VectorKernels VECTOR_KERNELS = loadVectorKernels();
+        // The kernels used by the sorts, null while the scalar code is used
+        private static VectorKernels kernels =
+                Boolean.parseBoolean(System.getProperty("myJavaLib.vector", "true")) ? VECTOR_KERNELS : null;
+
+        static {
+            for (int[] row : CUTOFFS) Arrays.fill(row, DEFAULT_CUTOFF);
+            for (int[] row : FORK_THRESHOLDS) Arrays.fill(row, DEFAULT_FORK_THRESHOLD);
+            // Load the tuning profile of this machine, if there is one
+            if (Files.exists(Path.of(getProfilePath()))) loadProfile(getProfilePath());
         }
 
-        public static void setQuicksortCutoff(int quicksortCutoff) {
-            if (quicksortCutoff > 0) { // Add your validation rule here.
-                QUICKSORT_CUTOFF = quicksortCutoff;
+        /**
+         * @param engine the algorithm
+         * @param type   the type of the array
+         * @return the array size threshold for switching to InsertionSort
+         */
+        public static int getCutoff(Engine engine, Type type) {
+            return CUTOFFS[engine.ordinal()][type.ordinal()];
+        }
+
+        /**
+         * @param engine the algorithm
+         * @param type   the type of the array
+         * @param cutoff the array size threshold for switching to InsertionSort
+         * @throws IllegalArgumentException if the cutoff is not positive
+         */
+        public static void setCutoff(Engine engine, Type type, int cutoff) {
+            if (cutoff > 0) {
+                CUTOFFS[engine.ordinal()][type.ordinal()] = cutoff;
+            } else {
+                throw new IllegalArgumentException("Threshold must be greater than 0!");
+            }
+        }
+
+        /**
+         * @param engine the algorithm
+         * @param type   the type of the array
+         * @return the array size threshold below which no more tasks are forked
+         */
+        public static int getForkThreshold(Engine engine, Type type) {
+            return FORK_THRESHOLDS[engine.ordinal()][type.ordinal()];
+        }
+
+        /**
+         * @param engine        the algorithm
+         * @param type          the type of the array
+         * @param forkThreshold the array size threshold below which no more tasks are forked
+         * @throws IllegalArgumentException if the threshold is not positive
+         */
+        public static void setForkThreshold(Engine engine, Type type, int forkThreshold) {
+            if (forkThreshold > 0) {
+                FORK_THRESHOLDS[engine.ordinal()][type.ordinal()] = forkThreshold;
             } else {
                 throw new IllegalArgumentException("Threshold must be greater than 0!");
             }
         }
 
+        /**
+         * @return true if the Vector API kernels could be loaded. It needs the {@code source-vector} classes,
+         * the {@code --add-modules jdk.incubator.vector} option and a CPU with 256-bit vectors
+         */
+        public static boolean isVectorAvailable() {
+            return VECTOR_KERNELS != null;
+        }
+
+        /**
+         * @return true if the int QuickSort and MergeSort use the Vector API kernels
+         */
+        public static boolean isVectorized() {
+            return kernels != null;
+        }
+
+        /**
+         * Turns the Vector API kernels of the int QuickSort and MergeSort on or off. They are on by default when
+         * they are available, unless the {@code myJavaLib.vector} system property is false.
+         *
+         * @param vectorized true to use the kernels, false to use the scalar code
+         * @return true if the kernels are used now, which is false if they are not available
+         */
+        public static boolean setVectorized(boolean vectorized) {
+            kernels = vectorized ? VECTOR_KERNELS : null;
+            return kernels != null;
+        }
+
+        // The kernels the sorts should use, or null for the scalar code
+        static VectorKernels vectorKernels() {
+            return kernels;
+        }
+
+        // Loads the Vector API kernels by reflection, so this class works without the incubator module
+        private static VectorKernels loadVectorKernels() {
+            try {
+                return (VectorKernels) Class.forName("myJavaLib.VectorSort").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+                return null;
+            }
+        }
+
+        /**
+         * @return the QuickSort cutoff for int arrays
+         */
+        public static int getQuicksortCutoff() {
+            return getCutoff(Engine.QUICKSORT, Type.INT);
+        }
+
+        /**
+         * Sets the QuickSort cutoff for every type.
+         */
+        public static void setQuicksortCutoff(int quicksortCutoff) {
+            for (Type type : Type.values()) setCutoff(Engine.QUICKSORT, type, quicksortCutoff);
+        }
+
+        /**
+         * @return the MergeSort cutoff for int arrays
+         */
         public static int getMergesortCutoff() {
-            return MERGESORT_CUTOFF;
+            return getCutoff(Engine.MERGESORT, Type.INT);
         }
 
+        /**
+         * Sets the MergeSort cutoff for every type.
+         */
         public static void setMergesortCutoff(int mergeSortCutoff) {
-            if (mergeSortCutoff > 0) { // Add your validation rule here.
-                MERGESORT_CUTOFF = mergeSortCutoff;
+            for (Type type : Type.values()) setCutoff(Engine.MERGESORT, type, mergeSortCutoff);
+        }
+
+        /**
+         * @return the QuickSort fork threshold for int arrays
+         */
+        public static int getForkThreshold() {
+            return getForkThreshold(Engine.QUICKSORT, Type.INT);
+        }
+
+        /**
+         * Sets the fork threshold of every algorithm for every type.
+         */
+        public static void setForkThreshold(int forkThreshold) {
+            for (Engine engine : Engine.values())
+                for (Type type : Type.values()) setForkThreshold(engine, type, forkThreshold);
+        }
+
+        /**
+         * Measures the best cutoffs and fork thresholds of every algorithm and type on the current machine
+         * and applies them. It takes up to a minute, so it should be run once per machine,
+         * followed by {@link #saveProfile(String)}. Don't sort on other threads while it runs.
+         */
+        public static void calibrate() {
+            for (Engine engine : Engine.values()) {
+                for (Type type : Type.values()) {
+                    // RadixSort only exists for int arrays
+                    if (engine == Engine.RADIXSORT && type != Type.INT) continue;
+                    // The cost of sorting objects depends on their comparator, so it can't be measured in advance
+                    if (type == Type.OBJECT) continue;
+                    Calibrator.calibrate(engine, type);
+                }
+            }
+        }
+
+        /**
+         * @return the path of the tuning profile that is loaded on startup
+         */
+        public static String getProfilePath() {
+            return System.getProperty("myJavaLib.tuningProfile",
+                    Path.of(System.getProperty("user.home"), ".myJavaLib", "sorting.properties").toString());
+        }
+
+        /**
+         * Saves the current parameters to a tuning profile file.
+         *
+         * @param path the path of the file
+         * @return true if the writing process is successful, false otherwise
+         */
+        public static boolean saveProfile(String path) {
+            Properties properties = new Properties();
+            for (Engine engine : Engine.values()) {
+                for (Type type : Type.values()) {
+                    String key = engine.name().toLowerCase() + "." + type.name().toLowerCase();
+                    properties.setProperty(key + ".cutoff", String.valueOf(getCutoff(engine, type)));
+                    properties.setProperty(key + ".forkThreshold", String.valueOf(getForkThreshold(engine, type)));
+                }
+            }
+            // The comment records the machine the values were measured on
+            String comment = "myJavaLib sorting tuning profile, " + Runtime.getRuntime().availableProcessors()
+                    + " processors, " + System.getProperty("os.arch") + ", Java " + System.getProperty("java.version");
+            try {
+                Path file = Path.of(path);
+                if (file.getParent() != null) Files.createDirectories(file.getParent());
+                try (Writer writer = Files.newBufferedWriter(file)) {
+                    properties.store(writer, comment);
+                }
+                return true;
+            } catch (IOException e) {
+                System.out.println("Error: " + e.getMessage());
+                e.printStackTrace();
+                return false;
+            }
+        }
+
+        /**
+         * Loads the parameters from a tuning profile file. Values missing from the file are left unchanged.
+         *
+         * @param path the path of the file
+         * @return true if the reading process is successful, false otherwise
+         */
+        public static boolean loadProfile(String path) {
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(Path.of(path))) {
+                properties.load(reader);
+                for (Engine engine : Engine.values()) {
+                    for (Type type : Type.values()) {
+                        String key = engine.name().toLowerCase() + "." + type.name().toLowerCase();
+                        String cutoff = properties.getProperty(key + ".cutoff");
+                        String forkThreshold = properties.getProperty(key + ".forkThreshold");
+                        if (cutoff != null) setCutoff(engine, type, Integer.parseInt(cutoff.trim()));
+                        if (forkThreshold != null) setForkThreshold(engine, type, Integer.parseInt(forkThreshold.trim()));
+                    }
+                }
+                return true;
+            } catch (IOException | IllegalArgumentException e) {
+                System.out.println("Error when loading the tuning profile: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+
+    /**
+     * Base class of the parallel sorting tasks. It decides whether subtasks are forked or run on the current thread.
+     */
+    static abstract class SortTask extends RecursiveAction {
+        // If the current worker already has more queued tasks than this, the other workers have enough to steal
+        private static final int SURPLUS_LIMIT = 3;
+
+        // The counters of the sort, only set when SortStats are enabled
+        private SortStats.Recorder recorder;
+        // Level of this task in the task tree, the root task is at level 0
+        private int level;
+
+        // Runs the subtasks of a range of the given size. They are forked only if the range is large enough
+        // and the pool isn't already saturated, otherwise they run one after another on the current thread
+        final void invokeSubtasks(int size, SortTask... tasks) {
+            boolean fork = size > forkThreshold() && inForkJoinPool() && getSurplusQueuedTaskCount() <= SURPLUS_LIMIT;
+            if (SortStats.ENABLED) record(tasks, fork);
+            if (fork) {
+                invokeAll(tasks);
             } else {
-                throw new IllegalArgumentException("Threshold must be greater than 0!");
+                for (SortTask task : tasks) task.compute();
+            }
+        }
+
+        // Forks the subtasks whatever their size
+        final void forkSubtasks(SortTask... tasks) {
+            if (SortStats.ENABLED) record(tasks, true);
+            invokeAll(tasks);
+        }
+
+        // Passes the recorder of the sort to the subtasks
+        private void record(SortTask[] tasks, boolean fork) {
+            if (recorder == null) return;
+            for (SortTask task : tasks) {
+                task.recorder = recorder;
+                task.level = level + 1;
+            }
+            recorder.depth(level + 1);
+            // invokeAll forks all tasks but the first one, which runs on the current thread
+            if (fork) recorder.fork(tasks.length - 1);
+        }
+
+        // Runs the root task of a sort on the given pool. Small arrays are sorted entirely on the calling thread
+        static void run(SortTask task, int size, ForkJoinPool pool) {
+            start(task, size, pool, size > task.forkThreshold());
+        }
+
+        // Runs the root task of a sort on the given pool, whatever the size
+        static void invoke(SortTask task, int size, ForkJoinPool pool) {
+            start(task, size, pool, true);
+        }
+
+        private static void start(SortTask task, int size, ForkJoinPool pool, boolean inPool) {
+            if (!SortStats.ENABLED) {
+                if (inPool) pool.invoke(task);
+                else task.compute();
+                return;
+            }
+            // A sort may have counted the work it did before creating the root task
+            if (task.recorder == null) task.recorder = new SortStats.Recorder();
+            SortStats.Recorder recorder = task.recorder;
+            SortEvent event = new SortEvent();
+            long steals = pool.getStealCount();
+            event.begin();
+            long start = System.nanoTime();
+            if (inPool) pool.invoke(task);
+            else task.compute();
+            long elapsed = System.nanoTime() - start;
+            event.end();
+            SortStats.publish(recorder.toStats(task.getClass().getSimpleName(), size,
+                    pool.getStealCount() - steals, elapsed), event);
+        }
+
+        // The recorder of the sort, for the static helpers that count comparisons and moves. Null if not recorded
+        final SortStats.Recorder recorder() {
+            return recorder;
+        }
+
+        // Records forks of tasks that don't go through invokeSubtasks
+        final void recordForks(int tasks) {
+            if (SortStats.ENABLED && recorder != null) {
+                recorder.fork(tasks);
+                recorder.depth(level + 1);
+            }
+        }
+
+        // The fork threshold of the algorithm and type this task sorts
+        abstract int forkThreshold();
+    }
+
+
+    /**
+     * The properties of an array sampled by {@link Sorting#sort(int[])}, and the algorithm chosen for it.
+     * Ratios are estimated from a sample, not from the whole array.
+     */
+    public static final class SortProfile {
+
+        /**
+         * The algorithms {@link Sorting#sort(int[])} can choose from.
+         */
+        public enum Algorithm {
+            INSERTION_SORT, COUNTING_SORT, RUN_MERGE_SORT, MERGE_SORT, QUICK_SORT, RADIX_SORT
+        }
+
+        private final int length;
+        private final int sampleSize;
+        private final double ascendingRatio;
+        private final double descendingRatio;
+        private final long estimatedRuns;
+        private final long range;
+        private final double duplicateRatio;
+        private final Algorithm algorithm;
+        // Exact bounds of the values, only known when counting sort is chosen
+        final int min;
+        final int max;
+
+        SortProfile(int length, int sampleSize, double ascendingRatio, double descendingRatio, long estimatedRuns,
+                    long range, double duplicateRatio, Algorithm algorithm, int min, int max) {
+            this.length = length;
+            this.sampleSize = sampleSize;
+            this.ascendingRatio = ascendingRatio;
+            this.descendingRatio = descendingRatio;
+            this.estimatedRuns = estimatedRuns;
+            this.range = range;
+            this.duplicateRatio = duplicateRatio;
+            this.algorithm = algorithm;
+            this.min = min;
+            this.max = max;
+        }
+
+        /**
+         * @return the length of the array
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * @return how many elements were sampled
+         */
+        public int getSampleSize() {
+            return sampleSize;
+        }
+
+        /**
+         * @return the ratio of sampled neighbouring pairs that are in ascending order (a[i] <= a[i+1])
+         */
+        public double getAscendingRatio() {
+            return ascendingRatio;
+        }
+
+        /**
+         * @return the ratio of sampled neighbouring pairs that are in strictly descending order
+         */
+        public double getDescendingRatio() {
+            return descendingRatio;
+        }
+
+        /**
+         * @return the estimated number of ascending or descending runs in the whole array
+         */
+        public long getEstimatedRuns() {
+            return estimatedRuns;
+        }
+
+        /**
+         * @return max - min of the sampled values, or of all values if counting sort was chosen
+         */
+        public long getRange() {
+            return range;
+        }
+
+        /**
+         * @return the ratio of equal values in a sample of up to 256 of the sampled values
+         */
+        public double getDuplicateRatio() {
+            return duplicateRatio;
+        }
+
+        /**
+         * @return the algorithm chosen for the array
+         */
+        public Algorithm getAlgorithm() {
+            return algorithm;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("SortProfile{length=%d, sampleSize=%d, ascending=%.3f, descending=%.3f, runs=%d, "
+                            + "range=%d, duplicates=%.3f, algorithm=%s}", length, sampleSize, ascendingRatio,
+                    descendingRatio, estimatedRuns, range, duplicateRatio, algorithm);
+        }
+    }
+
+
+    /**
+     * Counters of one sort, recorded when the JVM runs with {@code -DmyJavaLib.sortStats=true}.
+     * They help to find out why a sort is slow: many comparisons or moves point to bad pivots, a deep recursion
+     * to skewed partitions, and many forks with few steals to tasks that were too small to be worth forking.
+     * <p>
+     * The mode is read once when the class is loaded. When it is off, the counting code is behind a static final
+     * flag and the JIT removes it, so the sorts run exactly as fast as without it.
+     * When it is on, every sort that runs on fork-join tasks is also committed as a {@code myJavaLib.Sort}
+     * JFR event, so the counters show up in a flight recording next to the GC and thread events.
+     * <p>
+     * Every sort that runs on fork-join tasks is recorded, even if the array is small enough to be sorted
+     * on the calling thread. Sorts that never create a task are not recorded: the insertion sort and counting sort
+     * chosen by {@link Sorting#sort(int[])}, and radix sort of fewer than 65536 elements.
+     * Comparisons and moves are counted by the int sorts: quicksort, mergesort, the adaptive mergesort, radix sort
+     * and select. The other sorts only record forks, depth and steals, and leave them at 0.
+     * Steals are read from {@link ForkJoinPool#getStealCount()}, which counts the steals of the whole pool,
+     * so they are only exact if nothing else runs on the pool at the same time.
+     */
+    public static final class SortStats {
+
+        /**
+         * True if the JVM runs with {@code -DmyJavaLib.sortStats=true}.
+         */
+        static final boolean ENABLED = Boolean.getBoolean("myJavaLib.sortStats");
+
+        // The stats of the last sort on each thread
+        private static final ThreadLocal<SortStats> last = new ThreadLocal<>();
+
+        private final String algorithm;
+        private final int length;
+        private final long comparisons;
+        private final long moves;
+        private final long forks;
+        private final int maxDepth;
+        private final long steals;
+        private final long elapsedNanos;
+
+        SortStats(String algorithm, int length, long comparisons, long moves, long forks, int maxDepth, long steals,
+                  long elapsedNanos) {
+            this.algorithm = algorithm;
+            this.length = length;
+            this.comparisons = comparisons;
+            this.moves = moves;
+            this.forks = forks;
+            this.maxDepth = maxDepth;
+            this.steals = steals;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return true if the sorts record their stats
+         */
+        public static boolean isEnabled() {
+            return ENABLED;
+        }
+
+        /**
+         * @return the name of the task class that sorted the array, such as "QuickSort" or "MergeSort"
+         */
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        /**
+         * @return the number of sorted elements
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * @return the number of comparisons between two elements, or between an element and a pivot
+         */
+        public long getComparisons() {
+            return comparisons;
+        }
+
+        /**
+         * @return the number of element writes, a swap counts as two
+         */
+        public long getMoves() {
+            return moves;
+        }
+
+        /**
+         * @return the number of subtasks that were forked instead of running on the current thread
+         */
+        public long getForks() {
+            return forks;
+        }
+
+        /**
+         * @return the deepest level of subtasks, the root task is at level 0
+         */
+        public int getMaxDepth() {
+            return maxDepth;
+        }
+
+        /**
+         * @return the number of tasks the workers of the pool stole from each other during the sort
+         */
+        public long getSteals() {
+            return steals;
+        }
+
+        /**
+         * @return the wall clock time of the sort in nanoseconds
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("SortStats{algorithm=%s, length=%d, comparisons=%d, moves=%d, forks=%d, maxDepth=%d, "
+                            + "steals=%d, elapsed=%.3f ms}", algorithm, length, comparisons, moves, forks, maxDepth,
+                    steals, elapsedNanos / 1e6);
+        }
+
+        // Stores the stats as the last ones of the current thread, and commits them as the JFR event of the sort.
+        // The event was begun when the sort started, so its duration is the one of the sort
+        static void publish(SortStats stats, SortEvent event) {
+            last.set(stats);
+            if (event.shouldCommit()) {
+                event.algorithm = stats.algorithm;
+                event.length = stats.length;
+                event.comparisons = stats.comparisons;
+                event.moves = stats.moves;
+                event.forks = stats.forks;
+                event.maxDepth = stats.maxDepth;
+                event.steals = stats.steals;
+                event.commit();
+            }
+        }
+
+        // Adds comparisons and moves to the recorder, if the helper runs for a recorded sort
+        static void count(Recorder recorder, long comparisons, long moves) {
+            if (ENABLED && recorder != null) recorder.count(comparisons, moves);
+        }
+
+        // The counters of a running sort, shared by all of its tasks
+        static final class Recorder {
+            private final LongAdder comparisons = new LongAdder();
+            private final LongAdder moves = new LongAdder();
+            private final LongAdder forks = new LongAdder();
+            private final AtomicInteger maxDepth = new AtomicInteger();
+
+            void count(long comparisons, long moves) {
+                this.comparisons.add(comparisons);
+                this.moves.add(moves);
+            }
+
+            void fork(int tasks) {
+                forks.add(tasks);
+            }
+
+            void depth(int level) {
+                maxDepth.accumulateAndGet(level, Math::max);
+            }
+
+            SortStats toStats(String algorithm, int length, long steals, long elapsedNanos) {
+                return new SortStats(algorithm, length, comparisons.sum(), moves.sum(), forks.sum(), maxDepth.get(),
+                        steals, elapsedNanos);
             }
         }
     }
 
 
+    // The JFR event of a sort, its duration is the time of the sort. It is only created when SortStats are enabled
+    @Name("myJavaLib.Sort")
+    @Label("Sort")
+    @Category({"myJavaLib", "Sorting"})
+    @Description("Counters of a sort recorded by myJavaLib.Sorting")
+    @StackTrace(false)
+    private static final class SortEvent extends Event {
+        @Label("Algorithm")
+        String algorithm;
+        @Label("Length")
+        int length;
+        @Label("Comparisons")
+        long comparisons;
+        @Label("Moves")
+        long moves;
+        @Label("Forks")
+        long forks;
+        @Label("Max Depth")
+        int maxDepth;
+        @Label("Steals")
+        long steals;
+    }
+
+
     /**
      * An implementation of the Insertion Sort algorithm.
      * This method sorts the given array in ascending order.
@@ -75,6 +724,45 @@ public abstract class Sorting {
         }
     }
 
+    // Sorts a small range array[low..high] with a sorting network if the Vector API is used, or with insertion sort
+    private static void smallSort(int[] array, int low, int high, SortStats.Recorder recorder) {
+        VectorKernels kernels = Parameters.vectorKernels();
+        if (kernels != null && kernels.sortSmall(array, low, high)) {
+            if (SortStats.ENABLED) countNetwork(high - low + 1, recorder);
+            return;
+        }
+        insertionSort(array, low, high, recorder);
+    }
+
+    // Counts the compare-exchanges of the bitonic network of the Vector API kernel, which sorts a power of two
+    // of at least 8 elements, and the copy of the range back to the array
+    private static void countNetwork(int len, SortStats.Recorder recorder) {
+        int size = Math.max(8, Integer.highestOneBit(Math.max(len - 1, 1)) << 1);
+        int log = Integer.numberOfTrailingZeros(size);
+        SortStats.count(recorder, (long) size / 2 * log * (log + 1) / 2, len);
+    }
+
+    // Insertion sort of array[low..high], used by the parallel algorithms for small ranges.
+    // The counters are local, so they are removed by the JIT when SortStats are disabled
+    private static void insertionSort(int[] array, int low, int high, SortStats.Recorder recorder) {
+        long comparisons = 0, moves = 0;
+        for (int i, k = low; ++k < high + 1; ) {
+            int key = array[i = k];
+            comparisons++;
+            if (key < array[i - 1]) {
+                while (--i >= low && key < array[i]) {
+                    array[i + 1] = array[i];
+                    moves++;
+                }
+                // The loop compared one more element, unless it stopped at the start of the range
+                comparisons += k - i - 1 + (i >= low ? 1 : 0);
+                array[i + 1] = key;
+                moves++;
+            }
+        }
+        SortStats.count(recorder, comparisons, moves);
+    }
+
     /**
      * An implementation of the Bubble Sort algorithm.
      * This method sorts the given array in ascending order.
@@ -156,177 +844,2168 @@ public abstract class Sorting {
     }
 
     /**
-     * Sorts the given array using Multithreaded QuickSort algorithm.
+     * An implementation of the Counting Sort algorithm.
+     * It counts how many times each value appears, so it only needs memory proportional to the range of the values.
+     * It is very fast for arrays with a narrow value range, like ages or percentages.
      *
      * @param array the array to be sorted
+     * @throws IllegalArgumentException if the range of the values is too wide to count
      */
-    public static void quickSort(int[] array) {
-        QuickSort.sort(array);
+    public static void countingSort(int[] array) {
+        if (array.length < 2) return;
+        int min = array[0], max = array[0];
+        for (int value : array) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        if ((long) max - min >= Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Value range is too wide for counting sort!");
+        }
+        countingSort(array, min, max);
     }
 
-    /**
+    // Counting sort of an array whose values are known to be in [min, max]
+    private static void countingSort(int[] array, int min, int max) {
+        int[] counts = new int[max - min + 1];
+        for (int value : array) counts[value - min]++;
+        // Write every value back as many times as it was counted
+        for (int i = 0, value = 0; value < counts.length; value++) {
+            for (int count = counts[value]; count > 0; count--) array[i++] = value + min;
+        }
+    }
+
+    /**
+     * Sorts the given array with the algorithm that fits it best.
+     * It takes a cheap sample of the array (presortedness, value range, duplicates) and chooses between
+     * insertion sort, counting sort, adaptive merge sort, quick sort, merge sort and radix sort.
+     * The decision can be inspected with {@link Sorting#getLastSortProfile()}.
+     *
+     * @param array the array to be sorted
+     */
+    public static void sort(int[] array) {
+        sort(array, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #sort(int[])}, but the parallel algorithms run on the given pool instead of the common pool.
+     *
+     * @param array the array to be sorted
+     * @param pool  the pool that runs the parallel tasks
+     */
+    public static void sort(int[] array, ForkJoinPool pool) {
+        SortProfile profile = Dispatcher.profile(array);
+        Dispatcher.lastProfile.set(profile);
+        switch (profile.getAlgorithm()) {
+            case INSERTION_SORT:
+                insertionSort(array);
+                break;
+            case COUNTING_SORT:
+                countingSort(array, profile.min, profile.max);
+                break;
+            case RUN_MERGE_SORT:
+                adaptiveMergeSort(array, pool);
+                break;
+            case MERGE_SORT:
+                mergeSort(array, pool);
+                break;
+            case RADIX_SORT:
+                radixSort(array, pool);
+                break;
+            default:
+                quickSort(array, pool);
+        }
+    }
+
+    /**
+     * Profiles the given array the same way {@link #sort(int[])} does, without sorting it.
+     *
+     * @param array the array to profile
+     * @return the sampled properties of the array and the algorithm that would be used for it
+     */
+    public static SortProfile profile(int[] array) {
+        return Dispatcher.profile(array);
+    }
+
+    /**
+     * Returns the profile of the last array sorted with {@link #sort(int[])} on the current thread.
+     *
+     * @return the last profile, or null if sort hasn't been called on this thread
+     */
+    public static SortProfile getLastSortProfile() {
+        return Dispatcher.lastProfile.get();
+    }
+
+    /**
+     * Returns the counters of the last sort that ran on the current thread. They are only recorded
+     * when the JVM runs with {@code -DmyJavaLib.sortStats=true}, see {@link SortStats}.
+     *
+     * @return the stats of the last recorded sort, or null if stats are disabled or no sort was recorded on this thread
+     */
+    public static SortStats getLastSortStats() {
+        return SortStats.last.get();
+    }
+
+    /**
+     * Sorts the given array with the comparator. The sort is stable, equal elements stay in their original order.
+     * It is a parallel natural mergesort, so arrays that are already partly sorted take less time.
+     *
+     * @param array      the array to be sorted
+     * @param comparator the order of the elements, or null for their natural order
+     */
+    public static <T> void sort(T[] array, Comparator<? super T> comparator) {
+        sort(array, comparator, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #sort(Object[], Comparator)}, but the sort runs on the given pool instead of the common pool.
+     *
+     * @param array      the array to be sorted
+     * @param comparator the order of the elements, or null for their natural order
+     * @param pool       the pool that runs the parallel tasks
+     */
+    public static <T> void sort(T[] array, Comparator<? super T> comparator, ForkJoinPool pool) {
+        ObjectSort.sort(Arrays.asList(array), comparator, pool);
+    }
+
+    /**
+     * Sorts the given list with the comparator. The sort is stable, equal elements stay in their original order.
+     * Random access lists like ArrayList are sorted in place, other lists are copied to an array and written back.
+     * The list must not be modified by other threads during the sort.
+     *
+     * @param list       the list to be sorted
+     * @param comparator the order of the elements, or null for their natural order
+     */
+    public static <T> void sort(List<T> list, Comparator<? super T> comparator) {
+        sort(list, comparator, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #sort(List, Comparator)}, but the sort runs on the given pool instead of the common pool.
+     *
+     * @param list       the list to be sorted
+     * @param comparator the order of the elements, or null for their natural order
+     * @param pool       the pool that runs the parallel tasks
+     */
+    public static <T> void sort(List<T> list, Comparator<? super T> comparator, ForkJoinPool pool) {
+        ObjectSort.sort(list, comparator, pool);
+    }
+
+    /**
+     * Sorts the given array by a key of its elements. The key function is called only once per element, in parallel,
+     * and the keys are cached during the sort. This is much faster than a comparator that computes the keys
+     * at every comparison when the keys are expensive to compute. The sort is stable.
+     *
+     * @param array      the array to be sorted
+     * @param key        the function that extracts the sort key from an element
+     * @param comparator the order of the keys, or null for their natural order
+     */
+    public static <T, K> void sort(T[] array, Function<? super T, ? extends K> key, Comparator<? super K> comparator) {
+        sort(array, key, comparator, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #sort(Object[], Function, Comparator)}, but the sort runs on the given pool instead of the
+     * common pool.
+     *
+     * @param array      the array to be sorted
+     * @param key        the function that extracts the sort key from an element
+     * @param comparator the order of the keys, or null for their natural order
+     * @param pool       the pool that runs the parallel tasks
+     */
+    public static <T, K> void sort(T[] array, Function<? super T, ? extends K> key, Comparator<? super K> comparator,
+                                   ForkJoinPool pool) {
+        ObjectSort.sortByKey(Arrays.asList(array), key, comparator, pool);
+    }
+
+    /**
+     * Sorts the given list by a key of its elements. The key function is called only once per element, in parallel,
+     * and the keys are cached during the sort. The sort is stable.
+     *
+     * @param list       the list to be sorted
+     * @param key        the function that extracts the sort key from an element
+     * @param comparator the order of the keys, or null for their natural order
+     */
+    public static <T, K> void sort(List<T> list, Function<? super T, ? extends K> key, Comparator<? super K> comparator) {
+        sort(list, key, comparator, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #sort(List, Function, Comparator)}, but the sort runs on the given pool instead of the
+     * common pool.
+     *
+     * @param list       the list to be sorted
+     * @param key        the function that extracts the sort key from an element
+     * @param comparator the order of the keys, or null for their natural order
+     * @param pool       the pool that runs the parallel tasks
+     */
+    public static <T, K> void sort(List<T> list, Function<? super T, ? extends K> key, Comparator<? super K> comparator,
+                                   ForkJoinPool pool) {
+        ObjectSort.sortByKey(list, key, comparator, pool);
+    }
+
+    /**
+     * Sorts the given array using Multithreaded QuickSort algorithm.
+     * It is an introsort: if the recursion gets too deep, the remaining part is sorted with HeapSort,
+     * so the worst case is O(n log n). Arrays with many equal elements are handled with a three-way partition.
+     *
+     * @param array the array to be sorted
+     */
+    public static void quickSort(int[] array) {
+        quickSort(array, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #quickSort(int[])}, but the sort runs on the given pool instead of the common pool.
+     *
+     * @param array the array to be sorted
+     * @param pool  the pool that runs the parallel tasks
+     */
+    public static void quickSort(int[] array, ForkJoinPool pool) {
+        QuickSort.sort(array, false, pool);
+    }
+
+    /**
+     * Sorts the given array using Multithreaded Dual-Pivot QuickSort algorithm.
+     * It partitions around two pivots at each step, which needs fewer passes over the data than {@link #quickSort(int[])}
+     * on some inputs. Like quickSort, it switches to HeapSort if the recursion gets too deep.
+     *
+     * @param array the array to be sorted
+     */
+    public static void dualPivotQuickSort(int[] array) {
+        dualPivotQuickSort(array, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #dualPivotQuickSort(int[])}, but the sort runs on the given pool instead of the common pool.
+     *
+     * @param array the array to be sorted
+     * @param pool  the pool that runs the parallel tasks
+     */
+    public static void dualPivotQuickSort(int[] array, ForkJoinPool pool) {
+        QuickSort.sort(array, true, pool);
+    }
+
+    /**
      * Sorts the given array using Multithreaded MergeSort algorithm.
+     * It allocates one scratch array for the whole sort, and skips merging two halves that are already in order.
      *
      * @param array the array to be sorted
      */
     public static void mergeSort(int[] array) {
-        MergeSort.sort(array);
+        mergeSort(array, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #mergeSort(int[])}, but the sort runs on the given pool instead of the common pool.
+     *
+     * @param array the array to be sorted
+     * @param pool  the pool that runs the parallel tasks
+     */
+    public static void mergeSort(int[] array, ForkJoinPool pool) {
+        MergeSort.sort(array, pool);
+    }
+
+    /**
+     * Sorts the given array using Multithreaded adaptive MergeSort algorithm.
+     * It finds the ascending and descending runs that already exist in the array, TimSort style, and only merges them.
+     * Partially sorted arrays are sorted in near-linear time, and an already sorted array is only scanned once.
+     *
+     * @param array the array to be sorted
+     */
+    public static void adaptiveMergeSort(int[] array) {
+        adaptiveMergeSort(array, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #adaptiveMergeSort(int[])}, but the sort runs on the given pool instead of the common pool.
+     *
+     * @param array the array to be sorted
+     * @param pool  the pool that runs the parallel tasks
+     */
+    public static void adaptiveMergeSort(int[] array, ForkJoinPool pool) {
+        RunMergeSort.sort(array, pool);
+    }
+
+    /**
+     * Sorts the given array using Multithreaded Radix Sort algorithm.
+     * Negative numbers are handled correctly, so the result is the same as the other sorting methods.
+     * It is usually the fastest choice for very large arrays of integers.
+     *
+     * @param array the array to be sorted
+     */
+    public static void radixSort(int[] array) {
+        radixSort(array, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #radixSort(int[])}, but the sort runs on the given pool instead of the common pool.
+     *
+     * @param array the array to be sorted
+     * @param pool  the pool that runs the parallel tasks
+     */
+    public static void radixSort(int[] array, ForkJoinPool pool) {
+        RadixSort.sort(array, pool);
+    }
+
+    /**
+     * Sorts the given array of longs using Multithreaded QuickSort algorithm.
+     *
+     * @param array the array to be sorted
+     */
+    public static void quickSort(long[] array) {
+        quickSort(array, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #quickSort(long[])}, but the sort runs on the given pool instead of the common pool.
+     *
+     * @param array the array to be sorted
+     * @param pool  the pool that runs the parallel tasks
+     */
+    public static void quickSort(long[] array, ForkJoinPool pool) {
+        PrimitiveSorts.LongQuickSort.sort(array, 0, array.length - 1, pool);
+    }
+
+    /**
+     * Sorts the given array of longs using Multithreaded MergeSort algorithm.
+     *
+     * @param array the array to be sorted
+     */
+    public static void mergeSort(long[] array) {
+        mergeSort(array, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #mergeSort(long[])}, but the sort runs on the given pool instead of the common pool.
+     *
+     * @param array the array to be sorted
+     * @param pool  the pool that runs the parallel tasks
+     */
+    public static void mergeSort(long[] array, ForkJoinPool pool) {
+        PrimitiveSorts.LongMergeSort.sort(array, 0, array.length - 1, pool);
+    }
+
+    /**
+     * Sorts the given array of doubles using Multithreaded QuickSort algorithm.
+     * NaN values are placed at the end and -0.0 is placed before 0.0, same as {@link java.util.Arrays#sort(double[])}.
+     *
+     * @param array the array to be sorted
+     */
+    public static void quickSort(double[] array) {
+        quickSort(array, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #quickSort(double[])}, but the sort runs on the given pool instead of the common pool.
+     *
+     * @param array the array to be sorted
+     * @param pool  the pool that runs the parallel tasks
+     */
+    public static void quickSort(double[] array, ForkJoinPool pool) {
+        sortDoubles(array, true, pool);
+    }
+
+    /**
+     * Sorts the given array of doubles using Multithreaded MergeSort algorithm.
+     * NaN values are placed at the end and -0.0 is placed before 0.0, same as {@link java.util.Arrays#sort(double[])}.
+     *
+     * @param array the array to be sorted
+     */
+    public static void mergeSort(double[] array) {
+        mergeSort(array, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #mergeSort(double[])}, but the sort runs on the given pool instead of the common pool.
+     *
+     * @param array the array to be sorted
+     * @param pool  the pool that runs the parallel tasks
+     */
+    public static void mergeSort(double[] array, ForkJoinPool pool) {
+        sortDoubles(array, false, pool);
+    }
+
+    /**
+     * Sorts the given array of floats using Multithreaded QuickSort algorithm.
+     * NaN values are placed at the end and -0.0 is placed before 0.0, same as {@link java.util.Arrays#sort(float[])}.
+     *
+     * @param array the array to be sorted
+     */
+    public static void quickSort(float[] array) {
+        quickSort(array, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #quickSort(float[])}, but the sort runs on the given pool instead of the common pool.
+     *
+     * @param array the array to be sorted
+     * @param pool  the pool that runs the parallel tasks
+     */
+    public static void quickSort(float[] array, ForkJoinPool pool) {
+        sortFloats(array, true, pool);
+    }
+
+    /**
+     * Sorts the given array of floats using Multithreaded MergeSort algorithm.
+     * NaN values are placed at the end and -0.0 is placed before 0.0, same as {@link java.util.Arrays#sort(float[])}.
+     *
+     * @param array the array to be sorted
+     */
+    public static void mergeSort(float[] array) {
+        mergeSort(array, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #mergeSort(float[])}, but the sort runs on the given pool instead of the common pool.
+     *
+     * @param array the array to be sorted
+     * @param pool  the pool that runs the parallel tasks
+     */
+    public static void mergeSort(float[] array, ForkJoinPool pool) {
+        sortFloats(array, false, pool);
+    }
+
+    /**
+     * Sorts the given array of shorts using Multithreaded QuickSort algorithm.
+     *
+     * @param array the array to be sorted
+     */
+    public static void quickSort(short[] array) {
+        quickSort(array, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #quickSort(short[])}, but the sort runs on the given pool instead of the common pool.
+     *
+     * @param array the array to be sorted
+     * @param pool  the pool that runs the parallel tasks
+     */
+    public static void quickSort(short[] array, ForkJoinPool pool) {
+        PrimitiveSorts.ShortQuickSort.sort(array, 0, array.length - 1, pool);
+    }
+
+    /**
+     * Sorts the given array of shorts using Multithreaded MergeSort algorithm.
+     *
+     * @param array the array to be sorted
+     */
+    public static void mergeSort(short[] array) {
+        mergeSort(array, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #mergeSort(short[])}, but the sort runs on the given pool instead of the common pool.
+     *
+     * @param array the array to be sorted
+     * @param pool  the pool that runs the parallel tasks
+     */
+    public static void mergeSort(short[] array, ForkJoinPool pool) {
+        PrimitiveSorts.ShortMergeSort.sort(array, 0, array.length - 1, pool);
+    }
+
+    /**
+     * Sorts the given array of chars using Multithreaded QuickSort algorithm.
+     *
+     * @param array the array to be sorted
+     */
+    public static void quickSort(char[] array) {
+        quickSort(array, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #quickSort(char[])}, but the sort runs on the given pool instead of the common pool.
+     *
+     * @param array the array to be sorted
+     * @param pool  the pool that runs the parallel tasks
+     */
+    public static void quickSort(char[] array, ForkJoinPool pool) {
+        PrimitiveSorts.CharQuickSort.sort(array, 0, array.length - 1, pool);
+    }
+
+    /**
+     * Sorts the given array of chars using Multithreaded MergeSort algorithm.
+     *
+     * @param array the array to be sorted
+     */
+    public static void mergeSort(char[] array) {
+        mergeSort(array, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #mergeSort(char[])}, but the sort runs on the given pool instead of the common pool.
+     *
+     * @param array the array to be sorted
+     * @param pool  the pool that runs the parallel tasks
+     */
+    public static void mergeSort(char[] array, ForkJoinPool pool) {
+        PrimitiveSorts.CharMergeSort.sort(array, 0, array.length - 1, pool);
+    }
+
+    /**
+     * Sorts the given array of bytes using Multithreaded QuickSort algorithm.
+     *
+     * @param array the array to be sorted
+     */
+    public static void quickSort(byte[] array) {
+        quickSort(array, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #quickSort(byte[])}, but the sort runs on the given pool instead of the common pool.
+     *
+     * @param array the array to be sorted
+     * @param pool  the pool that runs the parallel tasks
+     */
+    public static void quickSort(byte[] array, ForkJoinPool pool) {
+        PrimitiveSorts.ByteQuickSort.sort(array, 0, array.length - 1, pool);
+    }
+
+    /**
+     * Sorts the given array of bytes using Multithreaded MergeSort algorithm.
+     *
+     * @param array the array to be sorted
+     */
+    public static void mergeSort(byte[] array) {
+        mergeSort(array, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #mergeSort(byte[])}, but the sort runs on the given pool instead of the common pool.
+     *
+     * @param array the array to be sorted
+     * @param pool  the pool that runs the parallel tasks
+     */
+    public static void mergeSort(byte[] array, ForkJoinPool pool) {
+        PrimitiveSorts.ByteMergeSort.sort(array, 0, array.length - 1, pool);
+    }
+
+    /**
+     * Returns the indices that would sort the given array, without changing it.
+     * keys[result[0]] is the smallest key, keys[result[1]] the next one and so on.
+     * The result is stable: indices of equal keys stay in ascending order.
+     *
+     * @param keys the array to sort indirectly
+     * @return the sorted permutation of the indices of keys
+     */
+    public static int[] argsort(int[] keys) {
+        return argsort(keys, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #argsort(int[])}, but the sort runs on the given pool instead of the common pool.
+     *
+     * @param keys the array to sort indirectly
+     * @param pool the pool that runs the parallel tasks
+     * @return the sorted permutation of the indices of keys
+     */
+    public static int[] argsort(int[] keys, ForkJoinPool pool) {
+        int len = keys.length;
+        // Every key is packed with its index into a long: the key in the upper half makes the longs compare
+        // like the keys, and the index in the lower half makes equal keys keep their original order.
+        // Sorting the longs with the parallel QuickSort is then stable, without boxing anything
+        long[] packed = new long[len];
+        for (int i = 0; i < len; i++) packed[i] = (long) keys[i] << 32 | i;
+        quickSort(packed, pool);
+        int[] indices = new int[len];
+        for (int i = 0; i < len; i++) indices[i] = (int) packed[i];
+        return indices;
+    }
+
+    /**
+     * Sorts the keys, and moves the elements of the payload together with their keys.
+     * The sort is stable, elements with equal keys stay in their original order.
+     *
+     * @param keys    the array to be sorted
+     * @param payload the array that is reordered the same way as keys
+     * @throws IllegalArgumentException if the arrays have different lengths
+     */
+    public static void sortByKey(int[] keys, int[] payload) {
+        checkLengths(keys.length, payload.length);
+        int[] order = argsort(keys);
+        int[] keyCopy = keys.clone(), payloadCopy = payload.clone();
+        Arrays.parallelSetAll(keys, i -> keyCopy[order[i]]);
+        Arrays.parallelSetAll(payload, i -> payloadCopy[order[i]]);
+    }
+
+    /**
+     * Sorts the keys, and moves the elements of the payload together with their keys.
+     * The sort is stable, elements with equal keys stay in their original order.
+     *
+     * @param keys    the array to be sorted
+     * @param payload the array that is reordered the same way as keys
+     * @throws IllegalArgumentException if the arrays have different lengths
+     */
+    public static void sortByKey(int[] keys, long[] payload) {
+        checkLengths(keys.length, payload.length);
+        int[] order = argsort(keys);
+        int[] keyCopy = keys.clone();
+        long[] payloadCopy = payload.clone();
+        Arrays.parallelSetAll(keys, i -> keyCopy[order[i]]);
+        Arrays.parallelSetAll(payload, i -> payloadCopy[order[i]]);
+    }
+
+    /**
+     * Sorts the keys, and moves the elements of the payload together with their keys.
+     * The sort is stable, elements with equal keys stay in their original order.
+     *
+     * @param keys    the array to be sorted
+     * @param payload the array that is reordered the same way as keys
+     * @throws IllegalArgumentException if the arrays have different lengths
+     */
+    public static <T> void sortByKey(int[] keys, T[] payload) {
+        checkLengths(keys.length, payload.length);
+        int[] order = argsort(keys);
+        int[] keyCopy = keys.clone();
+        T[] payloadCopy = payload.clone();
+        Arrays.parallelSetAll(keys, i -> keyCopy[order[i]]);
+        Arrays.parallelSetAll(payload, i -> payloadCopy[order[i]]);
+    }
+
+    private static void checkLengths(int keys, int payload) {
+        if (keys != payload) {
+            throw new IllegalArgumentException("Keys and payload must have the same length!");
+        }
+    }
+
+    /**
+     * Rearranges the array so that array[k] holds the value it would have if the array was sorted,
+     * every element before it is less than or equal to it and every element after it is greater than or equal to it.
+     * It takes O(n) time on average, which is much faster than a full sort when only the median or a
+     * percentile is needed.
+     *
+     * @param array the array to select from
+     * @param k     the index of the wanted element in sorted order
+     * @return the k-th smallest element, counting from 0
+     * @throws IllegalArgumentException if k is not an index of the array
+     */
+    public static int select(int[] array, int k) {
+        return select(array, k, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #select(int[], int)}, but the parallel parts run on the given pool instead of the common pool.
+     *
+     * @param array the array to select from
+     * @param k     the index of the wanted element in sorted order
+     * @param pool  the pool that runs the parallel tasks
+     * @return the k-th smallest element, counting from 0
+     * @throws IllegalArgumentException if k is not an index of the array
+     */
+    public static int select(int[] array, int k, ForkJoinPool pool) {
+        if (k < 0 || k >= array.length) {
+            throw new IllegalArgumentException("Index k is out of the array!");
+        }
+        Select.sort(array, k, k + 1, pool);
+        return array[k];
+    }
+
+    /**
+     * Rearranges the array so that array[from..to-1] holds the same elements, in the same order,
+     * as it would if the whole array was sorted. Elements before from are less than or equal to them and
+     * elements after them are greater than or equal to them, but are otherwise left unsorted.
+     *
+     * @param array the array to be partially sorted
+     * @param from  the first index of the sorted range
+     * @param to    the index after the last one of the sorted range
+     * @throws IllegalArgumentException if the range is not inside the array
+     */
+    public static void partialSort(int[] array, int from, int to) {
+        partialSort(array, from, to, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #partialSort(int[], int, int)}, but the sort runs on the given pool instead of the common pool.
+     *
+     * @param array the array to be partially sorted
+     * @param from  the first index of the sorted range
+     * @param to    the index after the last one of the sorted range
+     * @param pool  the pool that runs the parallel tasks
+     * @throws IllegalArgumentException if the range is not inside the array
+     */
+    public static void partialSort(int[] array, int from, int to, ForkJoinPool pool) {
+        if (from < 0 || to > array.length || from > to) {
+            throw new IllegalArgumentException("Range is out of the array!");
+        }
+        Select.sort(array, from, to, pool);
+    }
+
+    /**
+     * Returns the k largest elements of the array in descending order, without changing the array.
+     * The array is scanned in parallel chunks, each keeping only its k largest elements in a small heap.
+     *
+     * @param array the array to search
+     * @param k     the number of elements wanted. If it is larger than the array, all elements are returned
+     * @return the k largest elements, largest first
+     * @throws IllegalArgumentException if k is negative
+     */
+    public static int[] topK(int[] array, int k) {
+        return topK(array, k, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #topK(int[], int)}, but the parallel parts run on the given pool instead of the common pool.
+     *
+     * @param array the array to search
+     * @param k     the number of elements wanted. If it is larger than the array, all elements are returned
+     * @param pool  the pool that runs the parallel tasks
+     * @return the k largest elements, largest first
+     * @throws IllegalArgumentException if k is negative
+     */
+    public static int[] topK(int[] array, int k, ForkJoinPool pool) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k can't be negative!");
+        }
+        int len = array.length;
+        k = Math.min(k, len);
+        // When a large part of the array is wanted, the heaps would be slower than partitioning a copy
+        if (k > len / 8) {
+            int[] copy = array.clone();
+            partialSort(copy, len - k, len, pool);
+            int[] result = new int[k];
+            for (int i = 0; i < k; i++) result[i] = copy[len - 1 - i];
+            return result;
+        }
+        return TopKTask.topK(array, k, pool);
+    }
+
+    /**
+     * Keeps the k largest of the values offered to it, for data that arrives in chunks and doesn't fit in
+     * memory at once. Only k values are stored, in a min heap, so each offered value costs O(log k) at worst
+     * and a single comparison when it is smaller than all kept values.
+     * An instance is not thread-safe, but instances filled by different threads can be combined with
+     * {@link #merge(TopK)}.
+     */
+    public static final class TopK {
+        // Min heap of the kept values, heap[0] is the smallest of them
+        private final int[] heap;
+        private int size;
+
+        /**
+         * Creates an empty top-k accumulator.
+         *
+         * @param k the number of largest values to keep
+         * @throws IllegalArgumentException if k is negative
+         */
+        public TopK(int k) {
+            if (k < 0) {
+                throw new IllegalArgumentException("k can't be negative!");
+            }
+            heap = new int[k];
+        }
+
+        /**
+         * Offers a value. It is kept if it is among the k largest values offered so far.
+         *
+         * @param value the value to offer
+         */
+        public void offer(int value) {
+            if (size < heap.length) {
+                // Sift the new value up from the end of the heap
+                int i = size++;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (heap[parent] <= value) break;
+                    heap[i] = heap[parent];
+                    i = parent;
+                }
+                heap[i] = value;
+            } else if (size > 0 && value > heap[0]) {
+                // Replace the smallest kept value and sift it down
+                int i = 0, child;
+                while ((child = 2 * i + 1) < size) {
+                    if (child + 1 < size && heap[child + 1] < heap[child]) child++;
+                    if (value <= heap[child]) break;
+                    heap[i] = heap[child];
+                    i = child;
+                }
+                heap[i] = value;
+            }
+        }
+
+        /**
+         * Offers every value of a chunk.
+         *
+         * @param chunk the values to offer
+         */
+        public void offer(int[] chunk) {
+            offer(chunk, 0, chunk.length);
+        }
+
+        /**
+         * Offers the values chunk[from..to-1].
+         *
+         * @param chunk the array holding the values
+         * @param from  the first index to offer
+         * @param to    the index after the last one to offer
+         */
+        public void offer(int[] chunk, int from, int to) {
+            for (int i = from; i < to; i++) offer(chunk[i]);
+        }
+
+        /**
+         * Adds the values kept by another accumulator to this one.
+         *
+         * @param other the accumulator to merge, it isn't changed
+         */
+        public void merge(TopK other) {
+            offer(other.heap, 0, other.size);
+        }
+
+        /**
+         * Returns the number of values kept, which is k once at least k values were offered.
+         *
+         * @return the number of values kept
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns the kept values in descending order. The accumulator can still be used afterwards.
+         *
+         * @return the largest values offered so far, largest first
+         */
+        public int[] result() {
+            int[] result = Arrays.copyOf(heap, size);
+            quickSort(result);
+            for (int i = 0, j = size - 1; i < j; i++, j--) {
+                int temp = result[i];
+                result[i] = result[j];
+                result[j] = temp;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Merges sorted arrays into one sorted array. The output is split into ranges by co-ranking,
+     * and the ranges are merged in parallel with a loser tree, so it is much faster than sorting the concatenation.
+     * Every source must be sorted in ascending order.
+     *
+     * @param sources the sorted arrays
+     * @return a new sorted array holding the elements of all sources
+     * @throws IllegalArgumentException if the sources have more elements than an array can hold
+     */
+    public static int[] merge(int[]... sources) {
+        return merge(sources, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #merge(int[]...)}, but the merge runs on the given pool instead of the common pool.
+     *
+     * @param sources the sorted arrays
+     * @param pool    the pool that runs the parallel tasks
+     * @return a new sorted array holding the elements of all sources
+     * @throws IllegalArgumentException if the sources have more elements than an array can hold
+     */
+    public static int[] merge(int[][] sources, ForkJoinPool pool) {
+        return KWayMerge.merge(sources, pool);
+    }
+
+    /**
+     * Merges sorted arrays into one sorted array. The output is split into ranges by co-ranking,
+     * and the ranges are merged in parallel with a loser tree. Every source must be sorted in ascending order.
+     *
+     * @param sources the sorted arrays
+     * @return a new sorted array holding the elements of all sources
+     * @throws IllegalArgumentException if the sources have more elements than an array can hold
+     */
+    public static long[] merge(long[]... sources) {
+        return merge(sources, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #merge(long[]...)}, but the merge runs on the given pool instead of the common pool.
+     *
+     * @param sources the sorted arrays
+     * @param pool    the pool that runs the parallel tasks
+     * @return a new sorted array holding the elements of all sources
+     * @throws IllegalArgumentException if the sources have more elements than an array can hold
+     */
+    public static long[] merge(long[][] sources, ForkJoinPool pool) {
+        return KWayMerge.merge(sources, pool);
+    }
+
+    /**
+     * Returns an iterator over the elements of sorted arrays in sorted order, without copying them.
+     * Every call to next takes O(log k) time for k sources. The arrays must not change while the iterator is used.
+     *
+     * @param sources the sorted arrays
+     * @return a lazy iterator over the merged elements
+     */
+    public static PrimitiveIterator.OfInt mergeIterator(int[]... sources) {
+        if (sources.length == 0) return IntStream.empty().iterator();
+        return new KWayMerge.IntIterator(sources);
+    }
+
+    /**
+     * Returns an iterator over the elements of sorted arrays in sorted order, without copying them.
+     * Every call to next takes O(log k) time for k sources. The arrays must not change while the iterator is used.
+     *
+     * @param sources the sorted arrays
+     * @return a lazy iterator over the merged elements
+     */
+    public static PrimitiveIterator.OfLong mergeIterator(long[]... sources) {
+        if (sources.length == 0) return LongStream.empty().iterator();
+        return new KWayMerge.LongIterator(sources);
+    }
+
+    /**
+     * Returns an iterator that merges sorted iterators. Elements are pulled from the sources only when they
+     * are needed, so the sources can be streams of any length, like the lines of sorted files.
+     * Equal elements are returned in the order of their sources.
+     *
+     * @param sources    the iterators, each one returning its elements in the order of the comparator
+     * @param comparator the order of the elements, or null for their natural order
+     * @return a lazy iterator over the merged elements
+     */
+    public static <T> Iterator<T> mergeIterator(List<? extends Iterator<? extends T>> sources,
+                                                Comparator<? super T> comparator) {
+        if (sources.isEmpty()) return Collections.emptyIterator();
+        return new KWayMerge.ObjectIterator<>(sources, comparator);
+    }
+
+    /**
+     * Sorts a binary file of big-endian 32-bit integers, which can be larger than the available memory.
+     * The file is sorted in runs that fit in the memory limit, which are then merged into the output file.
+     * Temporary files are created next to the output file and removed at the end.
+     *
+     * @param input       path of the file to sort
+     * @param output      path of the sorted file, it must be different from the input
+     * @param memoryLimit the maximum number of bytes the sort may use for its arrays and buffers, at least 196608
+     *                    (192 KiB)
+     * @return true if the sort is successful, false otherwise
+     * @throws IllegalArgumentException if the memory limit is less than 196608 bytes
+     */
+    public static boolean externalSortInts(String input, String output, long memoryLimit) {
+        return externalSortInts(input, output, memoryLimit, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Same as {@link #externalSortInts(String, String, long)}, for a file with the given byte order.
+     *
+     * @param input       path of the file to sort
+     * @param output      path of the sorted file, it must be different from the input
+     * @param memoryLimit the maximum number of bytes the sort may use for its arrays and buffers, at least 196608
+     *                    (192 KiB)
+     * @param order       byte order of the input and output files
+     * @return true if the sort is successful, false otherwise
+     * @throws IllegalArgumentException if the memory limit is less than 196608 bytes
+     */
+    public static boolean externalSortInts(String input, String output, long memoryLimit, ByteOrder order) {
+        return externalSort(input, output, Integer.BYTES, memoryLimit, order);
+    }
+
+    /**
+     * Sorts a binary file of big-endian 64-bit integers, which can be larger than the available memory.
+     * The file is sorted in runs that fit in the memory limit, which are then merged into the output file.
+     * Temporary files are created next to the output file and removed at the end.
+     *
+     * @param input       path of the file to sort
+     * @param output      path of the sorted file, it must be different from the input
+     * @param memoryLimit the maximum number of bytes the sort may use for its arrays and buffers, at least 196608
+     *                    (192 KiB)
+     * @return true if the sort is successful, false otherwise
+     * @throws IllegalArgumentException if the memory limit is less than 196608 bytes
+     */
+    public static boolean externalSortLongs(String input, String output, long memoryLimit) {
+        return externalSortLongs(input, output, memoryLimit, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Same as {@link #externalSortLongs(String, String, long)}, for a file with the given byte order.
+     *
+     * @param input       path of the file to sort
+     * @param output      path of the sorted file, it must be different from the input
+     * @param memoryLimit the maximum number of bytes the sort may use for its arrays and buffers, at least 196608
+     *                    (192 KiB)
+     * @param order       byte order of the input and output files
+     * @return true if the sort is successful, false otherwise
+     * @throws IllegalArgumentException if the memory limit is less than 196608 bytes
+     */
+    public static boolean externalSortLongs(String input, String output, long memoryLimit, ByteOrder order) {
+        return externalSort(input, output, Long.BYTES, memoryLimit, order);
+    }
+
+    private static boolean externalSort(String input, String output, int width, long memoryLimit, ByteOrder order) {
+        try {
+            ExternalSort.sort(Path.of(input), Path.of(output), width, order, memoryLimit, ForkJoinPool.commonPool());
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    // Sorts doubles with QuickSort or MergeSort, while keeping the order of NaN and -0.0 same as Arrays.sort
+    private static void sortDoubles(double[] array, boolean quick, ForkJoinPool pool) {
+        // Comparison operators can't order NaN and -0.0, so NaNs are moved to the end and -0.0 values are counted
+        // and replaced with 0.0 before sorting
+        int end = array.length, negativeZeros = 0;
+        for (int i = end - 1; i >= 0; i--) {
+            double value = array[i];
+            if (value != value) {
+                array[i] = array[--end];
+                array[end] = value;
+            } else if (value == 0.0d && Double.doubleToRawLongBits(value) != 0) {
+                array[i] = 0.0d;
+                negativeZeros++;
+            }
+        }
+
+        if (quick) PrimitiveSorts.DoubleQuickSort.sort(array, 0, end - 1, pool);
+        else PrimitiveSorts.DoubleMergeSort.sort(array, 0, end - 1, pool);
+
+        if (negativeZeros > 0) {
+            // Find the first zero with binary search and turn the first zeros back to -0.0
+            int low = 0, high = end - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (array[mid] < 0.0d) low = mid + 1;
+                else high = mid - 1;
+            }
+            for (int i = low; i < low + negativeZeros; i++) array[i] = -0.0d;
+        }
+    }
+
+    // Sorts floats with QuickSort or MergeSort, while keeping the order of NaN and -0.0 same as Arrays.sort
+    private static void sortFloats(float[] array, boolean quick, ForkJoinPool pool) {
+        // Comparison operators can't order NaN and -0.0, so NaNs are moved to the end and -0.0 values are counted
+        // and replaced with 0.0 before sorting
+        int end = array.length, negativeZeros = 0;
+        for (int i = end - 1; i >= 0; i--) {
+            float value = array[i];
+            if (value != value) {
+                array[i] = array[--end];
+                array[end] = value;
+            } else if (value == 0.0f && Float.floatToRawIntBits(value) != 0) {
+                array[i] = 0.0f;
+                negativeZeros++;
+            }
+        }
+
+        if (quick) PrimitiveSorts.FloatQuickSort.sort(array, 0, end - 1, pool);
+        else PrimitiveSorts.FloatMergeSort.sort(array, 0, end - 1, pool);
+
+        if (negativeZeros > 0) {
+            // Find the first zero with binary search and turn the first zeros back to -0.0
+            int low = 0, high = end - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (array[mid] < 0.0f) low = mid + 1;
+                else high = mid - 1;
+            }
+            for (int i = low; i < low + negativeZeros; i++) array[i] = -0.0f;
+        }
+    }
+
+
+    private static class QuickSort extends SortTask {
+        // Number of elements scanned at once by the block partition
+        private static final int BLOCK_SIZE = 64;
+        // Above this size the pivot is chosen as the median of three medians (Tukey's ninther)
+        private static final int NINTHER_THRESHOLD = 128;
+
+        // Array to be sorted
+        private final int[] array;
+        private final int low;
+        private final int high;
+        // Remaining recursion depth before switching to HeapSort
+        private final int depth;
+        // True to partition around two pivots instead of one
+        private final boolean dualPivot;
+
+        // Constructor to initialize array, indices and the introsort state
+        public QuickSort(int[] array, int low, int high, int depth, boolean dualPivot) {
+            this.array = array;
+            this.low = low;
+            this.high = high;
+            this.depth = depth;
+            this.dualPivot = dualPivot;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Parameters.getForkThreshold(Parameters.Engine.QUICKSORT, Parameters.Type.INT);
+        }
+
+        // Main computation performed by this task
+        @Override
+        protected void compute() {
+            // If the problem size is below threshold, solve it directly
+            if (high - low <= Parameters.getCutoff(Parameters.Engine.QUICKSORT, Parameters.Type.INT)) {
+                // Sorting network if the Vector API is used, simple insertion sort otherwise
+                smallSort(array, low, high, recorder());
+                return;
+            }
+
+            // If the recursion got too deep, the pivots were bad. HeapSort guarantees O(n log n) for the rest
+            if (depth == 0) {
+                heapSort(array, low, high, recorder());
+                return;
+            }
+
+            if (dualPivot) {
+                dualPivotPartition();
+                return;
+            }
+
+            // Choose the pivot
+            int tmp_pivot = choosePivot(array, low, high);
+            int pivot = array[tmp_pivot];
+
+            // If the pivot appears again among a few samples, the range probably has many equal elements.
+            // A three-way partition puts all of them in their final place at once
+            if (hasDuplicateSamples(array, low, high, tmp_pivot)) {
+                long bounds = threeWayPartition(array, low, high, pivot, recorder());
+                // Elements equal to the pivot are in array[lt..gt] and don't need to be sorted again
+                invokeSubtasks(high - low + 1, new QuickSort(array, low, (int) (bounds >> 32) - 1, depth - 1, false),
+                        new QuickSort(array, (int) bounds + 1, high, depth - 1, false));
+                return;
+            }
+
+            // Swapping pivot element to end of array
+            array[tmp_pivot] = array[high];
+            array[high] = pivot;
+
+            // Otherwise use the branchless block partition, which is faster on random data
+            int pivotIndex = partition(array, low, high, pivot, recorder());
+            SortStats.count(recorder(), 0, 2);
+
+            // Recursively sort elements before and after pivot
+            invokeSubtasks(high - low + 1, new QuickSort(array, low, pivotIndex - 1, depth - 1, false),
+                    new QuickSort(array, pivotIndex + 1, high, depth - 1, false));
+        }
+
+        // Partitions array[low..high] into < pivot, == pivot and > pivot (Dijkstra's Dutch national flag).
+        // Returns the bounds lt and gt of the equal part packed into a long as (lt << 32 | gt)
+        static long threeWayPartition(int[] array, int low, int high, int pivot, SortStats.Recorder recorder) {
+            int lt = low, i = low, gt = high;
+            long comparisons = 0, moves = 0;
+            while (i <= gt) {
+                int value = array[i];
+                comparisons++;
+                if (value < pivot) {
+                    array[i++] = array[lt];
+                    array[lt++] = value;
+                    moves += 2;
+                } else if (value > pivot) {
+                    array[i] = array[gt];
+                    array[gt--] = value;
+                    comparisons++;
+                    moves += 2;
+                } else {
+                    comparisons++;
+                    i++;
+                }
+            }
+            SortStats.count(recorder, comparisons, moves);
+            return (long) lt << 32 | (gt & 0xFFFFFFFFL);
+        }
+
+        // Partitions the range around two pivots p1 <= p2 into < p1, p1..p2 and > p2 (Yaroslavskiy's scheme)
+        private void dualPivotPartition() {
+            // Take the second and fourth of five evenly spaced samples as pivots
+            int sixth = (high - low + 1) / 6;
+            int e1 = low + sixth, e3 = low + (high - low) / 2, e2 = (e1 + e3) / 2;
+            int e5 = high - sixth, e4 = (e3 + e5) / 2;
+            sort5(array, e1, e2, e3, e4, e5);
+            int p1 = array[e2], p2 = array[e4];
+
+            // The pivots are moved to the ends of the range
+            array[e2] = array[low];
+            array[low] = p1;
+            array[e4] = array[high];
+            array[high] = p2;
+
+            int lt = low + 1, gt = high - 1;
+            long comparisons = 0, moves = 0;
+            outer:
+            for (int i = lt; i <= gt; i++) {
+                int value = array[i];
+                comparisons++;
+                if (value < p1) {
+                    array[i] = array[lt];
+                    array[lt++] = value;
+                    moves += 2;
+                } else if (value > p2) {
+                    comparisons++;
+                    // Skip the elements at the right end that are already in place
+                    while (array[gt] > p2) {
+                        comparisons++;
+                        if (gt-- == i) break outer;
+                    }
+                    comparisons += 2;
+                    if (array[gt] < p1) {
+                        array[i] = array[lt];
+                        array[lt++] = array[gt];
+                        moves++;
+                    } else {
+                        array[i] = array[gt];
+                    }
+                    array[gt--] = value;
+                    moves += 2;
+                } else {
+                    comparisons++;
+                }
+            }
+
+            // Swap the pivots to their correct positions
+            array[low] = array[--lt];
+            array[lt] = p1;
+            array[high] = array[++gt];
+            array[gt] = p2;
+            // The five samples are sorted with nine compare-exchanges, and the pivots are moved twice
+            SortStats.count(recorder(), comparisons + 9, moves + 8);
+
+            // If both pivots are equal, the middle part contains only equal elements and is already in place
+            if (p1 == p2) {
+                invokeSubtasks(high - low + 1, new QuickSort(array, low, lt - 1, depth - 1, true),
+                        new QuickSort(array, gt + 1, high, depth - 1, true));
+            } else {
+                invokeSubtasks(high - low + 1, new QuickSort(array, low, lt - 1, depth - 1, true),
+                        new QuickSort(array, lt + 1, gt - 1, depth - 1, true),
+                        new QuickSort(array, gt + 1, high, depth - 1, true));
+            }
+        }
+
+        // Returns the index of the median of three, or of the ninther for large ranges
+        private static int choosePivot(int[] array, int low, int high) {
+            int mid = low + (high - low) / 2;
+            if (high - low < NINTHER_THRESHOLD) return median3(array, low, mid, high);
+            int step = (high - low) / 8;
+            return median3(array,
+                    median3(array, low, low + step, low + 2 * step),
+                    median3(array, mid - step, mid, mid + step),
+                    median3(array, high - 2 * step, high - step, high));
+        }
+
+        // Returns the index of the median of array[a], array[b] and array[c]
+        private static int median3(int[] array, int a, int b, int c) {
+            if (array[a] < array[b]) {
+                if (array[b] < array[c]) return b;
+                return array[a] < array[c] ? c : a;
+            }
+            if (array[a] < array[c]) return a;
+            return array[b] < array[c] ? c : b;
+        }
+
+        // Checks whether the pivot value appears again among five evenly spaced samples of the range
+        private static boolean hasDuplicateSamples(int[] array, int low, int high, int pivotIndex) {
+            int quarter = (high - low) / 4, pivot = array[pivotIndex];
+            for (int k = 0, index = low; k < 5; k++, index = k < 4 ? index + quarter : high) {
+                if (index != pivotIndex && array[index] == pivot) return true;
+            }
+            return false;
+        }
+
+        // Partitions array[low..high-1] around the pivot stored in array[high] and returns the final pivot index,
+        // with the Vector API kernel if it is used and the block partition otherwise
+        static int partition(int[] array, int low, int high, int pivot, SortStats.Recorder recorder) {
+            VectorKernels kernels = Parameters.vectorKernels();
+            int pivotIndex = kernels != null ? kernels.partition(array, low, high, pivot) : -1;
+            if (pivotIndex < 0) return blockPartition(array, low, high, pivot, recorder);
+            // The kernel compares every element with the pivot once and writes every element once
+            SortStats.count(recorder, high - low, high - low + 2);
+            return pivotIndex;
+        }
+
+        // Partitions array[low..high-1] around the pivot stored in array[high] and returns the final pivot index.
+        // Blocks of elements are compared first and their misplaced offsets are stored without branching,
+        // then the misplaced elements are swapped in pairs (BlockQuicksort by Edelkamp and Weiss)
+        private static int blockPartition(int[] array, int low, int high, int pivot, SortStats.Recorder recorder) {
+            long moves = 0;
+            int[] offsetsLeft = new int[BLOCK_SIZE];
+            int[] offsetsRight = new int[BLOCK_SIZE];
+            int left = low, right = high - 1;
+            int startLeft = 0, numLeft = 0, startRight = 0, numRight = 0;
+
+            // Everything before left is <= pivot and everything after right is >= pivot
+            while (right - left + 1 > 2 * BLOCK_SIZE) {
+                if (numLeft == 0) {
+                    startLeft = 0;
+                    for (int i = 0; i < BLOCK_SIZE; i++) {
+                        offsetsLeft[numLeft] = i;
+                        numLeft += array[left + i] >= pivot ? 1 : 0;
+                    }
+                }
+                if (numRight == 0) {
+                    startRight = 0;
+                    for (int i = 0; i < BLOCK_SIZE; i++) {
+                        offsetsRight[numRight] = i;
+                        numRight += array[right - i] <= pivot ? 1 : 0;
+                    }
+                }
+                // Swap as many misplaced pairs as possible
+                int num = Math.min(numLeft, numRight);
+                for (int j = 0; j < num; j++) {
+                    int l = left + offsetsLeft[startLeft + j], r = right - offsetsRight[startRight + j];
+                    int temp = array[l];
+                    array[l] = array[r];
+                    array[r] = temp;
+                }
+                moves += 2 * num;
+                numLeft -= num;
+                numRight -= num;
+                startLeft += num;
+                startRight += num;
+                // Move to the next block once all misplaced elements of a block are fixed
+                if (numLeft == 0) left += BLOCK_SIZE;
+                if (numRight == 0) right -= BLOCK_SIZE;
+            }
+
+            // Partition whatever is left in the middle with a branchless Lomuto loop
+            int i = left;
+            for (int j = left; j <= right; j++) {
+                int value = array[j];
+                array[j] = array[i];
+                array[i] = value;
+                i += value < pivot ? 1 : 0;
+            }
+
+            moves += 2L * (right - left + 1);
+
+            // Swap pivot element to its correct position
+            array[high] = array[i];
+            array[i] = pivot;
+            // Every element is compared with the pivot exactly once, in a block or in the final loop
+            SortStats.count(recorder, high - low, moves + 2);
+            return i;
+        }
+
+        // Sorts the five elements at the given indices with a sorting network of nine compare-exchanges
+        private static void sort5(int[] array, int e1, int e2, int e3, int e4, int e5) {
+            sort2(array, e1, e2);
+            sort2(array, e4, e5);
+            sort2(array, e3, e5);
+            sort2(array, e3, e4);
+            sort2(array, e2, e5);
+            sort2(array, e1, e4);
+            sort2(array, e1, e3);
+            sort2(array, e2, e4);
+            sort2(array, e2, e3);
+        }
+
+        private static void sort2(int[] array, int a, int b) {
+            int x = array[a], y = array[b];
+            array[a] = Math.min(x, y);
+            array[b] = Math.max(x, y);
+        }
+
+        // HeapSort fallback for array[low..high]
+        private static void heapSort(int[] array, int low, int high, SortStats.Recorder recorder) {
+            int len = high - low + 1;
+            long levels = 0, sifts = 0;
+            // Build a max heap
+            for (int i = len / 2 - 1; i >= 0; i--, sifts++) levels += siftDown(array, low, i, len);
+            // Move the largest element to the end, one by one
+            for (int end = len - 1; end > 0; end--, sifts++) {
+                int temp = array[low];
+                array[low] = array[low + end];
+                array[low + end] = temp;
+                levels += siftDown(array, low, 0, end);
+            }
+            // A sift compares at most two children per level, and writes once per level and once at the end
+            SortStats.count(recorder, 2 * (levels + sifts), levels + sifts + 2L * (len - 1));
+        }
+
+        // Returns the number of levels the value moved down
+        private static int siftDown(int[] array, int offset, int root, int len) {
+            int value = array[offset + root];
+            int child, levels = 0;
+            while ((child = 2 * root + 1) < len) {
+                if (child + 1 < len && array[offset + child] < array[offset + child + 1]) child++;
+                if (value >= array[offset + child]) break;
+                array[offset + root] = array[offset + child];
+                root = child;
+                levels++;
+            }
+            array[offset + root] = value;
+            return levels;
+        }
+
+        // Depth limit of introsort, twice the height of a perfectly balanced recursion tree
+        private static int depthLimit(int len) {
+            return 2 * (32 - Integer.numberOfLeadingZeros(Math.max(len, 1)));
+        }
+
+        // Method to trigger the parallel quicksort
+        public static void sort(int[] array, boolean dualPivot, ForkJoinPool pool) {
+            run(new QuickSort(array, 0, array.length - 1, depthLimit(array.length), dualPivot), array.length, pool);
+        }
     }
 
 
-    private static class QuickSort extends RecursiveAction {
-        // Threshold for problem size below which the problem will be solved directly without more task splitting
+    private static class Select extends SortTask {
+        // Array to be partially sorted
+        private final int[] array;
+        private final int low;
+        private final int high;
+        // Range of final positions that must hold sorted elements, to is exclusive
+        private final int from;
+        private final int to;
+        // Remaining recursion depth before switching to HeapSort
+        private final int depth;
 
+        public Select(int[] array, int low, int high, int from, int to, int depth) {
+            this.array = array;
+            this.low = low;
+            this.high = high;
+            this.from = from;
+            this.to = to;
+            this.depth = depth;
+        }
 
-        // Array to be sorted
+        @Override
+        int forkThreshold() {
+            return Parameters.getForkThreshold(Parameters.Engine.QUICKSORT, Parameters.Type.INT);
+        }
+
+        @Override
+        protected void compute() {
+            // Nothing to do if none of the wanted positions are in this range
+            if (high < from || low >= to || low >= high) return;
+
+            // If the whole range is wanted, it is just sorted
+            if (from <= low && high < to) {
+                invokeSubtasks(high - low + 1, new QuickSort(array, low, high, depth, false));
+                return;
+            }
+
+            if (high - low <= Parameters.getCutoff(Parameters.Engine.QUICKSORT, Parameters.Type.INT)) {
+                smallSort(array, low, high, recorder());
+                return;
+            }
+            if (depth == 0) {
+                QuickSort.heapSort(array, low, high, recorder());
+                return;
+            }
+
+            // Same partitioning steps as QuickSort, but only the sides holding wanted positions are recursed into
+            int tmp_pivot = QuickSort.choosePivot(array, low, high);
+            int pivot = array[tmp_pivot];
+            int leftEnd, rightStart;
+            if (QuickSort.hasDuplicateSamples(array, low, high, tmp_pivot)) {
+                long bounds = QuickSort.threeWayPartition(array, low, high, pivot, recorder());
+                leftEnd = (int) (bounds >> 32) - 1;
+                rightStart = (int) bounds + 1;
+            } else {
+                array[tmp_pivot] = array[high];
+                array[high] = pivot;
+                int pivotIndex = QuickSort.partition(array, low, high, pivot, recorder());
+                leftEnd = pivotIndex - 1;
+                rightStart = pivotIndex + 1;
+            }
+            invokeSubtasks(high - low + 1, new Select(array, low, leftEnd, from, to, depth - 1),
+                    new Select(array, rightStart, high, from, to, depth - 1));
+        }
+
+        // Method to trigger the parallel selection of the sorted range [from, to)
+        public static void sort(int[] array, int from, int to, ForkJoinPool pool) {
+            run(new Select(array, 0, array.length - 1, from, to, QuickSort.depthLimit(array.length)),
+                    array.length, pool);
+        }
+    }
+
+
+    private static class TopKTask extends RecursiveTask<TopK> {
         private final int[] array;
         private final int low;
         private final int high;
-        // Shared thread pool
-        private static final ForkJoinPool pool = new ForkJoinPool();
+        private final int k;
+        // Chunks up to this size are scanned into a single heap
+        private final int chunkSize;
 
-        // Constructor to initialize array and indices
-        public QuickSort(int[] array, int low, int high) {
+        public TopKTask(int[] array, int low, int high, int k, int chunkSize) {
             this.array = array;
             this.low = low;
             this.high = high;
+            this.k = k;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected TopK compute() {
+            if (high - low < chunkSize) {
+                TopK heap = new TopK(k);
+                heap.offer(array, low, high + 1);
+                return heap;
+            }
+            int mid = low + (high - low) / 2;
+            TopKTask right = new TopKTask(array, mid + 1, high, k, chunkSize);
+            right.fork();
+            TopK heap = new TopKTask(array, low, mid, k, chunkSize).compute();
+            heap.merge(right.join());
+            return heap;
+        }
+
+        // Method to trigger the parallel search
+        public static int[] topK(int[] array, int k, ForkJoinPool pool) {
+            // Filling a heap and merging it costs about k log k no matter how large its chunk is, so chunks are
+            // only made as small as needed to keep every worker busy, and always much larger than k
+            int chunkSize = Math.max(Math.max(Parameters.getForkThreshold(Parameters.Engine.QUICKSORT,
+                    Parameters.Type.INT), 64 * k), array.length / (4 * pool.getParallelism()));
+            if (array.length <= chunkSize) {
+                TopK heap = new TopK(k);
+                heap.offer(array);
+                return heap.result();
+            }
+            return pool.invoke(new TopKTask(array, 0, array.length - 1, k, chunkSize)).result();
+        }
+    }
+
+
+    private static class MergeSort extends SortTask {
+        // Array holding the two sorted halves that get merged
+        private final int[] src;
+        // Array receiving the sorted range. The two arrays swap roles at every level of the recursion
+        private final int[] dst;
+        private final int low;
+        private final int high;
+
+        public MergeSort(int[] src, int[] dst, int low, int high) {
+            this.src = src;
+            this.dst = dst;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Parameters.getForkThreshold(Parameters.Engine.MERGESORT, Parameters.Type.INT);
         }
 
-        // Main computation performed by this task
         @Override
         protected void compute() {
-            // If the problem size is below threshold, solve it directly
-            if (high - low <= Parameters.QUICKSORT_CUTOFF) {
-                // Simple insertion sort for small arrays
-                for (int i, k = low; ++k < high + 1; ) {
-                    int key = array[i = k];
-                    if (key < array[i - 1]) {
-                        while (--i >= low && key < array[i]) {
-                            array[i + 1] = array[i];
+            // If array size is below threshold, sort directly.
+            // Nothing has been written to this range yet, so dst still holds the original elements
+            if (high - low <= Parameters.getCutoff(Parameters.Engine.MERGESORT, Parameters.Type.INT)) {
+                smallSort(dst, low, high, recorder());
+                return;
+            }
+
+            // Else, split the problem and sort each half into src, using dst as the scratch array
+            int mid = low + (high - low) / 2;
+            invokeSubtasks(high - low + 1, new MergeSort(dst, src, low, mid), new MergeSort(dst, src, mid + 1, high));
+
+            // If the halves are already in order, there is nothing to merge
+            SortStats.count(recorder(), 1, 0);
+            if (src[mid] <= src[mid + 1]) {
+                System.arraycopy(src, low, dst, low, high - low + 1);
+                SortStats.count(recorder(), 0, high - low + 1);
+                return;
+            }
+
+            // Merge the sorted halves from src into dst
+            invokeSubtasks(high - low + 1, new Merge(src, dst, low, mid + 1, mid + 1, high + 1, low));
+        }
+
+        // Method to trigger the parallel mergesort
+        public static void sort(int[] array, ForkJoinPool pool) {
+            if (array.length < 2) return;
+            // The only allocation of the whole sort, both arrays start with the same content
+            int[] aux = array.clone();
+            run(new MergeSort(aux, array, 0, array.length - 1), array.length, pool);
+        }
+    }
+
+
+    private static class RunMergeSort extends SortTask {
+        private final int[] src;
+        private final int[] dst;
+        // runs[k] is the start index of the k-th run, runs[count] is the array length
+        private final int[] runs;
+        // This task sorts the runs first..last-1
+        private final int first;
+        private final int last;
+
+        public RunMergeSort(int[] src, int[] dst, int[] runs, int first, int last) {
+            this.src = src;
+            this.dst = dst;
+            this.runs = runs;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Parameters.getForkThreshold(Parameters.Engine.MERGESORT, Parameters.Type.INT);
+        }
+
+        @Override
+        protected void compute() {
+            // A single run is already sorted, and it is the same in both arrays
+            if (last - first == 1) return;
+
+            // Split at the run boundary closest to the middle element, so both halves have similar sizes
+            int middle = runs[first] + (runs[last] - runs[first]) / 2;
+            int left = first + 1, right = last - 1;
+            while (left < right) {
+                int k = (left + right) >>> 1;
+                if (runs[k] < middle) left = k + 1;
+                else right = k;
+            }
+            if (left > first + 1 && middle - runs[left - 1] < runs[left] - middle) left--;
+            int split = left;
+
+            invokeSubtasks(runs[last] - runs[first], new RunMergeSort(dst, src, runs, first, split),
+                    new RunMergeSort(dst, src, runs, split, last));
+
+            int low = runs[first], mid = runs[split], high = runs[last];
+            // If the halves are already in order, there is nothing to merge
+            SortStats.count(recorder(), 1, 0);
+            if (src[mid - 1] <= src[mid]) {
+                System.arraycopy(src, low, dst, low, high - low);
+                SortStats.count(recorder(), 0, high - low);
+                return;
+            }
+            invokeSubtasks(high - low, new Merge(src, dst, low, mid, mid, high, low));
+        }
+
+        // Method to trigger the adaptive mergesort
+        public static void sort(int[] array, ForkJoinPool pool) {
+            int len = array.length;
+            if (len < 2) return;
+
+            // Every run except the last one has at least minRun elements
+            int minRun = Math.max(2, Parameters.getCutoff(Parameters.Engine.MERGESORT, Parameters.Type.INT));
+            int[] runs = new int[len / minRun + 2];
+            int count = 0;
+            // The run detection is counted before the root task exists
+            SortStats.Recorder recorder = SortStats.ENABLED ? new SortStats.Recorder() : null;
+            // Timed from here in case the array is a single run and no task is run
+            SortEvent event = null;
+            long startTime = 0;
+            if (SortStats.ENABLED) {
+                event = new SortEvent();
+                event.begin();
+                startTime = System.nanoTime();
+            }
+            long comparisons = 0, moves = 0;
+
+            // Find the natural runs of the array, TimSort style
+            for (int start = 0; start < len; ) {
+                runs[count++] = start;
+                int end = start + 1;
+                if (end < len) {
+                    if (array[end] < array[start]) {
+                        // Strictly descending run, reverse it. Equal elements are not included to keep the sort stable
+                        while (end + 1 < len && array[end + 1] < array[end]) end++;
+                        for (int i = start, j = end; i < j; i++, j--) {
+                            int temp = array[i];
+                            array[i] = array[j];
+                            array[j] = temp;
                         }
-                        array[i + 1] = key;
+                        moves += end - start + 1;
+                    } else {
+                        // Ascending run
+                        while (end + 1 < len && array[end + 1] >= array[end]) end++;
                     }
+                    // Every pair of the run is compared, and the pair that ends it
+                    comparisons += end - start + (end + 1 < len ? 1 : 0);
+                    end++;
+                }
+                // Short runs are extended to minRun elements with insertion sort
+                if (end - start < minRun) {
+                    end = Math.min(start + minRun, len);
+                    insertionSort(array, start, end - 1, recorder);
+                }
+                start = end;
+            }
+            runs[count] = len;
+            SortStats.count(recorder, comparisons, moves);
+
+            // Already sorted, or sorted in reverse
+            if (count == 1) {
+                if (SortStats.ENABLED) {
+                    long elapsed = System.nanoTime() - startTime;
+                    event.end();
+                    SortStats.publish(recorder.toStats("RunMergeSort", len, 0, elapsed), event);
                 }
                 return;
             }
 
-            // If problem size is larger, solve it using divide-and-conquer
+            int[] aux = array.clone();
+            SortTask task = new RunMergeSort(aux, array, runs, 0, count);
+            task.recorder = recorder;
+            run(task, len, pool);
+        }
+    }
 
-            // Choosing a pivot element and partitioning the array around the pivot
-            // In this case, median of first, middle and last element is chosen as pivot
-            int mid = low + (high - low) / 2;
-            int lo = Math.min(Math.min(array[low], array[mid]), array[high]);
-            int hi = Math.max(Math.max(array[low], array[mid]), array[high]);
-            int midVal = array[low] + array[mid] + array[high] - lo - hi;
-
-            int tmp_pivot;
-            if (midVal == array[low]) tmp_pivot = low;
-            else if (midVal == array[mid]) tmp_pivot = mid;
-            else tmp_pivot = high;
-            int pivot = array[tmp_pivot];
 
-            // Swapping pivot element to end of array
-            array[tmp_pivot] = array[high];
-            array[high] = pivot;
+    private static class Merge extends SortTask {
+        // Below this many elements, the two runs are merged on the current thread
+        private static final int SEQUENTIAL_THRESHOLD = 1 << 13;
 
-            // Partition array around pivot
-            int i = low;
-            for (int j = low; j < high; j++) {
-                if (array[j] < pivot) {
-                    int temp = array[i];
-                    array[i] = array[j];
-                    array[j] = temp;
-                    i++;
-                }
+        private final int[] src;
+        private final int[] dst;
+        // The runs are src[low1..high1) and src[low2..high2), the upper bounds are exclusive
+        private final int low1, high1, low2, high2;
+        // Index of dst where the merged output starts
+        private final int at;
+
+        public Merge(int[] src, int[] dst, int low1, int high1, int low2, int high2, int at) {
+            this.src = src;
+            this.dst = dst;
+            this.low1 = low1;
+            this.high1 = high1;
+            this.low2 = low2;
+            this.high2 = high2;
+            this.at = at;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Parameters.getForkThreshold(Parameters.Engine.MERGESORT, Parameters.Type.INT);
+        }
+
+        @Override
+        protected void compute() {
+            if (high1 - low1 + high2 - low2 <= SEQUENTIAL_THRESHOLD) {
+                int comparisons = merge(src, dst, low1, high1, low2, high2, at);
+                SortStats.count(recorder(), comparisons, high1 - low1 + high2 - low2);
+                return;
             }
 
-            // Swap pivot element to its correct position
-            int temp = array[i];
-            array[i] = array[high];
-            array[high] = temp;
-            int pivotIndex = i;
+            // Split the longer run at its middle, and the other run at the same value.
+            // Equal elements of the first run always stay before the ones of the second run, so the merge is stable
+            int mid1, mid2;
+            if (high1 - low1 >= high2 - low2) {
+                mid1 = (low1 + high1) >>> 1;
+                mid2 = lowerBound(src, low2, high2, src[mid1]);
+            } else {
+                mid2 = (low2 + high2) >>> 1;
+                mid1 = upperBound(src, low1, high1, src[mid2]);
+            }
+            invokeSubtasks(high1 - low1 + high2 - low2, new Merge(src, dst, low1, mid1, low2, mid2, at),
+                    new Merge(src, dst, mid1, high1, mid2, high2, at + (mid1 - low1) + (mid2 - low2)));
+        }
 
-            // Recursively sort elements before and after pivot
-            QuickSort leftTask = new QuickSort(array, low, pivotIndex - 1);
-            QuickSort rightTask = new QuickSort(array, pivotIndex + 1, high);
-            invokeAll(leftTask, rightTask);
+        // Sequential merge of two sorted runs of src into dst. Returns the number of comparisons
+        static int merge(int[] src, int[] dst, int low1, int high1, int low2, int high2, int at) {
+            int start = at;
+            while (low1 < high1 && low2 < high2) {
+                if (src[low1] <= src[low2]) dst[at++] = src[low1++];
+                else dst[at++] = src[low2++];
+            }
+            // Copy remaining elements of either run
+            System.arraycopy(src, low1, dst, at, high1 - low1);
+            System.arraycopy(src, low2, dst, at + high1 - low1, high2 - low2);
+            return at - start;
         }
 
-        // Method to trigger the parallel quicksort
-        public static void sort(int[] array) {
-            pool.invoke(new QuickSort(array, 0, array.length - 1));
+        // Index of the first element in array[low..high) that is not less than key
+        static int lowerBound(int[] array, int low, int high, int key) {
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (array[mid] < key) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+
+        // Index of the first element in array[low..high) that is greater than key
+        static int upperBound(int[] array, int low, int high, int key) {
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (array[mid] <= key) low = mid + 1;
+                else high = mid;
+            }
+            return low;
         }
     }
 
 
-    private static class MergeSort extends RecursiveAction {
+    private static class RadixSort extends SortTask {
+        // Number of buckets for a single byte digit
+        private static final int RADIX = 256;
+        // Arrays smaller than this are sorted on the calling thread with a plain LSD radix sort
+        private static final int PARALLEL_THRESHOLD = 1 << 16;
+
         private final int[] array;
+        // Scratch array of the same length, it holds the output of the first (parallel) pass
+        private final int[] aux;
         private final int low;
         private final int high;
-        private static final ForkJoinPool pool = new ForkJoinPool();
+        // True only for the root task, which distributes the whole array by its most significant byte
+        private final boolean distribute;
 
-        public MergeSort(int[] array, int low, int high) {
+        public RadixSort(int[] array, int[] aux, int low, int high, boolean distribute) {
             this.array = array;
+            this.aux = aux;
             this.low = low;
             this.high = high;
+            this.distribute = distribute;
+        }
+
+        @Override
+        int forkThreshold() {
+            return Parameters.getForkThreshold(Parameters.Engine.RADIXSORT, Parameters.Type.INT);
         }
 
         @Override
         protected void compute() {
-            // If array size is below threshold, sort directly
-            if (high - low <= Parameters.MERGESORT_CUTOFF) {
-                insertionSort(low, high);
+            if (distribute) {
+                distribute();
+                return;
+            }
+            // The bucket lives in aux after the first pass, all keys in it share the most significant byte
+            if (high - low <= Parameters.getCutoff(Parameters.Engine.RADIXSORT, Parameters.Type.INT)) {
+                // Small buckets are copied back and finished with insertion sort
+                System.arraycopy(aux, low, array, low, high - low + 1);
+                SortStats.count(recorder(), 0, high - low + 1);
+                insertionSort(array, low, high, recorder());
             } else {
-                // Else, split the problem and sort each part recursively
-                int mid = low + (high - low) / 2;
-                MergeSort leftTask = new MergeSort(array, low, mid);
-                MergeSort rightTask = new MergeSort(array, mid + 1, high);
-                invokeAll(leftTask, rightTask);
-
-                // Merge the sorted parts
-                merge(low, mid, high);
+                // Sort the bucket by the remaining three bytes
+                long moves = lsdSort(aux, array, array, low, high, 16);
+                SortStats.count(recorder(), 0, moves);
             }
         }
 
-        // Insertion sort for small-sized problems
-        private void insertionSort(int low, int high) {
-            for (int index = low; ++index < high + 1; ) {
-                int key = array[index];
-                if (key < array[index - 1]) {
-                    int cursor = index;
-                    while (--cursor >= low && key < array[cursor]) {
-                        array[cursor + 1] = array[cursor];
-                    }
-                    array[cursor + 1] = key;
+        // Parallel MSD pass: histogram and scatter by the top byte, then sort every bucket in its own task
+        private void distribute() {
+            int len = array.length;
+            // Split the array into chunks, every chunk counts and scatters its own elements
+            // The common pool runs tasks on the caller when it has no workers, then there is no pool to ask
+            int parallelism = inForkJoinPool() ? getPool().getParallelism() : 1;
+            int chunks = Math.max(1, Math.min(parallelism * 4, len / PARALLEL_THRESHOLD));
+            int chunkSize = (len + chunks - 1) / chunks;
+            int[][] counts = new int[chunks][RADIX];
+
+            // Histogram phase, every chunk counts the digits of its own range
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(chunks);
+            for (int c = 0; c < chunks; c++) {
+                int chunk = c;
+                tasks.add(ForkJoinTask.adapt(() -> {
+                    int[] count = counts[chunk];
+                    int end = Math.min(len, (chunk + 1) * chunkSize);
+                    for (int i = chunk * chunkSize; i < end; i++) count[digit(array[i], 24)]++;
+                }));
+            }
+            recordForks(chunks - 1);
+            invokeAll(tasks);
+
+            // Turn the counts into starting offsets. For a given digit, earlier chunks come first so the pass is stable
+            int[] bucketStart = new int[RADIX + 1];
+            int offset = 0;
+            for (int d = 0; d < RADIX; d++) {
+                bucketStart[d] = offset;
+                for (int c = 0; c < chunks; c++) {
+                    int count = counts[c][d];
+                    counts[c][d] = offset;
+                    offset += count;
                 }
             }
+            bucketStart[RADIX] = offset;
+
+            // Scatter phase, every chunk writes its elements to its own reserved slots in aux
+            tasks.clear();
+            for (int c = 0; c < chunks; c++) {
+                int chunk = c;
+                tasks.add(ForkJoinTask.adapt(() -> {
+                    int[] position = counts[chunk];
+                    int end = Math.min(len, (chunk + 1) * chunkSize);
+                    for (int i = chunk * chunkSize; i < end; i++) aux[position[digit(array[i], 24)]++] = array[i];
+                }));
+            }
+            recordForks(chunks - 1);
+            invokeAll(tasks);
+            SortStats.count(recorder(), 0, len);
+
+            // Sort every non-empty bucket in parallel
+            List<RadixSort> buckets = new ArrayList<>();
+            for (int d = 0; d < RADIX; d++) {
+                if (bucketStart[d + 1] > bucketStart[d])
+                    buckets.add(new RadixSort(array, aux, bucketStart[d], bucketStart[d + 1] - 1, false));
+            }
+            forkSubtasks(buckets.toArray(new RadixSort[0]));
         }
 
-        // Merge two sorted sections of the array
-        private void merge(int low, int mid, int high) {
-            // Auxiliary array to hold merged elements
-            int[] aux = new int[high - low + 1];
-            int leftCursor = low, rightCursor = mid + 1, auxCursor = 0;
+        // Returns the byte of the key at the given shift. The sign bit is flipped so negative numbers come first
+        private static int digit(int key, int shift) {
+            return shift == 24 ? (key >>> 24) ^ 0x80 : (key >>> shift) & 0xFF;
+        }
 
-            // Merge elements from both sections in order
-            while (leftCursor <= mid && rightCursor <= high) {
-                if (array[leftCursor] <= array[rightCursor]) aux[auxCursor++] = array[leftCursor++];
-                else aux[auxCursor++] = array[rightCursor++];
+        // Sequential LSD radix sort of src[low..high] by the bytes up to topShift, the result is written to array.
+        // Returns the number of element writes
+        private static long lsdSort(int[] src, int[] dst, int[] array, int low, int high, int topShift) {
+            int[] count = new int[RADIX + 1];
+            int len = high - low + 1;
+            long moves = 0;
+            for (int shift = 0; shift <= topShift; shift += 8) {
+                Arrays.fill(count, 0);
+                for (int i = low; i <= high; i++) count[digit(src[i], shift) + 1]++;
+                // If every key has the same digit, this pass would not change anything
+                if (count[digit(src[low], shift) + 1] == len) continue;
+                for (int d = 0; d < RADIX; d++) count[d + 1] += count[d];
+                for (int i = low; i <= high; i++) dst[low + count[digit(src[i], shift)]++] = src[i];
+                moves += len;
+                // The output of this pass is the input of the next one
+                int[] tmp = src;
+                src = dst;
+                dst = tmp;
             }
-            // Copy remaining elements from the left section, if any
-            while (leftCursor <= mid) aux[auxCursor++] = array[leftCursor++];
-            // Copy remaining elements from the right section, if any
-            while (rightCursor <= high) aux[auxCursor++] = array[rightCursor++];
+            // Make sure the sorted data ends up in the array
+            if (src != array) {
+                System.arraycopy(src, low, array, low, len);
+                moves += len;
+            }
+            return moves;
+        }
 
-            // Copy merged elements back into the original array
-            System.arraycopy(aux, 0, array, low, aux.length);
+        // Method to trigger the parallel radix sort
+        public static void sort(int[] array, ForkJoinPool pool) {
+            int len = array.length;
+            if (len - 1 <= Parameters.getCutoff(Parameters.Engine.RADIXSORT, Parameters.Type.INT)) {
+                insertionSort(array, 0, len - 1, null);
+            } else if (len < PARALLEL_THRESHOLD) {
+                lsdSort(array, new int[len], array, 0, len - 1, 24);
+            } else {
+                invoke(new RadixSort(array, new int[len], 0, len - 1, true), len, pool);
+            }
         }
+    }
 
-        // Method to trigger the parallel mergesort
-        public static void sort(int[] array) {
-            pool.invoke(new MergeSort(array, 0, array.length - 1));
+    private static class Dispatcher {
+        // The array is sampled in WINDOWS contiguous windows of WINDOW_SIZE elements, spread evenly
+        private static final int WINDOWS = 32;
+        private static final int WINDOW_SIZE = 64;
+        // Duplicates are counted by sorting a sample of at most this many elements
+        private static final int DUPLICATE_SAMPLE = 256;
+        // Arrays at least this large go to radix sort if nothing better was found
+        private static final int RADIX_THRESHOLD = 1 << 16;
+        // Above this ratio of equal sampled values, the three-way partition of QuickSort is the best choice
+        private static final double DUPLICATE_THRESHOLD = 0.5;
+        // Above this ratio of ordered pairs, MergeSort skips most of its merges
+        private static final double PRESORTED_THRESHOLD = 0.75;
+        // Arrays with fewer runs than length / RUN_DIVISOR are merged run by run
+        private static final int RUN_DIVISOR = 256;
+
+        // The profile of the last sort on each thread
+        private static final ThreadLocal<SortProfile> lastProfile = new ThreadLocal<>();
+
+        static SortProfile profile(int[] array) {
+            int len = array.length;
+            if (len - 1 <= Parameters.getQuicksortCutoff()) {
+                return new SortProfile(len, 0, 0, 0, 0, 0, 0, SortProfile.Algorithm.INSERTION_SORT, 0, 0);
+            }
+
+            // The windows are read in place. Small arrays are one window
+            int windows, windowSize;
+            long step;
+            if (len <= 4 * WINDOWS * WINDOW_SIZE) {
+                windows = 1;
+                windowSize = len;
+                step = 0;
+            } else {
+                windows = WINDOWS;
+                windowSize = WINDOW_SIZE;
+                step = (len - WINDOW_SIZE) / (WINDOWS - 1);
+            }
+
+            // Count ordered neighbouring pairs inside every window, and find the sampled range
+            int ascending = 0, descending = 0, pairs = 0;
+            int min = array[0], max = array[0];
+            for (int w = 0; w < windows; w++) {
+                int start = (int) (w * step);
+                for (int i = start; i < start + windowSize - 1; i++) {
+                    if (array[i] <= array[i + 1]) ascending++;
+                    else descending++;
+                    pairs++;
+                }
+                for (int i = start; i < start + windowSize; i++) {
+                    min = Math.min(min, array[i]);
+                    max = Math.max(max, array[i]);
+                }
+            }
+            double ascendingRatio = (double) ascending / pairs, descendingRatio = (double) descending / pairs;
+            long estimatedRuns = 1 + Math.round((1 - Math.max(ascendingRatio, descendingRatio)) * (len - 1));
+
+            // Sort a small sample, spread over the windows, to count duplicates
+            int sampled = windows * windowSize;
+            int[] sample = new int[Math.min(sampled, DUPLICATE_SAMPLE)];
+            for (int i = 0; i < sample.length; i++) {
+                int index = (int) ((long) i * sampled / sample.length);
+                sample[i] = array[(int) (index / windowSize * step) + index % windowSize];
+            }
+            Arrays.sort(sample);
+            int duplicates = 0;
+            for (int i = 1; i < sample.length; i++) {
+                if (sample[i] == sample[i - 1]) duplicates++;
+            }
+            double duplicateRatio = (double) duplicates / (sample.length - 1);
+            long range = (long) max - min;
+
+            SortProfile.Algorithm algorithm;
+            if (range < len) {
+                // The sample suggests a narrow range, confirm it with the exact bounds before counting
+                for (int value : array) {
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+                range = (long) max - min;
+            }
+            if (range < len) algorithm = SortProfile.Algorithm.COUNTING_SORT;
+            else if (estimatedRuns <= Math.max(1, len / RUN_DIVISOR)) algorithm = SortProfile.Algorithm.RUN_MERGE_SORT;
+            else if (Math.max(ascendingRatio, descendingRatio) >= PRESORTED_THRESHOLD) algorithm = SortProfile.Algorithm.MERGE_SORT;
+            else if (duplicateRatio >= DUPLICATE_THRESHOLD) algorithm = SortProfile.Algorithm.QUICK_SORT;
+            else if (len >= RADIX_THRESHOLD) algorithm = SortProfile.Algorithm.RADIX_SORT;
+            else algorithm = SortProfile.Algorithm.QUICK_SORT;
+
+            return new SortProfile(len, sampled, ascendingRatio, descendingRatio, estimatedRuns, range,
+                    duplicateRatio, algorithm, min, max);
         }
     }
-}
 
+    private static class Calibrator {
+        // Candidate values, the defaults are among them
+        private static final int[] CUTOFFS = {8, 16, 24, 30, 40, 48, 64};
+        private static final int[] FORK_THRESHOLDS = {1 << 10, 1 << 11, 1 << 12, 1 << 13, 1 << 14, 1 << 15, 1 << 16};
+        // Array sizes used for measuring. Cutoffs are measured on a single thread
+        private static final int CUTOFF_LENGTH = 1 << 15;
+        private static final int FORK_LENGTH = 1 << 20;
+        // Every candidate is measured this many times and the best time is kept
+        private static final int REPETITIONS = 5;
+
+        static void calibrate(Parameters.Engine engine, Parameters.Type type) {
+            ForkJoinPool pool = ForkJoinPool.commonPool();
+
+            // Measure the cutoffs without forking, so only the base case changes
+            int forkThreshold = Parameters.getForkThreshold(engine, type);
+            Parameters.setForkThreshold(engine, type, Integer.MAX_VALUE);
+            Object data = randomArray(type, CUTOFF_LENGTH);
+            int bestCutoff = Parameters.getCutoff(engine, type);
+            long bestTime = Long.MAX_VALUE;
+            for (int cutoff : CUTOFFS) {
+                Parameters.setCutoff(engine, type, cutoff);
+                long time = measure(engine, type, data, pool);
+                if (time < bestTime) {
+                    bestTime = time;
+                    bestCutoff = cutoff;
+                }
+            }
+            Parameters.setCutoff(engine, type, bestCutoff);
+            Parameters.setForkThreshold(engine, type, forkThreshold);
+
+            // Forking can't pay off without at least two workers
+            if (ForkJoinPool.getCommonPoolParallelism() < 2) return;
+            data = randomArray(type, FORK_LENGTH);
+            bestTime = Long.MAX_VALUE;
+            for (int threshold : FORK_THRESHOLDS) {
+                Parameters.setForkThreshold(engine, type, threshold);
+                long time = measure(engine, type, data, pool);
+                if (time < bestTime) {
+                    bestTime = time;
+                    forkThreshold = threshold;
+                }
+            }
+            Parameters.setForkThreshold(engine, type, forkThreshold);
+        }
+
+        // Sorts fresh copies of the data and returns the best time in nanoseconds, after one warmup run
+        private static long measure(Parameters.Engine engine, Parameters.Type type, Object data, ForkJoinPool pool) {
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i <= REPETITIONS; i++) {
+                Object array = copy(data);
+                long start = System.nanoTime();
+                sort(engine, type, array, pool);
+                long time = System.nanoTime() - start;
+                if (i > 0) best = Math.min(best, time);
+            }
+            return best;
+        }
+
+        private static void sort(Parameters.Engine engine, Parameters.Type type, Object array, ForkJoinPool pool) {
+            boolean quick = engine == Parameters.Engine.QUICKSORT;
+            switch (type) {
+                case INT:
+                    if (engine == Parameters.Engine.RADIXSORT) radixSort((int[]) array, pool);
+                    else if (quick) quickSort((int[]) array, pool);
+                    else mergeSort((int[]) array, pool);
+                    break;
+                case LONG:
+                    if (quick) quickSort((long[]) array, pool);
+                    else mergeSort((long[]) array, pool);
+                    break;
+                case DOUBLE:
+                    if (quick) quickSort((double[]) array, pool);
+                    else mergeSort((double[]) array, pool);
+                    break;
+                case FLOAT:
+                    if (quick) quickSort((float[]) array, pool);
+                    else mergeSort((float[]) array, pool);
+                    break;
+                case SHORT:
+                    if (quick) quickSort((short[]) array, pool);
+                    else mergeSort((short[]) array, pool);
+                    break;
+                case CHAR:
+                    if (quick) quickSort((char[]) array, pool);
+                    else mergeSort((char[]) array, pool);
+                    break;
+                default:
+                    if (quick) quickSort((byte[]) array, pool);
+                    else mergeSort((byte[]) array, pool);
+            }
+        }
+
+        // Creates a uniformly random array of the given type, always with the same seed
+        private static Object randomArray(Parameters.Type type, int len) {
+            SplittableRandom random = new SplittableRandom(0);
+            Object array = Array.newInstance(componentType(type), len);
+            for (int i = 0; i < len; i++) {
+                int value = random.nextInt();
+                switch (type) {
+                    case INT:
+                        Array.setInt(array, i, value);
+                        break;
+                    case LONG:
+                        Array.setLong(array, i, random.nextLong());
+                        break;
+                    case DOUBLE:
+                        Array.setDouble(array, i, random.nextDouble());
+                        break;
+                    case FLOAT:
+                        Array.setFloat(array, i, (float) random.nextDouble());
+                        break;
+                    case SHORT:
+                        Array.setShort(array, i, (short) value);
+                        break;
+                    case CHAR:
+                        Array.setChar(array, i, (char) value);
+                        break;
+                    default:
+                        Array.setByte(array, i, (byte) value);
+                }
+            }
+            return array;
+        }
+
+        private static Class<?> componentType(Parameters.Type type) {
+            switch (type) {
+                case INT:
+                    return int.class;
+                case LONG:
+                    return long.class;
+                case DOUBLE:
+                    return double.class;
+                case FLOAT:
+                    return float.class;
+                case SHORT:
+                    return short.class;
+                case CHAR:
+                    return char.class;
+                default:
+                    return byte.class;
+            }
+        }
 
+        private static Object copy(Object array) {
+            int len = Array.getLength(array);
+            Object copy = Array.newInstance(array.getClass().getComponentType(), len);
+            System.arraycopy(array, 0, copy, 0, len);
+            return copy;
+        }
+    }
+}
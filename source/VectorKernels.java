@@ -0,0 +1,25 @@
+package myJavaLib;
+
+/**
+ * Vectorized kernels of the int sorts. The implementation uses the incubating Vector API, so it lives in
+ * {@code source-vector/} and is compiled and run with {@code --add-modules jdk.incubator.vector}.
+ * It is loaded by reflection, see {@link Sorting.Parameters#isVectorAvailable()}. When it is missing, or the module
+ * isn't added, the scalar code is used.
+ */
+interface VectorKernels {
+
+    /**
+     * Sorts array[low..high] with a sorting network if the range is small enough.
+     *
+     * @return true if the range was sorted, false if it is too large and wasn't changed
+     */
+    boolean sortSmall(int[] array, int low, int high);
+
+    /**
+     * Partitions array[low..high-1] around the pivot stored in array[high], like the block partition of QuickSort.
+     * Elements less than the pivot end up before it, the others after it.
+     *
+     * @return the final index of the pivot, or -1 if the range is too small and wasn't changed
+     */
+    int partition(int[] array, int low, int high, int pivot);
+}
@@ -0,0 +1,21 @@
+#!/bin/sh
+# Generates source/PrimitiveSorts.java from PrimitiveSorts.template.
+# Every primitive type gets its own copy of the engines, so no boxing is needed and the JIT sees monomorphic code.
+# The int[] engines live in Sorting itself and are the reference the template follows.
+# The dual-pivot QuickSort and the adaptive MergeSort modes are only offered for int[].
+# Run from the repository root: sh templates/generate-primitive-sorts.sh
+
+set -e
+template=templates/PrimitiveSorts.template
+output=source/PrimitiveSorts.java
+
+{
+    cat templates/PrimitiveSorts.header
+    for pair in long:Long double:Double float:Float short:Short char:Char byte:Byte; do
+        type=${pair%%:*}
+        Type=${pair##*:}
+        TYPE=$(echo "$type" | tr '[:lower:]' '[:upper:]')
+        sed -e "s/\\\$type\\\$/$type/g" -e "s/\\\$Type\\\$/$Type/g" -e "s/\\\$TYPE\\\$/$TYPE/g" "$template"
+    done
+    echo "}"
+} > "$output"
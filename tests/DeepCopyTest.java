@@ -0,0 +1,125 @@
+import myJavaLib.Data;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Regression tests of Data.deepCopy for hash tables and sorted collections whose keys refer to objects that are copied
+ * before them. Run with {@code java -cp out tests/DeepCopyTest.java} after compiling the library to out.
+ */
+public class DeepCopyTest {
+    static class X implements Serializable {
+        int value;
+
+        X(int value) {
+            this.value = value;
+        }
+    }
+
+    // Hashed and compared by the X it refers to
+    static class K implements Serializable, Comparable<K> {
+        X x;
+
+        K(X x) {
+            this.x = x;
+        }
+
+        @Override
+        public int hashCode() {
+            return x.value;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof K && ((K) other).x.value == x.value;
+        }
+
+        @Override
+        public int compareTo(K other) {
+            return Integer.compare(x.value, other.x.value);
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(x.value);
+        }
+    }
+
+    public static void main(String[] args) {
+        hashMapKeyReferringToEarlierObject();
+        hashSetKeyReferringToEarlierObject();
+        treeSetKeysReferringToEarlierObjects();
+        immutableCollectionsReferringToEarlierObjects();
+        parallelCopy();
+        System.out.println("DeepCopyTest OK");
+    }
+
+    @SuppressWarnings("unchecked")
+    static void hashMapKeyReferringToEarlierObject() {
+        X x = new X(42);
+        Map<K, String> map = new HashMap<>();
+        map.put(new K(x), "v");
+        List<Object> copy = Data.deepCopy(new ArrayList<>(List.of(x, map)));
+        Map<K, String> mapCopy = (Map<K, String>) copy.get(1);
+        K keyCopy = mapCopy.keySet().iterator().next();
+        check(keyCopy.x == copy.get(0), "the key refers to the copy of x");
+        check(mapCopy.containsKey(new K(new X(42))), "an equal key is found");
+        check("v".equals(mapCopy.get(keyCopy)), "the own key is found");
+    }
+
+    @SuppressWarnings("unchecked")
+    static void hashSetKeyReferringToEarlierObject() {
+        X x = new X(5);
+        Set<K> set = new HashSet<>(Set.of(new K(x)));
+        List<Object> copy = Data.deepCopy(new ArrayList<>(List.of(x, set)));
+        Set<K> setCopy = (Set<K>) copy.get(1);
+        check(setCopy.contains(setCopy.iterator().next()), "the own element is found");
+        check(setCopy.contains(new K(new X(5))), "an equal element is found");
+    }
+
+    static void treeSetKeysReferringToEarlierObjects() {
+        X seven = new X(7), three = new X(3);
+        TreeSet<K> set = new TreeSet<>(List.of(new K(seven), new K(three)));
+        List<Object> copy = Data.deepCopy(new ArrayList<>(List.of(seven, three, set)));
+        check(copy.get(2).toString().equals("[3, 7]"), "the tree set is ordered: " + copy.get(2));
+    }
+
+    @SuppressWarnings("unchecked")
+    static void immutableCollectionsReferringToEarlierObjects() {
+        X seven = new X(7), three = new X(3);
+        List<Object> copy = Data.deepCopy(new ArrayList<>(List.of(seven, three, Set.of(new K(seven)),
+                Map.of(new K(three), 1), Collections.unmodifiableSet(new HashSet<>(Set.of(new K(seven)))))));
+        check(((Set<K>) copy.get(2)).contains(new K(new X(7))), "Set.of finds its element");
+        check(Integer.valueOf(1).equals(((Map<K, Integer>) copy.get(3)).get(new K(new X(3)))), "Map.of finds its key");
+        check(((Set<K>) copy.get(4)).contains(new K(new X(7))), "an unmodifiable set finds its element");
+    }
+
+    @SuppressWarnings("unchecked")
+    static void parallelCopy() {
+        int n = 40_000;
+        List<Object> list = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            X x = new X(i);
+            Map<K, Integer> map = new HashMap<>();
+            map.put(new K(x), i);
+            list.add(x);
+            list.add(map);
+        }
+        List<Object> copy = Data.deepCopyParallel(list);
+        for (int i = 0; i < n; i++) {
+            Map<K, Integer> map = (Map<K, Integer>) copy.get(2 * i + 1);
+            check(Integer.valueOf(i).equals(map.get(new K(new X(i)))), "the parallel copy finds key " + i);
+        }
+    }
+
+    static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,79 @@
+import myJavaLib.Data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Regression tests of Data.stream on damaged record logs: a torn tail ends the stream, a corrupt frame before it
+ * throws, sequentially and in parallel. Run with {@code java -cp out tests/RecordStreamTest.java} after compiling the
+ * library to out.
+ */
+public class RecordStreamTest {
+    private static final int RECORDS = 2000;
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("RecordStreamTest");
+        tornTailEndsTheStream(directory.resolve("torn.log"));
+        corruptLengthThrows(directory.resolve("corrupt.log"), false);
+        corruptLengthThrows(directory.resolve("corrupt-parallel.log"), true);
+        System.out.println("RecordStreamTest OK");
+    }
+
+    static void tornTailEndsTheStream(Path path) throws IOException {
+        write(path);
+        try (FileChannel log = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            log.truncate(log.size() - 3);
+        }
+        check(count(path, false) == RECORDS - 1, "a torn last record ends the stream");
+        check(count(path, true) == RECORDS - 1, "a torn last record ends the parallel stream");
+    }
+
+    static void corruptLengthThrows(Path path, boolean parallel) throws IOException {
+        write(path);
+        long offset;
+        try (FileChannel index = FileChannel.open(Path.of(path + ".idx"), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+            index.read(buffer, 300L * Long.BYTES);
+            offset = buffer.getLong(0);
+        }
+        try (FileChannel log = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            log.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 1 << 30), offset);
+        }
+        try {
+            long count = count(path, parallel);
+            throw new AssertionError("a corrupt length in the middle of the log was read as its end, " + count
+                    + " records");
+        } catch (UncheckedIOException e) {
+            check(e.getMessage().contains("Corrupt frame"), "the corrupt frame is reported: " + e.getMessage());
+        }
+    }
+
+    static void write(Path path) throws IOException {
+        try (Data.RecordWriter writer = Data.openWriter(path.toString())) {
+            for (int i = 0; i < RECORDS; i++) check(writer.write("record " + i), "record " + i + " is written");
+        }
+        try (Stream<String> records = Data.stream(path.toString(), String.class)) {
+            List<String> list = records.parallel().collect(Collectors.toList());
+            check(list.size() == RECORDS && list.get(RECORDS - 1).equals("record " + (RECORDS - 1)),
+                    "the records are read in order");
+        }
+    }
+
+    static long count(Path path, boolean parallel) {
+        try (Stream<String> records = Data.stream(path.toString(), String.class)) {
+            return parallel ? records.parallel().count() : records.count();
+        }
+    }
+
+    static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}